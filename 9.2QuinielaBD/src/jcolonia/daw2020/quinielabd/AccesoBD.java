@@ -10,34 +10,374 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Utilidades de acceso a una base de datos SQLite para gestión de
- * {@link ElementoPartido1X2 resultados de quiniela tipo 1-X-2}.
+ * {@link ElementoPartido1X2 resultados de quiniela tipo 1-X-2}. Es el
+ * {@link AlmacenPartidos almacén} predeterminado.
  * 
  * @versión 2021.8.1
  * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
  */
-public class AccesoBD implements AutoCloseable {
+public class AccesoBD implements AlmacenPartidos {
+	/**
+	 * Definición de las columnas de la tabla «Resultados». El identificador de
+	 * fila es «AUTOINCREMENT» para que nunca se reutilice el de un partido
+	 * borrado o archivado.
+	 */
+	private static final String COLUMNAS_RESULTADOS = "(id INTEGER PRIMARY KEY AUTOINCREMENT, nombre_local TEXT NOT NULL, nombre_visitante TEXT NOT NULL, resultado TEXT NOT NULL, temporada TEXT NOT NULL DEFAULT '', jornada INTEGER NOT NULL DEFAULT 0, revision INTEGER NOT NULL DEFAULT 0)";
+
 	/**
 	 * Sentencia SQL para crear la tabla «Resultados» –vacía– si no existe.
 	 */
-	private static final String SQL_CREAR_TABLA = "CREATE TABLE IF NOT EXISTS Resultados (nombre_local TEXT NOT NULL, nombre_visitante TEXT NOT NULL, resultado TEXT NOT NULL)";
+	private static final String SQL_CREAR_TABLA = "CREATE TABLE IF NOT EXISTS Resultados " + COLUMNAS_RESULTADOS;
+
+	/**
+	 * Sentencia SQL para consultar las columnas de la tabla «Resultados».
+	 */
+	private static final String SQL_COLUMNAS_TABLA = "PRAGMA table_info(Resultados)";
+
+	/**
+	 * Sentencias SQL para añadir a tablas antiguas las columnas de calendario.
+	 */
+	private static final String[] SQL_AÑADIR_CALENDARIO = {
+			"ALTER TABLE Resultados ADD COLUMN temporada TEXT NOT NULL DEFAULT ''",
+			"ALTER TABLE Resultados ADD COLUMN jornada INTEGER NOT NULL DEFAULT 0" };
+
+	/**
+	 * Sentencias SQL para añadir a tablas antiguas la columna de revisión,
+	 * numerando los partidos existentes por orden de grabación.
+	 */
+	private static final String[] SQL_AÑADIR_REVISIÓN = {
+			"ALTER TABLE Resultados ADD COLUMN revision INTEGER NOT NULL DEFAULT 0",
+			"UPDATE Resultados SET revision = rowid" };
+
+	/**
+	 * Sentencias SQL para rehacer una tabla «Resultados» antigua con
+	 * identificador «AUTOINCREMENT», conservando el identificador de cada fila.
+	 * Al eliminar la tabla anterior desaparecen sus índices y disparadores.
+	 */
+	private static final String[] SQL_REHACER_TABLA = { "CREATE TABLE Resultados_nueva " + COLUMNAS_RESULTADOS,
+			"INSERT INTO Resultados_nueva (id, nombre_local, nombre_visitante, resultado, temporada, jornada, revision) "
+					+ "SELECT rowid, nombre_local, nombre_visitante, resultado, temporada, jornada, revision FROM Resultados",
+			"DROP TABLE Resultados", "ALTER TABLE Resultados_nueva RENAME TO Resultados" };
+
+	/**
+	 * Sentencia SQL para esperar, en lugar de fallar, mientras otra conexión
+	 * bloquea la base de datos.
+	 */
+	private static final String SQL_ESPERA_BLOQUEO = "PRAGMA busy_timeout = 5000";
+
+	/**
+	 * Sentencia SQL para impedir cualquier modificación desde la conexión.
+	 */
+	private static final String SQL_SÓLO_LECTURA = "PRAGMA query_only = 1";
+
+	/**
+	 * Sentencia SQL para activar el modo de registro anticipado (WAL), que
+	 * permite lecturas simultáneas a una escritura. El modo queda guardado en el
+	 * propio archivo.
+	 */
+	private static final String SQL_ACTIVAR_WAL = "PRAGMA journal_mode = WAL";
+
+	/**
+	 * Sentencia SQL para obtener la versión de los datos vista por la conexión.
+	 */
+	private static final String SQL_VERSIÓN_DATOS = "PRAGMA data_version";
+
+	/**
+	 * Sentencia SQL para comprobar si existe ya el índice de la clave natural.
+	 */
+	private static final String SQL_EXISTE_CLAVE = "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = 'ix_resultados_clave'";
+
+	/**
+	 * Sentencia SQL para eliminar los partidos repetidos –se conserva el último
+	 * grabado– antes de crear el índice de la clave natural.
+	 */
+	private static final String SQL_ELIMINAR_REPETIDOS = "DELETE FROM Resultados WHERE rowid NOT IN (SELECT MAX(rowid) FROM Resultados GROUP BY temporada, jornada, nombre_local, nombre_visitante)";
+
+	/**
+	 * Sentencia SQL para crear el índice único de la clave natural de cada
+	 * partido: temporada, jornada, equipo local y equipo visitante.
+	 */
+	private static final String SQL_CREAR_CLAVE = "CREATE UNIQUE INDEX IF NOT EXISTS ix_resultados_clave ON Resultados (temporada, jornada, nombre_local, nombre_visitante)";
+
+	/**
+	 * Sentencia SQL para comprobar si existe ya el diccionario de equipos.
+	 */
+	private static final String SQL_EXISTEN_EQUIPOS = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'Equipos'";
+
+	/**
+	 * Sentencias SQL para crear el diccionario de equipos, su índice de búsqueda
+	 * por trigramas (FTS5) y los disparadores que los mantienen al grabar
+	 * resultados, rellenándolos con los equipos ya grabados.
+	 */
+	private static final String[] SQL_CREAR_BÚSQUEDA = {
+			"CREATE TABLE IF NOT EXISTS Equipos (id INTEGER PRIMARY KEY, nombre TEXT NOT NULL UNIQUE)",
+			"CREATE VIRTUAL TABLE IF NOT EXISTS EquiposBusqueda USING fts5(nombre, content = 'Equipos', content_rowid = 'id', tokenize = 'trigram')",
+			"CREATE TRIGGER IF NOT EXISTS tr_equipos_busqueda AFTER INSERT ON Equipos BEGIN INSERT INTO EquiposBusqueda (rowid, nombre) VALUES (new.id, new.nombre); END",
+			"INSERT OR IGNORE INTO Equipos (nombre) SELECT nombre_local FROM Resultados UNION SELECT nombre_visitante FROM Resultados" };
+
+	/**
+	 * Sentencias SQL para crear los disparadores que mantienen el diccionario de
+	 * equipos al grabar resultados.
+	 */
+	private static final String[] SQL_DISPARADORES_EQUIPOS = {
+			"CREATE TRIGGER IF NOT EXISTS tr_resultados_equipos AFTER INSERT ON Resultados BEGIN INSERT OR IGNORE INTO Equipos (nombre) VALUES (new.nombre_local), (new.nombre_visitante); END" };
+
+	/**
+	 * Sentencia SQL para comprobar si existe ya el resumen de enfrentamientos.
+	 */
+	private static final String SQL_EXISTEN_ENFRENTAMIENTOS = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'Enfrentamientos'";
+
+	/**
+	 * Sentencia SQL para rellenar el resumen de enfrentamientos a partir de los
+	 * resultados grabados.
+	 */
+	private static final String SQL_RELLENAR_ENFRENTAMIENTOS = "INSERT INTO Enfrentamientos (nombre_local, nombre_visitante, locales, empates, visitantes) "
+			+ "SELECT nombre_local, nombre_visitante, SUM(resultado = '1'), SUM(resultado = 'X'), SUM(resultado = '2') FROM Resultados GROUP BY nombre_local, nombre_visitante";
+
+	/**
+	 * Sentencia SQL para vaciar el resumen de enfrentamientos.
+	 */
+	private static final String SQL_VACIAR_ENFRENTAMIENTOS = "DELETE FROM Enfrentamientos";
+
+	/**
+	 * Sentencias SQL para crear el resumen de enfrentamientos –cuántas veces ha
+	 * ganado, empatado o perdido cada equipo como local ante cada visitante– y
+	 * rellenarlo con los resultados ya grabados.
+	 */
+	private static final String[] SQL_CREAR_ENFRENTAMIENTOS = {
+			"CREATE TABLE IF NOT EXISTS Enfrentamientos (nombre_local TEXT NOT NULL, nombre_visitante TEXT NOT NULL, locales INTEGER NOT NULL, empates INTEGER NOT NULL, visitantes INTEGER NOT NULL, PRIMARY KEY (nombre_local, nombre_visitante)) WITHOUT ROWID",
+			SQL_RELLENAR_ENFRENTAMIENTOS };
+
+	/**
+	 * Sentencias SQL para crear los disparadores que mantienen el resumen de
+	 * enfrentamientos al insertar, modificar o borrar resultados.
+	 */
+	private static final String[] SQL_DISPARADORES_ENFRENTAMIENTOS = {
+			"CREATE TRIGGER IF NOT EXISTS tr_enfrentamientos_alta AFTER INSERT ON Resultados BEGIN "
+					+ "INSERT INTO Enfrentamientos (nombre_local, nombre_visitante, locales, empates, visitantes) "
+					+ "VALUES (new.nombre_local, new.nombre_visitante, new.resultado = '1', new.resultado = 'X', new.resultado = '2') "
+					+ "ON CONFLICT (nombre_local, nombre_visitante) DO UPDATE SET locales = locales + excluded.locales, "
+					+ "empates = empates + excluded.empates, visitantes = visitantes + excluded.visitantes; END",
+			"CREATE TRIGGER IF NOT EXISTS tr_enfrentamientos_cambio AFTER UPDATE OF resultado ON Resultados BEGIN "
+					+ "UPDATE Enfrentamientos SET locales = locales + (new.resultado = '1') - (old.resultado = '1'), "
+					+ "empates = empates + (new.resultado = 'X') - (old.resultado = 'X'), "
+					+ "visitantes = visitantes + (new.resultado = '2') - (old.resultado = '2') "
+					+ "WHERE nombre_local = old.nombre_local AND nombre_visitante = old.nombre_visitante; END",
+			"CREATE TRIGGER IF NOT EXISTS tr_enfrentamientos_baja AFTER DELETE ON Resultados BEGIN "
+					+ "UPDATE Enfrentamientos SET locales = locales - (old.resultado = '1'), empates = empates - (old.resultado = 'X'), "
+					+ "visitantes = visitantes - (old.resultado = '2') "
+					+ "WHERE nombre_local = old.nombre_local AND nombre_visitante = old.nombre_visitante; END" };
+
+	/**
+	 * Sentencia SQL para comprobar si existe ya el contador de revisiones.
+	 */
+	private static final String SQL_EXISTEN_REVISIONES = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'Revision'";
+
+	/**
+	 * Sentencias SQL para crear el contador de revisiones –una única fila con la
+	 * última asignada, que parte de la mayor grabada, y la revisión hasta la que
+	 * se han podado las bajas– y la tabla de bajas, con el identificador de cada
+	 * partido borrado y la revisión del borrado.
+	 */
+	private static final String[] SQL_CREAR_REVISIONES = {
+			"CREATE TABLE IF NOT EXISTS Revision (id INTEGER PRIMARY KEY CHECK (id = 0), ultima INTEGER NOT NULL, "
+					+ "podada INTEGER NOT NULL DEFAULT 0)",
+			"INSERT OR IGNORE INTO Revision (id, ultima) SELECT 0, IFNULL(MAX(revision), 0) FROM Resultados",
+			"CREATE TABLE IF NOT EXISTS Bajas (revision INTEGER PRIMARY KEY, id INTEGER NOT NULL)" };
+
+	/**
+	 * Sentencia SQL para comprobar si el contador de revisiones anota ya la
+	 * poda de las bajas.
+	 */
+	private static final String SQL_EXISTE_PODA = "SELECT 1 FROM pragma_table_info('Revision') WHERE name = 'podada'";
+
+	/**
+	 * Sentencia SQL para añadir la revisión de poda a un contador de revisiones
+	 * anterior.
+	 */
+	private static final String SQL_AÑADIR_PODA = "ALTER TABLE Revision ADD COLUMN podada INTEGER NOT NULL DEFAULT 0";
+
+	/**
+	 * Sentencias SQL para crear los disparadores que hacen avanzar el contador
+	 * de revisiones con cada partido grabado o modificado, y que anotan en las
+	 * bajas, con una revisión nueva, cada partido borrado o archivado.
+	 */
+	private static final String[] SQL_DISPARADORES_REVISIONES = {
+			"CREATE TRIGGER IF NOT EXISTS tr_revision_alta AFTER INSERT ON Resultados BEGIN "
+					+ "UPDATE Revision SET ultima = new.revision WHERE ultima < new.revision; END",
+			"CREATE TRIGGER IF NOT EXISTS tr_revision_cambio AFTER UPDATE OF revision ON Resultados BEGIN "
+					+ "UPDATE Revision SET ultima = new.revision WHERE ultima < new.revision; END",
+			"CREATE TRIGGER IF NOT EXISTS tr_revision_baja AFTER DELETE ON Resultados BEGIN "
+					+ "UPDATE Revision SET ultima = ultima + 1; "
+					+ "INSERT INTO Bajas (revision, id) SELECT ultima, old.id FROM Revision; END" };
+
+	/**
+	 * Sentencia SQL del balance entre dos equipos, con dos búsquedas por clave
+	 * primaria en el resumen de enfrentamientos: el primero como local y como
+	 * visitante.
+	 */
+	private static final String SQL_ENFRENTAMIENTO = "SELECT nombre_local = ? AS en_casa, locales, empates, visitantes FROM Enfrentamientos "
+			+ "WHERE (nombre_local = ? AND nombre_visitante = ?) OR (nombre_local = ? AND nombre_visitante = ?)";
+
+	/**
+	 * Sentencia SQL de los balances de una serie de parejas de equipos en una
+	 * sola consulta. Las parejas llegan como un único parámetro JSON –una lista
+	 * de pares local-visitante– y cada una se resuelve con dos búsquedas por
+	 * clave primaria en el resumen de enfrentamientos, identificada por su
+	 * posición en la lista.
+	 */
+	private static final String SQL_ENFRENTAMIENTOS = "WITH parejas (i, equipo, rival) AS (SELECT key, json_extract(value, '$[0]'), json_extract(value, '$[1]') FROM json_each(?)) "
+			+ "SELECT i, 1 AS en_casa, locales, empates, visitantes FROM parejas JOIN Enfrentamientos ON nombre_local = equipo AND nombre_visitante = rival "
+			+ "UNION ALL SELECT i, 0, locales, empates, visitantes FROM parejas JOIN Enfrentamientos ON nombre_local = rival AND nombre_visitante = equipo AND equipo <> rival";
+
+	/**
+	 * Sentencia SQL de los últimos partidos entre dos equipos, en ambos sentidos,
+	 * del más reciente al más antiguo. Cada mitad recorre un tramo del índice de
+	 * parejas ya ordenado, sin examinar otros partidos.
+	 */
+	private static final String SQL_ÚLTIMOS_ENFRENTAMIENTOS = "SELECT * FROM (SELECT nombre_local, nombre_visitante, resultado, temporada, jornada FROM Resultados "
+			+ "WHERE nombre_local = ? AND nombre_visitante = ? ORDER BY temporada DESC, jornada DESC LIMIT ?) "
+			+ "UNION ALL SELECT * FROM (SELECT nombre_local, nombre_visitante, resultado, temporada, jornada FROM Resultados "
+			+ "WHERE nombre_local = ? AND nombre_visitante = ? ORDER BY temporada DESC, jornada DESC LIMIT ?) "
+			+ "ORDER BY temporada DESC, jornada DESC LIMIT ?";
+
+	/**
+	 * Subconsulta SQL de los equipos cuyo nombre contiene un texto de al menos
+	 * {@value #MÍNIMO_TRIGRAMAS} caracteres, resuelta con el índice de trigramas.
+	 */
+	static final String SQL_EQUIPOS_CONTIENEN = "SELECT nombre FROM EquiposBusqueda WHERE EquiposBusqueda MATCH ?";
+
+	/**
+	 * Subconsulta SQL de los equipos cuyo nombre empieza por un texto, para
+	 * textos demasiado cortos para el índice de trigramas.
+	 */
+	static final String SQL_EQUIPOS_EMPIEZAN = "SELECT nombre FROM Equipos WHERE nombre LIKE ? ESCAPE '\\'";
+
+	/**
+	 * Sufijo de las búsquedas de equipos que ordena los encontrados: primero el
+	 * nombre exacto, luego los que empiezan por el texto y después los más
+	 * cortos.
+	 */
+	private static final String SQL_ORDEN_BÚSQUEDA = " ORDER BY nombre = ? DESC, nombre LIKE ? ESCAPE '\\' DESC, length(nombre), nombre LIMIT ?";
+
+	/**
+	 * Sentencias SQL para crear los índices secundarios de las consultas
+	 * filtradas, si no existen.
+	 */
+	private static final String[] SQL_CREAR_ÍNDICES = {
+			"CREATE INDEX IF NOT EXISTS ix_resultados_local ON Resultados (nombre_local)",
+			"CREATE INDEX IF NOT EXISTS ix_resultados_visitante ON Resultados (nombre_visitante)",
+			"CREATE INDEX IF NOT EXISTS ix_resultados_revision ON Resultados (revision)",
+			"CREATE INDEX IF NOT EXISTS ix_resultados_resultado ON Resultados (resultado)",
+			"CREATE INDEX IF NOT EXISTS ix_resultados_jornada ON Resultados (jornada, resultado)",
+			"CREATE INDEX IF NOT EXISTS ix_resultados_calendario ON Resultados (temporada, jornada)",
+			"CREATE INDEX IF NOT EXISTS ix_resultados_pareja ON Resultados (nombre_local, nombre_visitante, temporada, jornada)" };
 
 	/**
-	 * Prototipo de sentenciaSQL preparada para insertar resultados.
+	 * Prototipo de sentenciaSQL preparada para insertar resultados. Si el partido
+	 * ya existe se actualiza su resultado –solo si ha cambiado–. Cada fila nueva
+	 * o modificada recibe la revisión siguiente a la última del contador, que
+	 * avanza con ella.
 	 */
-	private static final String SQL_INSERTAR_CONTACTO = "INSERT INTO Resultados VALUES (?, ?, ?)";
+	private static final String SQL_INSERTAR_CONTACTO = "INSERT INTO Resultados (nombre_local, nombre_visitante, resultado, temporada, jornada, revision) VALUES (?, ?, ?, ?, ?, (SELECT ultima + 1 FROM Revision)) ON CONFLICT (temporada, jornada, nombre_local, nombre_visitante) DO UPDATE SET resultado = excluded.resultado, revision = excluded.revision WHERE resultado <> excluded.resultado";
+
+	/**
+	 * Prototipo de sentenciaSQL preparada para insertar resultados conservando los
+	 * partidos ya existentes.
+	 */
+	private static final String SQL_INSERTAR_NUEVOS = "INSERT INTO Resultados (nombre_local, nombre_visitante, resultado, temporada, jornada, revision) VALUES (?, ?, ?, ?, ?, (SELECT ultima + 1 FROM Revision)) ON CONFLICT (temporada, jornada, nombre_local, nombre_visitante) DO NOTHING";
 
 	/**
 	 * Sentencia SQL para obtener un volcado completo de los resultados.
 	 */
 	private static final String SQL_LISTADO_COMPLETO = "SELECT * FROM Resultados";
 
+	/**
+	 * Prefijo de las sentencias SQL de consulta filtrada de resultados, al que se
+	 * añaden los criterios de un {@link FiltroResultados}.
+	 */
+	private static final String SQL_LISTADO_FILTRADO = "SELECT nombre_local, nombre_visitante, resultado, temporada, jornada FROM Resultados";
+
+	/**
+	 * Plantilla de las sentencias SQL de recorrido por tramos: tras los datos
+	 * del partido se leen las columnas de ordenación, que marcan la posición.
+	 */
+	private static final String SQL_LISTADO_CONTINUO = "SELECT nombre_local, nombre_visitante, resultado, temporada, jornada, %s FROM Resultados";
+
+	/**
+	 * Sentencia SQL para obtener los partidos grabados, modificados o borrados
+	 * después de una revisión, en orden de revisión. Los borrados se leen de las
+	 * bajas, sin datos del partido.
+	 */
+	private static final String SQL_LISTADO_CAMBIOS = "SELECT id, revision, nombre_local, nombre_visitante, resultado, temporada, jornada FROM Resultados WHERE revision > ? "
+			+ "UNION ALL SELECT id, revision, NULL, NULL, NULL, NULL, NULL FROM Bajas WHERE revision > ? ORDER BY revision LIMIT ?";
+
+	/**
+	 * Sentencia SQL para obtener la revisión hasta la que se han podado las
+	 * bajas.
+	 */
+	private static final String SQL_REVISIÓN_PODADA = "SELECT podada FROM Revision";
+
+	/**
+	 * Sentencia SQL para obtener la revisión de la baja que cierra un grupo de
+	 * las más antiguas, del tamaño indicado por su posición.
+	 */
+	private static final String SQL_LÍMITE_PODA = "SELECT revision FROM Bajas ORDER BY revision LIMIT 1 OFFSET ?";
+
+	/**
+	 * Sentencia SQL para podar las bajas hasta una revisión.
+	 */
+	private static final String SQL_PODAR_BAJAS = "DELETE FROM Bajas WHERE revision <= ?";
+
+	/**
+	 * Sentencia SQL para anotar la revisión hasta la que se han podado las
+	 * bajas.
+	 */
+	private static final String SQL_ANOTAR_PODA = "UPDATE Revision SET podada = ? WHERE podada < ?";
+
+	/**
+	 * Sentencia SQL para obtener todos los partidos en orden de calendario y,
+	 * dentro de cada jornada, de grabación, con su identificador de fila y su
+	 * revisión. Recorre el índice de calendario, sin ordenar la tabla.
+	 */
+	private static final String SQL_LISTADO_CALENDARIO = "SELECT id, revision, nombre_local, nombre_visitante, resultado, temporada, jornada FROM Resultados "
+			+ "ORDER BY temporada, jornada, id";
+
+	/**
+	 * Sentencia SQL para obtener la revisión más reciente de los resultados.
+	 */
+	private static final String SQL_ÚLTIMA_REVISIÓN = "SELECT ultima FROM Revision";
+
+	/**
+	 * Prefijo de las sentencias SQL de recuento de resultados.
+	 */
+	private static final String SQL_CONTAR = "SELECT COUNT(*) FROM Resultados";
+
+	/**
+	 * Plantilla de las sentencias SQL de balance por equipo. Los «%1$s» reciben
+	 * los criterios de calendario y el «%2$s» el criterio de equipo.
+	 */
+	private static final String SQL_BALANCES = "SELECT equipo, COUNT(*) AS jugados, SUM(ganado) AS ganados, SUM(empatado) AS empatados, SUM(perdido) AS perdidos, "
+			+ "SUM(en_casa) AS jugados_local, SUM(ganado * en_casa) AS ganados_local, SUM(empatado * en_casa) AS empatados_local, SUM(perdido * en_casa) AS perdidos_local "
+			+ "FROM (SELECT nombre_local AS equipo, resultado = '1' AS ganado, resultado = 'X' AS empatado, resultado = '2' AS perdido, 1 AS en_casa FROM Resultados%1$s "
+			+ "UNION ALL SELECT nombre_visitante, resultado = '2', resultado = 'X', resultado = '1', 0 FROM Resultados%1$s)%2$s "
+			+ "GROUP BY equipo ORDER BY 3 * ganados + empatados DESC, ganados DESC, equipo";
+
 	/**
 	 * Sentencia SQL para vaciar los resultados.
 	 */
@@ -47,6 +387,89 @@ public class AccesoBD implements AutoCloseable {
 	 * Sentencia SQL para compactar espacio en el archivo de la base de datos.
 	 */
 	private static final String SQL_COMPACTAR_ESPACIO = "VACUUM";
+
+	/**
+	 * Sentencia SQL para consultar el modo de recuperación de espacio: 0
+	 * ninguno, 1 completo, 2 incremental.
+	 */
+	private static final String SQL_MODO_VACÍO = "PRAGMA auto_vacuum";
+
+	/**
+	 * Valor de {@link #SQL_MODO_VACÍO} correspondiente al modo incremental.
+	 */
+	private static final int VACÍO_INCREMENTAL = 2;
+
+	/**
+	 * Sentencia SQL para elegir la recuperación incremental de espacio. En una
+	 * base de datos nueva se aplica al crear la primera tabla; en una existente,
+	 * con la siguiente compactación.
+	 */
+	private static final String SQL_ACTIVAR_VACÍO_INCREMENTAL = "PRAGMA auto_vacuum = INCREMENTAL";
+
+	/**
+	 * Sentencia SQL para devolver al sistema una página libre. SQLite libera una
+	 * página en cada paso de la sentencia, pero el controlador JDBC solo da el
+	 * primero: se ejecuta una vez por página, fuera de la caché, y se cierra
+	 * antes de confirmar porque queda siempre a medias.
+	 */
+	private static final String SQL_LIBERAR_PÁGINA = "PRAGMA incremental_vacuum(1)";
+
+	/**
+	 * Sentencia SQL para obtener el número de páginas libres del archivo.
+	 */
+	private static final String SQL_PÁGINAS_LIBRES = "PRAGMA freelist_count";
+
+	/**
+	 * Sentencia SQL para obtener el tamaño de página, en bytes.
+	 */
+	private static final String SQL_TAMAÑO_PÁGINA = "PRAGMA page_size";
+
+	/**
+	 * Sentencia SQL para obtener la temporada siguiente a una dada, por orden
+	 * alfabético. Recorre el índice de la clave natural sin leer cada fila.
+	 */
+	private static final String SQL_TEMPORADA_SIGUIENTE = "SELECT MIN(temporada) FROM Resultados WHERE temporada > ?";
+
+	/**
+	 * Sentencia SQL para adjuntar a la conexión el archivo de una temporada.
+	 */
+	private static final String SQL_ADJUNTAR_ARCHIVO = "ATTACH DATABASE ? AS archivo";
+
+	/**
+	 * Sentencia SQL para separar de la conexión el archivo de una temporada.
+	 */
+	private static final String SQL_SEPARAR_ARCHIVO = "DETACH DATABASE archivo";
+
+	/**
+	 * Sentencia SQL para crear la tabla temporal con las filas de cada tramo
+	 * archivado.
+	 */
+	private static final String SQL_CREAR_TRAMO = "CREATE TEMP TABLE IF NOT EXISTS tramo_archivo (id INTEGER PRIMARY KEY)";
+
+	/**
+	 * Sentencia SQL para vaciar la tabla temporal del tramo archivado.
+	 */
+	private static final String SQL_VACIAR_TRAMO = "DELETE FROM temp.tramo_archivo";
+
+	/**
+	 * Sentencia SQL para elegir las filas de un tramo de una temporada.
+	 */
+	private static final String SQL_ELEGIR_TRAMO = "INSERT INTO temp.tramo_archivo SELECT rowid FROM main.Resultados WHERE temporada = ? LIMIT ?";
+
+	/**
+	 * Sentencia SQL para copiar el tramo elegido al archivo de la temporada,
+	 * sustituyendo el resultado de los partidos ya archivados.
+	 */
+	private static final String SQL_COPIAR_TRAMO = "INSERT INTO archivo.Resultados (nombre_local, nombre_visitante, resultado, temporada, jornada, revision) "
+			+ "SELECT nombre_local, nombre_visitante, resultado, temporada, jornada, revision FROM main.Resultados WHERE rowid IN temp.tramo_archivo "
+			+ "ON CONFLICT (temporada, jornada, nombre_local, nombre_visitante) DO UPDATE SET resultado = excluded.resultado, revision = excluded.revision";
+
+	/**
+	 * Sentencia SQL para eliminar de la base de datos principal el tramo ya
+	 * copiado.
+	 */
+	private static final String SQL_BORRAR_TRAMO = SQL_VACIAR_TABLA + " WHERE rowid IN temp.tramo_archivo";
+
 	/**
 	 * Nombre predeterminado del archivo de configuración del acceso a la base de
 	 * datos.
@@ -58,6 +481,22 @@ public class AccesoBD implements AutoCloseable {
 	 */
 	public static final String ARCHIVO_BD_PREDETERMINADO = "quiniela.db";
 
+	/**
+	 * Número de partidos enviados en cada lote durante las cargas masivas.
+	 */
+	public static final int TAMAÑO_LOTE = 500;
+
+	/**
+	 * Longitud mínima, en caracteres, de los textos buscados con el índice de
+	 * trigramas. Los más cortos se buscan como prefijo.
+	 */
+	public static final int MÍNIMO_TRIGRAMAS = 3;
+
+	/**
+	 * Temporada asignada a los datos de ejemplo.
+	 */
+	private static final String TEMPORADA_EJEMPLO = "2021-2022";
+
 	/**
 	 * Configuración del acceso a la base de datos.
 	 */
@@ -69,16 +508,46 @@ public class AccesoBD implements AutoCloseable {
 	private Connection conexión;
 
 	/**
-	 * Sentencia general SQL.
+	 * Sentencias SQL preparadas de la conexión, reutilizadas entre llamadas.
+	 * Todas las consultas y actualizaciones pasan por ella.
 	 */
-	private Statement sentenciaGeneralSQL;
+	private CacheSentencias cacheSentencias;
 
 	/**
-	 * Sentencia preparada SQL, para inserciones en la base de datos.
+	 * Registro de sentencias lentas, según el umbral de la configuración.
+	 */
+	private RegistroConsultasLentas registroLentas;
+
+	/**
+	 * Escritor diferido, con conexión propia, creado con la primera inserción
+	 * asíncrona.
+	 * 
+	 * @see #insertarDiferido(ElementoPartido1X2)
+	 */
+	private EscritorDiferido escritorDiferido;
+
+	/**
+	 * Aviso de cancelación de la operación en curso. Las sentencias se anotan en
+	 * él al prepararlas y los recorridos de filas lo comprueban en cada fila.
 	 * 
-	 * @see #SQL_INSERTAR_CONTACTO
+	 * @see #setCancelación(CancelacionBD)
+	 */
+	private CancelacionBD cancelación = CancelacionBD.NINGUNA;
+
+	/**
+	 * Número de modificaciones confirmadas por cualquier {@link AccesoBD} del
+	 * proceso. Permite invalidar enseguida los datos derivados sin consultar la
+	 * base de datos.
+	 */
+	private static final AtomicLong MODIFICACIONES = new AtomicLong();
+
+	/**
+	 * Número de operaciones –consultas, inserciones, lotes y conexiones–
+	 * realizadas por cualquier {@link AccesoBD} del proceso. Las tareas de
+	 * mantenimiento no cuentan, de modo que sirve para detectar periodos sin
+	 * actividad.
 	 */
-	private PreparedStatement preInserciónSQL;
+	private static final LongAdder OPERACIONES = new LongAdder();
 
 	/**
 	 * Carga la configuración desde el archivo de configuración predeterminado.
@@ -107,6 +576,17 @@ public class AccesoBD implements AutoCloseable {
 			System.err.printf("Error cargando configuración de «%s»: %s%n", archivoConfiguración, e.getMessage());
 			configuración = crearConfiguración(archivoConfiguración, archivoBD);
 		}
+		registroLentas = RegistroConsultasLentas.of(configuración);
+	}
+
+	/**
+	 * Emplea una configuración ya cargada.
+	 * 
+	 * @param configuración la configuración de acceso a la base de datos
+	 */
+	public AccesoBD(Properties configuración) {
+		this.configuración = configuración;
+		registroLentas = RegistroConsultasLentas.of(configuración);
 	}
 
 	/**
@@ -155,6 +635,46 @@ public class AccesoBD implements AutoCloseable {
 		configuración.setProperty("jdbc.user", "");
 		configuración.setProperty("jdbc.password", "");
 		configuración.setProperty("jdbc.codificación", "UTF-8");
+		configuración.setProperty(AlmacenPartidos.CLAVE_TIPO, AlmacenPartidos.TIPO_PREDETERMINADO);
+		configuración.setProperty(AlmacenRegistro.CLAVE_ARCHIVO, AlmacenRegistro.ARCHIVO_PREDETERMINADO);
+		configuración.setProperty(AlmacenBinario.CLAVE_ARCHIVO, AlmacenBinario.ARCHIVO_PREDETERMINADO);
+		configuración.setProperty(AlmacenBinario.CLAVE_LOTE, Integer.toString(AlmacenBinario.LOTE_PREDETERMINADO));
+		configuración.setProperty(AlmacenBinario.CLAVE_INTERVALO_COMPACTACIÓN, "0");
+		configuración.setProperty(AlmacenBinario.CLAVE_DESTINO, AlmacenPartidos.TIPO_PREDETERMINADO);
+		configuración.setProperty(AlmacenFragmentado.CLAVE_DIRECTORIO, AlmacenFragmentado.DIRECTORIO_PREDETERMINADO);
+		configuración.setProperty(InstantaneaResultados.CLAVE_ARCHIVO, InstantaneaResultados.ARCHIVO_PREDETERMINADO);
+		configuración.setProperty(MantenimientoBD.CLAVE_INTERVALO,
+				Integer.toString(MantenimientoBD.INTERVALO_PREDETERMINADO));
+		configuración.setProperty(MantenimientoBD.CLAVE_PRESUPUESTO,
+				Integer.toString(MantenimientoBD.PRESUPUESTO_PREDETERMINADO));
+		configuración.setProperty(MantenimientoBD.CLAVE_PÁGINAS,
+				Integer.toString(MantenimientoBD.PÁGINAS_PREDETERMINADAS));
+		configuración.setProperty(MantenimientoBD.CLAVE_TEMPORADAS_ABIERTAS,
+				Integer.toString(MantenimientoBD.TEMPORADAS_ABIERTAS_PREDETERMINADAS));
+		configuración.setProperty(RegistroConsultasLentas.CLAVE_UMBRAL,
+				Long.toString(RegistroConsultasLentas.UMBRAL_PREDETERMINADO));
+		configuración.setProperty(RegistroConsultasLentas.CLAVE_INTERVALO_RESUMEN, "0");
+		configuración.setProperty(ImportadorResultados.CLAVE_INTÉRPRETES, "0");
+		configuración.setProperty(ImportadorResultados.CLAVE_CAPACIDAD,
+				Integer.toString(ImportadorResultados.CAPACIDAD_PREDETERMINADA));
+		configuración.setProperty(ImportadorResultados.CLAVE_TRANSACCIÓN,
+				Integer.toString(ImportadorResultados.TRANSACCIÓN_PREDETERMINADA));
+		configuración.setProperty(ImportadorResultados.CLAVE_ORDENADA, "true");
+		configuración.setProperty(CancelacionBD.CLAVE_PLAZO, Long.toString(CancelacionBD.PLAZO_PREDETERMINADO));
+		configuración.setProperty(FormaEquipos.CLAVE_LONGITUD, Integer.toString(FormaEquipos.LONGITUD_PREDETERMINADA));
+		configuración.setProperty(ValoracionElo.CLAVE_K, Double.toString(ValoracionElo.K_PREDETERMINADO));
+		configuración.setProperty(ValoracionElo.CLAVE_VENTAJA, Double.toString(ValoracionElo.VENTAJA_PREDETERMINADA));
+		configuración.setProperty(PrevisionPartidos.CLAVE_PESO_MODELO,
+				Integer.toString(PrevisionPartidos.PESO_MODELO_PREDETERMINADO));
+		configuración.setProperty(PrevisionPartidos.CLAVE_CAPACIDAD,
+				Integer.toString(PrevisionPartidos.CAPACIDAD_PREDETERMINADA));
+		configuración.setProperty(CacheSentencias.CLAVE_CAPACIDAD,
+				Integer.toString(CacheSentencias.CAPACIDAD_PREDETERMINADA));
+		configuración.setProperty(EscritorDiferido.CLAVE_CAPACIDAD,
+				Integer.toString(EscritorDiferido.CAPACIDAD_PREDETERMINADA));
+		configuración.setProperty(EscritorDiferido.CLAVE_LOTE, Integer.toString(TAMAÑO_LOTE));
+		configuración.setProperty(EscritorDiferido.CLAVE_VENTANA,
+				Integer.toString(EscritorDiferido.VENTANA_PREDETERMINADA));
 
 		try (FileOutputStream out = new FileOutputStream(rutaConfig.toFile())) {
 			configuración.storeToXML(out, "Configuración BD", "UTF-8");
@@ -189,19 +709,50 @@ public class AccesoBD implements AutoCloseable {
 
 	/**
 	 * Abre la conexión a la base de datos si no ha sido abierta previamente. Crea
-	 * también una sentencia SQL genérica –disponible para ejecutar consultas no
-	 * preparadas– y la tabla principal en caso de no existir.
+	 * también la caché de sentencias preparadas de la conexión y la tabla
+	 * principal en caso de no existir, y actualiza el esquema de tablas creadas
+	 * por versiones anteriores.
 	 * 
 	 * @return la conexión existente o creada
 	 * @throws AccesoBDException si no se completa o se produce alguna incidencia
 	 *                           durante la conexión
 	 */
 	public Connection abrirConexión() throws AccesoBDException {
+		return abrirConexión(false);
+	}
+
+	/**
+	 * Abre una conexión de solo lectura a la base de datos si no ha sido abierta
+	 * previamente. No crea ni modifica tablas: la base de datos debe haber sido
+	 * preparada antes por una conexión normal. Cualquier intento de modificación
+	 * a través de esta conexión falla.
+	 * 
+	 * @return la conexión existente o creada
+	 * @throws AccesoBDException si no se completa o se produce alguna incidencia
+	 *                           durante la conexión
+	 * @see AccesoBDConcurrente
+	 */
+	public Connection abrirConexiónLectura() throws AccesoBDException {
+		return abrirConexión(true);
+	}
+
+	/**
+	 * Abre la conexión a la base de datos si no ha sido abierta previamente,
+	 * preparando el esquema o limitándola a lecturas.
+	 * 
+	 * @param sóloLectura si la conexión solo admite consultas
+	 * @return la conexión existente o creada
+	 * @throws AccesoBDException si no se completa o se produce alguna incidencia
+	 *                           durante la conexión
+	 */
+	private Connection abrirConexión(boolean sóloLectura) throws AccesoBDException {
 		if (conexión == null) {
 			String jdbcURL = configuración.getProperty("jdbc.url");
 			String jdbcUser = configuración.getProperty("jdbc.user");
 			String jdbcPassword = configuración.getProperty("jdbc.password");
 
+			EventoAccesoBD evento = new EventoAccesoBD();
+			evento.begin();
 			try {
 				conexión = DriverManager.getConnection(jdbcURL, jdbcUser, jdbcPassword);
 
@@ -210,119 +761,1498 @@ public class AccesoBD implements AutoCloseable {
 					throw new AccesoBDException(mensaje);
 				}
 
-				sentenciaGeneralSQL = conexión.createStatement();
-				sentenciaGeneralSQL.setQueryTimeout(5);
-				sentenciaGeneralSQL.execute(SQL_CREAR_TABLA);
+				int capacidad = (int) RegistroConsultasLentas.leerNúmero(configuración,
+						CacheSentencias.CLAVE_CAPACIDAD, CacheSentencias.CAPACIDAD_PREDETERMINADA);
+				// Sin tiempo límite por sentencia: «busy_timeout» limita la espera por
+				// bloqueos y cada operación puede tener su propio plazo de cancelación
+				cacheSentencias = new CacheSentencias(conexión, capacidad, 0);
+				ejecutarPragma(SQL_ESPERA_BLOQUEO);
+				if (sóloLectura) {
+					ejecutarPragma(SQL_SÓLO_LECTURA);
+				} else {
+					ejecutarPragma(SQL_ACTIVAR_VACÍO_INCREMENTAL);
+					actualizar(SQL_CREAR_TABLA);
+					migrarEsquema();
+					crearBúsquedaEquipos();
+					crearEnfrentamientos();
+					crearRevisiones();
+					for (String sql : SQL_CREAR_ÍNDICES) {
+						actualizar(sql);
+					}
+				}
 			} catch (SQLException e) {
 				String mensaje = String.format("%s — Conexión fallida: %s", jdbcURL, e.getLocalizedMessage());
 				throw new AccesoBDException(mensaje, e);
+			} finally {
+				registrarEvento(evento, "conexión", SQL_CREAR_TABLA, 0);
 			}
 		}
 		return conexión;
 	}
 
 	/**
-	 * Lee el contenido completo de la base de datos y crea todos los partidos. Los
-	 * datos creados se depositan en la lista VACÍA facilitada. En caso de que la
-	 * lista no esté vacía se borrará su contenido.
+	 * Abre la conexión de lectura y escritura, preparando el esquema.
 	 * 
-	 * @param lista una lista de resultados vacía
-	 * @return el número de resultados
-	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @throws AccesoBDException si se produce alguna incidencia durante la
+	 *                           conexión
+	 * @see #abrirConexión()
 	 */
-	public int leer(Vector<ElementoPartido1X2> lista) throws AccesoBDException {
-		ResultSet resultado;
-		ElementoPartido1X2 nuevoPartido;
-
-		String nombreLocal, nombreVisitante, resultadoPartido;
-
-		if (lista == null) {
-			throw new AccesoBDException("Lista nula");
-		}
-
-		lista.clear();
+	@Override
+	public void abrir() throws AccesoBDException {
+		abrirConexión();
+	}
 
+	/**
+	 * Activa en la base de datos el modo de registro anticipado (WAL): las
+	 * consultas leen una instantánea coherente sin bloquearse ni bloquear a la
+	 * conexión que escribe. El modo se conserva en el archivo.
+	 * 
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 */
+	public void activarWAL() throws AccesoBDException {
 		try {
-			resultado = sentenciaGeneralSQL.executeQuery(SQL_LISTADO_COMPLETO);
-			while (resultado.next()) {
-				nombreLocal = resultado.getString("nombre_local");
-				nombreVisitante = resultado.getString("nombre_visitante");
-				resultadoPartido = resultado.getString("resultado");
-
-				nuevoPartido = ElementoPartido1X2.of(nombreLocal, nombreVisitante, resultadoPartido);
-				lista.add(nuevoPartido);
-			}
-		} catch (SQLException | DatoPartido1X2Exception e) {
-			String mensaje = String.format("Error al leer contactos: %s", e.getLocalizedMessage());
+			ejecutarPragma(SQL_ACTIVAR_WAL);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al activar WAL: %s", e.getLocalizedMessage());
 			throw new AccesoBDException(mensaje, e);
 		}
-
-		return lista.size();
 	}
 
 	/**
-	 * Inserta un resultado en la base de datos. En caso de no existir la sentencia
-	 * preparada se crea -permitiendo así que se pueda compartir en caso de realizar
-	 * varias inserciones consecutivas-.
+	 * Obtiene el número de versión de los datos según esta conexión
+	 * –«PRAGMA data_version»–, que cambia cada vez que otra conexión confirma
+	 * una modificación. Solo es comparable entre llamadas sobre la misma
+	 * conexión. No consulta ninguna tabla.
 	 * 
-	 * @param partido el resultado a grabar
-	 * @return el número de filas afectadas –cero o una…–
-	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @return el número de versión
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 * @see #getModificaciones()
 	 */
-	public int insertar(ElementoPartido1X2 partido) throws AccesoBDException {
-		int númFilas = 0;
-		try {
-			if (preInserciónSQL == null) {
-				preInserciónSQL = conexión.prepareStatement(SQL_INSERTAR_CONTACTO);
-				preInserciónSQL.setQueryTimeout(5);
-			}
-
-			preInserciónSQL.setString(1, partido.getEquipoLocal());
-			preInserciónSQL.setString(2, partido.getEquipoVisitante());
-			preInserciónSQL.setString(3, partido.getResultado().toString());
-			númFilas = preInserciónSQL.executeUpdate();
+	public long versiónDatos() throws AccesoBDException {
+		try (ResultSet resultado = preparar(SQL_VERSIÓN_DATOS).executeQuery()) {
+			return resultado.next() ? resultado.getLong(1) : 0;
 		} catch (SQLException e) {
-			String mensaje = String.format("Error al insertar contacto: %s", e.getLocalizedMessage());
+			String mensaje = String.format("Error al consultar versión de datos: %s", e.getLocalizedMessage());
 			throw new AccesoBDException(mensaje, e);
 		}
-		return númFilas;
 	}
 
 	/**
-	 * Inserta una colección de resultados en la base de datos.
+	 * Proporciona el número de modificaciones confirmadas hasta el momento por
+	 * cualquier acceso a la base de datos dentro de este proceso.
+	 * 
+	 * @return el valor correspondiente
+	 * @see #versiónDatos()
+	 */
+	public static long getModificaciones() {
+		return MODIFICACIONES.get();
+	}
+
+	/**
+	 * Proporciona el número de operaciones realizadas hasta el momento por
+	 * cualquier acceso a la base de datos dentro de este proceso, sin contar las
+	 * de mantenimiento.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public static long getOperaciones() {
+		return OPERACIONES.sum();
+	}
+
+	/**
+	 * Establece el aviso de cancelación de las operaciones siguientes, hasta que
+	 * se sustituya por otro. La cancelación interrumpe la sentencia en curso y
+	 * hace que la operación termine con una {@link AccesoBDException}; si hay
+	 * una transacción abierta se deshace. Al sustituirlo, el aviso anterior deja
+	 * de poder interrumpir la conexión.
+	 * 
+	 * @param cancelación el aviso, o nulo para ninguno
+	 * @see AccesoBDConcurrente#consultar(AccesoBDConcurrente.Tarea, CancelacionBD)
+	 */
+	public void setCancelación(CancelacionBD cancelación) {
+		this.cancelación.liberar();
+		this.cancelación = cancelación == null ? CancelacionBD.NINGUNA : cancelación;
+	}
+
+	/**
+	 * Proporciona el aviso de cancelación de las operaciones en curso.
+	 * 
+	 * @return el aviso, {@link CancelacionBD#NINGUNA} si no se ha establecido
+	 *         ninguno
+	 */
+	public CancelacionBD getCancelación() {
+		return cancelación;
+	}
+
+	/**
+	 * Consulta el valor numérico de una sentencia «PRAGMA».
+	 * 
+	 * @param sql el texto SQL
+	 * @return el valor obtenido, o cero si no devuelve ninguno
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 */
+	private long consultarPragma(String sql) throws AccesoBDException {
+		try (ResultSet resultado = preparar(sql).executeQuery()) {
+			return resultado.next() ? resultado.getLong(1) : 0;
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al consultar «%s»: %s", sql, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Obtiene el número de páginas libres del archivo de la base de datos, que
+	 * ocupan espacio sin contener datos.
+	 * 
+	 * @return el número de páginas
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 * @see #tamañoPágina()
+	 */
+	public long páginasLibres() throws AccesoBDException {
+		return consultarPragma(SQL_PÁGINAS_LIBRES);
+	}
+
+	/**
+	 * Obtiene el tamaño de página del archivo de la base de datos.
+	 * 
+	 * @return el tamaño, en bytes
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 */
+	public long tamañoPágina() throws AccesoBDException {
+		return consultarPragma(SQL_TAMAÑO_PÁGINA);
+	}
+
+	/**
+	 * Comprueba si el archivo de la base de datos admite la recuperación
+	 * incremental de espacio.
+	 * 
+	 * @return si está en modo incremental
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 * @see #liberarPáginas(int)
+	 */
+	public boolean isVacíoIncremental() throws AccesoBDException {
+		return consultarPragma(SQL_MODO_VACÍO) == VACÍO_INCREMENTAL;
+	}
+
+	/**
+	 * Pasa el archivo de la base de datos al modo de recuperación incremental de
+	 * espacio, si no lo está ya. En un archivo existente supone compactarlo
+	 * entero, bloqueando las escrituras mientras dura; conviene hacerlo una sola
+	 * vez y sin actividad.
+	 * 
+	 * @return si ha sido necesario compactar el archivo
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 */
+	public boolean activarVacíoIncremental() throws AccesoBDException {
+		if (isVacíoIncremental()) {
+			return false;
+		}
+
+		try {
+			ejecutarPragma(SQL_ACTIVAR_VACÍO_INCREMENTAL);
+			actualizar(SQL_COMPACTAR_ESPACIO);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al compactar espacio: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return true;
+	}
+
+	/**
+	 * Devuelve al sistema, como mucho, el número de páginas libres indicado,
+	 * recortando el final del archivo, en una única transacción. Solo tiene
+	 * efecto en modo incremental; el archivo se acorta al trasladar el registro
+	 * anticipado (WAL).
+	 * 
+	 * @param máximo el número máximo de páginas
+	 * @return el número de páginas liberadas
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 * @see #activarVacíoIncremental()
+	 */
+	public long liberarPáginas(int máximo) throws AccesoBDException {
+		long antes = páginasLibres();
+		if (antes == 0) {
+			return 0;
+		}
+
+		long inicio = System.nanoTime();
+		try {
+			conexión.setAutoCommit(false);
+			try {
+				try (PreparedStatement sentencia = conexión.prepareStatement(SQL_LIBERAR_PÁGINA)) {
+					for (long i = Math.min(máximo, antes); i > 0; i--) {
+						sentencia.execute();
+					}
+				}
+				conexión.commit();
+			} catch (SQLException | RuntimeException e) {
+				conexión.rollback();
+				throw e;
+			} finally {
+				conexión.setAutoCommit(true);
+			}
+			registroLentas.registrar(conexión, SQL_LIBERAR_PÁGINA, null, System.nanoTime() - inicio);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al liberar páginas: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return antes - páginasLibres();
+	}
+
+	/**
+	 * Obtiene las temporadas con algún partido grabado, sin contar los partidos
+	 * sin temporada.
+	 * 
+	 * @return las temporadas, por orden alfabético
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 */
+	public List<String> temporadas() throws AccesoBDException {
+		List<String> temporadas = new ArrayList<>();
+		String anterior = "";
+
+		try {
+			while (anterior != null) {
+				try (ResultSet resultado = preparar(SQL_TEMPORADA_SIGUIENTE, anterior).executeQuery()) {
+					anterior = resultado.next() ? resultado.getString(1) : null;
+				}
+				if (anterior != null) {
+					temporadas.add(anterior);
+				}
+			}
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al consultar temporadas: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return temporadas;
+	}
+
+	/**
+	 * Traslada un tramo de partidos de una temporada a otra base de datos –con
+	 * el mismo esquema, ya creado–: los copia, sustituyendo los ya trasladados,
+	 * y los elimina de esta en una única transacción. Limitar el tramo acota la
+	 * duración del bloqueo de escritura.
+	 * 
+	 * @param temporada la temporada
+	 * @param archivo   la ruta de la base de datos de destino
+	 * @param límite    el número máximo de partidos trasladados
+	 * @return el número de partidos trasladados; cero si no queda ninguno
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia; en tal caso no se traslada ninguno
+	 * @see AlmacenFragmentado#archivoFragmento(Path, String)
+	 */
+	public int archivarTramo(String temporada, Path archivo, int límite) throws AccesoBDException {
+		int númFilas = 0;
+
+		try {
+			actualizar(SQL_ADJUNTAR_ARCHIVO, archivo.toString());
+			try {
+				actualizar(SQL_CREAR_TRAMO);
+				conexión.setAutoCommit(false);
+				try {
+					actualizar(SQL_VACIAR_TRAMO);
+					númFilas = actualizar(SQL_ELEGIR_TRAMO, temporada, límite);
+					if (númFilas > 0) {
+						actualizar(SQL_COPIAR_TRAMO);
+						actualizar(SQL_BORRAR_TRAMO);
+					}
+					conexión.commit();
+					if (númFilas > 0) {
+						MODIFICACIONES.incrementAndGet();
+					}
+				} catch (SQLException | RuntimeException e) {
+					conexión.rollback();
+					throw e;
+				} finally {
+					conexión.setAutoCommit(true);
+				}
+			} finally {
+				actualizar(SQL_SEPARAR_ARCHIVO);
+			}
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al archivar temporada «%s» en «%s»: %s", temporada, archivo,
+					e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Ejecuta una sentencia «PRAGMA» descartando su posible resultado. El
+	 * resultado se cierra enseguida: una sentencia de la caché con filas
+	 * pendientes impediría confirmar transacciones en la conexión.
+	 * 
+	 * @param sql el texto SQL
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private void ejecutarPragma(String sql) throws SQLException {
+		long inicio = System.nanoTime();
+		PreparedStatement sentencia = preparar(sql);
+		if (sentencia.execute()) {
+			sentencia.getResultSet().close();
+		}
+		registroLentas.registrar(conexión, sql, null, System.nanoTime() - inicio);
+	}
+
+	/**
+	 * Actualiza el esquema de una tabla «Resultados» creada por versiones
+	 * anteriores: añade las columnas de calendario y de revisión, la rehace con
+	 * identificador «AUTOINCREMENT» –volviendo a crear los disparadores de las
+	 * tablas que dependen de ella– y, la primera vez, elimina los partidos
+	 * repetidos y crea el índice único de la clave natural. Se realiza en una
+	 * única transacción.
+	 * 
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private void migrarEsquema() throws SQLException {
+		boolean tieneCalendario = false, tieneRevisión = false, tieneId = false, tieneClave;
+
+		try (ResultSet columnas = preparar(SQL_COLUMNAS_TABLA).executeQuery()) {
+			while (columnas.next()) {
+				tieneCalendario |= "temporada".equals(columnas.getString("name"));
+				tieneRevisión |= "revision".equals(columnas.getString("name"));
+				tieneId |= "id".equals(columnas.getString("name"));
+			}
+		}
+		try (ResultSet índice = preparar(SQL_EXISTE_CLAVE).executeQuery()) {
+			tieneClave = índice.next();
+		}
+
+		if (tieneCalendario && tieneRevisión && tieneId && tieneClave) {
+			return;
+		}
+
+		conexión.setAutoCommit(false);
+		try {
+			if (!tieneCalendario) {
+				for (String sql : SQL_AÑADIR_CALENDARIO) {
+					actualizarUnaVez(sql);
+				}
+			}
+			if (!tieneRevisión) {
+				for (String sql : SQL_AÑADIR_REVISIÓN) {
+					actualizarUnaVez(sql);
+				}
+			}
+			if (!tieneId) {
+				for (String sql : SQL_REHACER_TABLA) {
+					actualizarUnaVez(sql);
+				}
+				crearDisparadores(SQL_EXISTEN_EQUIPOS, SQL_DISPARADORES_EQUIPOS);
+				crearDisparadores(SQL_EXISTEN_ENFRENTAMIENTOS, SQL_DISPARADORES_ENFRENTAMIENTOS);
+				crearDisparadores(SQL_EXISTEN_REVISIONES, SQL_DISPARADORES_REVISIONES);
+			}
+			int repetidos = actualizarUnaVez(SQL_ELIMINAR_REPETIDOS);
+			actualizarUnaVez(SQL_CREAR_CLAVE);
+			conexión.commit();
+			MODIFICACIONES.incrementAndGet();
+			if (repetidos > 0) {
+				System.err.printf("Eliminados %d partidos repetidos%n", repetidos);
+			}
+		} catch (SQLException e) {
+			conexión.rollback();
+			throw e;
+		} finally {
+			conexión.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Crea los disparadores de una tabla dependiente de «Resultados», si la
+	 * tabla existe. Forma parte de la transacción en curso.
+	 * 
+	 * @param sqlExiste    la sentencia SQL que comprueba si existe la tabla
+	 * @param disparadores las sentencias SQL de creación de los disparadores
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private void crearDisparadores(String sqlExiste, String[] disparadores) throws SQLException {
+		try (ResultSet tabla = preparar(sqlExiste).executeQuery()) {
+			if (!tabla.next()) {
+				return;
+			}
+		}
+		for (String sql : disparadores) {
+			actualizarUnaVez(sql);
+		}
+	}
+
+	/**
+	 * Crea, si no existe, el diccionario de equipos con su índice de búsqueda y
+	 * lo rellena con los equipos ya grabados. A partir de entonces los
+	 * disparadores lo mantienen con cada inserción, sin intervención de esta
+	 * clase. Se realiza en una única transacción.
+	 * 
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private void crearBúsquedaEquipos() throws SQLException {
+		try (ResultSet tabla = preparar(SQL_EXISTEN_EQUIPOS).executeQuery()) {
+			if (tabla.next()) {
+				return;
+			}
+		}
+
+		conexión.setAutoCommit(false);
+		try {
+			for (String sql : SQL_CREAR_BÚSQUEDA) {
+				actualizarUnaVez(sql);
+			}
+			for (String sql : SQL_DISPARADORES_EQUIPOS) {
+				actualizarUnaVez(sql);
+			}
+			conexión.commit();
+		} catch (SQLException e) {
+			conexión.rollback();
+			throw e;
+		} finally {
+			conexión.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Crea, si no existe, el resumen de enfrentamientos entre cada pareja de
+	 * equipos y lo rellena con los resultados ya grabados. A partir de entonces
+	 * los disparadores lo mantienen con cada inserción, modificación o borrado.
+	 * Se realiza en una única transacción.
+	 * 
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private void crearEnfrentamientos() throws SQLException {
+		try (ResultSet tabla = preparar(SQL_EXISTEN_ENFRENTAMIENTOS).executeQuery()) {
+			if (tabla.next()) {
+				return;
+			}
+		}
+
+		conexión.setAutoCommit(false);
+		try {
+			for (String sql : SQL_CREAR_ENFRENTAMIENTOS) {
+				actualizarUnaVez(sql);
+			}
+			for (String sql : SQL_DISPARADORES_ENFRENTAMIENTOS) {
+				actualizarUnaVez(sql);
+			}
+			conexión.commit();
+		} catch (SQLException e) {
+			conexión.rollback();
+			throw e;
+		} finally {
+			conexión.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Crea, si no existe, el contador de revisiones a partir de la mayor
+	 * grabada, junto con la tabla de bajas y los disparadores que los mantienen.
+	 * Así las revisiones nunca retroceden ni se repiten, aunque se borren o
+	 * archiven los partidos más recientes. Se realiza en una única transacción.
+	 * 
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private void crearRevisiones() throws SQLException {
+		try (ResultSet tabla = preparar(SQL_EXISTEN_REVISIONES).executeQuery()) {
+			if (tabla.next()) {
+				try (ResultSet columna = preparar(SQL_EXISTE_PODA).executeQuery()) {
+					if (!columna.next()) {
+						actualizarUnaVez(SQL_AÑADIR_PODA);
+					}
+				}
+				return;
+			}
+		}
+
+		conexión.setAutoCommit(false);
+		try {
+			for (String sql : SQL_CREAR_REVISIONES) {
+				actualizarUnaVez(sql);
+			}
+			for (String sql : SQL_DISPARADORES_REVISIONES) {
+				actualizarUnaVez(sql);
+			}
+			conexión.commit();
+		} catch (SQLException e) {
+			conexión.rollback();
+			throw e;
+		} finally {
+			conexión.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Reconstruye desde cero el resumen de enfrentamientos a partir de los
+	 * resultados grabados, en una única transacción. Solo es necesario si se ha
+	 * modificado la tabla de resultados sin pasar por los disparadores.
+	 * 
+	 * @return el número de parejas local-visitante del resumen
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int reconstruirEnfrentamientos() throws AccesoBDException {
+		int parejas = 0;
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		try {
+			conexión.setAutoCommit(false);
+			try {
+				actualizar(SQL_VACIAR_ENFRENTAMIENTOS);
+				parejas = actualizarUnaVez(SQL_RELLENAR_ENFRENTAMIENTOS);
+				conexión.commit();
+			} catch (SQLException | RuntimeException e) {
+				deshacer(e);
+				throw e;
+			}
+			conexión.setAutoCommit(true);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al reconstruir enfrentamientos: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "mantenimiento", SQL_RELLENAR_ENFRENTAMIENTOS, parejas);
+		}
+		return parejas;
+	}
+
+	/**
+	 * Obtiene el balance de un equipo frente a otro en todos sus
+	 * enfrentamientos, en total y como local, a partir del resumen de
+	 * enfrentamientos: el coste no depende del número de partidos grabados.
+	 * 
+	 * @param equipo el equipo cuyo balance se obtiene
+	 * @param rival  el equipo contrario
+	 * @return el balance del primer equipo; sin partidos si no se han enfrentado
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public BalanceEquipo enfrentamiento(String equipo, String rival) throws AccesoBDException {
+		String local = equipo.toUpperCase();
+		String visitante = rival.toUpperCase();
+		Object[] parámetros = { local, local, visitante, visitante, local };
+		int ganados = 0, empatados = 0, perdidos = 0;
+		int jugadosLocal = 0, ganadosLocal = 0, empatadosLocal = 0, perdidosLocal = 0;
+
+		try (ResultSet resultado = preparar(SQL_ENFRENTAMIENTO, parámetros).executeQuery()) {
+			while (resultado.next()) {
+				int victoriasLocal = resultado.getInt("locales");
+				int empates = resultado.getInt("empates");
+				int victoriasVisitante = resultado.getInt("visitantes");
+
+				if (resultado.getBoolean("en_casa")) {
+					jugadosLocal = victoriasLocal + empates + victoriasVisitante;
+					ganadosLocal = victoriasLocal;
+					empatadosLocal = empates;
+					perdidosLocal = victoriasVisitante;
+					ganados += victoriasLocal;
+					perdidos += victoriasVisitante;
+				} else {
+					ganados += victoriasVisitante;
+					perdidos += victoriasLocal;
+				}
+				empatados += empates;
+			}
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al consultar enfrentamiento: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return new BalanceEquipo(local, ganados + empatados + perdidos, ganados, empatados, perdidos, jugadosLocal,
+				ganadosLocal, empatadosLocal, perdidosLocal);
+	}
+
+	/**
+	 * Obtiene en una sola consulta el balance de cada equipo de una serie frente
+	 * a su rival, como {@link #enfrentamiento(String, String)} hace con una
+	 * pareja.
+	 * 
+	 * @param equipos los equipos cuyo balance se obtiene
+	 * @param rivales los equipos contrarios, en el mismo orden
+	 * @return los balances, en el mismo orden; sin partidos para las parejas que
+	 *         no se han enfrentado
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public BalanceEquipo[] enfrentamientos(String[] equipos, String[] rivales) throws AccesoBDException {
+		int[][] sumas = new int[equipos.length][7];
+		StringBuilder parejas = new StringBuilder("[");
+		for (int i = 0; i < equipos.length; i++) {
+			parejas.append(i == 0 ? "[" : ",[").append(ElementoPartido1X2.textoJSON(equipos[i].toUpperCase()))
+					.append(',').append(ElementoPartido1X2.textoJSON(rivales[i].toUpperCase())).append(']');
+		}
+		Object[] parámetros = { parejas.append(']').toString() };
+
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(SQL_ENFRENTAMIENTOS, parámetros).executeQuery()) {
+			while (resultado.next()) {
+				int[] suma = sumas[resultado.getInt("i")];
+				int victoriasLocal = resultado.getInt("locales");
+				int empates = resultado.getInt("empates");
+				int victoriasVisitante = resultado.getInt("visitantes");
+
+				if (resultado.getBoolean("en_casa")) {
+					suma[3] = victoriasLocal + empates + victoriasVisitante;
+					suma[4] = victoriasLocal;
+					suma[5] = empates;
+					suma[6] = victoriasVisitante;
+					suma[0] += victoriasLocal;
+					suma[2] += victoriasVisitante;
+				} else {
+					suma[0] += victoriasVisitante;
+					suma[2] += victoriasLocal;
+				}
+				suma[1] += empates;
+			}
+			registroLentas.registrar(conexión, SQL_ENFRENTAMIENTOS, null, System.nanoTime() - inicio);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al consultar enfrentamientos: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+
+		BalanceEquipo[] balances = new BalanceEquipo[equipos.length];
+		for (int i = 0; i < balances.length; i++) {
+			int[] suma = sumas[i];
+			balances[i] = new BalanceEquipo(equipos[i].toUpperCase(), suma[0] + suma[1] + suma[2], suma[0], suma[1],
+					suma[2], suma[3], suma[4], suma[5], suma[6]);
+		}
+		return balances;
+	}
+
+	/**
+	 * Lee los últimos partidos entre dos equipos, con cualquiera de ellos como
+	 * local, del más reciente al más antiguo según el calendario. Se resuelve con
+	 * el índice de parejas, sin recorrer otros partidos.
+	 * 
+	 * @param equipo uno de los equipos
+	 * @param rival  el otro equipo
+	 * @param límite el número máximo de partidos
+	 * @return los partidos encontrados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public List<ElementoPartido1X2> últimosEnfrentamientos(String equipo, String rival, int límite)
+			throws AccesoBDException {
+		String local = equipo.toUpperCase();
+		String visitante = rival.toUpperCase();
+		Object[] parámetros = { local, visitante, límite, visitante, local, límite, límite };
+		List<ElementoPartido1X2> partidos = new ArrayList<>();
+
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(SQL_ÚLTIMOS_ENFRENTAMIENTOS, parámetros).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				partidos.add(leerPartido(resultado));
+			}
+			registroLentas.registrar(conexión, SQL_ÚLTIMOS_ENFRENTAMIENTOS, parámetros, System.nanoTime() - inicio);
+		} catch (SQLException | DatoPartido1X2Exception e) {
+			String mensaje = String.format("Error al leer enfrentamientos: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return partidos;
+	}
+
+	/**
+	 * Busca equipos por una parte de su nombre, sin distinguir mayúsculas de
+	 * minúsculas. Con al menos {@value #MÍNIMO_TRIGRAMAS} caracteres se
+	 * encuentran los nombres que contienen el texto, mediante el índice de
+	 * trigramas; con menos, los que empiezan por él. Los equipos se ordenan por
+	 * relevancia: el nombre exacto, los que empiezan por el texto y después los
+	 * más cortos.
+	 * 
+	 * @param texto  el texto buscado
+	 * @param límite el número máximo de equipos
+	 * @return los nombres encontrados, del más al menos relevante
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public List<String> buscarEquipos(String texto, int límite) throws AccesoBDException {
+		List<String> equipos = new ArrayList<>();
+		if (texto == null || texto.isBlank()) {
+			return equipos;
+		}
+
+		String buscado = texto.strip().toUpperCase();
+		String sql = subconsultaEquipos(buscado) + SQL_ORDEN_BÚSQUEDA;
+		Object[] parámetros = { parámetroBúsqueda(buscado), buscado, patrónPrefijo(buscado), límite };
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(sql, parámetros).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				equipos.add(resultado.getString(1));
+			}
+			registroLentas.registrar(conexión, sql, parámetros, System.nanoTime() - inicio);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al buscar equipos: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", sql, equipos.size());
+		}
+		return equipos;
+	}
+
+	/**
+	 * Elige la subconsulta de búsqueda de equipos adecuada a la longitud del
+	 * texto.
+	 * 
+	 * @param texto el texto buscado, sin espacios iniciales ni finales
+	 * @return la subconsulta, con un único parámetro
+	 * @see #parámetroBúsqueda(String)
+	 */
+	static String subconsultaEquipos(String texto) {
+		return usaTrigramas(texto) ? SQL_EQUIPOS_CONTIENEN : SQL_EQUIPOS_EMPIEZAN;
+	}
+
+	/**
+	 * Compone el parámetro de la subconsulta de búsqueda de equipos: una frase
+	 * FTS5 entrecomillada o un patrón de prefijo.
+	 * 
+	 * @param texto el texto buscado, sin espacios iniciales ni finales
+	 * @return el valor del parámetro
+	 * @see #subconsultaEquipos(String)
+	 */
+	static String parámetroBúsqueda(String texto) {
+		return usaTrigramas(texto) ? "\"" + texto.replace("\"", "\"\"") + "\"" : patrónPrefijo(texto);
+	}
+
+	/**
+	 * Indica si un texto es suficientemente largo para el índice de trigramas.
+	 * 
+	 * @param texto el texto buscado
+	 * @return si se busca con el índice de trigramas
+	 */
+	private static boolean usaTrigramas(String texto) {
+		return texto.codePointCount(0, texto.length()) >= MÍNIMO_TRIGRAMAS;
+	}
+
+	/**
+	 * Compone el patrón «LIKE» de los textos que empiezan por uno dado.
+	 * 
+	 * @param texto el texto inicial
+	 * @return el patrón, con los comodines del texto escapados
+	 */
+	private static String patrónPrefijo(String texto) {
+		return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+	}
+
+	/**
+	 * Lee el contenido completo de la base de datos y crea todos los partidos. Los
+	 * datos creados se depositan en la lista VACÍA facilitada. En caso de que la
+	 * lista no esté vacía se borrará su contenido.
+	 * 
+	 * @param lista una lista de resultados vacía
+	 * @return el número de resultados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int leer(Vector<ElementoPartido1X2> lista) throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+
+		lista.clear();
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(SQL_LISTADO_COMPLETO).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				lista.add(leerPartido(resultado));
+			}
+			registroLentas.registrar(conexión, SQL_LISTADO_COMPLETO, null, System.nanoTime() - inicio);
+		} catch (SQLException | DatoPartido1X2Exception e) {
+			String mensaje = String.format("Error al leer contactos: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", SQL_LISTADO_COMPLETO, lista.size());
+		}
+
+		return lista.size();
+	}
+
+	/**
+	 * Lee una página de los resultados que cumplen un filtro, en el orden que
+	 * indique el propio filtro. Los partidos leídos se añaden a la lista
+	 * facilitada.
+	 * 
+	 * @param filtro         los criterios de selección
+	 * @param desplazamiento el número de resultados a saltar
+	 * @param límite         el número máximo de resultados; cero o negativo para
+	 *                       todos
+	 * @param lista          la lista en la que añadir los resultados
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int leer(FiltroResultados filtro, int desplazamiento, int límite, List<ElementoPartido1X2> lista)
+			throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+		return recorrer(filtro, desplazamiento, límite, lista::add);
+	}
+
+	/**
+	 * Recorre una página de los resultados que cumplen un filtro, en el orden que
+	 * indique el propio filtro, entregando cada partido según se lee sin
+	 * acumularlos.
+	 * 
+	 * @param filtro         los criterios de selección
+	 * @param desplazamiento el número de resultados a saltar
+	 * @param límite         el número máximo de resultados; cero o negativo para
+	 *                       todos
+	 * @param receptor       el destino de cada partido leído
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int recorrer(FiltroResultados filtro, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) throws AccesoBDException {
+		String sql = SQL_LISTADO_FILTRADO + filtro.cláusulaWhere(true) + filtro.cláusulaOrderBy() + " LIMIT ? OFFSET ?";
+		List<Object> parámetros = filtro.parámetros(true);
+		int númFilas = 0;
+
+		parámetros.add(límite > 0 ? límite : -1);
+		parámetros.add(Math.max(0, desplazamiento));
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(sql, parámetros.toArray()).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				receptor.accept(leerPartido(resultado));
+				númFilas++;
+			}
+			registroLentas.registrar(conexión, sql, parámetros.toArray(), System.nanoTime() - inicio);
+		} catch (SQLException | DatoPartido1X2Exception e) {
+			String mensaje = String.format("Error al leer resultados: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", sql, númFilas);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Recorre el tramo siguiente de un recorrido por tramos, entregando cada
+	 * partido según se lee, y avanza su posición. El tramo continúa desde los
+	 * valores de ordenación de la última fila entregada, buscándolos en el
+	 * índice sin volver a contar las filas anteriores.
+	 * 
+	 * @param cursor   la posición del recorrido
+	 * @param límite   el número máximo de resultados; cero o negativo para
+	 *                 todos los restantes
+	 * @param receptor el destino de cada partido leído
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see OrdenResultados#condicionesPosteriores(boolean)
+	 */
+	public int recorrer(CursorResultados cursor, int límite, Consumer<ElementoPartido1X2> receptor)
+			throws AccesoBDException {
+		FiltroResultados filtro = cursor.getFiltro();
+		OrdenResultados orden = filtro.getOrden();
+		Object[] última = cursor.getÚltima();
+		String dónde = filtro.cláusulaWhere(true, orden != OrdenResultados.GRABACIÓN);
+		int númFilas = 0;
+
+		if (última == null) {
+			númFilas = recorrerTramo(cursor, dónde, filtro.parámetros(true), límite, receptor);
+		} else {
+			List<String> condiciones = orden.condicionesPosteriores(filtro.isDescendente());
+			for (int i = 0; i < condiciones.size() && (límite <= 0 || númFilas < límite); i++) {
+				List<Object> parámetros = filtro.parámetros(true);
+				parámetros.addAll(Arrays.asList(última).subList(0, última.length - i));
+				String condición = (dónde.isEmpty() ? " WHERE " : dónde + " AND ") + condiciones.get(i);
+				númFilas += recorrerTramo(cursor, condición, parámetros, límite > 0 ? límite - númFilas : 0, receptor);
+			}
+		}
+		cursor.avanzar(null, límite <= 0 || númFilas < límite);
+		return númFilas;
+	}
+
+	/**
+	 * Lee una parte de un tramo con una condición de posición ya compuesta y
+	 * anota en el recorrido la posición de la última fila leída.
+	 * 
+	 * @param cursor     la posición del recorrido
+	 * @param dónde      la cláusula «WHERE» completa, o vacía
+	 * @param parámetros los valores de la cláusula
+	 * @param límite     el número máximo de resultados; cero o negativo para
+	 *                   todos
+	 * @param receptor   el destino de cada partido leído
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private int recorrerTramo(CursorResultados cursor, String dónde, List<Object> parámetros, int límite,
+			Consumer<ElementoPartido1X2> receptor) throws AccesoBDException {
+		FiltroResultados filtro = cursor.getFiltro();
+		OrdenResultados orden = filtro.getOrden();
+		String sql = String.format(SQL_LISTADO_CONTINUO, orden.columnasClave()) + dónde + filtro.cláusulaOrderBy()
+				+ " LIMIT ? OFFSET ?";
+		Object[] posición = null;
+		int númFilas = 0;
+
+		parámetros.add(límite > 0 ? límite : -1);
+		parámetros.add(cursor.getDesplazamiento());
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(sql, parámetros.toArray()).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				ElementoPartido1X2 partido = leerPartido(resultado);
+				posición = new Object[orden.númColumnas()];
+				for (int i = 0; i < posición.length; i++) {
+					posición[i] = resultado.getObject(6 + i);
+				}
+				receptor.accept(partido);
+				númFilas++;
+			}
+			cursor.avanzar(posición, false);
+			registroLentas.registrar(conexión, sql, parámetros.toArray(), System.nanoTime() - inicio);
+		} catch (SQLException | DatoPartido1X2Exception e) {
+			String mensaje = String.format("Error al leer resultados: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", sql, númFilas);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Lee los partidos grabados, modificados o borrados después de una revisión,
+	 * hasta un máximo, en orden de revisión. El coste depende del número de
+	 * cambios y no del tamaño de la tabla. Los cambios leídos se añaden a la
+	 * lista facilitada; para continuar basta con volver a llamar desde la
+	 * revisión del último.
+	 * 
+	 * <p>
+	 * Si se parte de una revisión anterior a la poda de las bajas, ya no se
+	 * sabe qué partidos se han borrado desde entonces: se entrega primero un
+	 * {@link CambioPartido#isReinicio() reinicio} y después los partidos desde
+	 * el principio.
+	 * </p>
+	 * 
+	 * @param desdeRevisión la última revisión ya conocida, cero para todos
+	 * @param límite        el número máximo de cambios
+	 * @param cambios       la lista en la que añadir los cambios
+	 * @return el número de cambios leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see #podarBajas(long, int)
+	 */
+	public int leerCambios(long desdeRevisión, int límite, List<CambioPartido> cambios) throws AccesoBDException {
+		int númFilas = 0;
+
+		if (desdeRevisión > 0 && desdeRevisión < revisiónPodada()) {
+			cambios.add(CambioPartido.reinicio());
+			desdeRevisión = 0;
+			límite--;
+			númFilas++;
+		}
+
+		Object[] parámetros = { desdeRevisión, desdeRevisión, límite };
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(SQL_LISTADO_CAMBIOS, parámetros).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				cambios.add(new CambioPartido(resultado.getLong("id"), resultado.getLong("revision"),
+						resultado.getString("nombre_local") == null ? null : leerPartido(resultado)));
+				númFilas++;
+			}
+			registroLentas.registrar(conexión, SQL_LISTADO_CAMBIOS, parámetros, System.nanoTime() - inicio);
+		} catch (SQLException | DatoPartido1X2Exception e) {
+			String mensaje = String.format("Error al leer cambios: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", SQL_LISTADO_CAMBIOS, númFilas);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Recorre todos los partidos en orden de calendario y, dentro de cada
+	 * jornada, de grabación, entregando cada uno según se lee junto con su
+	 * identificador de fila y su revisión.
+	 * 
+	 * @param receptor el destino de cada partido leído
+	 * @return el número de partidos leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see OrdenResultados#CALENDARIO
+	 */
+	public int recorrerCalendario(Consumer<CambioPartido> receptor) throws AccesoBDException {
+		int númFilas = 0;
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(SQL_LISTADO_CALENDARIO).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				receptor.accept(new CambioPartido(resultado.getLong("id"), resultado.getLong("revision"),
+						leerPartido(resultado)));
+				númFilas++;
+			}
+			registroLentas.registrar(conexión, SQL_LISTADO_CALENDARIO, null, System.nanoTime() - inicio);
+		} catch (SQLException | DatoPartido1X2Exception e) {
+			String mensaje = String.format("Error al leer resultados: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", SQL_LISTADO_CALENDARIO, númFilas);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Proporciona la revisión más reciente de los resultados, que avanza con
+	 * cada partido grabado, modificado o borrado. Se lee del contador de
+	 * revisiones, sin recorrer la tabla.
+	 * 
+	 * @return la revisión, o cero si no hay resultados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public long últimaRevisión() throws AccesoBDException {
+		try (ResultSet resultado = preparar(SQL_ÚLTIMA_REVISIÓN).executeQuery()) {
+			return resultado.next() ? resultado.getLong(1) : 0;
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al consultar revisión: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Proporciona la revisión hasta la que se han podado las bajas.
+	 * 
+	 * @return la revisión, o cero si no se ha podado ninguna
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private long revisiónPodada() throws AccesoBDException {
+		try (ResultSet resultado = preparar(SQL_REVISIÓN_PODADA).executeQuery()) {
+			return resultado.next() ? resultado.getLong(1) : 0;
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al consultar revisión: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Elimina, en una única transacción, las bajas más antiguas –hasta el
+	 * máximo indicado– salvo las de las revisiones más recientes, y anota la
+	 * revisión hasta la que se han podado. Quien lea después los cambios desde
+	 * una revisión anterior recibirá un reinicio en lugar de esas bajas.
+	 * 
+	 * @param retención el número de revisiones más recientes cuyas bajas se
+	 *                  conservan
+	 * @param máximo    el número máximo de bajas eliminadas
+	 * @return el número de bajas eliminadas
+	 * @throws AccesoBDException si la conexión no está abierta o se produce alguna
+	 *                           incidencia
+	 * @see #leerCambios(long, int, List)
+	 */
+	public int podarBajas(long retención, int máximo) throws AccesoBDException {
+		int númFilas = 0;
+
+		long inicio = System.nanoTime();
+		try {
+			long hasta = últimaRevisión() - retención;
+			try (ResultSet resultado = preparar(SQL_LÍMITE_PODA, máximo - 1).executeQuery()) {
+				if (resultado.next()) {
+					hasta = Math.min(hasta, resultado.getLong(1));
+				}
+			}
+			if (hasta <= 0) {
+				return 0;
+			}
+
+			conexión.setAutoCommit(false);
+			try {
+				númFilas = actualizar(SQL_PODAR_BAJAS, hasta);
+				if (númFilas > 0) {
+					actualizar(SQL_ANOTAR_PODA, hasta, hasta);
+				}
+				conexión.commit();
+			} catch (SQLException | RuntimeException e) {
+				conexión.rollback();
+				throw e;
+			} finally {
+				conexión.setAutoCommit(true);
+			}
+			registroLentas.registrar(conexión, SQL_PODAR_BAJAS, new Object[] { hasta }, System.nanoTime() - inicio);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al podar bajas: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Cuenta los resultados que cumplen un filtro.
+	 * 
+	 * @param filtro los criterios de selección
+	 * @return el número de resultados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int contar(FiltroResultados filtro) throws AccesoBDException {
+		String sql = SQL_CONTAR + filtro.cláusulaWhere(true);
+		Object[] parámetros = filtro.parámetros(true).toArray();
+
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(sql, parámetros).executeQuery()) {
+			int total = resultado.next() ? resultado.getInt(1) : 0;
+			registroLentas.registrar(conexión, sql, parámetros, System.nanoTime() - inicio);
+			return total;
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al contar resultados: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Calcula la clasificación de los resultados que cumplen los criterios de
+	 * calendario de un filtro: el balance de cada equipo ordenado por puntos,
+	 * victorias y nombre. Si el filtro indica un equipo solo se obtiene su
+	 * balance.
+	 * 
+	 * @param filtro los criterios de selección
+	 * @return los balances, del primer al último clasificado
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public List<BalanceEquipo> clasificación(FiltroResultados filtro) throws AccesoBDException {
+		List<BalanceEquipo> balances = new ArrayList<>();
+		String calendario = filtro.cláusulaWhere(false);
+		String sql = String.format(SQL_BALANCES, calendario, filtro.getEquipo() == null ? "" : " WHERE equipo = ?");
+		List<Object> parámetros = filtro.parámetros(false);
+
+		parámetros.addAll(filtro.parámetros(false));
+		if (filtro.getEquipo() != null) {
+			parámetros.add(filtro.getEquipo());
+		}
+
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		long inicio = System.nanoTime();
+		try (ResultSet resultado = preparar(sql, parámetros.toArray()).executeQuery()) {
+			while (resultado.next()) {
+				cancelación.comprobar();
+				balances.add(new BalanceEquipo(resultado.getString("equipo"), resultado.getInt("jugados"),
+						resultado.getInt("ganados"), resultado.getInt("empatados"), resultado.getInt("perdidos"),
+						resultado.getInt("jugados_local"), resultado.getInt("ganados_local"),
+						resultado.getInt("empatados_local"), resultado.getInt("perdidos_local")));
+			}
+			registroLentas.registrar(conexión, sql, parámetros.toArray(), System.nanoTime() - inicio);
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al calcular clasificación: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "consulta", sql, balances.size());
+		}
+		return balances;
+	}
+
+	/**
+	 * Crea un partido a partir de la fila actual de un resultado de consulta.
+	 * 
+	 * @param resultado el resultado de la consulta, situado en una fila
+	 * @return el partido creado
+	 * @throws SQLException            si se produce alguna incidencia
+	 * @throws DatoPartido1X2Exception si los datos grabados no son válidos
+	 */
+	private static ElementoPartido1X2 leerPartido(ResultSet resultado)
+			throws SQLException, DatoPartido1X2Exception {
+		return ElementoPartido1X2.of(resultado.getString("temporada"), resultado.getInt("jornada"),
+				resultado.getString("nombre_local"), resultado.getString("nombre_visitante"),
+				resultado.getString("resultado"));
+	}
+
+	/**
+	 * Inserta un resultado en la base de datos o, si el partido ya existe
+	 * –misma temporada, jornada y equipos–, actualiza su resultado. La sentencia
+	 * preparada se toma de la caché de la conexión -permitiendo así que se pueda
+	 * compartir en caso de realizar varias inserciones consecutivas-.
+	 * 
+	 * @param partido el resultado a grabar
+	 * @return el número de filas afectadas –cero si el partido ya existía con el
+	 *         mismo resultado, una en otro caso–
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int insertar(ElementoPartido1X2 partido) throws AccesoBDException {
+		int númFilas = 0;
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		try {
+			númFilas = actualizar(SQL_INSERTAR_CONTACTO, partido.getEquipoLocal(), partido.getEquipoVisitante(),
+					partido.getResultado().toString(), partido.getTemporada(), partido.getJornada());
+			if (númFilas > 0) {
+				MODIFICACIONES.incrementAndGet();
+			}
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al insertar contacto: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "inserción", SQL_INSERTAR_CONTACTO, númFilas);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Inserta una colección de resultados en la base de datos, actualizando el
+	 * resultado de los partidos que ya existieran. Volver a cargar los mismos
+	 * datos no crea partidos repetidos.
 	 * 
 	 * @param lista los resultados a grabar
-	 * @return el número de filas afectadas, debería coincidir con el tamaño de la
-	 *         colección original
+	 * @return el número de filas afectadas: partidos nuevos más partidos cuyo
+	 *         resultado ha cambiado
 	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see #escribir(Collection, boolean)
 	 */
 	public int escribir(Vector<ElementoPartido1X2> lista) throws AccesoBDException {
+		return escribir(lista, true);
+	}
+
+	/**
+	 * Inserta una colección de resultados en la base de datos mediante lotes de
+	 * {@value #TAMAÑO_LOTE} partidos dentro de una única transacción. Los partidos
+	 * que ya existan –misma temporada, jornada y equipos– se actualizan o se
+	 * conservan según se indique. Si se produce alguna incidencia no se graba
+	 * ningún partido.
+	 * 
+	 * @param lista      los resultados a grabar
+	 * @param sustituir  si se actualiza el resultado de los partidos existentes o
+	 *                   se conservan sin cambios
+	 * @return el número de filas afectadas
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir) throws AccesoBDException {
 		if (lista == null) {
 			throw new AccesoBDException("Lista nula");
 		}
 
+		String sql = sustituir ? SQL_INSERTAR_CONTACTO : SQL_INSERTAR_NUEVOS;
 		int númFilas = 0;
 
-		for (ElementoPartido1X2 partido : lista) {
-			númFilas += insertar(partido);
+		EventoAccesoBD evento = new EventoAccesoBD();
+		evento.begin();
+		try {
+			PreparedStatement sentencia = preparar(sql);
+			int enLote = 0;
+
+			conexión.setAutoCommit(false);
+			try {
+				for (ElementoPartido1X2 partido : lista) {
+					sentencia.setString(1, partido.getEquipoLocal());
+					sentencia.setString(2, partido.getEquipoVisitante());
+					sentencia.setString(3, partido.getResultado().toString());
+					sentencia.setString(4, partido.getTemporada());
+					sentencia.setInt(5, partido.getJornada());
+					sentencia.addBatch();
+
+					if (++enLote == TAMAÑO_LOTE) {
+						númFilas += ejecutarLote(sentencia, sql);
+						enLote = 0;
+					}
+				}
+				if (enLote > 0) {
+					númFilas += ejecutarLote(sentencia, sql);
+				}
+				conexión.commit();
+				if (númFilas > 0) {
+					MODIFICACIONES.incrementAndGet();
+				}
+				conexión.setAutoCommit(true);
+			} catch (SQLException | RuntimeException e) {
+				deshacer(e);
+				throw e;
+			}
+		} catch (SQLException e) {
+			String mensaje = String.format("Error al grabar resultados: %s", e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} finally {
+			registrarEvento(evento, "lote", sql, númFilas);
+		}
+
+		return númFilas;
+	}
+
+	/**
+	 * Deshace la transacción en curso tras un fallo y restablece la
+	 * confirmación automática. Las incidencias al hacerlo se añaden a la
+	 * original sin sustituirla: si el fallo se debe a una cancelación, SQLite ya
+	 * ha deshecho la transacción y ni siquiera queda una abierta.
+	 * 
+	 * @param fallo la incidencia que ha hecho fracasar la transacción
+	 */
+	private void deshacer(Exception fallo) {
+		try {
+			conexión.rollback();
+		} catch (SQLException e) {
+			fallo.addSuppressed(e);
+		}
+		try {
+			conexión.setAutoCommit(true);
+		} catch (SQLException e) {
+			fallo.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Ejecuta el lote acumulado en una sentencia, registrando su duración.
+	 * 
+	 * @param sentencia la sentencia con el lote
+	 * @param sql       el texto SQL de la sentencia
+	 * @return el número total de filas afectadas
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private int ejecutarLote(PreparedStatement sentencia, String sql) throws SQLException {
+		int númFilas = 0;
+		long inicio = System.nanoTime();
+
+		cancelación.comprobar();
+
+		for (int filas : sentencia.executeBatch()) {
+			if (filas > 0) {
+				númFilas += filas;
+			}
+		}
+		registroLentas.registrar(conexión, sql, null, System.nanoTime() - inicio);
+		return númFilas;
+	}
+
+	/**
+	 * Deposita un resultado en la cola del escritor diferido y vuelve sin esperar
+	 * a su grabación. El escritor agrupa los resultados en transacciones sobre
+	 * una conexión propia; si la cola está llena la llamada espera hasta que haya
+	 * hueco. Los pendientes se graban en el {@link #close() cierre}.
+	 * 
+	 * @param partido el resultado a grabar
+	 * @return el aviso que se completa cuando el resultado está grabado de forma
+	 *         duradera, o con error si su transacción falla
+	 * @throws AccesoBDException si no se puede crear el escritor o se interrumpe
+	 *                           la espera
+	 * @see EscritorDiferido
+	 */
+	public CompletableFuture<Void> insertarDiferido(ElementoPartido1X2 partido) throws AccesoBDException {
+		if (escritorDiferido == null) {
+			escritorDiferido = new EscritorDiferido(configuración);
+		}
+		return escritorDiferido.insertar(partido);
+	}
+
+	/**
+	 * Obtiene de la caché la sentencia preparada de un texto SQL y le enlaza los
+	 * parámetros indicados.
+	 * 
+	 * @param sql        el texto SQL
+	 * @param parámetros los valores de los parámetros, por orden
+	 * @return la sentencia lista para ejecutar
+	 * @throws SQLException si la conexión no está abierta o se produce alguna
+	 *                      incidencia
+	 */
+	private PreparedStatement preparar(String sql, Object... parámetros) throws SQLException {
+		PreparedStatement sentencia;
+
+		if (cacheSentencias == null) {
+			throw new SQLException("Conexión no abierta");
+		}
+
+		sentencia = cacheSentencias.obtener(sql);
+		cancelación.vigilar(sentencia);
+		for (int i = 0; i < parámetros.length; i++) {
+			sentencia.setObject(i + 1, parámetros[i]);
 		}
+		return sentencia;
+	}
+
+	/**
+	 * Ejecuta una sentencia de actualización –o de definición de datos– a través
+	 * de la caché, registrando su duración.
+	 * 
+	 * @param sql        el texto SQL
+	 * @param parámetros los valores de los parámetros, por orden
+	 * @return el número de filas afectadas
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private int actualizar(String sql, Object... parámetros) throws SQLException {
+		long inicio = System.nanoTime();
+		int númFilas = preparar(sql, parámetros).executeUpdate();
+		registroLentas.registrar(conexión, sql, parámetros, System.nanoTime() - inicio);
+		return númFilas;
+	}
 
+	/**
+	 * Ejecuta una sentencia de actualización ocasional –las de migración del
+	 * esquema o de reconstrucción– sin pasar por la caché, registrando su
+	 * duración. El controlador mantiene en curso las sentencias con subconsultas,
+	 * como «INSERT … SELECT», hasta cerrarlas, y mientras tanto no se podría
+	 * compactar el archivo.
+	 * 
+	 * @param sql el texto SQL
+	 * @return el número de filas afectadas
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	private int actualizarUnaVez(String sql) throws SQLException {
+		long inicio = System.nanoTime();
+		int númFilas;
+		try (PreparedStatement sentencia = conexión.prepareStatement(sql)) {
+			cancelación.vigilar(sentencia);
+			númFilas = sentencia.executeUpdate();
+		}
+		registroLentas.registrar(conexión, sql, null, System.nanoTime() - inicio);
 		return númFilas;
 	}
 
 	/**
-	 * Descarta la sentencias SQL inicializadas y deja cerrada la conexión.
+	 * Proporciona un resumen de aciertos y fallos de la caché de sentencias
+	 * preparadas de la conexión.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	public String informeCacheSentencias() {
+		return cacheSentencias == null ? "Caché de sentencias: sin conexión" : cacheSentencias.toString();
+	}
+
+	/**
+	 * Completa y envía a <i>Java Flight Recorder</i> un evento de operación, solo
+	 * si está activado y supera el umbral configurado en la grabación.
+	 * 
+	 * @param evento    el evento iniciado al comienzo de la operación
+	 * @param operación el nombre de la operación
+	 * @param sql       la sentencia SQL principal de la operación
+	 * @param filas     el número de filas leídas o afectadas
+	 */
+	private static void registrarEvento(EventoAccesoBD evento, String operación, String sql, int filas) {
+		OPERACIONES.increment();
+		evento.end();
+		if (evento.shouldCommit()) {
+			evento.operación = operación;
+			evento.tipoSQL = EventoAccesoBD.tipoSQL(sql);
+			evento.filas = filas;
+			evento.commit();
+		}
+	}
+
+	/**
+	 * Graba los resultados pendientes del escritor diferido, cierra las
+	 * sentencias SQL de la caché y deja cerrada la conexión.
 	 * 
 	 * @throws AccesoBDException si se produce alguna incidencia
 	 */
 	@Override
 	public void close() throws AccesoBDException {
+		if (escritorDiferido != null) {
+			EscritorDiferido escritorCerrado = escritorDiferido;
+			escritorDiferido = null;
+			escritorCerrado.close();
+		}
 		if (conexión != null) {
 			try {
 				Connection conexiónCerrada = conexión;
+				CacheSentencias cacheCerrada = cacheSentencias;
 				conexión = null;
-				sentenciaGeneralSQL = null;
-				preInserciónSQL = null;
+				cacheSentencias = null;
+				if (cacheCerrada != null) {
+					cacheCerrada.close();
+				}
 				conexiónCerrada.close();
 			} catch (SQLException e) {
 				String mensaje = String.format("Error en cierre de conexión: %s", e.getLocalizedMessage());
@@ -332,15 +2262,21 @@ public class AccesoBD implements AutoCloseable {
 	}
 
 	/**
-	 * Inserta datos de ejemplo aleatorios en la base de datos. A partir de una
+	 * Inserta datos de ejemplo aleatorios en un almacén. A partir de una
 	 * lista de nombres de equipos los distribuye aleatoriamente en parejas y
 	 * determina un resultado también aleatorio. Para el resultado se simula un dado
 	 * con tres «1», dos «2» y una «X».
 	 * 
-	 * @throws AccesoBDException si se produce alguna incidencia al acceder a la
-	 *                           base de datos
+	 * El sorteo depende solo de la temporada y la jornada, así que volver a
+	 * generar la misma jornada reproduce los mismos partidos y no los repite en la
+	 * base de datos.
+	 * 
+	 * @param almacén el almacén de destino
+	 * @param jornada el número de jornada a generar
+	 * @throws AccesoBDException si se produce alguna incidencia al acceder al
+	 *                           almacén
 	 */
-	private void generarBD() throws AccesoBDException {
+	private static void generarBD(AlmacenPartidos almacén, int jornada) throws AccesoBDException {
 		Vector<ElementoPartido1X2> lista;
 		ElementoPartido1X2 nuevo;
 
@@ -360,7 +2296,7 @@ public class AccesoBD implements AutoCloseable {
 			listaEquipos.add(equipo);
 		}
 
-		Random rnd = new Random();
+		Random rnd = new Random(Objects.hash(TEMPORADA_EJEMPLO, jornada));
 
 		// 1 (3 caras → 50%), X (2 caras → 33,33%), 2 (1 cara → 16,66%)
 		Resultado1X2[] dado1X2 = { Resultado1X2.Local1, Resultado1X2.Local1, Resultado1X2.Local1, Resultado1X2.EmpateX,
@@ -379,6 +2315,7 @@ public class AccesoBD implements AutoCloseable {
 				nuevo.setDato(nombreLocal);
 				nuevo.setDato(nombreVisitante);
 				nuevo.setDato(resultado);
+				nuevo.setCalendario(TEMPORADA_EJEMPLO, jornada);
 			} catch (DatoPartido1X2Exception e) {
 				System.err.printf("Error de carga de datos: %s%n", e.getLocalizedMessage());
 				System.exit(2);
@@ -392,14 +2329,29 @@ public class AccesoBD implements AutoCloseable {
 			System.out.println(partido);
 		}
 
-		abrirConexión();
-		escribir(lista);
+		almacén.abrir();
+		almacén.escribir(lista, true);
 	}
 
 	public static void main(String[] args) {
-		try (AccesoBD acceso = new AccesoBD()) {
+		int jornada = 1;
+
+		if (args.length > 0) {
+			try {
+				jornada = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				System.err.printf("Jornada no válida: %s%n", args[0]);
+				System.exit(1);
+			}
+		}
+
+		Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+		try (AlmacenPartidos almacén = AlmacenPartidos.of(configuración)) {
 			// Cierre implícito con close() –try_with_resources–
-			acceso.generarBD();
+			generarBD(almacén, jornada);
+			if (almacén instanceof AccesoBD) {
+				InstantaneaResultados.grabar((AccesoBD) almacén, InstantaneaResultados.ruta(configuración));
+			}
 		} catch (AccesoBDException e) {
 			System.err.println(e.getLocalizedMessage());
 		}
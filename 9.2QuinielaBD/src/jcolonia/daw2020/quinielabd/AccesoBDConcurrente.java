@@ -0,0 +1,290 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Acceso a la base de datos compartible entre hilos. Mantiene una única
+ * conexión de escritura, protegida por un cerrojo, y un conjunto de conexiones
+ * de solo lectura que atienden consultas en paralelo. La base de datos se pone
+ * en modo WAL, de modo que cada lectura trabaja sobre una instantánea coherente
+ * y nunca espera a la escritura en curso ni la bloquea.
+ * 
+ * <p>
+ * Cada conexión pertenece a un {@link AccesoBD} propio, con su caché de
+ * sentencias, y solo la usa un hilo a la vez.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class AccesoBDConcurrente implements AutoCloseable {
+	/**
+	 * Clave de configuración del número de conexiones de lectura.
+	 */
+	public static final String CLAVE_LECTORES = "bd.lectores";
+
+	/**
+	 * Operación sobre un {@link AccesoBD} con la conexión ya abierta.
+	 * 
+	 * @param <T> el tipo del resultado de la operación
+	 */
+	@FunctionalInterface
+	public interface Tarea<T> {
+		/**
+		 * Realiza la operación.
+		 * 
+		 * @param acceso el acceso a utilizar, de uso exclusivo durante la llamada
+		 * @return el resultado de la operación
+		 * @throws AccesoBDException si se produce alguna incidencia
+		 */
+		T ejecutar(AccesoBD acceso) throws AccesoBDException;
+	}
+
+	/**
+	 * Acceso con la única conexión de escritura.
+	 */
+	private final AccesoBD escritor;
+
+	/**
+	 * Cerrojo que reserva la conexión de escritura a un hilo.
+	 */
+	private final ReentrantLock cerrojoEscritura = new ReentrantLock();
+
+	/**
+	 * Accesos de solo lectura disponibles.
+	 */
+	private final BlockingQueue<AccesoBD> lectores;
+
+	/**
+	 * Todos los accesos de solo lectura, para su cierre.
+	 */
+	private final List<AccesoBD> todosLectores;
+
+	/**
+	 * Carga la configuración desde el archivo de configuración predeterminado.
+	 * 
+	 * @throws AccesoBDException si no se pueden abrir las conexiones
+	 */
+	public AccesoBDConcurrente() throws AccesoBDException {
+		this(configuraciónPredeterminada());
+	}
+
+	/**
+	 * Abre la conexión de escritura –preparando el esquema y activando el modo
+	 * WAL– y después las conexiones de lectura indicadas en la configuración, una
+	 * por procesador si no se indica.
+	 * 
+	 * @param configuración la configuración de acceso a la base de datos
+	 * @throws AccesoBDException si no se pueden abrir las conexiones
+	 * @see #CLAVE_LECTORES
+	 */
+	public AccesoBDConcurrente(Properties configuración) throws AccesoBDException {
+		int númLectores = (int) Math.max(1, RegistroConsultasLentas.leerNúmero(configuración, CLAVE_LECTORES,
+				Runtime.getRuntime().availableProcessors()));
+
+		escritor = new AccesoBD(configuración);
+		lectores = new ArrayBlockingQueue<>(númLectores);
+		todosLectores = new ArrayList<>(númLectores);
+
+		try {
+			escritor.abrirConexión();
+			escritor.activarWAL();
+			for (int i = 0; i < númLectores; i++) {
+				AccesoBD lector = new AccesoBD(configuración);
+				todosLectores.add(lector);
+				lector.abrirConexiónLectura();
+				lectores.add(lector);
+			}
+		} catch (AccesoBDException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Obtiene la configuración del archivo predeterminado, o la crea si no existe.
+	 * 
+	 * @return la configuración
+	 */
+	static Properties configuraciónPredeterminada() {
+		Properties configuración;
+		try {
+			configuración = AccesoBD.cargarConfiguración(AccesoBD.ARCHIVO_CONFIG_PREDETERMINADO);
+		} catch (AccesoBDException e) {
+			configuración = AccesoBD.crearConfiguración(AccesoBD.ARCHIVO_CONFIG_PREDETERMINADO,
+					AccesoBD.ARCHIVO_BD_PREDETERMINADO);
+		}
+		return configuración;
+	}
+
+	/**
+	 * Realiza una operación de consulta con una de las conexiones de lectura,
+	 * esperando a que quede alguna libre.
+	 * 
+	 * @param <T>   el tipo del resultado
+	 * @param tarea la operación, que no debe modificar la base de datos
+	 * @return el resultado de la operación
+	 * @throws AccesoBDException si se produce alguna incidencia o se interrumpe
+	 *                           la espera
+	 */
+	public <T> T consultar(Tarea<T> tarea) throws AccesoBDException {
+		return consultar(tarea, CancelacionBD.NINGUNA);
+	}
+
+	/**
+	 * Realiza una operación de consulta cancelable con una de las conexiones de
+	 * lectura. La espera por una conexión libre también cuenta para el plazo.
+	 * 
+	 * @param <T>         el tipo del resultado
+	 * @param tarea       la operación, que no debe modificar la base de datos
+	 * @param cancelación el aviso de cancelación de la operación
+	 * @return el resultado de la operación
+	 * @throws AccesoBDException si se produce alguna incidencia, se cancela la
+	 *                           operación o se interrumpe la espera
+	 */
+	public <T> T consultar(Tarea<T> tarea, CancelacionBD cancelación) throws AccesoBDException {
+		AccesoBD lector;
+
+		try {
+			lector = lectores.poll(cancelación.getRestanteNanos(), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccesoBDException("Espera interrumpida", e);
+		}
+		if (lector == null) {
+			throw new AccesoBDException("Plazo agotado esperando una conexión de lectura");
+		}
+
+		lector.setCancelación(cancelación);
+		try {
+			return tarea.ejecutar(lector);
+		} finally {
+			lector.setCancelación(null);
+			lectores.add(lector);
+		}
+	}
+
+	/**
+	 * Realiza una operación de modificación con la conexión de escritura,
+	 * esperando a que termine la operación de escritura en curso.
+	 * 
+	 * @param <T>   el tipo del resultado
+	 * @param tarea la operación
+	 * @return el resultado de la operación
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public <T> T modificar(Tarea<T> tarea) throws AccesoBDException {
+		cerrojoEscritura.lock();
+		try {
+			return tarea.ejecutar(escritor);
+		} finally {
+			cerrojoEscritura.unlock();
+		}
+	}
+
+	/**
+	 * Realiza una operación de modificación cancelable con la conexión de
+	 * escritura. La espera por la escritura en curso también cuenta para el
+	 * plazo; si la operación se cancela, su transacción se deshace.
+	 * 
+	 * @param <T>         el tipo del resultado
+	 * @param tarea       la operación
+	 * @param cancelación el aviso de cancelación de la operación
+	 * @return el resultado de la operación
+	 * @throws AccesoBDException si se produce alguna incidencia, se cancela la
+	 *                           operación o se interrumpe la espera
+	 */
+	public <T> T modificar(Tarea<T> tarea, CancelacionBD cancelación) throws AccesoBDException {
+		try {
+			if (!cerrojoEscritura.tryLock(cancelación.getRestanteNanos(), TimeUnit.NANOSECONDS)) {
+				throw new AccesoBDException("Plazo agotado esperando la conexión de escritura");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccesoBDException("Espera interrumpida", e);
+		}
+
+		escritor.setCancelación(cancelación);
+		try {
+			return tarea.ejecutar(escritor);
+		} finally {
+			escritor.setCancelación(null);
+			cerrojoEscritura.unlock();
+		}
+	}
+
+	/**
+	 * Lee el contenido completo de la base de datos con una conexión de lectura.
+	 * 
+	 * @param lista una lista de resultados vacía
+	 * @return el número de resultados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see AccesoBD#leer(Vector)
+	 */
+	public int leer(Vector<ElementoPartido1X2> lista) throws AccesoBDException {
+		return consultar(lector -> lector.leer(lista));
+	}
+
+	/**
+	 * Inserta o actualiza un resultado con la conexión de escritura.
+	 * 
+	 * @param partido el resultado a grabar
+	 * @return el número de filas afectadas
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see AccesoBD#insertar(ElementoPartido1X2)
+	 */
+	public int insertar(ElementoPartido1X2 partido) throws AccesoBDException {
+		return modificar(acceso -> acceso.insertar(partido));
+	}
+
+	/**
+	 * Inserta o actualiza una colección de resultados en una única transacción
+	 * con la conexión de escritura.
+	 * 
+	 * @param lista     los resultados a grabar
+	 * @param sustituir si se actualiza el resultado de los partidos existentes
+	 * @return el número de filas afectadas
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see AccesoBD#escribir(Collection, boolean)
+	 */
+	public int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir) throws AccesoBDException {
+		return modificar(acceso -> acceso.escribir(lista, sustituir));
+	}
+
+	/**
+	 * Cierra todas las conexiones. Las operaciones en curso deben haber
+	 * terminado.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia; se intentan
+	 *                           cerrar todas las conexiones igualmente
+	 */
+	@Override
+	public void close() throws AccesoBDException {
+		AccesoBDException incidencia = null;
+
+		for (AccesoBD lector : todosLectores) {
+			try {
+				lector.close();
+			} catch (AccesoBDException e) {
+				incidencia = e;
+			}
+		}
+		try {
+			escritor.close();
+		} catch (AccesoBDException e) {
+			incidencia = e;
+		}
+
+		if (incidencia != null) {
+			throw incidencia;
+		}
+	}
+}
@@ -0,0 +1,1013 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Almacén de resultados en un registro binario de solo adición, pensado para
+ * cargas masivas sin pasar por SQL. Los nombres de temporadas y equipos se
+ * sustituyen por identificadores numéricos definidos en el propio registro, de
+ * modo que cada partido ocupa {@value #TAMAÑO_PARTIDO} bytes. El estado actual
+ * –el último resultado de cada partido– se mantiene en memoria en forma
+ * compacta y se reconstruye al abrir recorriendo el registro proyectado en
+ * memoria, sin copias intermedias.
+ * 
+ * <p>
+ * Formato: una cabecera de {@value #TAMAÑO_CABECERA} bytes –marca, versión y
+ * posición hasta la que se han trasladado los partidos al destino– seguida de
+ * registros con su longitud (dos bytes), el tipo, los datos y el
+ * CRC-32 del tipo y los datos. Los registros de cada grabación llevan marcado el
+ * tipo como «continúa» salvo el último, así que una grabación interrumpida se
+ * reconoce y se descarta entera al abrir, junto con cualquier registro dañado y
+ * lo que le siga.
+ * </p>
+ * 
+ * <p>
+ * Las grabaciones se acumulan en un búfer y se fuerzan al disco cada
+ * {@value #LOTE_PREDETERMINADO} partidos o los indicados en la clave
+ * {@value #CLAVE_LOTE}; con un lote de uno se fuerza cada grabación. Ante una
+ * caída pueden perderse las grabaciones del último lote sin forzar, pero nunca
+ * parte de una grabación.
+ * </p>
+ * 
+ * <p>
+ * La {@link #compactar() compactación} traslada los partidos nuevos o
+ * modificados al almacén indicado en {@value #CLAVE_DESTINO} –por omisión la
+ * base de datos SQLite de la misma configuración– y reescribe el registro con
+ * un único registro por partido. Puede programarse cada cierto número de
+ * segundos con {@value #CLAVE_INTERVALO_COMPACTACIÓN}. Tras cada traslado se
+ * anota en la cabecera la posición alcanzada, así que al abrir se consideran
+ * pendientes de trasladar todos los registros posteriores, aunque el almacén se
+ * hubiera cerrado o interrumpido sin compactar. Los registros de la versión 1
+ * del formato, sin esa posición, se consideran pendientes por completo y pasan
+ * a la versión actual en la primera compactación.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class AlmacenBinario implements AlmacenPartidos {
+	/**
+	 * Clave de configuración de la ruta del registro binario.
+	 */
+	public static final String CLAVE_ARCHIVO = "almacen.binario.archivo";
+
+	/**
+	 * Clave de configuración del número de partidos entre escrituras forzadas al
+	 * disco.
+	 */
+	public static final String CLAVE_LOTE = "almacen.binario.lote";
+
+	/**
+	 * Clave de configuración del intervalo de compactación en segundos; cero para
+	 * no compactar automáticamente.
+	 */
+	public static final String CLAVE_INTERVALO_COMPACTACIÓN = "almacen.binario.compactar.s";
+
+	/**
+	 * Clave de configuración del tipo de almacén que recibe los partidos al
+	 * compactar; vacío para no trasladarlos.
+	 */
+	public static final String CLAVE_DESTINO = "almacen.binario.destino";
+
+	/**
+	 * Ruta predeterminada del registro binario.
+	 */
+	public static final String ARCHIVO_PREDETERMINADO = "quiniela.bin";
+
+	/**
+	 * Número predeterminado de partidos entre escrituras forzadas al disco.
+	 */
+	public static final int LOTE_PREDETERMINADO = 4096;
+
+	/**
+	 * Marca inicial del registro: «Q1LG».
+	 */
+	private static final int MARCA = 0x51314C47;
+
+	/**
+	 * Versión del formato.
+	 */
+	private static final int VERSIÓN = 2;
+
+	/**
+	 * Longitud de la cabecera: marca, versión y posición del último traslado.
+	 */
+	private static final int TAMAÑO_CABECERA = 16;
+
+	/**
+	 * Longitud de la cabecera de la versión 1 del formato: marca y versión.
+	 */
+	private static final int TAMAÑO_CABECERA_V1 = 8;
+
+	/**
+	 * Posición en la cabecera de la posición del último traslado.
+	 */
+	private static final int POSICIÓN_TRASLADO = 8;
+
+	/**
+	 * Tipo de registro que asigna un identificador a un nombre.
+	 */
+	private static final byte TIPO_NOMBRE = 1;
+
+	/**
+	 * Tipo de registro de un partido.
+	 */
+	private static final byte TIPO_PARTIDO = 2;
+
+	/**
+	 * Marca de tipo de los registros que no cierran una grabación.
+	 */
+	private static final byte CONTINÚA = (byte) 0x80;
+
+	/**
+	 * Longitud de un registro de partido: longitud, tipo, temporada, jornada,
+	 * equipos, resultado y CRC.
+	 */
+	private static final int TAMAÑO_PARTIDO = 2 + 1 + 2 + 2 + 2 + 2 + 1 + 4;
+
+	/**
+	 * Número máximo de nombres distintos, por usar identificadores de dos bytes.
+	 */
+	private static final int MÁXIMO_NOMBRES = 1 << 16;
+
+	/**
+	 * Capacidad del búfer de escritura.
+	 */
+	private static final int TAMAÑO_BÚFER = 1 << 20;
+
+	/**
+	 * Tamaño de cada tramo del registro proyectado en memoria al leerlo.
+	 */
+	private static final long TAMAÑO_VENTANA = 64L << 20;
+
+	/**
+	 * Resultados posibles, por ordinal.
+	 */
+	private static final Resultado1X2[] RESULTADOS = Resultado1X2.values();
+
+	/**
+	 * Ruta del registro.
+	 */
+	private final Path archivo;
+
+	/**
+	 * Configuración, para crear el almacén de destino de la compactación.
+	 */
+	private final Properties configuración;
+
+	/**
+	 * Número de partidos entre escrituras forzadas al disco.
+	 */
+	private final int lote;
+
+	/**
+	 * Intervalo de compactación en segundos; cero si no es automática.
+	 */
+	private final long intervaloCompactación;
+
+	/**
+	 * Nombres de temporadas y equipos, por identificador.
+	 */
+	private final List<String> nombres = new ArrayList<>();
+
+	/**
+	 * Identificador de cada nombre.
+	 */
+	private final Map<String, Integer> identificadores = new HashMap<>();
+
+	/**
+	 * Tabla de dispersión con direccionamiento abierto de la posición de cada
+	 * partido –más uno, cero si está libre– por su clave compacta. Evita el
+	 * empaquetado de las claves y las colisiones de {@link Long#hashCode()}, que
+	 * con claves formadas por números pequeños son masivas.
+	 */
+	private int[] posiciones = new int[2048];
+
+	/**
+	 * Claves compactas de los partidos, por orden de grabación.
+	 */
+	private long[] claves = new long[1024];
+
+	/**
+	 * Resultado actual de cada partido, como ordinal de {@link Resultado1X2}.
+	 */
+	private byte[] resultados = new byte[1024];
+
+	/**
+	 * Número de partidos distintos.
+	 */
+	private int total;
+
+	/**
+	 * Número de registros de partido en el archivo, incluidos los obsoletos.
+	 */
+	private long registrosPartido;
+
+	/**
+	 * Posiciones de los partidos nuevos o modificados desde el último traslado.
+	 */
+	private final BitSet cambiados = new BitSet();
+
+	/**
+	 * Posición del archivo en la que empiezan los registros, según la versión
+	 * de su formato.
+	 */
+	private long inicioRegistros = TAMAÑO_CABECERA;
+
+	/**
+	 * Posición del archivo hasta la que se han trasladado los partidos: los
+	 * registros de las grabaciones que empiezan en ella o después están
+	 * pendientes.
+	 */
+	private long marcaTraslado = TAMAÑO_CABECERA;
+
+	/**
+	 * Cerrojo que impide solapar dos compactaciones, para que la posición del
+	 * traslado no se anote sobre un registro reescrito entretanto.
+	 */
+	private final Object cerrojoCompactación = new Object();
+
+	/**
+	 * Partidos por orden de grabación para las consultas; nulo si hay que
+	 * volver a formarla.
+	 */
+	private List<ElementoPartido1X2> vista;
+
+	/**
+	 * Canal de escritura, abierto con {@link #abrir()}.
+	 */
+	private FileChannel canal;
+
+	/**
+	 * Registros pendientes de escribir en el canal.
+	 */
+	private final ByteBuffer búfer = ByteBuffer.allocateDirect(TAMAÑO_BÚFER);
+
+	/**
+	 * Cálculo de los CRC de los registros.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Partidos grabados desde la última escritura forzada.
+	 */
+	private int sinForzar;
+
+	/**
+	 * Planificador de la compactación automática, en su caso.
+	 */
+	private ScheduledExecutorService compactador;
+
+	/**
+	 * Toma la ruta del registro y sus parámetros de la configuración.
+	 * 
+	 * @param configuración la configuración
+	 * @see #CLAVE_ARCHIVO
+	 * @see #CLAVE_LOTE
+	 * @see #CLAVE_INTERVALO_COMPACTACIÓN
+	 * @see #CLAVE_DESTINO
+	 */
+	public AlmacenBinario(Properties configuración) {
+		this.configuración = configuración;
+		archivo = Path.of(configuración.getProperty(CLAVE_ARCHIVO, ARCHIVO_PREDETERMINADO));
+		lote = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_LOTE, LOTE_PREDETERMINADO)));
+		intervaloCompactación = Math.max(0,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_INTERVALO_COMPACTACIÓN, 0));
+	}
+
+	/**
+	 * Crea el registro si no existe o lo recorre para reconstruir el estado,
+	 * descartando una grabación incompleta al final, y lo deja abierto para
+	 * añadir.
+	 * 
+	 * @throws AccesoBDException si no se puede crear, leer o abrir el registro o
+	 *                           no tiene el formato esperado
+	 */
+	@Override
+	public synchronized void abrir() throws AccesoBDException {
+		if (canal != null) {
+			return;
+		}
+
+		try {
+			canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			if (canal.size() < TAMAÑO_CABECERA_V1) {
+				canal.truncate(0);
+				ByteBuffer cabecera = ByteBuffer.allocate(TAMAÑO_CABECERA).putInt(MARCA).putInt(VERSIÓN)
+						.putLong(TAMAÑO_CABECERA).flip();
+				while (cabecera.hasRemaining()) {
+					canal.write(cabecera, cabecera.position());
+				}
+				canal.force(true);
+			}
+			long fin = reconstruir();
+			if (fin < canal.size()) {
+				System.err.printf("Descartados %d bytes de una grabación incompleta al final de «%s»%n",
+						canal.size() - fin, archivo);
+				canal.truncate(fin);
+				canal.force(true);
+			}
+			canal.position(fin);
+		} catch (IOException e) {
+			descartar();
+			String mensaje = String.format("Error al abrir registro «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} catch (AccesoBDException e) {
+			descartar();
+			throw e;
+		}
+
+		if (intervaloCompactación > 0) {
+			compactador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+				Thread hilo = new Thread(tarea, "Compactación " + archivo.getFileName());
+				hilo.setDaemon(true);
+				return hilo;
+			});
+			compactador.scheduleWithFixedDelay(() -> {
+				try {
+					compactar();
+				} catch (AccesoBDException e) {
+					System.err.printf("Error en compactación: %s%n", e.getLocalizedMessage());
+				}
+			}, intervaloCompactación, intervaloCompactación, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Recorre el registro proyectado en memoria por tramos y aplica cada
+	 * grabación completa al estado. Los registros de una grabación se retienen
+	 * hasta llegar al último; los de una grabación sin cerrar, o a partir de un
+	 * registro dañado, no se aplican. Los partidos de las grabaciones que
+	 * empiezan a partir de la posición del último traslado quedan pendientes de
+	 * trasladar.
+	 * 
+	 * @return la posición que sigue a la última grabación completa
+	 * @throws IOException       si no se puede leer el registro
+	 * @throws AccesoBDException si la cabecera no es la esperada
+	 */
+	private long reconstruir() throws IOException, AccesoBDException {
+		long tamaño = canal.size();
+		MappedByteBuffer cabecera = canal.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(tamaño, TAMAÑO_CABECERA));
+		int versión = cabecera.getInt(4);
+		if (cabecera.getInt(0) != MARCA || (versión != 1 && versión != VERSIÓN)
+				|| (versión == VERSIÓN && tamaño < TAMAÑO_CABECERA)) {
+			throw new AccesoBDException(String.format("«%s» no es un registro binario de resultados", archivo));
+		}
+		inicioRegistros = versión == 1 ? TAMAÑO_CABECERA_V1 : TAMAÑO_CABECERA;
+		marcaTraslado = versión == 1 ? inicioRegistros : cabecera.getLong(POSICIÓN_TRASLADO);
+
+		List<String> nombresPendientes = new ArrayList<>();
+		long[] clavesPendientes = new long[256];
+		byte[] resultadosPendientes = new byte[256];
+		int partidosPendientes = 0;
+		BitSet sinTrasladar = new BitSet();
+
+		long inicioVentana = inicioRegistros;
+		long fin = inicioRegistros;
+		while (inicioVentana < tamaño) {
+			MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, inicioVentana,
+					Math.min(TAMAÑO_VENTANA, tamaño - inicioVentana));
+			int límite = ventana.limit();
+			int p = 0;
+			while (p + 2 <= límite) {
+				int longitud = Short.toUnsignedInt(ventana.getShort(p));
+				if (longitud == 0 || p + 2 + longitud + 4 > límite) {
+					break; // Registro dañado o partido por el tramo
+				}
+				ventana.limit(p + 2 + longitud).position(p + 2);
+				crc.reset();
+				crc.update(ventana);
+				ventana.limit(límite);
+				if ((int) crc.getValue() != ventana.getInt(p + 2 + longitud)) {
+					return fin; // Registro dañado
+				}
+
+				byte tipo = ventana.get(p + 2);
+				int datos = p + 3;
+				if ((tipo & ~CONTINÚA) == TIPO_NOMBRE && longitud >= 3) {
+					int id = Short.toUnsignedInt(ventana.getShort(datos));
+					byte[] texto = new byte[longitud - 3];
+					ventana.position(datos + 2);
+					ventana.get(texto);
+					if (id != nombres.size() + nombresPendientes.size()) {
+						return fin;
+					}
+					nombresPendientes.add(new String(texto, StandardCharsets.UTF_8));
+				} else if ((tipo & ~CONTINÚA) == TIPO_PARTIDO && longitud == TAMAÑO_PARTIDO - 6) {
+					if (partidosPendientes == clavesPendientes.length) {
+						clavesPendientes = Arrays.copyOf(clavesPendientes, partidosPendientes * 2);
+						resultadosPendientes = Arrays.copyOf(resultadosPendientes, partidosPendientes * 2);
+					}
+					clavesPendientes[partidosPendientes] = ventana.getLong(datos);
+					resultadosPendientes[partidosPendientes++] = ventana.get(datos + 8);
+				} else {
+					return fin;
+				}
+				p += 2 + longitud + 4;
+
+				if ((tipo & CONTINÚA) == 0) { // Fin de grabación: se aplica
+					for (String nombre : nombresPendientes) {
+						identificadores.put(nombre, nombres.size());
+						nombres.add(nombre);
+					}
+					for (int i = 0; i < partidosPendientes; i++) {
+						aplicar(clavesPendientes[i], resultadosPendientes[i], true);
+						if (fin >= marcaTraslado) {
+							sinTrasladar.set(posiciones[casilla(clavesPendientes[i])] - 1);
+						}
+					}
+					registrosPartido += partidosPendientes;
+					nombresPendientes.clear();
+					partidosPendientes = 0;
+					fin = inicioVentana + p;
+				}
+			}
+			if (p == 0 || inicioVentana + límite == tamaño) {
+				break;
+			}
+			inicioVentana += p;
+		}
+		cambiados.clear();
+		cambiados.or(sinTrasladar);
+		marcaTraslado = Math.min(marcaTraslado, fin);
+		return fin;
+	}
+
+	@Override
+	public synchronized int insertar(ElementoPartido1X2 partido) throws AccesoBDException {
+		return escribir(List.of(partido), true);
+	}
+
+	/**
+	 * Añade al registro, como una sola grabación, los partidos que sean nuevos o
+	 * cambien. Si la escritura falla el registro queda cerrado y hay que volver a
+	 * abrirlo, lo que reconstruye el estado solo con lo grabado.
+	 */
+	@Override
+	public synchronized int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir)
+			throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+		verificarAbierto();
+
+		for (ElementoPartido1X2 partido : lista) {
+			if (partido.getJornada() < 0 || partido.getJornada() > 0xFFFF || partido.getResultado() == null) {
+				throw new AccesoBDException(String.format("Partido no representable: %s", partido));
+			}
+		}
+
+		int grabados = 0;
+		int últimoTipo = -1;
+		try {
+			for (ElementoPartido1X2 partido : lista) {
+				int temporada = identificar(partido.getTemporada());
+				int local = identificar(partido.getEquipoLocal());
+				int visitante = identificar(partido.getEquipoVisitante());
+				long clave = (long) temporada << 48 | (long) partido.getJornada() << 32 | (long) local << 16
+						| visitante;
+				byte resultado = (byte) partido.getResultado().ordinal();
+
+				if (aplicar(clave, resultado, sustituir)) {
+					asegurarEspacio(TAMAÑO_PARTIDO);
+					últimoTipo = búfer.position() + 2;
+					int inicio = búfer.position();
+					búfer.putShort((short) (TAMAÑO_PARTIDO - 6)).put((byte) (TIPO_PARTIDO | CONTINÚA)).putLong(clave)
+							.put(resultado);
+					cerrarRegistro(inicio);
+					grabados++;
+				}
+			}
+			if (últimoTipo < 0) {
+				return 0;
+			}
+
+			// Cierre de la grabación: el último registro sigue en el búfer
+			int inicio = últimoTipo - 2;
+			búfer.put(últimoTipo, (byte) (búfer.get(últimoTipo) & ~CONTINÚA));
+			int posición = búfer.position();
+			búfer.position(inicio + 2 + Short.toUnsignedInt(búfer.getShort(inicio)));
+			cerrarRegistro(inicio);
+			búfer.position(posición);
+
+			registrosPartido += grabados;
+			sinForzar += grabados;
+			if (sinForzar >= lote) {
+				forzar();
+			}
+		} catch (IOException e) {
+			descartar();
+			String mensaje = String.format("Error al grabar en registro «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} catch (AccesoBDException e) {
+			descartar(); // Nombres agotados: el estado ya incluye parte de la grabación
+			throw e;
+		}
+		return grabados;
+	}
+
+	/**
+	 * Obtiene el identificador de un nombre, definiéndolo en el registro si es
+	 * nuevo.
+	 * 
+	 * @param nombre el nombre de temporada o equipo
+	 * @return su identificador
+	 * @throws IOException       si no se puede escribir en el registro
+	 * @throws AccesoBDException si se agotan los identificadores o el nombre es
+	 *                           demasiado largo
+	 */
+	private int identificar(String nombre) throws IOException, AccesoBDException {
+		Integer id = identificadores.get(nombre);
+		if (id != null) {
+			return id;
+		}
+
+		byte[] texto = nombre.getBytes(StandardCharsets.UTF_8);
+		if (nombres.size() == MÁXIMO_NOMBRES || texto.length > 0xFFFF - 3) {
+			throw new AccesoBDException(String.format("No se puede registrar el nombre «%s»", nombre));
+		}
+		id = nombres.size();
+		asegurarEspacio(2 + 3 + texto.length + 4);
+		int inicio = búfer.position();
+		búfer.putShort((short) (3 + texto.length)).put((byte) (TIPO_NOMBRE | CONTINÚA)).putShort(id.shortValue())
+				.put(texto);
+		cerrarRegistro(inicio);
+		nombres.add(nombre);
+		identificadores.put(nombre, id);
+		return id;
+	}
+
+	/**
+	 * Añade al búfer el CRC de un registro recién escrito en él.
+	 * 
+	 * @param inicio la posición del registro en el búfer
+	 */
+	private void cerrarRegistro(int inicio) {
+		búfer.limit(búfer.position()).position(inicio + 2);
+		crc.reset();
+		crc.update(búfer);
+		búfer.limit(búfer.capacity());
+		búfer.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * Pasa el búfer al canal si no cabe un registro más.
+	 * 
+	 * @param longitud la longitud del siguiente registro
+	 * @throws IOException si no se puede escribir en el registro
+	 */
+	private void asegurarEspacio(int longitud) throws IOException {
+		if (búfer.remaining() < longitud) {
+			volcar();
+		}
+	}
+
+	/**
+	 * Pasa al canal los registros del búfer.
+	 * 
+	 * @throws IOException si no se puede escribir en el registro
+	 */
+	private void volcar() throws IOException {
+		búfer.flip();
+		while (búfer.hasRemaining()) {
+			canal.write(búfer);
+		}
+		búfer.clear();
+	}
+
+	/**
+	 * Pasa al canal los registros del búfer y fuerza su escritura en el disco.
+	 * 
+	 * @throws IOException si no se puede escribir en el registro
+	 */
+	private void forzar() throws IOException {
+		volcar();
+		canal.force(false);
+		sinForzar = 0;
+	}
+
+	/**
+	 * Aplica al estado en memoria el resultado de un partido.
+	 * 
+	 * @param clave     la clave compacta del partido
+	 * @param resultado el ordinal del resultado
+	 * @param sustituir si se actualiza el resultado de un partido existente
+	 * @return si el partido es nuevo o ha cambiado su resultado
+	 */
+	private boolean aplicar(long clave, byte resultado, boolean sustituir) {
+		int casilla = casilla(clave);
+
+		if (posiciones[casilla] == 0) {
+			if (total == claves.length) {
+				claves = Arrays.copyOf(claves, total * 2);
+				resultados = Arrays.copyOf(resultados, total * 2);
+			}
+			claves[total] = clave;
+			resultados[total] = resultado;
+			posiciones[casilla] = total + 1;
+			cambiados.set(total++);
+			vista = null;
+			if (total * 2 > posiciones.length) {
+				redimensionar();
+			}
+			return true;
+		}
+		int posición = posiciones[casilla] - 1;
+		if (sustituir && resultados[posición] != resultado) {
+			resultados[posición] = resultado;
+			cambiados.set(posición);
+			vista = null;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Busca la casilla de la tabla de posiciones que ocupa un partido o, si no
+	 * está, la casilla libre en la que le corresponde ir.
+	 * 
+	 * @param clave la clave compacta del partido
+	 * @return el índice de la casilla
+	 */
+	private int casilla(long clave) {
+		int máscara = posiciones.length - 1;
+		int casilla = dispersar(clave) & máscara;
+		while (posiciones[casilla] != 0 && claves[posiciones[casilla] - 1] != clave) {
+			casilla = (casilla + 1) & máscara;
+		}
+		return casilla;
+	}
+
+	/**
+	 * Duplica la tabla de posiciones y vuelve a colocar todos los partidos.
+	 */
+	private void redimensionar() {
+		posiciones = new int[posiciones.length * 2];
+		int máscara = posiciones.length - 1;
+		for (int i = 0; i < total; i++) {
+			int casilla = dispersar(claves[i]) & máscara;
+			while (posiciones[casilla] != 0) {
+				casilla = (casilla + 1) & máscara;
+			}
+			posiciones[casilla] = i + 1;
+		}
+	}
+
+	/**
+	 * Mezcla los bits de una clave compacta para repartirla en la tabla de
+	 * posiciones –función de finalización de MurmurHash3–.
+	 * 
+	 * @param clave la clave compacta
+	 * @return el valor de dispersión
+	 */
+	private static int dispersar(long clave) {
+		long h = clave;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	@Override
+	public synchronized int recorrer(FiltroResultados filtro, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) throws AccesoBDException {
+		verificarAbierto();
+		return AlmacenMemoria.entregar(AlmacenMemoria.seleccionar(getVista(), filtro), desplazamiento, límite,
+				receptor);
+	}
+
+	@Override
+	public synchronized int contar(FiltroResultados filtro) throws AccesoBDException {
+		verificarAbierto();
+		int cuenta = 0;
+		for (ElementoPartido1X2 partido : getVista()) {
+			if (filtro.admite(partido)) {
+				cuenta++;
+			}
+		}
+		return cuenta;
+	}
+
+	/**
+	 * Forma, si no lo está ya, la lista de partidos por orden de grabación.
+	 * 
+	 * @return la lista de partidos
+	 * @throws AccesoBDException si algún partido registrado no es válido
+	 */
+	private List<ElementoPartido1X2> getVista() throws AccesoBDException {
+		if (vista == null) {
+			List<ElementoPartido1X2> partidos = new ArrayList<>(total);
+			for (int i = 0; i < total; i++) {
+				partidos.add(partido(i));
+			}
+			vista = partidos;
+		}
+		return vista;
+	}
+
+	/**
+	 * Crea el partido de una posición a partir de su clave compacta.
+	 * 
+	 * @param posición la posición del partido
+	 * @return el partido
+	 * @throws AccesoBDException si los datos registrados no son válidos
+	 */
+	private ElementoPartido1X2 partido(int posición) throws AccesoBDException {
+		long clave = claves[posición];
+		try {
+			return ElementoPartido1X2.of(nombres.get((int) (clave >>> 48)), (int) (clave >>> 32) & 0xFFFF,
+					nombres.get((int) (clave >>> 16) & 0xFFFF), nombres.get((int) clave & 0xFFFF),
+					RESULTADOS[resultados[posición]].toString());
+		} catch (DatoPartido1X2Exception | IndexOutOfBoundsException e) {
+			String mensaje = String.format("Partido %d no válido en «%s»: %s", posición, archivo, e.getMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Compacta el almacén. Primero traslada los partidos nuevos o modificados
+	 * desde el último traslado al almacén de destino y anota en la cabecera la
+	 * posición alcanzada; si el traslado falla, se reintentarán en la siguiente
+	 * compactación. Después, si el registro contiene resultados sustituidos o
+	 * tiene el formato anterior, lo reescribe con un único registro por partido
+	 * y lo cambia por el anterior de forma atómica.
+	 * 
+	 * @return el número de partidos trasladados
+	 * @throws AccesoBDException si se produce alguna incidencia al reescribir o
+	 *                           al trasladar
+	 * @see #CLAVE_DESTINO
+	 */
+	public int compactar() throws AccesoBDException {
+		synchronized (cerrojoCompactación) {
+			int trasladados = 0;
+			AccesoBDException falloTraslado = null;
+
+			try {
+				trasladados = trasladar();
+			} catch (AccesoBDException e) {
+				falloTraslado = e;
+			}
+			synchronized (this) {
+				if (canal != null && (registrosPartido > total || inicioRegistros < TAMAÑO_CABECERA)) {
+					reescribir();
+				}
+			}
+			if (falloTraslado != null) {
+				throw falloTraslado;
+			}
+			return trasladados;
+		}
+	}
+
+	/**
+	 * Traslada al almacén de destino los partidos nuevos o modificados desde el
+	 * último traslado y anota en la cabecera la posición alcanzada. El registro
+	 * se fuerza al disco antes, para que la posición anotada nunca quede por
+	 * delante de lo grabado.
+	 * 
+	 * @return el número de partidos trasladados
+	 * @throws AccesoBDException si se produce alguna incidencia al trasladar o al
+	 *                           anotar la posición
+	 */
+	private int trasladar() throws AccesoBDException {
+		List<ElementoPartido1X2> traslado = new ArrayList<>();
+		BitSet trasladados;
+		long marca;
+		String destino = configuración.getProperty(CLAVE_DESTINO, TIPO_PREDETERMINADO).strip();
+
+		synchronized (this) {
+			verificarAbierto();
+			if (destino.isEmpty() || cambiados.isEmpty()) {
+				return 0;
+			}
+			try {
+				forzar();
+				marca = canal.position();
+			} catch (IOException e) {
+				descartar();
+				String mensaje = String.format("Error al grabar en registro «%s»: %s", archivo,
+						e.getLocalizedMessage());
+				throw new AccesoBDException(mensaje, e);
+			}
+			trasladados = (BitSet) cambiados.clone();
+			cambiados.clear();
+			for (int i = trasladados.nextSetBit(0); i >= 0; i = trasladados.nextSetBit(i + 1)) {
+				traslado.add(partido(i));
+			}
+		}
+
+		Properties configuraciónDestino = new Properties();
+		configuraciónDestino.putAll(configuración);
+		configuraciónDestino.setProperty(CLAVE_TIPO, destino);
+		try (AlmacenPartidos almacén = AlmacenPartidos.of(configuraciónDestino)) {
+			almacén.abrir();
+			almacén.escribir(traslado, true);
+		} catch (AccesoBDException e) {
+			synchronized (this) {
+				cambiados.or(trasladados);
+			}
+			throw e;
+		}
+
+		synchronized (this) {
+			if (canal != null) {
+				anotarTraslado(marca);
+			}
+		}
+		return traslado.size();
+	}
+
+	/**
+	 * Anota en la cabecera, forzándola al disco, la posición hasta la que se han
+	 * trasladado los partidos. En un registro del formato anterior solo se anota
+	 * en memoria, hasta que la compactación lo reescriba.
+	 * 
+	 * @param marca la posición del archivo
+	 * @throws AccesoBDException si no se puede escribir la cabecera
+	 */
+	private void anotarTraslado(long marca) throws AccesoBDException {
+		marcaTraslado = marca;
+		if (inicioRegistros < TAMAÑO_CABECERA) {
+			return;
+		}
+		try {
+			ByteBuffer valor = ByteBuffer.allocate(Long.BYTES).putLong(marca).flip();
+			while (valor.hasRemaining()) {
+				canal.write(valor, POSICIÓN_TRASLADO + valor.position());
+			}
+			canal.force(false);
+		} catch (IOException e) {
+			descartar();
+			String mensaje = String.format("Error al grabar en registro «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Reescribe el registro en un archivo nuevo, con todos los nombres y el
+	 * resultado actual de cada partido como una sola grabación, y lo sustituye
+	 * por el actual. Los partidos aún pendientes de trasladar se repiten en una
+	 * segunda grabación, a partir de la cual queda anotada la posición del
+	 * traslado.
+	 * 
+	 * @throws AccesoBDException si no se puede escribir o sustituir el registro
+	 */
+	private void reescribir() throws AccesoBDException {
+		Path temporal = archivo.resolveSibling(archivo.getFileName() + ".compactando");
+		long antes = registrosPartido;
+
+		try {
+			forzar();
+			canal.close();
+			canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			búfer.putInt(MARCA).putInt(VERSIÓN).putLong(0); // Posición del traslado: se anota al final
+			for (int id = 0; id < nombres.size(); id++) {
+				byte[] texto = nombres.get(id).getBytes(StandardCharsets.UTF_8);
+				asegurarEspacio(2 + 3 + texto.length + 4);
+				int inicio = búfer.position();
+				búfer.putShort((short) (3 + texto.length)).put((byte) (TIPO_NOMBRE | CONTINÚA)).putShort((short) id)
+						.put(texto);
+				cerrarRegistro(inicio);
+			}
+			for (int i = 0; i < total; i++) {
+				asegurarEspacio(TAMAÑO_PARTIDO);
+				int inicio = búfer.position();
+				búfer.putShort((short) (TAMAÑO_PARTIDO - 6))
+						.put(i == total - 1 ? TIPO_PARTIDO : (byte) (TIPO_PARTIDO | CONTINÚA)).putLong(claves[i])
+						.put(resultados[i]);
+				cerrarRegistro(inicio);
+			}
+			long marca = canal.position() + búfer.position();
+			for (int i = cambiados.nextSetBit(0); i >= 0; i = cambiados.nextSetBit(i + 1)) {
+				asegurarEspacio(TAMAÑO_PARTIDO);
+				int inicio = búfer.position();
+				búfer.putShort((short) (TAMAÑO_PARTIDO - 6))
+						.put(cambiados.nextSetBit(i + 1) < 0 ? TIPO_PARTIDO : (byte) (TIPO_PARTIDO | CONTINÚA))
+						.putLong(claves[i]).put(resultados[i]);
+				cerrarRegistro(inicio);
+			}
+			forzar();
+			inicioRegistros = TAMAÑO_CABECERA;
+			anotarTraslado(marca);
+			Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			registrosPartido = total + cambiados.cardinality();
+		} catch (IOException e) {
+			descartar();
+			try {
+				Files.deleteIfExists(temporal);
+			} catch (IOException eBorrado) {
+				e.addSuppressed(eBorrado);
+			}
+			String mensaje = String.format("Error al compactar registro «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		System.err.printf("Registro «%s» compactado: %d → %d partidos%n", archivo, antes, total);
+	}
+
+	/**
+	 * Proporciona el número de registros de partido del archivo, incluidos los
+	 * que han sido sustituidos por otros posteriores.
+	 * 
+	 * @return el número de registros
+	 */
+	public synchronized long getRegistros() {
+		return registrosPartido;
+	}
+
+	/**
+	 * Comprueba que el registro esté abierto.
+	 * 
+	 * @throws AccesoBDException si no lo está
+	 */
+	private void verificarAbierto() throws AccesoBDException {
+		if (canal == null) {
+			throw new AccesoBDException("Registro no abierto");
+		}
+	}
+
+	/**
+	 * Cierra el canal sin grabar lo pendiente y descarta el estado en memoria,
+	 * tras una incidencia.
+	 */
+	private void descartar() {
+		if (canal != null) {
+			try {
+				canal.close();
+			} catch (IOException e) {
+				System.err.printf("Error al cerrar registro «%s»: %s%n", archivo, e.getLocalizedMessage());
+			}
+		}
+		canal = null;
+		vaciar();
+	}
+
+	/**
+	 * Vacía el estado en memoria y el búfer de escritura.
+	 */
+	private void vaciar() {
+		if (compactador != null) {
+			compactador.shutdown();
+			compactador = null;
+		}
+		nombres.clear();
+		identificadores.clear();
+		posiciones = new int[2048];
+		cambiados.clear();
+		inicioRegistros = TAMAÑO_CABECERA;
+		marcaTraslado = TAMAÑO_CABECERA;
+		total = 0;
+		registrosPartido = 0;
+		sinForzar = 0;
+		vista = null;
+		búfer.clear();
+	}
+
+	/**
+	 * Fuerza al disco lo pendiente, cierra el registro y descarta el estado en
+	 * memoria. No compacta ni traslada los partidos pendientes, que siguen
+	 * pendientes al volver a abrirlo.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia al cerrar
+	 */
+	@Override
+	public synchronized void close() throws AccesoBDException {
+		if (canal != null) {
+			try {
+				forzar();
+				canal.close();
+			} catch (IOException e) {
+				String mensaje = String.format("Error al cerrar registro «%s»: %s", archivo, e.getLocalizedMessage());
+				throw new AccesoBDException(mensaje, e);
+			} finally {
+				canal = null;
+				vaciar();
+			}
+		}
+	}
+}
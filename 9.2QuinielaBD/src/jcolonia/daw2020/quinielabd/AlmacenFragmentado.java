@@ -0,0 +1,512 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de resultados repartido en una base de datos SQLite por temporada,
+ * todas en el mismo directorio. Cada partido se graba en la base de datos de su
+ * temporada; las consultas de una temporada solo acceden a la suya, de modo que
+ * su coste no depende del tamaño del histórico, y las demás se reparten en
+ * paralelo entre todas y combinan sus respuestas –mezclando las listas
+ * ordenadas y sumando los recuentos y balances–.
+ * 
+ * <p>
+ * El orden de grabación global es el de las temporadas por su nombre y, dentro
+ * de cada una, el de grabación. Las grabaciones son atómicas dentro de cada
+ * temporada, pero no entre temporadas distintas.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class AlmacenFragmentado implements AlmacenPartidos {
+	/**
+	 * Clave de configuración del directorio de las bases de datos.
+	 */
+	public static final String CLAVE_DIRECTORIO = "almacen.fragmentos.directorio";
+
+	/**
+	 * Directorio predeterminado de las bases de datos.
+	 */
+	public static final String DIRECTORIO_PREDETERMINADO = "temporadas";
+
+	/**
+	 * Prefijo de los nombres de archivo de cada temporada.
+	 */
+	private static final String PREFIJO = "temporada-";
+
+	/**
+	 * Extensión de los nombres de archivo de cada temporada.
+	 */
+	private static final String EXTENSIÓN = ".db";
+
+	/**
+	 * Nombre de archivo de los partidos sin temporada.
+	 */
+	private static final String SIN_TEMPORADA = "sin-temporada";
+
+	/**
+	 * Base de datos de una temporada. Solo la usa un hilo a la vez.
+	 */
+	private static class Fragmento {
+		private final AccesoBD bd;
+
+		private Fragmento(AccesoBD bd) {
+			this.bd = bd;
+		}
+	}
+
+	/**
+	 * Cursor sobre la respuesta de un fragmento durante la mezcla ordenada.
+	 */
+	private static class Cursor {
+		private final int fragmento;
+		private final List<ElementoPartido1X2> partidos;
+		private int posición;
+
+		private Cursor(int fragmento, List<ElementoPartido1X2> partidos) {
+			this.fragmento = fragmento;
+			this.partidos = partidos;
+		}
+
+		private ElementoPartido1X2 actual() {
+			return partidos.get(posición);
+		}
+	}
+
+	/**
+	 * Configuración común, de la que se deriva la de cada fragmento.
+	 */
+	private final Properties configuración;
+
+	/**
+	 * Directorio de las bases de datos.
+	 */
+	private final Path directorio;
+
+	/**
+	 * Fragmentos abiertos, por nombre de archivo.
+	 */
+	private final TreeMap<String, Fragmento> fragmentos = new TreeMap<>();
+
+	/**
+	 * Hilos de las consultas repartidas.
+	 */
+	private ExecutorService hilos;
+
+	/**
+	 * Toma el directorio de las bases de datos de la configuración.
+	 * 
+	 * @param configuración la configuración
+	 * @see #CLAVE_DIRECTORIO
+	 */
+	public AlmacenFragmentado(Properties configuración) {
+		this.configuración = configuración;
+		directorio = Path.of(configuración.getProperty(CLAVE_DIRECTORIO, DIRECTORIO_PREDETERMINADO));
+	}
+
+	/**
+	 * Crea el directorio si no existe y abre las bases de datos de todas las
+	 * temporadas presentes en él.
+	 * 
+	 * @throws AccesoBDException si no se puede crear o leer el directorio o
+	 *                           abrir alguna base de datos
+	 */
+	@Override
+	public synchronized void abrir() throws AccesoBDException {
+		if (hilos != null) {
+			return;
+		}
+
+		try {
+			Files.createDirectories(directorio);
+			try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSIÓN)) {
+				for (Path archivo : archivos) {
+					String nombre = archivo.getFileName().toString();
+					abrirFragmento(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSIÓN.length()));
+				}
+			}
+		} catch (IOException e) {
+			cerrarFragmentos();
+			String mensaje = String.format("Error al leer directorio «%s»: %s", directorio, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		} catch (AccesoBDException e) {
+			cerrarFragmentos();
+			throw e;
+		}
+
+		int númHilos = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+		hilos = Executors.newFixedThreadPool(númHilos, tarea -> {
+			Thread hilo = new Thread(tarea, "Fragmentos " + directorio.getFileName());
+			hilo.setDaemon(true);
+			return hilo;
+		});
+	}
+
+	/**
+	 * Abre, creándola si no existe, la base de datos de un fragmento.
+	 * 
+	 * @param nombre el nombre del fragmento
+	 * @return el fragmento
+	 * @throws AccesoBDException si no se puede abrir
+	 */
+	private Fragmento abrirFragmento(String nombre) throws AccesoBDException {
+		Fragmento fragmento = fragmentos.get(nombre);
+		if (fragmento == null) {
+			Properties propia = new Properties();
+			propia.putAll(configuración);
+			propia.setProperty("jdbc.url", "jdbc:sqlite:" + directorio.resolve(PREFIJO + nombre + EXTENSIÓN));
+			fragmento = new Fragmento(new AccesoBD(propia));
+			fragmento.bd.abrir();
+			fragmentos.put(nombre, fragmento);
+		}
+		return fragmento;
+	}
+
+	/**
+	 * Obtiene el nombre del fragmento de una temporada, apto como nombre de
+	 * archivo. Temporadas distintas pueden compartir fragmento; las consultas
+	 * de cada fragmento filtran igualmente por temporada.
+	 * 
+	 * @param temporada la temporada
+	 * @return el nombre del fragmento
+	 */
+	static String nombreFragmento(String temporada) {
+		if (temporada == null || temporada.isEmpty()) {
+			return SIN_TEMPORADA;
+		}
+		return temporada.replaceAll("[^\\p{Alnum}_-]", "_");
+	}
+
+	/**
+	 * Obtiene la ruta de la base de datos del fragmento de una temporada, donde
+	 * también se archivan las temporadas cerradas.
+	 * 
+	 * @param directorio el directorio de los fragmentos
+	 * @param temporada  la temporada
+	 * @return la ruta correspondiente
+	 * @see MantenimientoBD
+	 */
+	static Path archivoFragmento(Path directorio, String temporada) {
+		return directorio.resolve(PREFIJO + nombreFragmento(temporada) + EXTENSIÓN);
+	}
+
+	@Override
+	public int insertar(ElementoPartido1X2 partido) throws AccesoBDException {
+		Fragmento fragmento;
+		synchronized (this) {
+			verificarAbierto();
+			fragmento = abrirFragmento(nombreFragmento(partido.getTemporada()));
+		}
+		synchronized (fragmento) {
+			return fragmento.bd.insertar(partido);
+		}
+	}
+
+	/**
+	 * Reparte los partidos por temporada y graba en paralelo los de cada una.
+	 * Cada temporada se graba de forma atómica; si alguna falla, las demás
+	 * pueden haberse grabado.
+	 */
+	@Override
+	public int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir) throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+
+		Map<String, List<ElementoPartido1X2>> reparto = new LinkedHashMap<>();
+		for (ElementoPartido1X2 partido : lista) {
+			reparto.computeIfAbsent(nombreFragmento(partido.getTemporada()), nombre -> new ArrayList<>())
+					.add(partido);
+		}
+
+		List<Fragmento> destino = new ArrayList<>();
+		Map<AccesoBD, List<ElementoPartido1X2>> porAcceso = new HashMap<>();
+		synchronized (this) {
+			verificarAbierto();
+			for (Map.Entry<String, List<ElementoPartido1X2>> parte : reparto.entrySet()) {
+				Fragmento fragmento = abrirFragmento(parte.getKey());
+				destino.add(fragmento);
+				porAcceso.put(fragmento.bd, parte.getValue());
+			}
+		}
+
+		int total = 0;
+		for (int afectados : enParalelo(destino, bd -> bd.escribir(porAcceso.get(bd), sustituir))) {
+			total += afectados;
+		}
+		return total;
+	}
+
+	@Override
+	public int recorrer(FiltroResultados filtro, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) throws AccesoBDException {
+		List<Fragmento> destino = seleccionar(filtro);
+		if (destino.size() == 1) {
+			Fragmento fragmento = destino.get(0);
+			synchronized (fragmento) {
+				return fragmento.bd.recorrer(filtro, desplazamiento, límite, receptor);
+			}
+		}
+
+		Comparator<ElementoPartido1X2> comparador = filtro.getOrden().comparador();
+		if (filtro.isDescendente()) {
+			Collections.reverse(destino); // Desempate en sentido inverso
+		}
+		if (comparador == null) {
+			return concatenar(destino, filtro, desplazamiento, límite, receptor);
+		}
+
+		// Cada fragmento aporta sus primeras filas; la mezcla decide cuáles quedan
+		int saltar = Math.max(0, desplazamiento);
+		int necesarias = límite > 0 ? (int) Math.min(Integer.MAX_VALUE, (long) saltar + límite) : 0;
+		List<List<ElementoPartido1X2>> respuestas = enParalelo(destino, bd -> {
+			List<ElementoPartido1X2> partidos = new ArrayList<>();
+			bd.leer(filtro, 0, necesarias, partidos);
+			return partidos;
+		});
+
+		Comparator<ElementoPartido1X2> sentido = filtro.isDescendente() ? comparador.reversed() : comparador;
+		PriorityQueue<Cursor> mezcla = new PriorityQueue<>(Math.max(1, respuestas.size()),
+				Comparator.comparing(Cursor::actual, sentido).thenComparingInt(cursor -> cursor.fragmento));
+		for (int i = 0; i < respuestas.size(); i++) {
+			if (!respuestas.get(i).isEmpty()) {
+				mezcla.add(new Cursor(i, respuestas.get(i)));
+			}
+		}
+
+		int pendientes = límite > 0 ? límite : Integer.MAX_VALUE;
+		int númFilas = 0;
+		while (!mezcla.isEmpty() && pendientes > 0) {
+			Cursor cursor = mezcla.poll();
+			if (saltar > 0) {
+				saltar--;
+			} else {
+				receptor.accept(cursor.actual());
+				pendientes--;
+				númFilas++;
+			}
+			if (++cursor.posición < cursor.partidos.size()) {
+				mezcla.add(cursor);
+			}
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Recorre una página en orden de grabación: cuenta en paralelo las filas de
+	 * cada fragmento y solo consulta aquellos que caen dentro de la página.
+	 * 
+	 * @param destino        los fragmentos, en el orden de recorrido
+	 * @param filtro         los criterios de selección
+	 * @param desplazamiento el número de resultados a saltar
+	 * @param límite         el número máximo de resultados; cero o negativo para
+	 *                       todos
+	 * @param receptor       el destino de cada partido leído
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private int concatenar(List<Fragmento> destino, FiltroResultados filtro, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) throws AccesoBDException {
+		List<Integer> recuentos = enParalelo(destino, bd -> bd.contar(filtro));
+		int saltar = Math.max(0, desplazamiento);
+		int pendientes = límite > 0 ? límite : Integer.MAX_VALUE;
+		int númFilas = 0;
+
+		for (int i = 0; i < destino.size() && pendientes > 0; i++) {
+			if (saltar >= recuentos.get(i)) {
+				saltar -= recuentos.get(i);
+				continue;
+			}
+			Fragmento fragmento = destino.get(i);
+			int leídas;
+			synchronized (fragmento) {
+				leídas = fragmento.bd.recorrer(filtro, saltar,
+						pendientes == Integer.MAX_VALUE ? 0 : pendientes, receptor);
+			}
+			saltar = 0;
+			pendientes -= leídas;
+			númFilas += leídas;
+		}
+		return númFilas;
+	}
+
+	@Override
+	public int contar(FiltroResultados filtro) throws AccesoBDException {
+		int total = 0;
+		for (int recuento : enParalelo(seleccionar(filtro), bd -> bd.contar(filtro))) {
+			total += recuento;
+		}
+		return total;
+	}
+
+	/**
+	 * Calcula la clasificación de los resultados que cumplen los criterios de
+	 * calendario de un filtro, sumando los balances de cada equipo en todas las
+	 * temporadas afectadas.
+	 * 
+	 * @param filtro los criterios de selección
+	 * @return los balances, del primer al último clasificado
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see AccesoBD#clasificación(FiltroResultados)
+	 */
+	public List<BalanceEquipo> clasificación(FiltroResultados filtro) throws AccesoBDException {
+		List<List<BalanceEquipo>> parciales = enParalelo(seleccionar(filtro), bd -> bd.clasificación(filtro));
+		if (parciales.size() == 1) {
+			return parciales.get(0);
+		}
+
+		Map<String, int[]> sumas = new HashMap<>();
+		for (List<BalanceEquipo> parcial : parciales) {
+			for (BalanceEquipo balance : parcial) {
+				int[] suma = sumas.computeIfAbsent(balance.getEquipo(), equipo -> new int[8]);
+				suma[0] += balance.getJugados();
+				suma[1] += balance.getGanados();
+				suma[2] += balance.getEmpatados();
+				suma[3] += balance.getPerdidos();
+				suma[4] += balance.getJugadosLocal();
+				suma[5] += balance.getGanadosLocal();
+				suma[6] += balance.getEmpatadosLocal();
+				suma[7] += balance.getPerdidosLocal();
+			}
+		}
+
+		List<BalanceEquipo> balances = new ArrayList<>(sumas.size());
+		sumas.forEach((equipo, s) -> balances
+				.add(new BalanceEquipo(equipo, s[0], s[1], s[2], s[3], s[4], s[5], s[6], s[7])));
+		balances.sort(Comparator.comparingInt(BalanceEquipo::getPuntos).reversed()
+				.thenComparing(Comparator.comparingInt(BalanceEquipo::getGanados).reversed())
+				.thenComparing(BalanceEquipo::getEquipo));
+		return balances;
+	}
+
+	/**
+	 * Elige los fragmentos a consultar: solo el de la temporada si el filtro la
+	 * indica y todos en otro caso, por orden de nombre.
+	 * 
+	 * @param filtro los criterios de selección
+	 * @return los fragmentos, posiblemente ninguno
+	 * @throws AccesoBDException si el almacén no está abierto
+	 */
+	private synchronized List<Fragmento> seleccionar(FiltroResultados filtro) throws AccesoBDException {
+		verificarAbierto();
+		if (filtro.getTemporada() == null) {
+			return new ArrayList<>(fragmentos.values());
+		}
+		Fragmento fragmento = fragmentos.get(nombreFragmento(filtro.getTemporada()));
+		return fragmento == null ? new ArrayList<>() : new ArrayList<>(List.of(fragmento));
+	}
+
+	/**
+	 * Realiza una operación en cada fragmento, en paralelo salvo que solo haya
+	 * uno, y reúne los resultados en el mismo orden.
+	 * 
+	 * @param <T>     el tipo del resultado
+	 * @param destino los fragmentos
+	 * @param tarea   la operación
+	 * @return los resultados de cada fragmento
+	 * @throws AccesoBDException si falla la operación en algún fragmento
+	 */
+	private <T> List<T> enParalelo(List<Fragmento> destino, AccesoBDConcurrente.Tarea<T> tarea)
+			throws AccesoBDException {
+		List<T> resultados = new ArrayList<>(destino.size());
+		if (destino.size() == 1) {
+			Fragmento fragmento = destino.get(0);
+			synchronized (fragmento) {
+				resultados.add(tarea.ejecutar(fragmento.bd));
+			}
+			return resultados;
+		}
+
+		List<Future<T>> pendientes = new ArrayList<>(destino.size());
+		for (Fragmento fragmento : destino) {
+			pendientes.add(hilos.submit(() -> {
+				synchronized (fragmento) {
+					return tarea.ejecutar(fragmento.bd);
+				}
+			}));
+		}
+
+		AccesoBDException incidencia = null;
+		for (Future<T> pendiente : pendientes) {
+			try {
+				resultados.add(pendiente.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AccesoBDException("Espera interrumpida", e);
+			} catch (ExecutionException e) {
+				if (incidencia == null) {
+					incidencia = e.getCause() instanceof AccesoBDException ? (AccesoBDException) e.getCause()
+							: new AccesoBDException(e.getCause().getLocalizedMessage(), e.getCause());
+				}
+			}
+		}
+		if (incidencia != null) {
+			throw incidencia;
+		}
+		return resultados;
+	}
+
+	/**
+	 * Comprueba que el almacén esté abierto.
+	 * 
+	 * @throws AccesoBDException si no lo está
+	 */
+	private void verificarAbierto() throws AccesoBDException {
+		if (hilos == null) {
+			throw new AccesoBDException("Almacén no abierto");
+		}
+	}
+
+	/**
+	 * Cierra las bases de datos de todos los fragmentos, aunque falle el cierre
+	 * de alguno.
+	 * 
+	 * @return la primera incidencia, o nula si no hay ninguna
+	 */
+	private AccesoBDException cerrarFragmentos() {
+		AccesoBDException incidencia = null;
+		for (Fragmento fragmento : fragmentos.values()) {
+			try {
+				fragmento.bd.close();
+			} catch (AccesoBDException e) {
+				if (incidencia == null) {
+					incidencia = e;
+				}
+			}
+		}
+		fragmentos.clear();
+		return incidencia;
+	}
+
+	@Override
+	public synchronized void close() throws AccesoBDException {
+		if (hilos != null) {
+			hilos.shutdown();
+			hilos = null;
+		}
+		AccesoBDException incidencia = cerrarFragmentos();
+		if (incidencia != null) {
+			throw incidencia;
+		}
+	}
+}
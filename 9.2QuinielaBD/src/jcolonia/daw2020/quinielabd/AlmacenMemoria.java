@@ -0,0 +1,169 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de resultados solo en memoria, sin persistencia. Guarda los partidos
+ * por orden de grabación junto con un índice de su clave natural; las
+ * consultas recorren la lista completa. Pensado para pruebas y para servir de
+ * índice a otros almacenes.
+ * 
+ * <p>
+ * Es seguro para hilos: todas las operaciones se sincronizan sobre el propio
+ * almacén.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class AlmacenMemoria implements AlmacenPartidos {
+	/**
+	 * Partidos por orden de grabación.
+	 */
+	private final List<ElementoPartido1X2> partidos = new ArrayList<>();
+
+	/**
+	 * Posición de cada partido en la lista, por clave natural.
+	 */
+	private final Map<String, Integer> posiciones = new HashMap<>();
+
+	/**
+	 * No requiere preparación.
+	 */
+	@Override
+	public void abrir() {
+	}
+
+	@Override
+	public synchronized int insertar(ElementoPartido1X2 partido) {
+		return grabar(partido, true);
+	}
+
+	@Override
+	public synchronized int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir)
+			throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+
+		int númFilas = 0;
+		for (ElementoPartido1X2 partido : lista) {
+			númFilas += grabar(partido, sustituir);
+		}
+		return númFilas;
+	}
+
+	/**
+	 * Graba un partido nuevo al final o actualiza uno existente.
+	 * 
+	 * @param partido   el resultado a grabar
+	 * @param sustituir si se actualiza el resultado de un partido existente
+	 * @return uno si el partido es nuevo o ha cambiado su resultado, cero en otro
+	 *         caso
+	 */
+	synchronized int grabar(ElementoPartido1X2 partido, boolean sustituir) {
+		String clave = clave(partido);
+		Integer posición = posiciones.get(clave);
+
+		if (posición == null) {
+			posiciones.put(clave, partidos.size());
+			partidos.add(partido);
+			return 1;
+		}
+		if (sustituir && partidos.get(posición).getResultado() != partido.getResultado()) {
+			partidos.set(posición, partido);
+			return 1;
+		}
+		return 0;
+	}
+
+	@Override
+	public synchronized int recorrer(FiltroResultados filtro, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) {
+		return entregar(seleccionar(partidos, filtro), desplazamiento, límite, receptor);
+	}
+
+	@Override
+	public synchronized int contar(FiltroResultados filtro) {
+		int total = 0;
+		for (ElementoPartido1X2 partido : partidos) {
+			if (filtro.admite(partido)) {
+				total++;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Selecciona los partidos que cumplen un filtro, en el orden indicado por el
+	 * propio filtro. Los empates se resuelven por orden de grabación, en el mismo
+	 * sentido que la ordenación.
+	 * 
+	 * @param partidos los partidos por orden de grabación
+	 * @param filtro   los criterios de selección y ordenación
+	 * @return los partidos seleccionados
+	 */
+	static List<ElementoPartido1X2> seleccionar(List<ElementoPartido1X2> partidos, FiltroResultados filtro) {
+		List<ElementoPartido1X2> selección = new ArrayList<>();
+
+		for (int i = 0; i < partidos.size(); i++) {
+			ElementoPartido1X2 partido = partidos.get(filtro.isDescendente() ? partidos.size() - 1 - i : i);
+			if (filtro.admite(partido)) {
+				selección.add(partido);
+			}
+		}
+
+		Comparator<ElementoPartido1X2> comparador = filtro.getOrden().comparador();
+		if (comparador != null) { // Ordenación estable: conserva el desempate
+			selección.sort(filtro.isDescendente() ? comparador.reversed() : comparador);
+		}
+		return selección;
+	}
+
+	/**
+	 * Entrega una página de una selección de partidos.
+	 * 
+	 * @param selección      los partidos seleccionados, ya ordenados
+	 * @param desplazamiento el número de partidos a saltar
+	 * @param límite         el número máximo de partidos; cero o negativo para
+	 *                       todos
+	 * @param receptor       el destino de cada partido
+	 * @return el número de partidos entregados
+	 */
+	static int entregar(List<ElementoPartido1X2> selección, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) {
+		int desde = Math.min(selección.size(), Math.max(0, desplazamiento));
+		int hasta = límite > 0 ? (int) Math.min(selección.size(), (long) desde + límite) : selección.size();
+
+		for (int i = desde; i < hasta; i++) {
+			receptor.accept(selección.get(i));
+		}
+		return hasta - desde;
+	}
+
+	/**
+	 * Compone la clave natural de un partido.
+	 * 
+	 * @param partido el partido
+	 * @return el texto de la clave
+	 */
+	static String clave(ElementoPartido1X2 partido) {
+		return String.join("\u0000", partido.getTemporada(), Integer.toString(partido.getJornada()),
+				partido.getEquipoLocal(), partido.getEquipoVisitante());
+	}
+
+	/**
+	 * Descarta todos los partidos.
+	 */
+	@Override
+	public synchronized void close() {
+		partidos.clear();
+		posiciones.clear();
+	}
+}
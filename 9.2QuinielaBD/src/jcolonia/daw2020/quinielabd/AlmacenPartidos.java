@@ -0,0 +1,178 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de {@link ElementoPartido1X2 resultados de quiniela tipo 1-X-2},
+ * independiente del mecanismo de almacenamiento. Todos los almacenes
+ * identifican cada partido por su clave natural –temporada, jornada y equipos–,
+ * de modo que volver a grabar un partido no lo repite, y conservan el orden de
+ * grabación.
+ * 
+ * <p>
+ * El almacén se elige en la configuración mediante la clave
+ * {@value #CLAVE_TIPO}:
+ * </p>
+ * <ul>
+ * <li><code>sqlite</code> –predeterminado–: base de datos SQLite,
+ * {@link AccesoBD}.</li>
+ * <li><code>memoria</code>: solo en memoria, {@link AlmacenMemoria}.</li>
+ * <li><code>registro</code>: archivo de registro de solo adición,
+ * {@link AlmacenRegistro}.</li>
+ * <li><code>binario</code>: registro binario de solo adición con compactación
+ * hacia otro almacén, {@link AlmacenBinario}.</li>
+ * <li><code>fragmentos</code>: una base de datos SQLite por temporada,
+ * {@link AlmacenFragmentado}.</li>
+ * </ul>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public interface AlmacenPartidos extends AutoCloseable {
+	/**
+	 * Clave de configuración del tipo de almacén.
+	 */
+	String CLAVE_TIPO = "almacen.tipo";
+
+	/**
+	 * Tipo de almacén predeterminado.
+	 */
+	String TIPO_PREDETERMINADO = "sqlite";
+
+	/**
+	 * Crea el almacén indicado en una configuración, sin abrirlo.
+	 * 
+	 * @param configuración la configuración
+	 * @return el almacén creado
+	 * @throws AccesoBDException si el tipo de almacén no existe
+	 * @see #CLAVE_TIPO
+	 */
+	static AlmacenPartidos of(Properties configuración) throws AccesoBDException {
+		String tipo = configuración.getProperty(CLAVE_TIPO, TIPO_PREDETERMINADO).strip();
+
+		switch (tipo) {
+		case "sqlite":
+			return new AccesoBD(configuración);
+		case "memoria":
+			return new AlmacenMemoria();
+		case "registro":
+			return new AlmacenRegistro(configuración);
+		case "binario":
+			return new AlmacenBinario(configuración);
+		case "fragmentos":
+			return new AlmacenFragmentado(configuración);
+		default:
+			throw new AccesoBDException(String.format("Tipo de almacén desconocido: «%s»", tipo));
+		}
+	}
+
+	/**
+	 * Prepara el almacén para su uso, creándolo si no existe.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	void abrir() throws AccesoBDException;
+
+	/**
+	 * Graba un resultado o, si el partido ya existe, actualiza su resultado.
+	 * 
+	 * @param partido el resultado a grabar
+	 * @return el número de partidos afectados –cero si ya existía con el mismo
+	 *         resultado, uno en otro caso–
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	int insertar(ElementoPartido1X2 partido) throws AccesoBDException;
+
+	/**
+	 * Graba una colección de resultados. Los partidos que ya existan se
+	 * actualizan o se conservan según se indique.
+	 * 
+	 * <p>
+	 * La atomicidad depende del almacén: {@link AccesoBD}, {@link AlmacenMemoria},
+	 * {@link AlmacenRegistro} y {@link AlmacenBinario} graban todos los partidos o,
+	 * si se produce alguna incidencia, ninguno; {@link AlmacenFragmentado} solo lo
+	 * garantiza dentro de cada temporada, de modo que ante una incidencia pueden
+	 * haberse grabado los partidos de otras temporadas. Como volver a grabar un
+	 * partido no lo repite, basta con repetir la grabación completa.
+	 * </p>
+	 * 
+	 * @param lista     los resultados a grabar
+	 * @param sustituir si se actualiza el resultado de los partidos existentes o
+	 *                  se conservan sin cambios
+	 * @return el número de partidos afectados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir) throws AccesoBDException;
+
+	/**
+	 * Recorre una página de los resultados que cumplen un filtro, en el orden que
+	 * indique el propio filtro, entregando cada partido según se lee.
+	 * 
+	 * @param filtro         los criterios de selección y ordenación
+	 * @param desplazamiento el número de resultados a saltar
+	 * @param límite         el número máximo de resultados; cero o negativo para
+	 *                       todos
+	 * @param receptor       el destino de cada partido leído
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	int recorrer(FiltroResultados filtro, int desplazamiento, int límite, Consumer<ElementoPartido1X2> receptor)
+			throws AccesoBDException;
+
+	/**
+	 * Cuenta los resultados que cumplen un filtro.
+	 * 
+	 * @param filtro los criterios de selección
+	 * @return el número de resultados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	int contar(FiltroResultados filtro) throws AccesoBDException;
+
+	/**
+	 * Lee una página de los resultados que cumplen un filtro. Los partidos leídos
+	 * se añaden a la lista facilitada.
+	 * 
+	 * @param filtro         los criterios de selección y ordenación
+	 * @param desplazamiento el número de resultados a saltar
+	 * @param límite         el número máximo de resultados; cero o negativo para
+	 *                       todos
+	 * @param lista          la lista en la que añadir los resultados
+	 * @return el número de resultados leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	default int leer(FiltroResultados filtro, int desplazamiento, int límite, List<ElementoPartido1X2> lista)
+			throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+		return recorrer(filtro, desplazamiento, límite, lista::add);
+	}
+
+	/**
+	 * Lee todos los resultados en orden de grabación. En caso de que la lista no
+	 * esté vacía se borrará su contenido.
+	 * 
+	 * @param lista una lista de resultados vacía
+	 * @return el número de resultados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	default int leer(Vector<ElementoPartido1X2> lista) throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+		lista.clear();
+		return recorrer(new FiltroResultados(), 0, 0, lista::add);
+	}
+
+	/**
+	 * Cierra el almacén, grabando antes lo pendiente.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	@Override
+	void close() throws AccesoBDException;
+}
@@ -0,0 +1,398 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Almacén de resultados en un archivo de registro de solo adición: cada partido
+ * nuevo o modificado se añade al final como una línea de texto y nunca se
+ * reescribe lo anterior. Al abrirlo se repasa el registro completo para
+ * reconstruir en memoria el estado actual –la última línea de cada partido
+ * prevalece–, sobre el que se resuelven las consultas.
+ * 
+ * <p>
+ * Cada línea contiene temporada, jornada, equipo local, equipo visitante y
+ * resultado separados por tabuladores. Los partidos de cada grabación van
+ * precedidos de una línea de cabecera, «#», con su número de líneas y la suma
+ * de control CRC-32 de estas. Cada grabación se fuerza al disco antes de
+ * volver. Al abrir, una grabación interrumpida –con menos líneas de las
+ * anunciadas o con la última a medias– se elimina del final completa, de modo
+ * que nunca se recupera solo una parte. Las líneas sin cabecera de registros
+ * anteriores se admiten una a una.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class AlmacenRegistro implements AlmacenPartidos {
+	/**
+	 * Clave de configuración de la ruta del archivo de registro.
+	 */
+	public static final String CLAVE_ARCHIVO = "almacen.registro.archivo";
+
+	/**
+	 * Ruta predeterminada del archivo de registro.
+	 */
+	public static final String ARCHIVO_PREDETERMINADO = "quiniela.log";
+
+	/**
+	 * Ruta del archivo de registro.
+	 */
+	private final Path archivo;
+
+	/**
+	 * Estado actual de los partidos, reconstruido desde el registro.
+	 */
+	private final AlmacenMemoria estado = new AlmacenMemoria();
+
+	/**
+	 * Canal de adición al registro, abierto con {@link #abrir()}.
+	 */
+	private FileChannel canal;
+
+	/**
+	 * Prefijo de las líneas de cabecera de cada grabación.
+	 */
+	private static final char CABECERA = '#';
+
+	/**
+	 * Toma la ruta del registro de la configuración.
+	 * 
+	 * @param configuración la configuración
+	 * @see #CLAVE_ARCHIVO
+	 */
+	public AlmacenRegistro(Properties configuración) {
+		archivo = Path.of(configuración.getProperty(CLAVE_ARCHIVO, ARCHIVO_PREDETERMINADO));
+	}
+
+	/**
+	 * Reconstruye el estado desde el registro, si existe, y lo abre para añadir.
+	 * 
+	 * @throws AccesoBDException si no se puede leer o abrir el registro
+	 */
+	@Override
+	public synchronized void abrir() throws AccesoBDException {
+		if (canal != null) {
+			return;
+		}
+
+		try {
+			reconstruir();
+			canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			String mensaje = String.format("Error al abrir registro «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Vuelve a leer el registro completo y reconstruye el estado. Cada grabación
+	 * se aplica solo si está completa y su suma de control coincide; si al final
+	 * queda una interrumpida, se recorta el registro hasta el final de la última
+	 * completa para que las siguientes no se le añadan.
+	 * 
+	 * @throws IOException si no se puede leer o recortar el registro
+	 */
+	private void reconstruir() throws IOException {
+		estado.close();
+		if (!Files.exists(archivo)) {
+			return;
+		}
+
+		List<ElementoPartido1X2> grabación = new ArrayList<>();
+		CRC32 suma = new CRC32();
+		long sumaEsperada = 0;
+		int pendientes = 0;
+		long posición = 0;
+		long válido = 0;
+		int númLínea = 0;
+		ByteArrayOutputStream línea = new ByteArrayOutputStream(128);
+
+		try (InputStream entrada = Files.newInputStream(archivo)) {
+			byte[] bloque = new byte[65536];
+			int leídos;
+			int inicio = 0;
+			int fin = 0;
+			while (true) {
+				if (fin == inicio) {
+					if ((leídos = entrada.read(bloque)) < 0) {
+						break;
+					}
+					inicio = 0;
+					fin = leídos;
+					continue;
+				}
+				int salto = inicio;
+				while (salto < fin && bloque[salto] != '\n') {
+					salto++;
+				}
+				línea.write(bloque, inicio, Math.min(salto + 1, fin) - inicio);
+				posición += Math.min(salto + 1, fin) - inicio;
+				inicio = Math.min(salto + 1, fin);
+				if (salto == fin) { // Línea partida entre bloques
+					continue;
+				}
+				númLínea++;
+				byte[] octetos = línea.toByteArray();
+				String texto = new String(octetos, 0, octetos.length - 1, StandardCharsets.UTF_8);
+				long[] cabecera;
+
+				if (pendientes > 0) {
+					suma.update(octetos);
+					leerLínea(texto, númLínea, grabación);
+					if (--pendientes == 0) {
+						if (suma.getValue() == sumaEsperada) {
+							for (ElementoPartido1X2 partido : grabación) {
+								estado.grabar(partido, true);
+							}
+						} else {
+							System.err.printf("Grabación descartada en la línea %d de «%s»: suma de control errónea%n",
+									númLínea, archivo);
+						}
+						válido = posición;
+					}
+				} else if ((cabecera = leerCabecera(texto)) != null) {
+					pendientes = (int) cabecera[0];
+					sumaEsperada = cabecera[1];
+					suma.reset();
+					grabación.clear();
+					if (pendientes == 0) {
+						válido = posición;
+					}
+				} else { // Línea suelta de un registro anterior
+					grabación.clear();
+					leerLínea(texto, númLínea, grabación);
+					for (ElementoPartido1X2 partido : grabación) {
+						estado.grabar(partido, true);
+					}
+					válido = posición;
+				}
+				línea.reset();
+			}
+		}
+
+		if (válido < posición) {
+			System.err.printf("Eliminada grabación incompleta al final de «%s»%n", archivo);
+			try (FileChannel recorte = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+				recorte.truncate(válido);
+				recorte.force(false);
+			}
+		}
+	}
+
+	@Override
+	public synchronized int insertar(ElementoPartido1X2 partido) throws AccesoBDException {
+		return escribir(List.of(partido), true);
+	}
+
+	/**
+	 * Añade al registro, con una única escritura forzada al disco, los partidos
+	 * que sean nuevos o cambien, precedidos de su cabecera. Si la escritura falla
+	 * el registro queda cerrado y hay que volver a abrirlo, lo que descarta la
+	 * grabación que hubiera quedado a medias y reconstruye el estado solo con lo
+	 * grabado.
+	 */
+	@Override
+	public synchronized int escribir(Collection<ElementoPartido1X2> lista, boolean sustituir)
+			throws AccesoBDException {
+		if (lista == null) {
+			throw new AccesoBDException("Lista nula");
+		}
+		verificarAbierto();
+
+		List<ElementoPartido1X2> grabados = new ArrayList<>();
+		for (ElementoPartido1X2 partido : lista) {
+			if (estado.grabar(partido, sustituir) > 0) {
+				grabados.add(partido);
+			}
+		}
+		if (grabados.isEmpty()) {
+			return 0;
+		}
+
+		StringBuilder líneas = new StringBuilder(64 * grabados.size());
+		for (ElementoPartido1X2 partido : grabados) {
+			líneas.append(formarLínea(partido));
+		}
+		byte[] contenido = líneas.toString().getBytes(StandardCharsets.UTF_8);
+		CRC32 suma = new CRC32();
+		suma.update(contenido);
+		byte[] cabecera = String.format("%c%d\t%08x\n", CABECERA, grabados.size(), suma.getValue())
+				.getBytes(StandardCharsets.UTF_8);
+
+		try {
+			ByteBuffer bloque = ByteBuffer.allocate(cabecera.length + contenido.length);
+			bloque.put(cabecera).put(contenido).flip();
+			while (bloque.hasRemaining()) {
+				canal.write(bloque);
+			}
+			canal.force(false);
+		} catch (IOException e) {
+			try {
+				canal.close();
+			} catch (IOException eCierre) {
+				e.addSuppressed(eCierre);
+			}
+			canal = null;
+			estado.close();
+			String mensaje = String.format("Error al grabar en registro «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		return grabados.size();
+	}
+
+	@Override
+	public synchronized int recorrer(FiltroResultados filtro, int desplazamiento, int límite,
+			Consumer<ElementoPartido1X2> receptor) throws AccesoBDException {
+		verificarAbierto();
+		return estado.recorrer(filtro, desplazamiento, límite, receptor);
+	}
+
+	@Override
+	public synchronized int contar(FiltroResultados filtro) throws AccesoBDException {
+		verificarAbierto();
+		return estado.contar(filtro);
+	}
+
+	/**
+	 * Comprueba que el registro esté abierto.
+	 * 
+	 * @throws AccesoBDException si no lo está
+	 */
+	private void verificarAbierto() throws AccesoBDException {
+		if (canal == null) {
+			throw new AccesoBDException("Registro no abierto");
+		}
+	}
+
+	/**
+	 * Compone la línea de registro de un partido.
+	 * 
+	 * @param partido el partido
+	 * @return la línea, terminada en salto de línea
+	 */
+	private static String formarLínea(ElementoPartido1X2 partido) {
+		return String.join("\t", escapar(partido.getTemporada()), Integer.toString(partido.getJornada()),
+				escapar(partido.getEquipoLocal()), escapar(partido.getEquipoVisitante()),
+				partido.getResultado().toString()) + "\n";
+	}
+
+	/**
+	 * Interpreta una línea de cabecera de grabación.
+	 * 
+	 * @param línea la línea, sin salto de línea
+	 * @return el número de líneas y la suma de control, o nulo si la línea no es
+	 *         una cabecera válida
+	 */
+	private static long[] leerCabecera(String línea) {
+		int separador = línea.indexOf('\t');
+		if (línea.isEmpty() || línea.charAt(0) != CABECERA || separador < 2) {
+			return null;
+		}
+		try {
+			long líneas = Long.parseLong(línea.substring(1, separador));
+			long suma = Long.parseLong(línea.substring(separador + 1), 16);
+			return líneas >= 0 && líneas <= Integer.MAX_VALUE ? new long[] { líneas, suma } : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Añade a una grabación el partido de una línea de registro, o informa de
+	 * que se descarta si no es válida.
+	 * 
+	 * @param línea     la línea, sin salto de línea
+	 * @param númLínea  el número de línea, para el aviso
+	 * @param grabación los partidos de la grabación en curso
+	 */
+	private void leerLínea(String línea, int númLínea, List<ElementoPartido1X2> grabación) {
+		try {
+			grabación.add(leerLínea(línea));
+		} catch (DatoPartido1X2Exception | RuntimeException e) {
+			System.err.printf("Línea %d de «%s» descartada: %s%n", númLínea, archivo, e.getMessage());
+		}
+	}
+
+	/**
+	 * Crea un partido a partir de una línea de registro.
+	 * 
+	 * @param línea la línea, sin salto de línea
+	 * @return el partido
+	 * @throws DatoPartido1X2Exception si la línea no está completa o sus datos no
+	 *                                 son válidos
+	 */
+	private static ElementoPartido1X2 leerLínea(String línea) throws DatoPartido1X2Exception {
+		String[] campos = línea.split("\t", -1);
+		if (campos.length != 5) {
+			throw new DatoPartido1X2Exception("Línea incompleta");
+		}
+		return ElementoPartido1X2.of(desescapar(campos[0]), Integer.parseInt(campos[1]), desescapar(campos[2]),
+				desescapar(campos[3]), campos[4]);
+	}
+
+	/**
+	 * Protege en un texto los caracteres separadores del registro y el prefijo de
+	 * las cabeceras.
+	 * 
+	 * @param texto el texto original
+	 * @return el texto protegido
+	 */
+	private static String escapar(String texto) {
+		return texto.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r")
+				.replace("#", "\\#");
+	}
+
+	/**
+	 * Recupera un texto protegido con {@link #escapar(String)}.
+	 * 
+	 * @param texto el texto protegido
+	 * @return el texto original
+	 */
+	private static String desescapar(String texto) {
+		StringBuilder original = new StringBuilder(texto.length());
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			if (c == '\\' && i + 1 < texto.length()) {
+				c = texto.charAt(++i);
+				c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+			}
+			original.append(c);
+		}
+		return original.toString();
+	}
+
+	/**
+	 * Cierra el registro y descarta el estado en memoria.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia al cerrar
+	 */
+	@Override
+	public synchronized void close() throws AccesoBDException {
+		if (canal != null) {
+			try {
+				canal.close();
+			} catch (IOException e) {
+				String mensaje = String.format("Error al cerrar registro «%s»: %s", archivo, e.getLocalizedMessage());
+				throw new AccesoBDException(mensaje, e);
+			} finally {
+				canal = null;
+				estado.close();
+			}
+		}
+	}
+}
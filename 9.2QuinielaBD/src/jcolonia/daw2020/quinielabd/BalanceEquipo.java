@@ -0,0 +1,181 @@
+package jcolonia.daw2020.quinielabd;
+
+/**
+ * Balance de resultados de un equipo: partidos jugados, ganados, empatados y
+ * perdidos, en total y como local. Los datos de visitante se obtienen por
+ * diferencia. Se usa tanto para las filas de la clasificación como para las
+ * estadísticas de un equipo concreto.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class BalanceEquipo {
+	/**
+	 * Puntos por partido ganado.
+	 */
+	public static final int PUNTOS_VICTORIA = 3;
+
+	/**
+	 * Puntos por partido empatado.
+	 */
+	public static final int PUNTOS_EMPATE = 1;
+
+	/**
+	 * Nombre del equipo.
+	 */
+	private final String equipo;
+
+	/**
+	 * Partidos jugados, ganados, empatados y perdidos en total.
+	 */
+	private final int jugados, ganados, empatados, perdidos;
+
+	/**
+	 * Partidos jugados, ganados, empatados y perdidos como local.
+	 */
+	private final int jugadosLocal, ganadosLocal, empatadosLocal, perdidosLocal;
+
+	/**
+	 * Crea un balance a partir de sus recuentos.
+	 * 
+	 * @param equipo         el nombre del equipo
+	 * @param jugados        los partidos jugados
+	 * @param ganados        los partidos ganados
+	 * @param empatados      los partidos empatados
+	 * @param perdidos       los partidos perdidos
+	 * @param jugadosLocal   los partidos jugados como local
+	 * @param ganadosLocal   los partidos ganados como local
+	 * @param empatadosLocal los partidos empatados como local
+	 * @param perdidosLocal  los partidos perdidos como local
+	 */
+	public BalanceEquipo(String equipo, int jugados, int ganados, int empatados, int perdidos, int jugadosLocal,
+			int ganadosLocal, int empatadosLocal, int perdidosLocal) {
+		this.equipo = equipo;
+		this.jugados = jugados;
+		this.ganados = ganados;
+		this.empatados = empatados;
+		this.perdidos = perdidos;
+		this.jugadosLocal = jugadosLocal;
+		this.ganadosLocal = ganadosLocal;
+		this.empatadosLocal = empatadosLocal;
+		this.perdidosLocal = perdidosLocal;
+	}
+
+	/**
+	 * Proporciona el nombre del equipo.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public String getEquipo() {
+		return equipo;
+	}
+
+	/**
+	 * Proporciona los partidos jugados.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getJugados() {
+		return jugados;
+	}
+
+	/**
+	 * Proporciona los partidos ganados.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getGanados() {
+		return ganados;
+	}
+
+	/**
+	 * Proporciona los partidos empatados.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getEmpatados() {
+		return empatados;
+	}
+
+	/**
+	 * Proporciona los partidos perdidos.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getPerdidos() {
+		return perdidos;
+	}
+
+	/**
+	 * Proporciona los puntos conseguidos.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getPuntos() {
+		return PUNTOS_VICTORIA * ganados + PUNTOS_EMPATE * empatados;
+	}
+
+	/**
+	 * Proporciona los partidos jugados como local.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getJugadosLocal() {
+		return jugadosLocal;
+	}
+
+	/**
+	 * Proporciona los partidos ganados como local.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getGanadosLocal() {
+		return ganadosLocal;
+	}
+
+	/**
+	 * Proporciona los partidos empatados como local.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getEmpatadosLocal() {
+		return empatadosLocal;
+	}
+
+	/**
+	 * Proporciona los partidos perdidos como local.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getPerdidosLocal() {
+		return perdidosLocal;
+	}
+
+	/**
+	 * Proporciona una representación en formato JSON del balance, con el
+	 * desglose como local y como visitante.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	public String toStringJSON() {
+		return String.format(
+				"{\"equipo\":%s,\"puntos\":%d,\"jugados\":%d,\"ganados\":%d,\"empatados\":%d,\"perdidos\":%d,"
+						+ "\"local\":{\"jugados\":%d,\"ganados\":%d,\"empatados\":%d,\"perdidos\":%d},"
+						+ "\"visitante\":{\"jugados\":%d,\"ganados\":%d,\"empatados\":%d,\"perdidos\":%d}}",
+				ElementoPartido1X2.textoJSON(equipo), getPuntos(), jugados, ganados, empatados, perdidos,
+				jugadosLocal, ganadosLocal, empatadosLocal, perdidosLocal, jugados - jugadosLocal,
+				ganados - ganadosLocal, empatados - empatadosLocal, perdidos - perdidosLocal);
+	}
+
+	/**
+	 * Proporciona una representación en texto del balance, como fila de
+	 * clasificación.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	@Override
+	public String toString() {
+		return String.format("%-20s %3d pts %3d PJ %3d G %3d E %3d P", equipo, getPuntos(), jugados, ganados,
+				empatados, perdidos);
+	}
+}
@@ -0,0 +1,259 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de respuestas del {@link ServicioConsultas}: guarda el cuerpo JSON
+ * generado para cada URL mientras los datos no cambian. Los datos se
+ * consideran cambiados cuando varía «PRAGMA data_version» de una conexión de
+ * vigilancia propia –modificaciones de otros procesos o conexiones– o el
+ * recuento de {@link AccesoBD#getModificaciones() modificaciones del proceso}.
+ * Cada cambio inicia una nueva generación y vacía la caché.
+ * 
+ * <p>
+ * La etiqueta ETag de una respuesta depende solo de la generación, así que una
+ * petición condicional con la etiqueta vigente se responde con 304 aunque su
+ * cuerpo ya no esté en la caché. La versión de los datos se comprueba como
+ * mucho una vez por intervalo; entre comprobaciones las respuestas no tocan la
+ * base de datos. La caché está acotada en bytes y descarta primero las
+ * entradas usadas hace más tiempo.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class CacheRespuestas implements AutoCloseable {
+	/**
+	 * Clave de configuración de la capacidad de la caché, en bytes.
+	 */
+	public static final String CLAVE_CAPACIDAD = "http.cache.bytes";
+
+	/**
+	 * Clave de configuración del intervalo mínimo, en milisegundos, entre
+	 * comprobaciones de la versión de los datos.
+	 */
+	public static final String CLAVE_INTERVALO = "http.cache.comprobacion.ms";
+
+	/**
+	 * Capacidad predeterminada: 64 MiB.
+	 */
+	public static final long CAPACIDAD_PREDETERMINADA = 64L << 20;
+
+	/**
+	 * Intervalo predeterminado entre comprobaciones, en milisegundos.
+	 */
+	public static final long INTERVALO_PREDETERMINADO = 250;
+
+	/**
+	 * Acceso de solo lectura dedicado a vigilar la versión de los datos.
+	 */
+	private final AccesoBD vigilante;
+
+	/**
+	 * Capacidad total en bytes.
+	 */
+	private final long capacidad;
+
+	/**
+	 * Intervalo mínimo entre comprobaciones, en nanosegundos.
+	 */
+	private final long intervaloNanos;
+
+	/**
+	 * Identificador aleatorio de esta instancia, para que las etiquetas no se
+	 * confundan tras un reinicio.
+	 */
+	private final String época = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+	/**
+	 * Cuerpos guardados por URL, del menos al más recientemente usado.
+	 */
+	private final LinkedHashMap<String, byte[]> cuerpos = new LinkedHashMap<>(64, 0.75f, true);
+
+	/**
+	 * Bytes ocupados por los cuerpos guardados.
+	 */
+	private long ocupados;
+
+	/**
+	 * Generación vigente de los datos.
+	 */
+	private long generación;
+
+	/**
+	 * Última versión observada con «PRAGMA data_version».
+	 */
+	private long versiónDatos = -1;
+
+	/**
+	 * Último recuento observado de modificaciones del proceso.
+	 */
+	private long modificaciones = -1;
+
+	/**
+	 * Momento de la última comprobación, en nanosegundos.
+	 */
+	private long últimaComprobación;
+
+	/**
+	 * Contadores de uso.
+	 */
+	private final LongAdder aciertos = new LongAdder(), fallos = new LongAdder(), noModificadas = new LongAdder(),
+			invalidaciones = new LongAdder(), descartes = new LongAdder();
+
+	/**
+	 * Crea la caché y abre su conexión de vigilancia.
+	 * 
+	 * @param configuración la configuración de acceso a la base de datos
+	 * @throws AccesoBDException si no se puede abrir la conexión
+	 * @see #CLAVE_CAPACIDAD
+	 * @see #CLAVE_INTERVALO
+	 */
+	public CacheRespuestas(Properties configuración) throws AccesoBDException {
+		capacidad = RegistroConsultasLentas.leerNúmero(configuración, CLAVE_CAPACIDAD, CAPACIDAD_PREDETERMINADA);
+		intervaloNanos = TimeUnit.MILLISECONDS
+				.toNanos(RegistroConsultasLentas.leerNúmero(configuración, CLAVE_INTERVALO, INTERVALO_PREDETERMINADO));
+		vigilante = new AccesoBD(configuración);
+		vigilante.abrirConexiónLectura();
+	}
+
+	/**
+	 * Proporciona la generación vigente de los datos, comprobando antes si han
+	 * cambiado cuando ha pasado el intervalo mínimo –o enseguida si el propio
+	 * proceso los ha modificado–.
+	 * 
+	 * @return la generación vigente
+	 * @throws AccesoBDException si falla la consulta de la versión
+	 */
+	public synchronized long generación() throws AccesoBDException {
+		long ahora = System.nanoTime();
+		long modificacionesActuales = AccesoBD.getModificaciones();
+
+		if (modificacionesActuales != modificaciones || ahora - últimaComprobación >= intervaloNanos
+				|| versiónDatos < 0) {
+			long versiónActual = vigilante.versiónDatos();
+			últimaComprobación = ahora;
+			if (versiónActual != versiónDatos || modificacionesActuales != modificaciones) {
+				versiónDatos = versiónActual;
+				modificaciones = modificacionesActuales;
+				generación++;
+				if (!cuerpos.isEmpty()) {
+					invalidaciones.increment();
+				}
+				cuerpos.clear();
+				ocupados = 0;
+			}
+		}
+		return generación;
+	}
+
+	/**
+	 * Compone la etiqueta ETag de una generación.
+	 * 
+	 * @param generación la generación
+	 * @return la etiqueta, entre comillas
+	 */
+	public String etiqueta(long generación) {
+		return String.format("\"%s-%d\"", época, generación);
+	}
+
+	/**
+	 * Indica si una cabecera «If-None-Match» incluye la etiqueta vigente, y en
+	 * ese caso cuenta la respuesta como no modificada.
+	 * 
+	 * @param cabecera   el valor de la cabecera, o nulo
+	 * @param generación la generación vigente
+	 * @return si el cliente ya tiene la respuesta vigente
+	 */
+	public boolean noModificada(String cabecera, long generación) {
+		String vigente = etiqueta(generación);
+		boolean coincide = false;
+
+		if (cabecera != null) {
+			for (String etiqueta : cabecera.split(",")) {
+				String limpia = etiqueta.strip();
+				coincide |= limpia.equals("*") || limpia.equals(vigente) || limpia.equals("W/" + vigente);
+			}
+		}
+		if (coincide) {
+			noModificadas.increment();
+		}
+		return coincide;
+	}
+
+	/**
+	 * Busca el cuerpo guardado de una URL para una generación.
+	 * 
+	 * @param url        la URL completa de la petición
+	 * @param generación la generación vigente
+	 * @return el cuerpo, o nulo si no está guardado o es de otra generación
+	 */
+	public synchronized byte[] obtener(String url, long generación) {
+		byte[] cuerpo = (generación == this.generación) ? cuerpos.get(url) : null;
+
+		if (cuerpo == null) {
+			fallos.increment();
+		} else {
+			aciertos.increment();
+		}
+		return cuerpo;
+	}
+
+	/**
+	 * Guarda el cuerpo de una URL, salvo que la generación ya no esté vigente o
+	 * el cuerpo ocupe más de la octava parte de la capacidad. Descarta las
+	 * entradas menos usadas hasta que haya espacio.
+	 * 
+	 * @param url        la URL completa de la petición
+	 * @param generación la generación con la que se generó el cuerpo
+	 * @param cuerpo     el cuerpo de la respuesta
+	 */
+	public synchronized void guardar(String url, long generación, byte[] cuerpo) {
+		if (generación != this.generación || cuerpo.length > capacidad / 8) {
+			return;
+		}
+
+		byte[] anterior = cuerpos.put(url, cuerpo);
+		ocupados += cuerpo.length - (anterior == null ? 0 : anterior.length);
+
+		Iterator<Map.Entry<String, byte[]>> entradas = cuerpos.entrySet().iterator();
+		while (ocupados > capacidad && entradas.hasNext()) {
+			Map.Entry<String, byte[]> másAntigua = entradas.next();
+			ocupados -= másAntigua.getValue().length;
+			entradas.remove();
+			descartes.increment();
+		}
+	}
+
+	/**
+	 * Proporciona las métricas de uso en formato JSON.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	public synchronized String toStringJSON() {
+		long consultas = aciertos.sum() + fallos.sum();
+		return String.format(Locale.ROOT,
+				"{\"generacion\":%d,\"entradas\":%d,\"bytes\":%d,\"capacidad\":%d,\"aciertos\":%d,\"fallos\":%d,"
+						+ "\"tasaAciertos\":%.4f,\"noModificadas\":%d,\"invalidaciones\":%d,\"descartes\":%d}",
+				generación, cuerpos.size(), ocupados, capacidad, aciertos.sum(), fallos.sum(),
+				consultas == 0 ? 0.0 : (double) aciertos.sum() / consultas, noModificadas.sum(),
+				invalidaciones.sum(), descartes.sum());
+	}
+
+	/**
+	 * Cierra la conexión de vigilancia.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	@Override
+	public void close() throws AccesoBDException {
+		vigilante.close();
+	}
+}
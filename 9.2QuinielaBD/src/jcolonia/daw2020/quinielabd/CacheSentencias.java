@@ -0,0 +1,189 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché acotada de sentencias SQL preparadas para una conexión, indexada por el
+ * texto SQL. Cuando se llena descarta –y cierra– la sentencia usada hace más
+ * tiempo (LRU). Lleva la cuenta de aciertos, fallos y descartes.
+ * 
+ * <p>
+ * No es segura para hilos: igual que la propia conexión, pertenece a un único
+ * {@link AccesoBD}.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class CacheSentencias implements AutoCloseable {
+	/**
+	 * Clave de configuración del número máximo de sentencias en caché.
+	 */
+	public static final String CLAVE_CAPACIDAD = "bd.cache.sentencias";
+
+	/**
+	 * Capacidad predeterminada.
+	 */
+	public static final int CAPACIDAD_PREDETERMINADA = 32;
+
+	/**
+	 * Conexión a la que pertenecen las sentencias.
+	 */
+	private final Connection conexión;
+
+	/**
+	 * Tiempo límite, en segundos, aplicado a cada sentencia nueva, o cero para
+	 * ninguno. En SQLite solo limita la espera por bloqueos, y cuesta dos
+	 * llamadas adicionales al controlador en cada ejecución.
+	 */
+	private final int tiempoLímite;
+
+	/**
+	 * Sentencias preparadas por orden de uso, de la más antigua a la más
+	 * reciente.
+	 */
+	private final LinkedHashMap<String, PreparedStatement> sentencias;
+
+	/**
+	 * Número de sentencias encontradas en la caché.
+	 */
+	private long aciertos;
+
+	/**
+	 * Número de sentencias que ha sido necesario preparar.
+	 */
+	private long fallos;
+
+	/**
+	 * Número de sentencias descartadas por falta de espacio.
+	 */
+	private long descartes;
+
+	/**
+	 * Crea una caché vacía para una conexión.
+	 * 
+	 * @param conexión     la conexión abierta
+	 * @param capacidad    el número máximo de sentencias, al menos una
+	 * @param tiempoLímite el tiempo límite en segundos de cada sentencia, o
+	 *                     cero para ninguno
+	 */
+	public CacheSentencias(Connection conexión, int capacidad, int tiempoLímite) {
+		this.conexión = conexión;
+		this.tiempoLímite = tiempoLímite;
+		int máximo = Math.max(1, capacidad);
+		sentencias = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 20210825001L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> másAntigua) {
+				boolean descartar = size() > máximo;
+				if (descartar) {
+					descartes++;
+					cerrarSentencia(másAntigua.getValue());
+				}
+				return descartar;
+			}
+		};
+	}
+
+	/**
+	 * Proporciona la sentencia preparada de un texto SQL, preparándola si no
+	 * estaba en la caché. También la prepara de nuevo si el controlador la ha
+	 * finalizado, como hace SQLite con las sentencias interrumpidas al cancelar
+	 * una operación.
+	 * 
+	 * @param sql el texto SQL
+	 * @return la sentencia preparada, con los parámetros anteriores borrados
+	 * @throws SQLException si se produce alguna incidencia al prepararla
+	 */
+	public PreparedStatement obtener(String sql) throws SQLException {
+		PreparedStatement sentencia = sentencias.get(sql);
+
+		if (sentencia != null) {
+			try {
+				sentencia.clearParameters();
+				aciertos++;
+				return sentencia;
+			} catch (SQLException e) { // Finalizada por el controlador
+				cerrarSentencia(sentencia);
+			}
+		}
+
+		fallos++;
+		sentencia = conexión.prepareStatement(sql);
+		if (tiempoLímite > 0) {
+			sentencia.setQueryTimeout(tiempoLímite);
+		}
+		sentencias.put(sql, sentencia);
+		return sentencia;
+	}
+
+	/**
+	 * Cierra una sentencia descartada, informando de incidencias sin
+	 * propagarlas.
+	 * 
+	 * @param sentencia la sentencia a cerrar
+	 */
+	private static void cerrarSentencia(PreparedStatement sentencia) {
+		try {
+			sentencia.close();
+		} catch (SQLException e) {
+			System.err.printf("Error al cerrar sentencia: %s%n", e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Proporciona el número de aciertos.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getAciertos() {
+		return aciertos;
+	}
+
+	/**
+	 * Proporciona el número de fallos.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getFallos() {
+		return fallos;
+	}
+
+	/**
+	 * Proporciona el número de sentencias descartadas por falta de espacio.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getDescartes() {
+		return descartes;
+	}
+
+	/**
+	 * Proporciona un resumen de uso de la caché.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	@Override
+	public String toString() {
+		long total = aciertos + fallos;
+		double tasaAciertos = total == 0 ? 0 : 100.0 * aciertos / total;
+		return String.format("Caché de sentencias: %d en uso, %d aciertos (%.1f%%), %d fallos, %d descartes",
+				sentencias.size(), aciertos, tasaAciertos, fallos, descartes);
+	}
+
+	/**
+	 * Cierra y descarta todas las sentencias de la caché.
+	 */
+	@Override
+	public void close() {
+		for (PreparedStatement sentencia : sentencias.values()) {
+			cerrarSentencia(sentencia);
+		}
+		sentencias.clear();
+	}
+}
@@ -0,0 +1,103 @@
+package jcolonia.daw2020.quinielabd;
+
+/**
+ * Partido grabado, modificado o borrado en la base de datos, junto con su
+ * identificador de fila y la revisión en la que cambió por última vez. Permite
+ * a quien muestra los resultados pedir solo los cambios posteriores a la última
+ * revisión vista. Un partido borrado –o archivado– llega como
+ * {@link #isBaja() baja}, sin datos, para que se retire su fila; si ya no se
+ * conservan las bajas desde la revisión pedida, llega un
+ * {@link #isReinicio() reinicio} seguido de todos los partidos.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ * @see AccesoBD#leerCambios(long, int, java.util.List)
+ */
+public class CambioPartido {
+	/**
+	 * Identificador de la fila del partido, invariable mientras no se borre y
+	 * nunca reutilizado después.
+	 */
+	private final long id;
+
+	/**
+	 * Revisión en la que se grabó o modificó por última vez.
+	 */
+	private final long revisión;
+
+	/**
+	 * Datos actuales del partido, o nulo si se ha borrado.
+	 */
+	private final ElementoPartido1X2 partido;
+
+	/**
+	 * Crea el cambio de un partido.
+	 * 
+	 * @param id       el identificador de fila
+	 * @param revisión la revisión del cambio
+	 * @param partido  los datos actuales del partido, o nulo si se ha borrado
+	 */
+	public CambioPartido(long id, long revisión, ElementoPartido1X2 partido) {
+		this.id = id;
+		this.revisión = revisión;
+		this.partido = partido;
+	}
+
+	/**
+	 * Crea el aviso de que deben descartarse todos los partidos conocidos,
+	 * porque se han podado las bajas posteriores a la última revisión vista.
+	 * Tiene identificador y revisión cero, que no corresponden a ninguna fila.
+	 * 
+	 * @return el cambio correspondiente
+	 */
+	public static CambioPartido reinicio() {
+		return new CambioPartido(0, 0, null);
+	}
+
+	/**
+	 * Proporciona el identificador de fila.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Proporciona la revisión del cambio.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getRevisión() {
+		return revisión;
+	}
+
+	/**
+	 * Proporciona los datos actuales del partido.
+	 * 
+	 * @return el valor correspondiente, o nulo si se ha borrado
+	 */
+	public ElementoPartido1X2 getPartido() {
+		return partido;
+	}
+
+	/**
+	 * Indica si el partido se ha borrado.
+	 * 
+	 * @return si es una baja
+	 */
+	public boolean isBaja() {
+		return partido == null;
+	}
+
+	/**
+	 * Indica si deben descartarse todos los partidos conocidos: los cambios
+	 * siguientes los vuelven a entregar desde el principio. También cuenta como
+	 * baja.
+	 * 
+	 * @return si es un reinicio
+	 */
+	public boolean isReinicio() {
+		return partido == null && id == 0;
+	}
+}
@@ -0,0 +1,262 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aviso de cancelación de una operación sobre la base de datos, con un plazo
+ * opcional. Quien inicia la operación lo entrega al {@link AccesoBD} –o a
+ * {@link AccesoBDConcurrente}– y puede cancelarlo desde cualquier hilo; al
+ * agotarse el plazo se cancela solo.
+ * 
+ * <p>
+ * La cancelación interrumpe la sentencia SQL en curso –con
+ * {@link Statement#cancel()}, que en SQLite equivale a
+ * <code>sqlite3_interrupt</code>– y los recorridos de filas la comprueban en
+ * cada fila, de modo que la operación termina enseguida con una
+ * {@link AccesoBDException} y cierra sus cursores. Comprobarla solo cuesta
+ * leer un campo.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class CancelacionBD implements AutoCloseable {
+	/**
+	 * Clave de configuración del plazo, en milisegundos, de las consultas
+	 * interactivas –las del visor y las del servicio HTTP–. Un valor nulo o
+	 * negativo las deja sin plazo.
+	 */
+	public static final String CLAVE_PLAZO = "bd.plazo.ms";
+
+	/**
+	 * Plazo predeterminado, en milisegundos.
+	 */
+	public static final long PLAZO_PREDETERMINADO = 5000;
+
+	/**
+	 * Estado SQL de las operaciones canceladas («query canceled»).
+	 */
+	public static final String ESTADO_CANCELADA = "57014";
+
+	/**
+	 * Aviso que nunca se cancela, usado cuando no se indica ninguno.
+	 */
+	public static final CancelacionBD NINGUNA = new CancelacionBD();
+
+	/**
+	 * Temporizador compartido de los plazos, creado con el primero.
+	 */
+	private static ScheduledThreadPoolExecutor temporizador;
+
+	/**
+	 * Si se ha cancelado la operación.
+	 */
+	private volatile boolean cancelada;
+
+	/**
+	 * Motivo de la cancelación.
+	 */
+	private volatile String motivo;
+
+	/**
+	 * Si la cancelación se debe al plazo.
+	 */
+	private volatile boolean vencida;
+
+	/**
+	 * Instante límite, según {@link System#nanoTime()}, o nulo si no hay plazo.
+	 */
+	private final long límiteNanos;
+
+	/**
+	 * Cancelación programada al agotarse el plazo.
+	 */
+	private ScheduledFuture<?> vencimiento;
+
+	/**
+	 * Sentencia en curso, que se interrumpe al cancelar.
+	 */
+	private Statement sentencia;
+
+	/**
+	 * Crea un aviso sin plazo, que solo se cancela a petición.
+	 */
+	public CancelacionBD() {
+		límiteNanos = 0;
+	}
+
+	/**
+	 * Crea un aviso con plazo.
+	 * 
+	 * @param límiteNanos el instante límite
+	 */
+	private CancelacionBD(long límiteNanos) {
+		this.límiteNanos = límiteNanos;
+	}
+
+	/**
+	 * Crea un aviso que se cancela solo al cabo de un tiempo. Conviene
+	 * {@link #close() cerrarlo} al terminar la operación para descartar el
+	 * vencimiento programado.
+	 * 
+	 * @param milisegundos el plazo; nulo o negativo para ninguno
+	 * @return el aviso creado
+	 */
+	public static CancelacionBD conPlazo(long milisegundos) {
+		if (milisegundos <= 0) {
+			return new CancelacionBD();
+		}
+
+		CancelacionBD aviso = new CancelacionBD(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milisegundos));
+		aviso.vencimiento = temporizador().schedule(aviso::vencer, milisegundos, TimeUnit.MILLISECONDS);
+		return aviso;
+	}
+
+	/**
+	 * Proporciona el temporizador de los plazos, creándolo si es necesario.
+	 * 
+	 * @return el temporizador compartido
+	 */
+	private static synchronized ScheduledThreadPoolExecutor temporizador() {
+		if (temporizador == null) {
+			temporizador = new ScheduledThreadPoolExecutor(1, tarea -> {
+				Thread hilo = new Thread(tarea, "Plazos BD");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+			temporizador.setRemoveOnCancelPolicy(true);
+		}
+		return temporizador;
+	}
+
+	/**
+	 * Cancela la operación e interrumpe la sentencia en curso, si la hay.
+	 */
+	public void cancelar() {
+		cancelar("Operación cancelada", false);
+	}
+
+	/**
+	 * Cancela la operación por agotarse el plazo.
+	 */
+	private void vencer() {
+		cancelar("Plazo agotado", true);
+	}
+
+	/**
+	 * Cancela la operación, una sola vez.
+	 * 
+	 * @param motivo   el motivo de la cancelación
+	 * @param porPlazo si se debe al plazo
+	 */
+	private synchronized void cancelar(String motivo, boolean porPlazo) {
+		if (this == NINGUNA || cancelada) {
+			return;
+		}
+
+		this.motivo = motivo;
+		vencida = porPlazo;
+		cancelada = true;
+		if (sentencia != null) {
+			try {
+				sentencia.cancel();
+			} catch (SQLException e) {
+				System.err.printf("Error al interrumpir sentencia: %s%n", e.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Indica si se ha cancelado la operación, a petición o por plazo.
+	 * 
+	 * @return si está cancelada
+	 */
+	public boolean isCancelada() {
+		return cancelada;
+	}
+
+	/**
+	 * Indica si la cancelación se debe a que se ha agotado el plazo.
+	 * 
+	 * @return si ha vencido el plazo
+	 */
+	public boolean isVencida() {
+		return vencida;
+	}
+
+	/**
+	 * Proporciona el tiempo que queda hasta el plazo.
+	 * 
+	 * @return los nanosegundos restantes, cero si ha vencido o
+	 *         {@link Long#MAX_VALUE} si no hay plazo
+	 */
+	public long getRestanteNanos() {
+		if (cancelada) {
+			return 0;
+		}
+		if (límiteNanos == 0) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, límiteNanos - System.nanoTime());
+	}
+
+	/**
+	 * Comprueba que la operación no se ha cancelado. Pensado para los recorridos
+	 * de filas: solo lee un campo.
+	 * 
+	 * @throws SQLException con estado {@value #ESTADO_CANCELADA} si se ha
+	 *                      cancelado
+	 */
+	public void comprobar() throws SQLException {
+		if (cancelada) {
+			throw new SQLException(motivo, ESTADO_CANCELADA);
+		}
+	}
+
+	/**
+	 * Anota la sentencia que se va a ejecutar, para interrumpirla si se cancela
+	 * la operación.
+	 * 
+	 * @param sentencia la sentencia
+	 * @throws SQLException con estado {@value #ESTADO_CANCELADA} si ya se ha
+	 *                      cancelado
+	 */
+	void vigilar(Statement sentencia) throws SQLException {
+		if (this == NINGUNA) {
+			return;
+		}
+		synchronized (this) {
+			comprobar();
+			this.sentencia = sentencia;
+		}
+	}
+
+	/**
+	 * Olvida la sentencia anotada: a partir de aquí la cancelación ya no
+	 * interrumpe la conexión, que puede pasar a otra operación.
+	 */
+	void liberar() {
+		if (this == NINGUNA) {
+			return;
+		}
+		synchronized (this) {
+			sentencia = null;
+		}
+	}
+
+	/**
+	 * Descarta el vencimiento programado y olvida la sentencia anotada, sin
+	 * cancelar la operación.
+	 */
+	@Override
+	public void close() {
+		if (vencimiento != null) {
+			vencimiento.cancel(false);
+		}
+		liberar();
+	}
+}
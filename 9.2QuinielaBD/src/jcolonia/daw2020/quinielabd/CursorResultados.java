@@ -0,0 +1,121 @@
+package jcolonia.daw2020.quinielabd;
+
+/**
+ * Posición de un recorrido por tramos de los resultados que cumplen un filtro.
+ * Guarda los valores de ordenación de la última fila entregada, de modo que el
+ * tramo siguiente empieza justo después de ella: cada tramo cuesta lo mismo
+ * sea cual sea su posición, y las filas grabadas o borradas entre un tramo y
+ * otro no desplazan a las demás, así que ninguna se repite ni se pierde.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ * @see AccesoBD#recorrer(CursorResultados, int, java.util.function.Consumer)
+ */
+public class CursorResultados {
+	/**
+	 * Copia de los criterios de selección.
+	 */
+	private final FiltroResultados filtro;
+
+	/**
+	 * Número de resultados a saltar antes del primer tramo.
+	 */
+	private int desplazamiento;
+
+	/**
+	 * Valores de las columnas de ordenación de la última fila entregada, o nulo
+	 * si aún no se ha leído ninguna.
+	 */
+	private Object[] última;
+
+	/**
+	 * Si ya se ha leído el último tramo.
+	 */
+	private boolean agotado;
+
+	/**
+	 * Crea un recorrido desde el primer resultado.
+	 * 
+	 * @param filtro los criterios de selección, que se copian
+	 */
+	public CursorResultados(FiltroResultados filtro) {
+		this(filtro, 0);
+	}
+
+	/**
+	 * Crea un recorrido que empieza tras saltar algunos resultados, por ejemplo
+	 * al principio de una página. El salto solo se aplica al primer tramo.
+	 * 
+	 * @param filtro         los criterios de selección, que se copian
+	 * @param desplazamiento el número de resultados a saltar
+	 */
+	public CursorResultados(FiltroResultados filtro, int desplazamiento) {
+		this.filtro = new FiltroResultados(filtro);
+		this.desplazamiento = Math.max(0, desplazamiento);
+	}
+
+	/**
+	 * Crea una copia independiente de un recorrido, en la misma posición, para
+	 * continuarlo sin mover el original.
+	 * 
+	 * @param original el recorrido copiado
+	 */
+	public CursorResultados(CursorResultados original) {
+		filtro = new FiltroResultados(original.filtro);
+		desplazamiento = original.desplazamiento;
+		última = original.última;
+		agotado = original.agotado;
+	}
+
+	/**
+	 * Indica si ya se ha leído el último tramo.
+	 * 
+	 * @return si no quedan resultados
+	 */
+	public boolean isAgotado() {
+		return agotado;
+	}
+
+	/**
+	 * Proporciona los criterios de selección.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	FiltroResultados getFiltro() {
+		return filtro;
+	}
+
+	/**
+	 * Proporciona el número de resultados a saltar en el tramo siguiente.
+	 * 
+	 * @return cero salvo antes del primer tramo
+	 */
+	int getDesplazamiento() {
+		return desplazamiento;
+	}
+
+	/**
+	 * Proporciona la posición de la última fila entregada.
+	 * 
+	 * @return los valores de sus columnas de ordenación, o nulo si aún no se ha
+	 *         leído ninguna
+	 */
+	Object[] getÚltima() {
+		return última;
+	}
+
+	/**
+	 * Anota el resultado de leer un tramo.
+	 * 
+	 * @param última  la posición de la última fila leída, o nula si no se ha
+	 *                leído ninguna
+	 * @param agotado si el tramo era el último
+	 */
+	void avanzar(Object[] última, boolean agotado) {
+		if (última != null) {
+			this.última = última;
+			desplazamiento = 0;
+		}
+		this.agotado = agotado;
+	}
+}
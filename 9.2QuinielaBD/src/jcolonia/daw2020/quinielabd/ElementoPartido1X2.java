@@ -44,6 +44,17 @@ public class ElementoPartido1X2 {
 	 */
 	private Resultado1X2 resultado;
 
+	/**
+	 * Temporada a la que pertenece el partido, como «2021-2022». Vacía si no se
+	 * conoce.
+	 */
+	private String temporada = "";
+
+	/**
+	 * Número de jornada dentro de la temporada. Cero si no se conoce.
+	 */
+	private int jornada;
+
 	/**
 	 * Número de valores almacenados en la combinación. Evidencia si la combinación
 	 * está completa o no.
@@ -66,62 +77,87 @@ public class ElementoPartido1X2 {
 	 * @throws DatoPartido1X2Exception si el dato no es válido para la posición a
 	 *                                 rellenar
 	 * @throws Partido1X2Exception     si todos los datos ya están completos.
+	 * @see #probarDato(String)
 	 */
 	public void setDato(String texto) throws DatoPartido1X2Exception {
-		verificarTextoNoNulo(texto);
+		probarDato(texto).comprobar();
+	}
+
+	/**
+	 * Añade el siguiente dato del partido si es válido, sin lanzar excepciones.
+	 * Hace las mismas comprobaciones que {@link #setDato(String)}; si el dato no
+	 * es válido el partido no cambia, y {@link #getNúmDatos()} indica la
+	 * posición rechazada.
+	 * 
+	 * @param texto entrada a almacenar
+	 * @return {@link ValidacionPartido#CORRECTO} si se ha almacenado, o el motivo
+	 *         del rechazo
+	 */
+	public ValidacionPartido probarDato(String texto) {
+		ValidacionPartido validación = validarTexto(texto);
 
-		// Comprobamos de forma implícita númValores
-		verificarAbierta();
+		if (!validación.isCorrecto()) {
+			return validación;
+		}
 
 		switch (númDatos) {
 		case 0:
-			verificarNombreVálido(texto);
-			equipoLocal = texto.toUpperCase();
-			númDatos++;
+			validación = validarNombre(texto);
+			if (validación.isCorrecto()) {
+				equipoLocal = texto.toUpperCase();
+				númDatos++;
+			}
 			break;
 		case 1:
-			verificarNombreVálido(texto);
-			if (texto.compareToIgnoreCase(equipoLocal) == 0) {
-				throw new DatoPartido1X2Exception("Equipo repetido");
+			validación = validarNombre(texto);
+			if (validación.isCorrecto() && texto.compareToIgnoreCase(equipoLocal) == 0) {
+				validación = ValidacionPartido.EQUIPO_REPETIDO;
+			}
+			if (validación.isCorrecto()) {
+				equipoVisitante = texto.toUpperCase();
+				númDatos++;
 			}
-			equipoVisitante = texto.toUpperCase();
-			númDatos++;
 			break;
 		case 2:
-			setResultado(texto);
-			númDatos++;
+			validación = probarResultado(texto);
+			if (validación.isCorrecto()) {
+				númDatos++;
+			}
 			break;
 		default:
-			// Sería redundante, comprobado antes por «verificarAbierta()»
-			// throw new Partido1X2Exception("Datos partido ya están completos");
+			validación = ValidacionPartido.DATOS_COMPLETOS;
 		}
+		return validación;
 	}
 
 	/**
-	 * Almacena el resultado 1-X-2 del partido.
+	 * Almacena el resultado 1-X-2 del partido si es uno de los tres valores
+	 * permitidos.
 	 * 
 	 * @param texto entrada a almacenar
-	 * @throws DatoPartido1X2Exception Si no es uno de los tres valores permitidos
-	 *                                 1-X-2
+	 * @return {@link ValidacionPartido#CORRECTO} si se ha almacenado, o
+	 *         {@link ValidacionPartido#RESULTADO_NO_VÁLIDO}
 	 */
-	private void setResultado(String texto) throws DatoPartido1X2Exception {
+	private ValidacionPartido probarResultado(String texto) {
 		if (texto.length() != 1) {
-			throw new DatoPartido1X2Exception("Resultado no válido");
+			return ValidacionPartido.RESULTADO_NO_VÁLIDO;
 		}
 
-		switch (texto.toUpperCase()) {
-		case "1":
+		switch (texto.charAt(0)) {
+		case '1':
 			resultado = Resultado1X2.Local1;
 			break;
-		case "X":
+		case 'X':
+		case 'x':
 			resultado = Resultado1X2.EmpateX;
 			break;
-		case "2":
+		case '2':
 			resultado = Resultado1X2.Visitante2;
 			break;
 		default:
-			throw new DatoPartido1X2Exception("Resultado no válido");
+			return ValidacionPartido.RESULTADO_NO_VÁLIDO;
 		}
+		return ValidacionPartido.CORRECTO;
 	}
 
 	/**
@@ -129,15 +165,15 @@ public class ElementoPartido1X2 {
 	 * estar en el rango [5, 20].
 	 * 
 	 * @param texto el nombre a verificar
-	 * @throws DatoPartido1X2Exception si la longitud del nombre no es adecuada.
+	 * @return {@link ValidacionPartido#CORRECTO} o el motivo del rechazo
 	 */
-	private void verificarNombreVálido(String texto) throws DatoPartido1X2Exception {
+	private static ValidacionPartido validarNombre(String texto) {
 		if (texto.length() < 5) {
-			throw new DatoPartido1X2Exception("Nombre demasiado corto");
+			return ValidacionPartido.NOMBRE_CORTO;
 		} else if (texto.length() > 20) {
-			throw new DatoPartido1X2Exception("Nombre demasiado largo");
+			return ValidacionPartido.NOMBRE_LARGO;
 		}
-
+		return ValidacionPartido.CORRECTO;
 	}
 
 	/**
@@ -147,10 +183,28 @@ public class ElementoPartido1X2 {
 	 * @throws DatoPartido1X2Exception si el texto es nulo o está vacío
 	 */
 	public void verificarTextoNoNulo(String texto) throws DatoPartido1X2Exception {
+		validarTexto(texto).comprobar();
+	}
 
-		if (texto == null || texto.length() == 0) {
-			throw new DatoPartido1X2Exception("Dato vacío");
-		}
+	/**
+	 * Comprueba que se haya proporcionado un texto.
+	 * 
+	 * @param texto el dato a comprobar
+	 * @return {@link ValidacionPartido#CORRECTO} o
+	 *         {@link ValidacionPartido#DATO_VACÍO}
+	 */
+	private static ValidacionPartido validarTexto(String texto) {
+		return texto == null || texto.length() == 0 ? ValidacionPartido.DATO_VACÍO : ValidacionPartido.CORRECTO;
+	}
+
+	/**
+	 * Proporciona el número de datos almacenados: tras un rechazo, la posición
+	 * del dato rechazado, desde cero.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getNúmDatos() {
+		return númDatos;
 	}
 
 	/**
@@ -220,6 +274,54 @@ public class ElementoPartido1X2 {
 		return resultado;
 	}
 
+	/**
+	 * Sitúa el partido en el calendario. Junto con los nombres de los equipos
+	 * forma la clave natural del partido en la base de datos.
+	 * 
+	 * @param temporada la temporada, como «2021-2022»; nula equivale a vacía
+	 * @param jornada   el número de jornada, cero o positivo
+	 * @throws DatoPartido1X2Exception si la jornada es negativa
+	 */
+	public void setCalendario(String temporada, int jornada) throws DatoPartido1X2Exception {
+		probarCalendario(temporada, jornada).comprobar();
+	}
+
+	/**
+	 * Sitúa el partido en el calendario si la jornada es válida, sin lanzar
+	 * excepciones.
+	 * 
+	 * @param temporada la temporada, como «2021-2022»; nula equivale a vacía
+	 * @param jornada   el número de jornada, cero o positivo
+	 * @return {@link ValidacionPartido#CORRECTO} si se ha almacenado, o
+	 *         {@link ValidacionPartido#JORNADA_NO_VÁLIDA}
+	 */
+	public ValidacionPartido probarCalendario(String temporada, int jornada) {
+		if (jornada < 0) {
+			return ValidacionPartido.JORNADA_NO_VÁLIDA;
+		}
+		this.temporada = (temporada == null) ? "" : temporada.strip();
+		this.jornada = jornada;
+		return ValidacionPartido.CORRECTO;
+	}
+
+	/**
+	 * Proporciona la temporada del partido.
+	 * 
+	 * @return el valor correspondiente, vacío si no se conoce
+	 */
+	public String getTemporada() {
+		return temporada;
+	}
+
+	/**
+	 * Proporciona la jornada del partido.
+	 * 
+	 * @return el valor correspondiente, cero si no se conoce
+	 */
+	public int getJornada() {
+		return jornada;
+	}
+
 	/**
 	 * Construye un partido a partir de una línea de texto. La línea de texto debe
 	 * contener, al menos, tres textos válidos en un formato pseudo-CSV empleando el
@@ -240,22 +342,46 @@ public class ElementoPartido1X2 {
 		ElementoPartido1X2 nuevoPartido;
 		nuevoPartido = new ElementoPartido1X2();
 
+		ValidacionPartido validación = nuevoPartido.probarLínea(líneaCSV);
+		if (!validación.isCorrecto()) {
+			EventoFalloPartido.registrar(validación.getMensaje());
+			validación.comprobar();
+		}
+
+		return nuevoPartido;
+	}
+
+	/**
+	 * Rellena el partido, todavía vacío, a partir de una línea de texto en el
+	 * formato de {@link #of(String)}, sin lanzar excepciones. Pensado para las
+	 * cargas masivas, en las que rechazar una línea no debe costar más que
+	 * aceptarla. Si la línea no es válida, {@link #getNúmDatos()} indica el
+	 * campo rechazado, desde cero, salvo que falten campos: entonces se rechaza
+	 * sin examinar ninguno y el primero que falta sigue a los presentes.
+	 * 
+	 * @param líneaCSV la línea de texto
+	 * @return {@link ValidacionPartido#CORRECTO} si se ha completado el partido,
+	 *         o el motivo del rechazo
+	 */
+	public ValidacionPartido probarLínea(String líneaCSV) {
 		String[] partes = líneaCSV.split(SEPARADOR);
 
-		if (partes.length < MÁX_CAMPOS) { // Excepción temprana si faltan campos
-			throw new Partido1X2Exception("Línea CSV mal formada");
+		if (partes.length < MÁX_CAMPOS) { // Rechazo temprano si faltan campos
+			return ValidacionPartido.FALTAN_CAMPOS;
 		}
 
 		for (String pieza : partes) {
 			// Admitimos campos extra, pero ignoramos lo que sobre.
-			if (nuevoPartido.estáCerrada()) {
+			if (estáCerrada()) {
 				break;
 			}
 
-			nuevoPartido.setDato(pieza); // Excepción el dato no encaja
+			ValidacionPartido validación = probarDato(pieza);
+			if (!validación.isCorrecto()) {
+				return validación;
+			}
 		}
-
-		return nuevoPartido;
+		return ValidacionPartido.CORRECTO;
 	}
 
 	/**
@@ -273,10 +399,39 @@ public class ElementoPartido1X2 {
 		ElementoPartido1X2 nuevoPartido;
 		nuevoPartido = new ElementoPartido1X2();
 
-		nuevoPartido.setDato(nombreLocal);
-		nuevoPartido.setDato(nombreVisitante);
-		nuevoPartido.setDato(resultadoPartido);
+		ValidacionPartido validación = nuevoPartido.probarDato(nombreLocal);
+		if (validación.isCorrecto()) {
+			validación = nuevoPartido.probarDato(nombreVisitante);
+		}
+		if (validación.isCorrecto()) {
+			validación = nuevoPartido.probarDato(resultadoPartido);
+		}
+		if (!validación.isCorrecto()) {
+			EventoFalloPartido.registrar(validación.getMensaje());
+			validación.comprobar();
+		}
+
+		return nuevoPartido;
+	}
 
+	/**
+	 * Construye un partido a partir de los datos del mismo y su posición en el
+	 * calendario.
+	 * 
+	 * @param temporada        la temporada del partido
+	 * @param jornada          el número de jornada
+	 * @param nombreLocal      el nombre del primer equipo, el equipo local
+	 * @param nombreVisitante  el nombre del segundo equipo, el equipo visitante
+	 * @param resultadoPartido el resultado 1-X-2 del partido
+	 * @throws DatoPartido1X2Exception si alguno de los datos no encaja en la
+	 *                                 posición correspondiente
+	 * @return el nuevo partido creado
+	 */
+	public static ElementoPartido1X2 of(String temporada, int jornada, String nombreLocal, String nombreVisitante,
+			String resultadoPartido) throws DatoPartido1X2Exception {
+		ElementoPartido1X2 nuevoPartido;
+		nuevoPartido = of(nombreLocal, nombreVisitante, resultadoPartido);
+		nuevoPartido.setCalendario(temporada, jornada);
 		return nuevoPartido;
 	}
 
@@ -353,6 +508,52 @@ public class ElementoPartido1X2 {
 		return texto.toString();
 	}
 
+	/**
+	 * Proporciona una representación en formato JSON de todos los datos del
+	 * partido, incluida su posición en el calendario.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	public String toStringJSON() {
+		verificarCerrada();
+		return String.format("{\"temporada\":%s,\"jornada\":%d,\"local\":%s,\"visitante\":%s,\"resultado\":\"%s\"}",
+				textoJSON(temporada), jornada, textoJSON(equipoLocal), textoJSON(equipoVisitante), resultado);
+	}
+
+	/**
+	 * Convierte un texto en una cadena JSON entrecomillada, escapando los
+	 * caracteres que lo requieren.
+	 * 
+	 * @param texto el texto original
+	 * @return la cadena JSON, o «null» si el texto es nulo
+	 */
+	static String textoJSON(String texto) {
+		if (texto == null) {
+			return "null";
+		}
+
+		StringBuilder json = new StringBuilder(texto.length() + 2);
+		json.append('"');
+		for (int i = 0; i < texto.length(); i++) {
+			char c = texto.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		return json.append('"').toString();
+	}
+
 	/**
 	 * Proporciona una representación en texto de los puntos conseguidos por cada
 	 * equipo. El ganador recibe tres puntos y en caso de empate se reparte un punto
@@ -0,0 +1,308 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Escritura diferida de resultados en la base de datos. Los partidos se
+ * depositan en una cola acotada y un único hilo escritor, con su propia
+ * conexión, los agrupa en transacciones: cada transacción se confirma al
+ * reunir un lote completo o al agotarse la ventana de espera, lo primero que
+ * ocurra.
+ * 
+ * <p>
+ * Cada inserción devuelve un {@link CompletableFuture} que se completa solo
+ * cuando la transacción que contiene el partido se ha confirmado. Si la cola
+ * está llena quien inserta queda bloqueado hasta que haya hueco. Al cerrar el
+ * escritor se graban todos los partidos pendientes.
+ * </p>
+ * 
+ * <p>
+ * El hilo escritor es el único que usa la conexión, también para cerrarla al
+ * terminar. No es un hilo demonio: mantiene viva la máquina virtual hasta que
+ * se cierra el escritor, para no perder partidos ya aceptados en la cola.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class EscritorDiferido implements AutoCloseable {
+	/**
+	 * Clave de configuración de la capacidad de la cola de partidos pendientes.
+	 */
+	public static final String CLAVE_CAPACIDAD = "bd.diferido.capacidad";
+
+	/**
+	 * Clave de configuración del número máximo de partidos por transacción.
+	 */
+	public static final String CLAVE_LOTE = "bd.diferido.lote";
+
+	/**
+	 * Clave de configuración de la ventana de espera, en milisegundos, para
+	 * completar un lote.
+	 */
+	public static final String CLAVE_VENTANA = "bd.diferido.ventana.ms";
+
+	/**
+	 * Capacidad predeterminada de la cola.
+	 */
+	public static final int CAPACIDAD_PREDETERMINADA = 10_000;
+
+	/**
+	 * Ventana de espera predeterminada, en milisegundos.
+	 */
+	public static final int VENTANA_PREDETERMINADA = 20;
+
+	/**
+	 * Partido pendiente de grabar junto con el aviso de su grabación.
+	 */
+	private static class Pendiente {
+		/**
+		 * El partido a grabar.
+		 */
+		private final ElementoPartido1X2 partido;
+		/**
+		 * El aviso que se completa al confirmar la transacción.
+		 */
+		private final CompletableFuture<Void> aviso = new CompletableFuture<>();
+
+		/**
+		 * Crea un partido pendiente.
+		 * 
+		 * @param partido el partido a grabar
+		 */
+		private Pendiente(ElementoPartido1X2 partido) {
+			this.partido = partido;
+		}
+	}
+
+	/**
+	 * Acceso a la base de datos, de uso exclusivo del hilo escritor.
+	 */
+	private final AccesoBD acceso;
+
+	/**
+	 * Cola acotada de partidos pendientes.
+	 */
+	private final BlockingQueue<Pendiente> cola;
+
+	/**
+	 * Número máximo de partidos por transacción.
+	 */
+	private final int tamañoLote;
+
+	/**
+	 * Ventana de espera para completar un lote, en nanosegundos.
+	 */
+	private final long ventanaNanos;
+
+	/**
+	 * Hilo escritor.
+	 */
+	private final Thread escritor;
+
+	/**
+	 * Cerrojo que impide cerrar el escritor mientras se está depositando un
+	 * partido: las inserciones toman la parte de lectura y el cierre la de
+	 * escritura.
+	 */
+	private final ReadWriteLock cerrojoCierre = new ReentrantReadWriteLock();
+
+	/**
+	 * Si se ha solicitado el cierre.
+	 */
+	private volatile boolean cerrado;
+
+	/**
+	 * Incidencia al cerrar la conexión desde el hilo escritor, para comunicarla
+	 * en {@link #close()}.
+	 */
+	private volatile AccesoBDException falloCierre;
+
+	/**
+	 * Crea un escritor sobre una conexión propia a la base de datos descrita en
+	 * la configuración y arranca su hilo.
+	 * 
+	 * @param configuración la configuración de acceso a la base de datos
+	 * @throws AccesoBDException si no se puede abrir la conexión
+	 * @see #CLAVE_CAPACIDAD
+	 * @see #CLAVE_LOTE
+	 * @see #CLAVE_VENTANA
+	 */
+	public EscritorDiferido(Properties configuración) throws AccesoBDException {
+		acceso = new AccesoBD(configuración);
+		acceso.abrirConexión();
+
+		int capacidad = (int) RegistroConsultasLentas.leerNúmero(configuración, CLAVE_CAPACIDAD,
+				CAPACIDAD_PREDETERMINADA);
+		cola = new ArrayBlockingQueue<>(Math.max(1, capacidad));
+		tamañoLote = (int) Math.max(1,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_LOTE, AccesoBD.TAMAÑO_LOTE));
+		ventanaNanos = TimeUnit.MILLISECONDS
+				.toNanos(RegistroConsultasLentas.leerNúmero(configuración, CLAVE_VENTANA, VENTANA_PREDETERMINADA));
+
+		escritor = new Thread(this::escribirPendientes, "Escritor diferido BD");
+		escritor.start();
+	}
+
+	/**
+	 * Deposita un partido en la cola de escritura. Si la cola está llena espera
+	 * hasta que haya hueco.
+	 * 
+	 * @param partido el partido a grabar
+	 * @return el aviso que se completa cuando el partido está grabado, o se
+	 *         completa con error si la transacción falla
+	 * @throws AccesoBDException si el escritor está cerrado o se interrumpe la
+	 *                           espera
+	 */
+	public CompletableFuture<Void> insertar(ElementoPartido1X2 partido) throws AccesoBDException {
+		Pendiente pendiente;
+
+		if (partido == null) {
+			throw new AccesoBDException("Partido nulo");
+		}
+
+		pendiente = new Pendiente(partido);
+		cerrojoCierre.readLock().lock();
+		try {
+			if (cerrado) {
+				throw new AccesoBDException("Escritor diferido cerrado");
+			}
+			cola.put(pendiente);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccesoBDException("Espera interrumpida", e);
+		} finally {
+			cerrojoCierre.readLock().unlock();
+		}
+		return pendiente.aviso;
+	}
+
+	/**
+	 * Proporciona el número de partidos a la espera de ser grabados.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getPendientes() {
+		return cola.size();
+	}
+
+	/**
+	 * Bucle del hilo escritor: reúne lotes y los graba hasta que se solicita el
+	 * cierre y no quedan partidos pendientes.
+	 */
+	private void escribirPendientes() {
+		List<Pendiente> lote = new ArrayList<>(tamañoLote);
+
+		try {
+			while (!cerrado || !cola.isEmpty()) {
+				Pendiente primero = cola.poll(100, TimeUnit.MILLISECONDS);
+				if (primero == null) {
+					continue;
+				}
+
+				lote.add(primero);
+				long límite = System.nanoTime() + ventanaNanos;
+				while (lote.size() < tamañoLote) {
+					cola.drainTo(lote, tamañoLote - lote.size());
+					long espera = límite - System.nanoTime();
+					if (lote.size() >= tamañoLote || espera <= 0 || cerrado) {
+						break;
+					}
+					Pendiente siguiente = cola.poll(espera, TimeUnit.NANOSECONDS);
+					if (siguiente == null) {
+						break;
+					}
+					lote.add(siguiente);
+				}
+
+				grabar(lote);
+				lote.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			cerrado = true;
+			cola.drainTo(lote);
+			descartar(lote);
+			try {
+				acceso.close();
+			} catch (AccesoBDException e) {
+				falloCierre = e;
+			}
+		}
+	}
+
+	/**
+	 * Completa con error los avisos de los partidos que ya no se van a grabar.
+	 * 
+	 * @param pendientes los partidos afectados; la lista queda vacía
+	 */
+	private void descartar(List<Pendiente> pendientes) {
+		AccesoBDException error = new AccesoBDException("Escritor diferido detenido");
+
+		for (Pendiente pendiente : pendientes) {
+			pendiente.aviso.completeExceptionally(error);
+		}
+		pendientes.clear();
+	}
+
+	/**
+	 * Graba un lote en una transacción y completa sus avisos.
+	 * 
+	 * @param lote los partidos pendientes
+	 */
+	private void grabar(List<Pendiente> lote) {
+		List<ElementoPartido1X2> partidos = new ArrayList<>(lote.size());
+
+		for (Pendiente pendiente : lote) {
+			partidos.add(pendiente.partido);
+		}
+
+		try {
+			acceso.escribir(partidos, true);
+			for (Pendiente pendiente : lote) {
+				pendiente.aviso.complete(null);
+			}
+		} catch (AccesoBDException | RuntimeException e) {
+			for (Pendiente pendiente : lote) {
+				pendiente.aviso.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Impide nuevas inserciones y espera a que el hilo escritor grabe todos los
+	 * partidos pendientes y cierre su conexión. Si se interrumpe la espera el
+	 * hilo escritor sigue hasta terminar por su cuenta.
+	 * 
+	 * @throws AccesoBDException si se interrumpe la espera o se produce alguna
+	 *                           incidencia en el cierre
+	 */
+	@Override
+	public void close() throws AccesoBDException {
+		cerrojoCierre.writeLock().lock();
+		try {
+			cerrado = true;
+		} finally {
+			cerrojoCierre.writeLock().unlock();
+		}
+
+		try {
+			escritor.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccesoBDException("Espera interrumpida en el cierre", e);
+		}
+		if (falloCierre != null) {
+			throw falloCierre;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package jcolonia.daw2020.quinielabd;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Evento de <i>Java Flight Recorder</i> que registra cada operación de
+ * {@link AccesoBD} sobre la base de datos: conexión, consulta, inserción o
+ * grabación de un lote. La duración la mide el propio evento entre
+ * {@link #begin()} y {@link #end()}.
+ * 
+ * <p>
+ * Tanto la activación como el umbral mínimo de duración se ajustan desde la
+ * configuración de la grabación –archivo «.jfc» o
+ * <code>-XX:StartFlightRecording:settings=…</code>– con el nombre
+ * {@value #NOMBRE}. Mientras está desactivado su coste es prácticamente nulo.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+@Name(EventoAccesoBD.NOMBRE)
+@Label("Operación BD Quiniela")
+@Category({ "Quiniela 1X2", "Base de datos" })
+@Description("Operación de AccesoBD sobre la base de datos SQLite")
+@Enabled(true)
+@Threshold("1 ms")
+@StackTrace(false)
+class EventoAccesoBD extends Event {
+	/**
+	 * Nombre del evento para su configuración en JFR.
+	 */
+	static final String NOMBRE = "jcolonia.quiniela.AccesoBD";
+
+	/**
+	 * Operación de la aplicación: conexión, consulta, inserción, lote…
+	 */
+	@Label("Operación")
+	String operación;
+
+	/**
+	 * Tipo de sentencia SQL –primera palabra clave: SELECT, INSERT…–.
+	 */
+	@Label("Tipo SQL")
+	String tipoSQL;
+
+	/**
+	 * Número de filas leídas o afectadas.
+	 */
+	@Label("Filas")
+	int filas;
+
+	/**
+	 * Obtiene el tipo de una sentencia SQL a partir de su primera palabra.
+	 * 
+	 * @param sql la sentencia
+	 * @return la palabra clave en mayúsculas o «¿?» si no se reconoce
+	 */
+	static String tipoSQL(String sql) {
+		String texto;
+		int fin;
+
+		if (sql == null) {
+			return "¿?";
+		}
+
+		texto = sql.stripLeading();
+		fin = texto.indexOf(' ');
+		if (fin < 0) {
+			fin = texto.length();
+		}
+		return fin == 0 ? "¿?" : texto.substring(0, fin).toUpperCase();
+	}
+}
@@ -0,0 +1,51 @@
+package jcolonia.daw2020.quinielabd;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de <i>Java Flight Recorder</i> que registra cada dato rechazado al
+ * construir un partido con {@link ElementoPartido1X2#of(String)} o
+ * {@link ElementoPartido1X2#of(String, String, String)}, agrupable por motivo.
+ * Se activa y desactiva desde la configuración de la grabación con el nombre
+ * {@value #NOMBRE}.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+@Name(EventoFalloPartido.NOMBRE)
+@Label("Fallo de análisis de partido")
+@Category({ "Quiniela 1X2", "Datos" })
+@Description("Dato de partido rechazado durante el análisis")
+@Enabled(true)
+@StackTrace(false)
+class EventoFalloPartido extends Event {
+	/**
+	 * Nombre del evento para su configuración en JFR.
+	 */
+	static final String NOMBRE = "jcolonia.quiniela.FalloPartido";
+
+	/**
+	 * Motivo del rechazo, el texto de la excepción correspondiente.
+	 */
+	@Label("Motivo")
+	String motivo;
+
+	/**
+	 * Registra un fallo si el evento está activado en la grabación en curso.
+	 * 
+	 * @param motivo el motivo del rechazo
+	 */
+	static void registrar(String motivo) {
+		EventoFalloPartido evento = new EventoFalloPartido();
+		if (evento.shouldCommit()) {
+			evento.motivo = motivo;
+			evento.commit();
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criterios de selección de resultados para las consultas de
+ * {@link AccesoBD}: equipo –como local o como visitante, por su nombre exacto o
+ * por una parte de él–, temporada, jornada y resultado, junto con el orden de las consultas paginadas. Los criterios sin
+ * establecer no restringen la selección.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class FiltroResultados {
+	/**
+	 * Nombre del equipo, en mayúsculas, o nulo para cualquiera.
+	 */
+	private String equipo;
+
+	/**
+	 * Parte del nombre de los equipos, en mayúsculas, o nula para cualquiera.
+	 */
+	private String búsqueda;
+
+	/**
+	 * Temporada, o nula para cualquiera.
+	 */
+	private String temporada;
+
+	/**
+	 * Número de jornada, o cero para cualquiera.
+	 */
+	private int jornada;
+
+	/**
+	 * Resultado 1-X-2, o nulo para cualquiera.
+	 */
+	private Resultado1X2 resultado;
+
+	/**
+	 * Criterio de ordenación.
+	 */
+	private OrdenResultados orden = OrdenResultados.GRABACIÓN;
+
+	/**
+	 * Si la ordenación es descendente.
+	 */
+	private boolean descendente;
+
+	/**
+	 * Crea un filtro sin criterios, que selecciona todos los resultados.
+	 */
+	public FiltroResultados() {
+	}
+
+	/**
+	 * Crea una copia independiente de otro filtro, con los mismos criterios.
+	 * 
+	 * @param original el filtro a copiar
+	 */
+	public FiltroResultados(FiltroResultados original) {
+		equipo = original.equipo;
+		búsqueda = original.búsqueda;
+		temporada = original.temporada;
+		jornada = original.jornada;
+		resultado = original.resultado;
+		orden = original.orden;
+		descendente = original.descendente;
+	}
+
+	/**
+	 * Establece el equipo, que debe jugar como local o como visitante.
+	 * 
+	 * @param equipo el nombre del equipo; nulo o vacío para cualquiera
+	 */
+	public void setEquipo(String equipo) {
+		this.equipo = (equipo == null || equipo.isBlank()) ? null : equipo.strip().toUpperCase();
+	}
+
+	/**
+	 * Proporciona el equipo seleccionado.
+	 * 
+	 * @return el nombre en mayúsculas, o nulo si no se ha establecido
+	 */
+	public String getEquipo() {
+		return equipo;
+	}
+
+	/**
+	 * Establece una parte del nombre de los equipos, que deben jugar como local o
+	 * como visitante. Se resuelve con el índice de búsqueda de equipos.
+	 * 
+	 * @param búsqueda el texto buscado; nulo o vacío para cualquiera
+	 * @see AccesoBD#buscarEquipos(String, int)
+	 */
+	public void setBúsqueda(String búsqueda) {
+		this.búsqueda = (búsqueda == null || búsqueda.isBlank()) ? null : búsqueda.strip().toUpperCase();
+	}
+
+	/**
+	 * Proporciona la parte del nombre de los equipos seleccionada.
+	 * 
+	 * @return el texto en mayúsculas, o nulo si no se ha establecido
+	 */
+	public String getBúsqueda() {
+		return búsqueda;
+	}
+
+	/**
+	 * Establece la temporada.
+	 * 
+	 * @param temporada la temporada; nula o vacía para cualquiera
+	 */
+	public void setTemporada(String temporada) {
+		this.temporada = (temporada == null || temporada.isBlank()) ? null : temporada.strip();
+	}
+
+	/**
+	 * Proporciona la temporada seleccionada.
+	 * 
+	 * @return la temporada, o nula si no se ha establecido
+	 */
+	public String getTemporada() {
+		return temporada;
+	}
+
+	/**
+	 * Establece la jornada.
+	 * 
+	 * @param jornada el número de jornada; cero para cualquiera
+	 */
+	public void setJornada(int jornada) {
+		this.jornada = Math.max(0, jornada);
+	}
+
+	/**
+	 * Proporciona la jornada seleccionada.
+	 * 
+	 * @return el número de jornada, o cero si no se ha establecido
+	 */
+	public int getJornada() {
+		return jornada;
+	}
+
+	/**
+	 * Establece el resultado.
+	 * 
+	 * @param resultado el resultado 1-X-2; nulo para cualquiera
+	 */
+	public void setResultado(Resultado1X2 resultado) {
+		this.resultado = resultado;
+	}
+
+	/**
+	 * Proporciona el resultado seleccionado.
+	 * 
+	 * @return el resultado, o nulo si no se ha establecido
+	 */
+	public Resultado1X2 getResultado() {
+		return resultado;
+	}
+
+	/**
+	 * Establece la ordenación de las consultas paginadas.
+	 * 
+	 * @param orden       el criterio de ordenación; nulo para el orden de
+	 *                    grabación
+	 * @param descendente si el orden es descendente
+	 */
+	public void setOrden(OrdenResultados orden, boolean descendente) {
+		this.orden = orden == null ? OrdenResultados.GRABACIÓN : orden;
+		this.descendente = descendente;
+	}
+
+	/**
+	 * Proporciona el criterio de ordenación.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public OrdenResultados getOrden() {
+		return orden;
+	}
+
+	/**
+	 * Indica si la ordenación es descendente.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public boolean isDescendente() {
+		return descendente;
+	}
+
+	/**
+	 * Indica si el filtro selecciona todos los resultados en orden de grabación,
+	 * sin ningún criterio.
+	 * 
+	 * @return si no hay criterios ni ordenación
+	 */
+	public boolean isVacío() {
+		return equipo == null && búsqueda == null && temporada == null && jornada == 0 && resultado == null
+				&& orden == OrdenResultados.GRABACIÓN && !descendente;
+	}
+
+	/**
+	 * Comprueba si un partido cumple los criterios, para los almacenes que no
+	 * disponen de SQL. Equivale a {@link #cláusulaWhere(boolean)} incluyendo el
+	 * criterio de equipo.
+	 * 
+	 * @param partido el partido a comprobar
+	 * @return si cumple todos los criterios establecidos
+	 */
+	boolean admite(ElementoPartido1X2 partido) {
+		if (temporada != null && !temporada.equals(partido.getTemporada())) {
+			return false;
+		}
+		if (jornada > 0 && jornada != partido.getJornada()) {
+			return false;
+		}
+		if (resultado != null && resultado != partido.getResultado()) {
+			return false;
+		}
+		if (equipo != null && !equipo.equals(partido.getEquipoLocal()) && !equipo.equals(partido.getEquipoVisitante())) {
+			return false;
+		}
+		if (búsqueda != null) {
+			boolean contiene = búsqueda.codePointCount(0, búsqueda.length()) >= AccesoBD.MÍNIMO_TRIGRAMAS;
+			return contiene ? partido.getEquipoLocal().contains(búsqueda) || partido.getEquipoVisitante().contains(búsqueda)
+					: partido.getEquipoLocal().startsWith(búsqueda) || partido.getEquipoVisitante().startsWith(búsqueda);
+		}
+		return true;
+	}
+
+	/**
+	 * Compone la cláusula «ORDER BY» de la ordenación establecida.
+	 * 
+	 * @return la cláusula, precedida de un espacio
+	 */
+	String cláusulaOrderBy() {
+		return orden.cláusulaOrderBy(descendente);
+	}
+
+	/**
+	 * Compone la cláusula «WHERE» correspondiente a los criterios establecidos.
+	 * 
+	 * @param incluirEquipo si se incluye el criterio de equipo
+	 * @return la cláusula, precedida de un espacio, o vacía si no hay criterios
+	 */
+	String cláusulaWhere(boolean incluirEquipo) {
+		return cláusulaWhere(incluirEquipo, false);
+	}
+
+	/**
+	 * Compone la cláusula «WHERE» correspondiente a los criterios establecidos,
+	 * indicando si la consulta debe seguir el índice de la ordenación. En ese
+	 * caso el criterio de resultado –solo tres valores posibles– se aplica al
+	 * recorrer el índice en lugar de elegir el suyo propio, que obligaría a
+	 * ordenar un tercio de la tabla en cada tramo.
+	 * 
+	 * @param incluirEquipo si se incluye el criterio de equipo
+	 * @param seguirOrden   si se prefiere el índice de la ordenación
+	 * @return la cláusula, precedida de un espacio, o vacía si no hay criterios
+	 */
+	String cláusulaWhere(boolean incluirEquipo, boolean seguirOrden) {
+		List<String> condiciones = new ArrayList<>(5);
+
+		if (temporada != null) {
+			condiciones.add("temporada = ?");
+		}
+		if (jornada > 0) {
+			condiciones.add("jornada = ?");
+		}
+		if (resultado != null) {
+			condiciones.add(seguirOrden ? "+resultado = ?" : "resultado = ?");
+		}
+		if (incluirEquipo && equipo != null) {
+			condiciones.add("(nombre_local = ? OR nombre_visitante = ?)");
+		}
+		if (incluirEquipo && búsqueda != null) {
+			String subconsulta = AccesoBD.subconsultaEquipos(búsqueda);
+			condiciones.add(String.format("(nombre_local IN (%s) OR nombre_visitante IN (%s))", subconsulta, subconsulta));
+		}
+		return condiciones.isEmpty() ? "" : " WHERE " + String.join(" AND ", condiciones);
+	}
+
+	/**
+	 * Proporciona los valores de los parámetros de {@link #cláusulaWhere}, en el
+	 * mismo orden.
+	 * 
+	 * @param incluirEquipo si se incluye el criterio de equipo
+	 * @return la lista de valores
+	 */
+	List<Object> parámetros(boolean incluirEquipo) {
+		List<Object> valores = new ArrayList<>(7);
+
+		if (temporada != null) {
+			valores.add(temporada);
+		}
+		if (jornada > 0) {
+			valores.add(jornada);
+		}
+		if (resultado != null) {
+			valores.add(resultado.toString());
+		}
+		if (incluirEquipo && equipo != null) {
+			valores.add(equipo);
+			valores.add(equipo);
+		}
+		if (incluirEquipo && búsqueda != null) {
+			valores.add(AccesoBD.parámetroBúsqueda(búsqueda));
+			valores.add(AccesoBD.parámetroBúsqueda(búsqueda));
+		}
+		return valores;
+	}
+}
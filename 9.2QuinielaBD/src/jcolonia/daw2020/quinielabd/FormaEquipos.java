@@ -0,0 +1,345 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Forma reciente y rachas de cada equipo: los últimos resultados de cada uno y
+ * el número de partidos seguidos que lleva ganando, sin perder o perdiendo.
+ * Cada partido se incorpora en tiempo constante y las consultas no recorren el
+ * historial ni crean objetos.
+ * 
+ * <p>
+ * Los últimos resultados se guardan en un anillo de tamaño fijo por equipo,
+ * todos en un único vector de bytes, y las rachas en vectores de enteros
+ * indexados por equipo; el único objeto por equipo es su entrada en el índice
+ * de nombres. Se {@link #reconstruir(AccesoBD) reconstruye} recorriendo los
+ * resultados en orden de calendario y de grabación, y después se
+ * {@link #actualizar(AccesoBD) actualiza} con los cambios posteriores a la
+ * última revisión incorporada, como todo {@link HistorialEquipos historial}.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class FormaEquipos extends HistorialEquipos {
+	/**
+	 * Clave de configuración del número de últimos resultados guardados por
+	 * equipo.
+	 */
+	public static final String CLAVE_LONGITUD = "forma.partidos";
+
+	/**
+	 * Número predeterminado de últimos resultados guardados por equipo.
+	 */
+	public static final int LONGITUD_PREDETERMINADA = 5;
+
+	/**
+	 * Marca del código de un resultado que indica que el equipo jugaba en casa.
+	 */
+	private static final byte EN_CASA = 4;
+
+	/**
+	 * Resultados posibles por ordinal, copiados una sola vez.
+	 */
+	private static final Resultado1X2[] RESULTADOS = Resultado1X2.values();
+
+	/**
+	 * Número de últimos resultados guardados por equipo.
+	 */
+	private final int longitud;
+
+	/**
+	 * Anillos de últimos resultados, uno tras otro, con el ordinal del
+	 * {@link Resultado1X2} y la marca {@link #EN_CASA}.
+	 */
+	private byte[] anillos;
+
+	/**
+	 * Partidos incorporados de cada equipo; el siguiente va en la posición del
+	 * resto de dividirlo por la longitud.
+	 */
+	private int[] jugados;
+
+	/**
+	 * Partidos seguidos ganados por cada equipo.
+	 */
+	private int[] rachasVictorias;
+
+	/**
+	 * Partidos seguidos sin perder de cada equipo.
+	 */
+	private int[] rachasInvicto;
+
+	/**
+	 * Partidos seguidos perdidos por cada equipo.
+	 */
+	private int[] rachasDerrotas;
+
+	/**
+	 * Crea un registro de forma vacío con la longitud predeterminada.
+	 */
+	public FormaEquipos() {
+		this(LONGITUD_PREDETERMINADA);
+	}
+
+	/**
+	 * Crea un registro de forma vacío.
+	 * 
+	 * @param longitud el número de últimos resultados guardados por equipo, al
+	 *                 menos uno
+	 */
+	public FormaEquipos(int longitud) {
+		this.longitud = Math.max(1, longitud);
+		reservar(getCapacidad());
+	}
+
+	/**
+	 * Crea un registro de forma vacío con la longitud indicada en una
+	 * configuración.
+	 * 
+	 * @param configuración la configuración
+	 */
+	public FormaEquipos(Properties configuración) {
+		this((int) RegistroConsultasLentas.leerNúmero(configuración, CLAVE_LONGITUD, LONGITUD_PREDETERMINADA));
+	}
+
+	/**
+	 * Crea o amplía los vectores por equipo.
+	 * 
+	 * @param capacidad el número de equipos
+	 */
+	@Override
+	protected void reservar(int capacidad) {
+		if (anillos == null) {
+			anillos = new byte[capacidad * longitud];
+			jugados = new int[capacidad];
+			rachasVictorias = new int[capacidad];
+			rachasInvicto = new int[capacidad];
+			rachasDerrotas = new int[capacidad];
+		} else {
+			anillos = Arrays.copyOf(anillos, capacidad * longitud);
+			jugados = Arrays.copyOf(jugados, capacidad);
+			rachasVictorias = Arrays.copyOf(rachasVictorias, capacidad);
+			rachasInvicto = Arrays.copyOf(rachasInvicto, capacidad);
+			rachasDerrotas = Arrays.copyOf(rachasDerrotas, capacidad);
+		}
+	}
+
+	/**
+	 * Pone a cero los resultados y las rachas de todos los equipos.
+	 */
+	@Override
+	protected void vaciar() {
+		int númEquipos = getNúmEquipos();
+		Arrays.fill(jugados, 0, númEquipos, 0);
+		Arrays.fill(rachasVictorias, 0, númEquipos, 0);
+		Arrays.fill(rachasInvicto, 0, númEquipos, 0);
+		Arrays.fill(rachasDerrotas, 0, númEquipos, 0);
+	}
+
+	/**
+	 * Anota un partido al final de la forma de sus dos equipos.
+	 * 
+	 * @param local          el índice del equipo local
+	 * @param visitante      el índice del equipo visitante
+	 * @param resultado      el resultado del partido
+	 * @param reconstruyendo no se usa: cada partido se anota igual
+	 */
+	@Override
+	protected void incorporar(int local, int visitante, Resultado1X2 resultado, boolean reconstruyendo) {
+		anotar(local, resultado, true);
+		anotar(visitante, resultado, false);
+	}
+
+	/**
+	 * Anota un resultado en el anillo de un equipo y actualiza sus rachas.
+	 * 
+	 * @param índice    el índice del equipo
+	 * @param resultado el resultado del partido
+	 * @param enCasa    si el equipo jugaba como local
+	 */
+	private void anotar(int índice, Resultado1X2 resultado, boolean enCasa) {
+		anillos[índice * longitud + jugados[índice] % longitud] = (byte) (resultado.ordinal() | (enCasa ? EN_CASA : 0));
+		jugados[índice]++;
+
+		if (resultado == Resultado1X2.EmpateX) {
+			rachasVictorias[índice] = 0;
+			rachasInvicto[índice]++;
+			rachasDerrotas[índice] = 0;
+		} else if ((resultado == Resultado1X2.Local1) == enCasa) {
+			rachasVictorias[índice]++;
+			rachasInvicto[índice]++;
+			rachasDerrotas[índice] = 0;
+		} else {
+			rachasVictorias[índice] = 0;
+			rachasInvicto[índice] = 0;
+			rachasDerrotas[índice]++;
+		}
+	}
+
+	/**
+	 * Proporciona el número de últimos resultados guardados por equipo.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getLongitud() {
+		return longitud;
+	}
+
+	/**
+	 * Proporciona el número de últimos resultados disponibles de un equipo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return el número de resultados, hasta la {@link #getLongitud() longitud};
+	 *         cero si el equipo no está registrado
+	 */
+	public synchronized int getNúmResultados(String equipo) {
+		int índice = índice(equipo);
+		return índice < 0 ? 0 : Math.min(jugados[índice], longitud);
+	}
+
+	/**
+	 * Proporciona uno de los últimos resultados de un equipo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @param atrás  la posición contando desde el más reciente, que es el cero
+	 * @return el resultado del partido, o nulo si no hay tantos
+	 */
+	public synchronized Resultado1X2 getResultado(String equipo, int atrás) {
+		int índice = índice(equipo);
+		if (índice < 0 || atrás < 0 || atrás >= Math.min(jugados[índice], longitud)) {
+			return null;
+		}
+		return RESULTADOS[código(índice, atrás) & ~EN_CASA];
+	}
+
+	/**
+	 * Indica si un equipo jugaba como local en uno de sus últimos partidos.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @param atrás  la posición contando desde el más reciente, que es el cero
+	 * @return si jugaba en casa; falso si no hay tantos partidos
+	 */
+	public synchronized boolean isLocal(String equipo, int atrás) {
+		int índice = índice(equipo);
+		if (índice < 0 || atrás < 0 || atrás >= Math.min(jugados[índice], longitud)) {
+			return false;
+		}
+		return (código(índice, atrás) & EN_CASA) != 0;
+	}
+
+	/**
+	 * Obtiene el código guardado de uno de los últimos resultados de un equipo.
+	 * 
+	 * @param índice el índice del equipo
+	 * @param atrás  la posición contando desde el más reciente
+	 * @return el código correspondiente
+	 */
+	private byte código(int índice, int atrás) {
+		return anillos[índice * longitud + (jugados[índice] - 1 - atrás) % longitud];
+	}
+
+	/**
+	 * Proporciona el número de partidos seguidos que lleva ganando un equipo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return la racha actual; cero si no está registrado
+	 */
+	public synchronized int getRachaVictorias(String equipo) {
+		int índice = índice(equipo);
+		return índice < 0 ? 0 : rachasVictorias[índice];
+	}
+
+	/**
+	 * Proporciona el número de partidos seguidos que lleva sin perder un equipo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return la racha actual; cero si no está registrado
+	 */
+	public synchronized int getRachaInvicto(String equipo) {
+		int índice = índice(equipo);
+		return índice < 0 ? 0 : rachasInvicto[índice];
+	}
+
+	/**
+	 * Proporciona el número de partidos seguidos que lleva perdiendo un equipo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return la racha actual; cero si no está registrado
+	 */
+	public synchronized int getRachaDerrotas(String equipo) {
+		int índice = índice(equipo);
+		return índice < 0 ? 0 : rachasDerrotas[índice];
+	}
+
+	/**
+	 * Añade a un texto los últimos resultados de un equipo, del más antiguo al
+	 * más reciente y separados por espacios, como «1 X 1 2 1». No crea objetos si
+	 * el texto tiene capacidad suficiente.
+	 * 
+	 * @param equipo  el nombre del equipo
+	 * @param destino el texto al que se añaden
+	 * @return el mismo texto
+	 */
+	public synchronized StringBuilder escribirForma(String equipo, StringBuilder destino) {
+		int índice = índice(equipo);
+		if (índice >= 0) {
+			for (int atrás = Math.min(jugados[índice], longitud) - 1; atrás >= 0; atrás--) {
+				destino.append(RESULTADOS[código(índice, atrás) & ~EN_CASA]);
+				if (atrás > 0) {
+					destino.append(' ');
+				}
+			}
+		}
+		return destino;
+	}
+
+	/**
+	 * Proporciona los últimos resultados de un equipo, del más antiguo al más
+	 * reciente, como «1 X 1 2 1».
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return el texto correspondiente; vacío si no está registrado
+	 * @see #escribirForma(String, StringBuilder)
+	 */
+	public String getForma(String equipo) {
+		return escribirForma(equipo, new StringBuilder(2 * longitud)).toString();
+	}
+
+	/**
+	 * Genera la forma y las rachas de un equipo en formato JSON.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return el texto correspondiente
+	 */
+	public synchronized String toStringJSON(String equipo) {
+		return String.format("{\"equipo\":%s,\"forma\":%s,\"victorias\":%d,\"invicto\":%d,\"derrotas\":%d}",
+				ElementoPartido1X2.textoJSON(equipo.toUpperCase()), ElementoPartido1X2.textoJSON(getForma(equipo)),
+				getRachaVictorias(equipo), getRachaInvicto(equipo), getRachaDerrotas(equipo));
+	}
+
+	/**
+	 * Reconstruye la forma de todos los equipos de la base de datos configurada
+	 * en el archivo de configuración predeterminado y muestra la de los equipos
+	 * indicados.
+	 * 
+	 * @param args los nombres de los equipos
+	 */
+	public static void main(String[] args) {
+		Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+
+		try (AccesoBDConcurrente acceso = new AccesoBDConcurrente(configuración)) {
+			FormaEquipos forma = new FormaEquipos(configuración);
+			long inicio = System.nanoTime();
+			int partidos = acceso.consultar(forma::reconstruir);
+			System.out.printf("Forma de %d equipos a partir de %d partidos en %.0f ms%n", forma.getNúmEquipos(),
+					partidos, (System.nanoTime() - inicio) / 1e6);
+			for (String equipo : args) {
+				System.out.println(forma.toStringJSON(equipo));
+			}
+		} catch (AccesoBDException e) {
+			System.err.printf("Error de acceso a datos: %s%n", e.getLocalizedMessage());
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Datos por equipo que se obtienen recorriendo los resultados en orden de
+ * calendario y se mantienen añadiendo cada partido nuevo al final. Reúne lo
+ * común a todos ellos: el índice de equipos, la posición del último partido
+ * de cada uno y la incorporación de los cambios posteriores a la última
+ * revisión, de modo que cada clase derivada solo decide qué anota de cada
+ * partido.
+ * 
+ * <p>
+ * La posición de un partido es su temporada, su jornada y, dentro de la
+ * jornada, su identificador de fila, que crece con cada partido grabado y
+ * nunca se reutiliza. Así los partidos de una misma jornada –incluidos los
+ * grabados sin calendario, todos en la jornada cero de la temporada vacía–
+ * quedan en orden de grabación, y un partido recién grabado siempre va detrás
+ * de los ya incorporados de su jornada. Solo obliga a reconstruir todo, en la
+ * siguiente actualización, un partido que no es posterior al último de alguno
+ * de sus equipos –una modificación o un partido atrasado– o un borrado.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ * @see AccesoBD#recorrerCalendario(java.util.function.Consumer)
+ */
+public abstract class HistorialEquipos {
+	/**
+	 * Número de equipos para el que se reserva espacio inicialmente.
+	 */
+	private static final int CAPACIDAD_INICIAL = 64;
+
+	/**
+	 * Número máximo de cambios leídos de una vez al actualizar.
+	 */
+	private static final int TAMAÑO_TRAMO = 10000;
+
+	/**
+	 * Índice de cada equipo, por nombre.
+	 */
+	private final Map<String, Integer> índices = new HashMap<>();
+
+	/**
+	 * Nombre de cada equipo, por índice.
+	 */
+	private String[] nombres = new String[CAPACIDAD_INICIAL];
+
+	/**
+	 * Temporada del último partido de cada equipo.
+	 */
+	private String[] temporadas = new String[CAPACIDAD_INICIAL];
+
+	/**
+	 * Jornada del último partido de cada equipo.
+	 */
+	private int[] jornadas = new int[CAPACIDAD_INICIAL];
+
+	/**
+	 * Identificador de fila del último partido de cada equipo.
+	 */
+	private long[] ids = new long[CAPACIDAD_INICIAL];
+
+	/**
+	 * Número de equipos registrados.
+	 */
+	private int númEquipos;
+
+	/**
+	 * Última revisión de la base de datos incorporada.
+	 */
+	private long últimaRevisión;
+
+	/**
+	 * Si hay que reconstruir: aún no se ha hecho, se interrumpió o se ha
+	 * descartado algún partido fuera de orden o borrado.
+	 */
+	private boolean desfasada = true;
+
+	/**
+	 * Descarta los datos anotados de todos los equipos, antes de reconstruir.
+	 * Aún se conserva el {@link #getNúmEquipos() número de equipos} anterior.
+	 */
+	protected abstract void vaciar();
+
+	/**
+	 * Amplía los vectores por equipo de la clase derivada.
+	 * 
+	 * @param capacidad el nuevo número de equipos
+	 */
+	protected abstract void reservar(int capacidad);
+
+	/**
+	 * Anota un partido posterior al último de sus dos equipos.
+	 * 
+	 * @param local          el índice del equipo local
+	 * @param visitante      el índice del equipo visitante
+	 * @param resultado      el resultado del partido
+	 * @param reconstruyendo si forma parte de una reconstrucción, que termina
+	 *                       con {@link #completar()}
+	 */
+	protected abstract void incorporar(int local, int visitante, Resultado1X2 resultado, boolean reconstruyendo);
+
+	/**
+	 * Termina una reconstrucción tras incorporar todos los partidos. No hace
+	 * nada salvo que la clase derivada lo indique.
+	 */
+	protected void completar() {
+	}
+
+	/**
+	 * Proporciona el número de equipos para el que hay espacio reservado, con
+	 * el que la clase derivada crea sus vectores.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	protected final int getCapacidad() {
+		return nombres.length;
+	}
+
+	/**
+	 * Vacía el historial y lo rellena con todos los resultados de la base de
+	 * datos, leídos en orden de calendario y, dentro de cada jornada, de
+	 * grabación.
+	 * 
+	 * @param bd el acceso a la base de datos, con la conexión abierta
+	 * @return el número de partidos leídos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public synchronized int reconstruir(AccesoBD bd) throws AccesoBDException {
+		vaciar();
+		índices.clear();
+		Arrays.fill(nombres, 0, númEquipos, null);
+		Arrays.fill(temporadas, 0, númEquipos, null);
+		númEquipos = 0;
+		desfasada = true;
+
+		últimaRevisión = bd.últimaRevisión();
+		int partidos = bd.recorrerCalendario(cambio -> añadir(cambio, true));
+		completar();
+		desfasada = false;
+		return partidos;
+	}
+
+	/**
+	 * Incorpora los partidos grabados o modificados desde la última revisión
+	 * incorporada, o lo reconstruye todo si alguno de ellos –o alguno anterior–
+	 * no puede añadirse al final del historial de sus equipos, o si se ha
+	 * borrado algún partido.
+	 * 
+	 * @param bd el acceso a la base de datos, con la conexión abierta
+	 * @return el número de partidos incorporados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public synchronized int actualizar(AccesoBD bd) throws AccesoBDException {
+		int incorporados = avanzar(bd);
+		if (desfasada) {
+			incorporados = reconstruir(bd);
+		}
+		return incorporados;
+	}
+
+	/**
+	 * Incorpora los partidos grabados o modificados desde la última revisión
+	 * incorporada mientras puedan añadirse al final del historial de sus
+	 * equipos, sin reconstruir nunca. Al encontrar uno que no puede añadirse,
+	 * o un borrado, se detiene y el historial queda
+	 * {@link #isDesfasada() desfasado}.
+	 * 
+	 * @param bd el acceso a la base de datos, con la conexión abierta
+	 * @return el número de partidos incorporados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public synchronized int avanzar(AccesoBD bd) throws AccesoBDException {
+		List<CambioPartido> cambios = new ArrayList<>();
+		int incorporados = 0;
+
+		while (!desfasada && bd.leerCambios(últimaRevisión, TAMAÑO_TRAMO, cambios) > 0) {
+			for (CambioPartido cambio : cambios) {
+				if (añadir(cambio, false)) {
+					incorporados++;
+				}
+			}
+			últimaRevisión = cambios.get(cambios.size() - 1).getRevisión();
+			cambios.clear();
+		}
+		return incorporados;
+	}
+
+	/**
+	 * Indica si hay que reconstruir el historial antes de incorporar más
+	 * partidos.
+	 * 
+	 * @return si está desfasado
+	 */
+	public synchronized boolean isDesfasada() {
+		return desfasada;
+	}
+
+	/**
+	 * Añade un partido recién grabado al final del historial de sus dos
+	 * equipos, si es posterior al último de ambos. En caso contrario –o si es
+	 * una baja– lo descarta y marca el historial para reconstruirlo en la
+	 * siguiente actualización.
+	 * 
+	 * @param cambio el partido, con su identificador de fila
+	 * @return si se ha añadido
+	 */
+	public synchronized boolean añadir(CambioPartido cambio) {
+		return añadir(cambio, false);
+	}
+
+	/**
+	 * Añade un partido al final del historial de sus dos equipos, si es
+	 * posterior al último de ambos, o marca el historial para reconstruirlo.
+	 * 
+	 * @param cambio         el partido, con su identificador de fila
+	 * @param reconstruyendo si forma parte de una reconstrucción
+	 * @return si se ha añadido
+	 */
+	private boolean añadir(CambioPartido cambio, boolean reconstruyendo) {
+		ElementoPartido1X2 partido = cambio.getPartido();
+		if (partido == null || partido.getResultado() == null) {
+			desfasada = true;
+			return false;
+		}
+
+		int local = índiceNuevo(partido.getEquipoLocal());
+		int visitante = índiceNuevo(partido.getEquipoVisitante());
+		if (!esPosterior(local, partido, cambio.getId()) || !esPosterior(visitante, partido, cambio.getId())) {
+			desfasada = true;
+			return false;
+		}
+		incorporar(local, visitante, partido.getResultado(), reconstruyendo);
+		anotar(local, partido, cambio.getId());
+		anotar(visitante, partido, cambio.getId());
+		return true;
+	}
+
+	/**
+	 * Indica si un partido va después que el último de un equipo: en una
+	 * jornada posterior del calendario o, en la misma, grabado más tarde.
+	 * 
+	 * @param índice  el índice del equipo
+	 * @param partido el partido
+	 * @param id      el identificador de fila del partido
+	 * @return si es posterior, o si el equipo no tiene partidos
+	 */
+	private boolean esPosterior(int índice, ElementoPartido1X2 partido, long id) {
+		if (temporadas[índice] == null) {
+			return true;
+		}
+		int comparación = partido.getTemporada().compareTo(temporadas[índice]);
+		if (comparación == 0) {
+			comparación = Integer.compare(partido.getJornada(), jornadas[índice]);
+		}
+		if (comparación == 0) {
+			comparación = Long.compare(id, ids[índice]);
+		}
+		return comparación > 0;
+	}
+
+	/**
+	 * Anota la posición del último partido de un equipo.
+	 * 
+	 * @param índice  el índice del equipo
+	 * @param partido el partido
+	 * @param id      el identificador de fila del partido
+	 */
+	private void anotar(int índice, ElementoPartido1X2 partido, long id) {
+		temporadas[índice] = partido.getTemporada();
+		jornadas[índice] = partido.getJornada();
+		ids[índice] = id;
+	}
+
+	/**
+	 * Obtiene el índice de un equipo, registrándolo si es nuevo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return el índice correspondiente
+	 */
+	private int índiceNuevo(String equipo) {
+		Integer índice = índices.get(equipo);
+		if (índice == null) {
+			if (númEquipos == nombres.length) {
+				int capacidad = númEquipos * 2;
+				nombres = Arrays.copyOf(nombres, capacidad);
+				temporadas = Arrays.copyOf(temporadas, capacidad);
+				jornadas = Arrays.copyOf(jornadas, capacidad);
+				ids = Arrays.copyOf(ids, capacidad);
+				reservar(capacidad);
+			}
+			índice = númEquipos++;
+			índices.put(equipo, índice);
+			nombres[índice] = equipo;
+		}
+		return índice;
+	}
+
+	/**
+	 * Obtiene el índice de un equipo registrado, con el nombre tal como se graba
+	 * o en cualquier combinación de mayúsculas y minúsculas. Con el nombre tal
+	 * como se graba, en mayúsculas, la búsqueda no crea objetos.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return el índice correspondiente, o -1 si no está registrado
+	 */
+	protected final int índice(String equipo) {
+		Integer índice = índices.get(equipo);
+		if (índice == null) {
+			índice = índices.get(equipo.toUpperCase());
+		}
+		return índice == null ? -1 : índice;
+	}
+
+	/**
+	 * Proporciona el nombre de un equipo registrado.
+	 * 
+	 * @param índice el índice del equipo
+	 * @return el nombre, tal como se graba
+	 */
+	protected final String getNombre(int índice) {
+		return nombres[índice];
+	}
+
+	/**
+	 * Indica si un equipo tiene algún partido en el historial.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return si está registrado
+	 */
+	public synchronized boolean isRegistrado(String equipo) {
+		return índice(equipo) >= 0;
+	}
+
+	/**
+	 * Proporciona el número de equipos registrados.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized int getNúmEquipos() {
+		return númEquipos;
+	}
+
+	/**
+	 * Proporciona la última revisión de la base de datos incorporada.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized long getÚltimaRevisión() {
+		return últimaRevisión;
+	}
+}
@@ -0,0 +1,806 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Importación de resultados desde un archivo de texto en formato pseudo-CSV,
+ * por etapas que trabajan en paralelo: un lector, varios intérpretes que
+ * construyen y validan los partidos, y un único grabador que los escribe en la
+ * base de datos en transacciones grandes, con una conexión propia.
+ * 
+ * <p>
+ * Las líneas viajan entre etapas en bloques, por colas acotadas, y el número
+ * de bloques en curso está limitado: la memoria ocupada no depende del tamaño
+ * del archivo y el ritmo total lo marca la etapa más lenta, no la suma de
+ * todas. Cada línea tiene el formato de {@link ElementoPartido1X2#of(String)}
+ * –<code>LOCAL#VISITANTE#RESULTADO</code>– seguido opcionalmente de
+ * <code>#TEMPORADA#JORNADA</code>; las líneas vacías y las que empiezan por
+ * «#» se ignoran.
+ * </p>
+ * 
+ * <p>
+ * Las líneas no válidas se copian al archivo de rechazos precedidas de un
+ * comentario con su número y el motivo, de modo que una vez corregido puede
+ * importarse de nuevo. En modo ordenado los partidos se graban –y los rechazos
+ * se anotan– en el orden del archivo; en modo desordenado, según se
+ * interpretan.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class ImportadorResultados {
+	/**
+	 * Clave de configuración del número de hilos intérpretes; cero para
+	 * ajustarlo a los procesadores disponibles, reservando uno para el lector y
+	 * otro para el grabador.
+	 */
+	public static final String CLAVE_INTÉRPRETES = "importacion.interpretes";
+
+	/**
+	 * Clave de configuración de la capacidad, en bloques, de cada cola entre
+	 * etapas.
+	 */
+	public static final String CLAVE_CAPACIDAD = "importacion.cola.bloques";
+
+	/**
+	 * Clave de configuración del número de partidos por transacción.
+	 */
+	public static final String CLAVE_TRANSACCIÓN = "importacion.transaccion";
+
+	/**
+	 * Clave de configuración del modo ordenado: <code>true</code> o
+	 * <code>false</code>.
+	 */
+	public static final String CLAVE_ORDENADA = "importacion.ordenada";
+
+	/**
+	 * Capacidad predeterminada de cada cola, en bloques.
+	 */
+	public static final int CAPACIDAD_PREDETERMINADA = 64;
+
+	/**
+	 * Número predeterminado de partidos por transacción.
+	 */
+	public static final int TRANSACCIÓN_PREDETERMINADA = 20_000;
+
+	/**
+	 * Número de líneas de cada bloque.
+	 */
+	private static final int LÍNEAS_BLOQUE = 256;
+
+	/**
+	 * Separador de los campos de una línea.
+	 */
+	private static final String SEPARADOR = "#";
+
+	/**
+	 * Tiempo máximo de cada espera en las colas, tras el que se comprueba si se
+	 * ha abortado la importación.
+	 */
+	private static final long ESPERA_MS = 100;
+
+	/**
+	 * Bloque de líneas consecutivas del archivo, con los partidos y rechazos
+	 * obtenidos al interpretarlas.
+	 */
+	private static class Bloque {
+		/**
+		 * Número de orden del bloque, desde cero.
+		 */
+		private final long número;
+
+		/**
+		 * Número de la primera línea del bloque en el archivo, desde uno.
+		 */
+		private final long primeraLínea;
+
+		/**
+		 * Líneas del bloque, incluidas las que se ignoran.
+		 */
+		private final List<String> líneas;
+
+		/**
+		 * Partidos válidos.
+		 */
+		private final List<ElementoPartido1X2> partidos = new ArrayList<>();
+
+		/**
+		 * Texto de los rechazos, comentario y línea original.
+		 */
+		private final StringBuilder rechazos = new StringBuilder();
+
+		/**
+		 * Número de líneas rechazadas.
+		 */
+		private int númRechazos;
+
+		/**
+		 * Crea un bloque.
+		 * 
+		 * @param número       el número de orden
+		 * @param primeraLínea el número de la primera línea
+		 * @param líneas       las líneas del bloque
+		 */
+		private Bloque(long número, long primeraLínea, List<String> líneas) {
+			this.número = número;
+			this.primeraLínea = primeraLínea;
+			this.líneas = líneas;
+		}
+	}
+
+	/**
+	 * Marca de fin de datos, que cada intérprete reenvía al grabador.
+	 */
+	private static final Bloque FIN = new Bloque(-1, 0, List.of());
+
+	/**
+	 * Estadísticas de una etapa de la importación.
+	 */
+	public static class Etapa {
+		/**
+		 * Nombre de la etapa.
+		 */
+		private final String nombre;
+
+		/**
+		 * Número de hilos de la etapa.
+		 */
+		private final int hilos;
+
+		/**
+		 * Número de líneas tratadas.
+		 */
+		private final LongAdder líneas = new LongAdder();
+
+		/**
+		 * Tiempo de trabajo acumulado de todos los hilos, sin contar las esperas.
+		 */
+		private final LongAdder ocupadoNanos = new LongAdder();
+
+		/**
+		 * Crea las estadísticas de una etapa.
+		 * 
+		 * @param nombre el nombre de la etapa
+		 * @param hilos  el número de hilos
+		 */
+		private Etapa(String nombre, int hilos) {
+			this.nombre = nombre;
+			this.hilos = hilos;
+		}
+
+		/**
+		 * Anota el trabajo realizado con un bloque.
+		 * 
+		 * @param númLíneas el número de líneas del bloque
+		 * @param inicio    el instante de inicio, según {@link System#nanoTime()}
+		 */
+		private void anotar(int númLíneas, long inicio) {
+			líneas.add(númLíneas);
+			ocupadoNanos.add(System.nanoTime() - inicio);
+		}
+
+		/**
+		 * Proporciona el nombre de la etapa.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public String getNombre() {
+			return nombre;
+		}
+
+		/**
+		 * Proporciona el número de líneas tratadas.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public long getLíneas() {
+			return líneas.sum();
+		}
+
+		/**
+		 * Proporciona la fracción del tiempo transcurrido que los hilos de la etapa
+		 * han estado trabajando. La etapa más ocupada es la que limita el ritmo.
+		 * 
+		 * @param transcurridoNanos el tiempo transcurrido
+		 * @return la ocupación, entre cero y uno
+		 */
+		public double getOcupación(long transcurridoNanos) {
+			return transcurridoNanos <= 0 ? 0 : (double) ocupadoNanos.sum() / transcurridoNanos / hilos;
+		}
+
+		/**
+		 * Proporciona el ritmo de la etapa si trabajara sin esperas.
+		 * 
+		 * @return las líneas por segundo
+		 */
+		public double getRitmoMáximo() {
+			long ocupado = ocupadoNanos.sum();
+			return ocupado == 0 ? 0 : getLíneas() * 1e9 * hilos / ocupado;
+		}
+	}
+
+	/**
+	 * Configuración de acceso a la base de datos.
+	 */
+	private final Properties configuración;
+
+	/**
+	 * Número de hilos intérpretes.
+	 */
+	private final int númIntérpretes;
+
+	/**
+	 * Capacidad de cada cola, en bloques.
+	 */
+	private final int capacidad;
+
+	/**
+	 * Número de partidos por transacción.
+	 */
+	private final int tamañoTransacción;
+
+	/**
+	 * Si los partidos se graban en el orden del archivo.
+	 */
+	private final boolean ordenada;
+
+	/**
+	 * Estadísticas de la lectura.
+	 */
+	private final Etapa lectura = new Etapa("lectura", 1);
+
+	/**
+	 * Estadísticas de la interpretación.
+	 */
+	private final Etapa interpretación;
+
+	/**
+	 * Estadísticas de la grabación.
+	 */
+	private final Etapa grabación = new Etapa("grabación", 1);
+
+	/**
+	 * Cola de bloques leídos pendientes de interpretar.
+	 */
+	private volatile BlockingQueue<Bloque> leídos;
+
+	/**
+	 * Cola de bloques interpretados pendientes de grabar.
+	 */
+	private volatile BlockingQueue<Bloque> interpretados;
+
+	/**
+	 * Mayor número de bloques observado en la cola de leídos.
+	 */
+	private final AtomicInteger máxLeídos = new AtomicInteger();
+
+	/**
+	 * Mayor número de bloques observado en la cola de interpretados.
+	 */
+	private final AtomicInteger máxInterpretados = new AtomicInteger();
+
+	/**
+	 * Número de partidos grabados.
+	 */
+	private final LongAdder grabados = new LongAdder();
+
+	/**
+	 * Número de líneas rechazadas.
+	 */
+	private final LongAdder rechazados = new LongAdder();
+
+	/**
+	 * Instante de inicio de la importación en curso o de la última.
+	 */
+	private volatile long inicioNanos;
+
+	/**
+	 * Instante de fin de la última importación, o nulo si está en curso.
+	 */
+	private volatile long finNanos;
+
+	/**
+	 * Primera incidencia que ha abortado la importación, o nula.
+	 */
+	private volatile Exception fallo;
+
+	/**
+	 * Crea un importador.
+	 * 
+	 * @param configuración la configuración de acceso a la base de datos
+	 * @see #CLAVE_INTÉRPRETES
+	 * @see #CLAVE_CAPACIDAD
+	 * @see #CLAVE_TRANSACCIÓN
+	 * @see #CLAVE_ORDENADA
+	 */
+	public ImportadorResultados(Properties configuración) {
+		this.configuración = configuración;
+		long intérpretes = RegistroConsultasLentas.leerNúmero(configuración, CLAVE_INTÉRPRETES, 0);
+		númIntérpretes = intérpretes > 0 ? (int) intérpretes
+				: Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+		capacidad = (int) Math.max(1,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_CAPACIDAD, CAPACIDAD_PREDETERMINADA));
+		tamañoTransacción = (int) Math.max(1,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_TRANSACCIÓN, TRANSACCIÓN_PREDETERMINADA));
+		ordenada = Boolean.parseBoolean(configuración.getProperty(CLAVE_ORDENADA, "true").strip());
+		interpretación = new Etapa("interpretación", númIntérpretes);
+	}
+
+	/**
+	 * Importa un archivo de resultados. Los partidos ya grabados con la misma
+	 * clave se sustituyen. Se puede llamar de nuevo para otro archivo; las
+	 * estadísticas se refieren siempre a la última importación.
+	 * 
+	 * @param origen   el archivo de resultados
+	 * @param rechazos el archivo en el que copiar las líneas no válidas, que se
+	 *                 sustituye si existe
+	 * @return el número de partidos grabados
+	 * @throws AccesoBDException si falla la lectura, la grabación o se interrumpe
+	 *                           la espera
+	 */
+	public synchronized long importar(Path origen, Path rechazos) throws AccesoBDException {
+		List<Thread> hilos = new ArrayList<>();
+
+		leídos = new ArrayBlockingQueue<>(capacidad);
+		interpretados = new ArrayBlockingQueue<>(capacidad);
+		// Bloques leídos y aún no grabados: acota también los que el grabador
+		// retiene en modo ordenado a la espera de uno anterior
+		Semaphore enCurso = new Semaphore(2 * capacidad + númIntérpretes);
+		fallo = null;
+		finNanos = 0;
+		inicioNanos = System.nanoTime();
+
+		try (AccesoBD acceso = new AccesoBD(configuración);
+				BufferedWriter salidaRechazos = Files.newBufferedWriter(rechazos, StandardCharsets.UTF_8)) {
+			acceso.abrirConexión();
+
+			for (int i = 1; i <= númIntérpretes; i++) {
+				hilos.add(new Thread(this::interpretarBloques, "Intérprete importación " + i));
+			}
+			hilos.add(new Thread(() -> grabarBloques(acceso, salidaRechazos, enCurso), "Grabador importación"));
+			for (Thread hilo : hilos) {
+				hilo.start();
+			}
+
+			try {
+				leerBloques(origen, enCurso);
+			} catch (IOException | InterruptedException e) {
+				abortar(e);
+			} finally {
+				for (int i = 0; i < númIntérpretes; i++) {
+					poner(leídos, FIN, máxLeídos);
+				}
+				for (Thread hilo : hilos) {
+					hilo.join();
+				}
+			}
+		} catch (IOException e) {
+			abortar(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abortar(e);
+		} finally {
+			finNanos = System.nanoTime();
+		}
+
+		if (fallo != null) {
+			if (fallo instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			String mensaje = String.format("Importación abortada: %s", fallo.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, fallo);
+		}
+		return grabados.sum();
+	}
+
+	/**
+	 * Etapa de lectura: reparte el archivo en bloques de líneas.
+	 * 
+	 * @param origen  el archivo de resultados
+	 * @param enCurso los bloques que aún pueden ponerse en curso
+	 * @throws IOException          si falla la lectura
+	 * @throws InterruptedException si se interrumpe la espera
+	 */
+	private void leerBloques(Path origen, Semaphore enCurso) throws IOException, InterruptedException {
+		try (BufferedReader entrada = Files.newBufferedReader(origen, StandardCharsets.UTF_8)) {
+			long númBloque = 0;
+			long númLínea = 1;
+			boolean quedan = true;
+
+			while (quedan && fallo == null) {
+				while (!enCurso.tryAcquire(ESPERA_MS, TimeUnit.MILLISECONDS)) {
+					if (fallo != null) {
+						return;
+					}
+				}
+
+				long inicio = System.nanoTime();
+				List<String> líneas = new ArrayList<>(LÍNEAS_BLOQUE);
+				String línea;
+				while (líneas.size() < LÍNEAS_BLOQUE && (línea = entrada.readLine()) != null) {
+					líneas.add(línea);
+				}
+				quedan = líneas.size() == LÍNEAS_BLOQUE;
+				lectura.anotar(líneas.size(), inicio);
+
+				if (líneas.isEmpty()) {
+					enCurso.release();
+				} else {
+					poner(leídos, new Bloque(númBloque++, númLínea, líneas), máxLeídos);
+					númLínea += líneas.size();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Etapa de interpretación: construye los partidos de cada bloque y anota los
+	 * rechazos, hasta recibir la marca de fin, que reenvía al grabador.
+	 */
+	private void interpretarBloques() {
+		try {
+			Bloque bloque;
+			while ((bloque = tomar(leídos)) != FIN && bloque != null) {
+				long inicio = System.nanoTime();
+				interpretar(bloque);
+				interpretación.anotar(bloque.líneas.size(), inicio);
+				poner(interpretados, bloque, máxInterpretados);
+			}
+			poner(interpretados, FIN, máxInterpretados);
+		} catch (InterruptedException e) {
+			abortar(e);
+		}
+	}
+
+	/**
+	 * Interpreta las líneas de un bloque. Los rechazos no lanzan excepciones, de
+	 * modo que un archivo con muchas líneas no válidas se interpreta tan deprisa
+	 * como uno limpio.
+	 * 
+	 * @param bloque el bloque a interpretar
+	 */
+	private static void interpretar(Bloque bloque) {
+		long númLínea = bloque.primeraLínea;
+
+		for (String línea : bloque.líneas) {
+			if (!línea.isBlank() && !línea.startsWith(SEPARADOR)) {
+				ElementoPartido1X2 partido = new ElementoPartido1X2();
+				ValidacionPartido validación = interpretar(línea, partido);
+				if (validación.isCorrecto()) {
+					bloque.partidos.add(partido);
+				} else {
+					EventoFalloPartido.registrar(validación.getMensaje());
+					bloque.rechazos.append(String.format("# Línea %d, campo %d: %s%n%s%n", númLínea,
+							campoRechazado(validación, partido, línea), validación.getMensaje(), línea));
+					bloque.númRechazos++;
+				}
+			}
+			númLínea++;
+		}
+	}
+
+	/**
+	 * Rellena un partido con los datos de una línea, con su posición en el
+	 * calendario si la incluye, sin lanzar excepciones. Una temporada sin
+	 * jornada se rechaza: grabar el partido sin calendario podría sustituir el
+	 * resultado de otro de la misma pareja.
+	 * 
+	 * @param línea   la línea de texto
+	 * @param partido el partido, todavía vacío
+	 * @return {@link ValidacionPartido#CORRECTO} si la línea es válida, o el
+	 *         motivo del rechazo
+	 */
+	static ValidacionPartido interpretar(String línea, ElementoPartido1X2 partido) {
+		ValidacionPartido validación = partido.probarLínea(línea);
+
+		if (validación.isCorrecto()) {
+			String[] partes = línea.split(SEPARADOR);
+			if (partes.length >= 5) {
+				validación = partido.probarCalendario(partes[3], leerJornada(partes[4]));
+			} else if (partes.length == 4 && !partes[3].isBlank()) {
+				validación = ValidacionPartido.FALTA_JORNADA;
+			}
+		}
+		return validación;
+	}
+
+	/**
+	 * Lee el número de jornada de un campo sin lanzar excepciones.
+	 * 
+	 * @param texto el campo
+	 * @return el número, o -1 si el campo no es un número válido
+	 */
+	private static int leerJornada(String texto) {
+		String número = texto.strip();
+
+		if (número.isEmpty() || número.length() > 9) {
+			return -1;
+		}
+		for (int i = 0; i < número.length(); i++) {
+			if (número.charAt(i) < '0' || número.charAt(i) > '9') {
+				return -1;
+			}
+		}
+		return Integer.parseInt(número);
+	}
+
+	/**
+	 * Determina el campo de la línea, desde uno, que ha provocado un rechazo. Si
+	 * faltan campos, es el primero de los que faltan.
+	 * 
+	 * @param validación el motivo del rechazo
+	 * @param partido    el partido rechazado
+	 * @param línea      la línea rechazada
+	 * @return el número de campo
+	 */
+	private static int campoRechazado(ValidacionPartido validación, ElementoPartido1X2 partido, String línea) {
+		switch (validación) {
+		case JORNADA_NO_VÁLIDA:
+		case FALTA_JORNADA:
+			return 5;
+		case FALTAN_CAMPOS:
+			return línea.split(SEPARADOR).length + 1;
+		default:
+			return partido.getNúmDatos() + 1;
+		}
+	}
+
+	/**
+	 * Etapa de grabación: reúne los partidos de los bloques en transacciones y
+	 * anota los rechazos, hasta recibir la marca de fin de todos los intérpretes.
+	 * En modo ordenado retiene los bloques adelantados hasta tratar los
+	 * anteriores.
+	 * 
+	 * @param acceso         el acceso exclusivo del grabador
+	 * @param salidaRechazos el destino de los rechazos
+	 * @param enCurso        los bloques que aún pueden ponerse en curso
+	 */
+	private void grabarBloques(AccesoBD acceso, BufferedWriter salidaRechazos, Semaphore enCurso) {
+		TreeMap<Long, Bloque> adelantados = new TreeMap<>();
+		List<ElementoPartido1X2> transacción = new ArrayList<>(tamañoTransacción);
+		long siguiente = 0;
+		int finales = 0;
+
+		try {
+			while (finales < númIntérpretes && fallo == null) {
+				Bloque bloque = tomar(interpretados);
+				if (bloque == null) {
+					continue;
+				} else if (bloque == FIN) {
+					finales++;
+					continue;
+				}
+
+				adelantados.put(ordenada ? bloque.número : siguiente, bloque);
+				while ((bloque = adelantados.remove(siguiente)) != null) {
+					long inicio = System.nanoTime();
+					for (ElementoPartido1X2 partido : bloque.partidos) {
+						transacción.add(partido);
+						if (transacción.size() == tamañoTransacción) {
+							grabar(acceso, transacción);
+						}
+					}
+					if (bloque.númRechazos > 0) {
+						salidaRechazos.write(bloque.rechazos.toString());
+						rechazados.add(bloque.númRechazos);
+					}
+					grabación.anotar(bloque.líneas.size(), inicio);
+					enCurso.release();
+					siguiente++;
+				}
+			}
+
+			if (fallo == null) {
+				long inicio = System.nanoTime();
+				grabar(acceso, transacción);
+				salidaRechazos.flush();
+				grabación.anotar(0, inicio);
+			}
+		} catch (AccesoBDException | IOException | InterruptedException e) {
+			abortar(e);
+		}
+	}
+
+	/**
+	 * Graba los partidos reunidos en una transacción y vacía la lista.
+	 * 
+	 * @param acceso      el acceso exclusivo del grabador
+	 * @param transacción los partidos a grabar
+	 * @throws AccesoBDException si falla la grabación
+	 */
+	private void grabar(AccesoBD acceso, List<ElementoPartido1X2> transacción) throws AccesoBDException {
+		if (!transacción.isEmpty()) {
+			acceso.escribir(transacción, true);
+			grabados.add(transacción.size());
+			transacción.clear();
+		}
+	}
+
+	/**
+	 * Deposita un bloque en una cola, esperando a que haya hueco salvo que se
+	 * aborte la importación, y anota la mayor ocupación observada.
+	 * 
+	 * @param cola   la cola de destino
+	 * @param bloque el bloque
+	 * @param máximo la mayor ocupación observada de la cola
+	 * @throws InterruptedException si se interrumpe la espera
+	 */
+	private void poner(BlockingQueue<Bloque> cola, Bloque bloque, AtomicInteger máximo)
+			throws InterruptedException {
+		while (!cola.offer(bloque, ESPERA_MS, TimeUnit.MILLISECONDS)) {
+			if (fallo != null) {
+				return;
+			}
+		}
+		máximo.accumulateAndGet(cola.size(), Math::max);
+	}
+
+	/**
+	 * Toma un bloque de una cola, esperando un tiempo acotado.
+	 * 
+	 * @param cola la cola de origen
+	 * @return el bloque, o nulo si no llega ninguno a tiempo o se ha abortado la
+	 *         importación
+	 * @throws InterruptedException si se interrumpe la espera
+	 */
+	private Bloque tomar(BlockingQueue<Bloque> cola) throws InterruptedException {
+		Bloque bloque;
+
+		do {
+			bloque = cola.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+		} while (bloque == null && fallo == null);
+		return bloque;
+	}
+
+	/**
+	 * Aborta la importación, conservando la primera incidencia.
+	 * 
+	 * @param e la incidencia
+	 */
+	private synchronized void abortar(Exception e) {
+		if (fallo == null) {
+			fallo = e;
+		}
+	}
+
+	/**
+	 * Proporciona el tiempo transcurrido de la importación en curso o de la
+	 * última.
+	 * 
+	 * @return los nanosegundos transcurridos
+	 */
+	public long getTranscurridoNanos() {
+		long inicio = inicioNanos;
+		if (inicio == 0) {
+			return 0;
+		}
+		return (finNanos == 0 ? System.nanoTime() : finNanos) - inicio;
+	}
+
+	/**
+	 * Proporciona las estadísticas de cada etapa, en orden.
+	 * 
+	 * @return las etapas de lectura, interpretación y grabación
+	 */
+	public List<Etapa> getEtapas() {
+		return List.of(lectura, interpretación, grabación);
+	}
+
+	/**
+	 * Proporciona el número de partidos grabados.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getGrabados() {
+		return grabados.sum();
+	}
+
+	/**
+	 * Proporciona el número de líneas rechazadas.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getRechazados() {
+		return rechazados.sum();
+	}
+
+	/**
+	 * Proporciona el número de bloques en una cola.
+	 * 
+	 * @param cola la cola, o nula si aún no se ha creado
+	 * @return el valor correspondiente
+	 */
+	private static int ocupación(BlockingQueue<Bloque> cola) {
+		return cola == null ? 0 : cola.size();
+	}
+
+	/**
+	 * Proporciona las estadísticas de la importación en formato JSON.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	public String toStringJSON() {
+		long transcurrido = getTranscurridoNanos();
+		StringBuilder texto = new StringBuilder();
+
+		texto.append(String.format(Locale.ROOT,
+				"{\"ordenada\":%b,\"segundos\":%.3f,\"grabados\":%d,\"rechazados\":%d,"
+						+ "\"colas\":{\"leidos\":%d,\"maxLeidos\":%d,\"interpretados\":%d,\"maxInterpretados\":%d,"
+						+ "\"capacidad\":%d},\"etapas\":[",
+				ordenada, transcurrido / 1e9, getGrabados(), getRechazados(), ocupación(leídos), máxLeídos.get(),
+				ocupación(interpretados), máxInterpretados.get(), capacidad));
+		for (Etapa etapa : getEtapas()) {
+			texto.append(etapa == lectura ? "" : ",");
+			texto.append(String.format(Locale.ROOT,
+					"{\"nombre\":%s,\"hilos\":%d,\"lineas\":%d,\"ocupacion\":%.3f,\"ritmoMaximo\":%.0f}",
+					ElementoPartido1X2.textoJSON(etapa.nombre), etapa.hilos, etapa.getLíneas(),
+					etapa.getOcupación(transcurrido), etapa.getRitmoMáximo()));
+		}
+		return texto.append("]}").toString();
+	}
+
+	/**
+	 * Resume las estadísticas de la importación, una línea por etapa.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	@Override
+	public String toString() {
+		long transcurrido = getTranscurridoNanos();
+		StringBuilder texto = new StringBuilder();
+
+		texto.append(String.format("Importación %s: %d partidos grabados y %d líneas rechazadas en %.1f s%n",
+				ordenada ? "ordenada" : "desordenada", getGrabados(), getRechazados(), transcurrido / 1e9));
+		for (Etapa etapa : getEtapas()) {
+			texto.append(String.format("  %-15s %2d hilos %10d líneas, ocupación %3.0f %%, máx. %,.0f líneas/s%n",
+					etapa.nombre, etapa.hilos, etapa.getLíneas(), 100 * etapa.getOcupación(transcurrido),
+					etapa.getRitmoMáximo()));
+		}
+		texto.append(String.format("  colas: %d/%d leídos (máx. %d), %d/%d interpretados (máx. %d)",
+				ocupación(leídos), capacidad, máxLeídos.get(), ocupación(interpretados), capacidad,
+				máxInterpretados.get()));
+		return texto.toString();
+	}
+
+	/**
+	 * Importa un archivo de resultados en la base de datos configurada en el
+	 * archivo de configuración predeterminado e informa del resultado.
+	 * 
+	 * @param args el archivo de resultados y, opcionalmente, el de rechazos
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Uso: ImportadorResultados ARCHIVO [RECHAZOS]");
+			System.exit(1);
+		}
+
+		Path origen = Path.of(args[0]);
+		Path rechazos = Path.of(args.length > 1 ? args[1] : args[0] + ".rechazos");
+		ImportadorResultados importador = new ImportadorResultados(
+				AccesoBDConcurrente.configuraciónPredeterminada());
+
+		try {
+			importador.importar(origen, rechazos);
+		} catch (AccesoBDException e) {
+			System.err.printf("Error de importación: %s%n", e.getLocalizedMessage());
+		}
+		System.out.println(importador);
+	}
+}
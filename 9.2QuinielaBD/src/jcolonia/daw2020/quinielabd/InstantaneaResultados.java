@@ -0,0 +1,431 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Instantánea compacta de todos los resultados, para mostrarlos al arrancar sin
+ * esperar a la base de datos. Contiene el diccionario de nombres de temporadas
+ * y equipos y, por cada partido, su identificador de fila y sus datos
+ * codificados como enteros de longitud variable –el resultado va empaquetado
+ * con la jornada–, de modo que cada partido ocupa unos seis bytes. Se lee con
+ * una única proyección en memoria.
+ * 
+ * <p>
+ * La instantánea lleva como sello la revisión y el número de partidos de la
+ * base de datos al formarla: es vigente si ambos coinciden con los actuales.
+ * Las revisiones avanzan con cada partido grabado, modificado o borrado y nunca
+ * se repiten, así que la misma revisión corresponde al mismo contenido. Si la
+ * base de datos solo ha avanzado, la instantánea sirve de punto de partida y
+ * basta con incorporar los cambios posteriores a su revisión, bajas incluidas.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class InstantaneaResultados {
+	/**
+	 * Clave de configuración de la ruta de la instantánea.
+	 */
+	public static final String CLAVE_ARCHIVO = "instantanea.archivo";
+
+	/**
+	 * Ruta predeterminada de la instantánea.
+	 */
+	public static final String ARCHIVO_PREDETERMINADO = "quiniela.snap";
+
+	/**
+	 * Marca inicial del archivo: «Q1SN».
+	 */
+	private static final int MARCA = 0x5131534E;
+
+	/**
+	 * Versión del formato.
+	 */
+	private static final int VERSIÓN = 1;
+
+	/**
+	 * Longitud de la cabecera: marca, versión, revisión, número de partidos y
+	 * número de nombres.
+	 */
+	private static final int TAMAÑO_CABECERA = 4 + 4 + 8 + 4 + 4;
+
+	/**
+	 * Resultados posibles, por ordinal.
+	 */
+	private static final Resultado1X2[] RESULTADOS = Resultado1X2.values();
+
+	/**
+	 * Ruta del archivo.
+	 */
+	private final Path archivo;
+
+	/**
+	 * Revisión de la base de datos al formar la instantánea.
+	 */
+	private final long revisión;
+
+	/**
+	 * Número de partidos.
+	 */
+	private final int filas;
+
+	/**
+	 * Nombres de temporadas y equipos, por identificador.
+	 */
+	private final String[] nombres;
+
+	/**
+	 * Datos de los partidos, proyectados en memoria.
+	 */
+	private final ByteBuffer datos;
+
+	/**
+	 * Crea una instantánea ya leída.
+	 * 
+	 * @param archivo  la ruta del archivo
+	 * @param revisión la revisión del sello
+	 * @param filas    el número de partidos del sello
+	 * @param nombres  el diccionario de nombres
+	 * @param datos    los datos de los partidos
+	 */
+	private InstantaneaResultados(Path archivo, long revisión, int filas, String[] nombres, ByteBuffer datos) {
+		this.archivo = archivo;
+		this.revisión = revisión;
+		this.filas = filas;
+		this.nombres = nombres;
+		this.datos = datos;
+	}
+
+	/**
+	 * Obtiene la ruta de la instantánea indicada en una configuración.
+	 * 
+	 * @param configuración la configuración
+	 * @return la ruta correspondiente
+	 * @see #CLAVE_ARCHIVO
+	 */
+	public static Path ruta(Properties configuración) {
+		return Path.of(configuración.getProperty(CLAVE_ARCHIVO, ARCHIVO_PREDETERMINADO));
+	}
+
+	/**
+	 * Lee una instantánea: proyecta el archivo en memoria, comprueba su CRC y
+	 * decodifica el diccionario. Los partidos se decodifican al recorrerla.
+	 * 
+	 * @param archivo la ruta del archivo
+	 * @return la instantánea, o nulo si no existe
+	 * @throws AccesoBDException si no se puede leer o no tiene el formato
+	 *                           esperado
+	 */
+	public static InstantaneaResultados leer(Path archivo) throws AccesoBDException {
+		if (!Files.isRegularFile(archivo)) {
+			return null;
+		}
+
+		MappedByteBuffer proyección;
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+			proyección = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+		} catch (IOException e) {
+			String mensaje = String.format("Error al leer instantánea «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+
+		try {
+			int fin = proyección.limit() - 4;
+			if (fin < TAMAÑO_CABECERA || proyección.getInt(0) != MARCA || proyección.getInt(4) != VERSIÓN) {
+				throw new AccesoBDException("formato desconocido");
+			}
+			CRC32 crc = new CRC32();
+			crc.update(proyección.duplicate().limit(fin));
+			if ((int) crc.getValue() != proyección.getInt(fin)) {
+				throw new AccesoBDException("CRC incorrecto");
+			}
+
+			long revisión = proyección.getLong(8);
+			int filas = proyección.getInt(16);
+			String[] nombres = new String[proyección.getInt(20)];
+			ByteBuffer datos = proyección.duplicate().position(TAMAÑO_CABECERA).limit(fin);
+			for (int i = 0; i < nombres.length; i++) {
+				byte[] texto = new byte[leerVarint(datos)];
+				datos.get(texto);
+				nombres[i] = new String(texto, StandardCharsets.UTF_8);
+			}
+			return new InstantaneaResultados(archivo, revisión, filas, nombres, datos.slice());
+		} catch (AccesoBDException | RuntimeException e) {
+			String mensaje = String.format("Instantánea «%s» no válida: %s", archivo, e.getMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Proporciona la revisión de la base de datos al formar la instantánea.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getRevisión() {
+		return revisión;
+	}
+
+	/**
+	 * Proporciona el número de partidos de la instantánea.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getFilas() {
+		return filas;
+	}
+
+	/**
+	 * Indica si la instantánea refleja exactamente el estado de la base de
+	 * datos.
+	 * 
+	 * @param revisiónBD la revisión actual de la base de datos
+	 * @param filasBD    el número actual de partidos
+	 * @return si el sello coincide
+	 */
+	public boolean isVigente(long revisiónBD, int filasBD) {
+		return revisiónBD == revisión && filasBD == filas;
+	}
+
+	/**
+	 * Decodifica los partidos en orden y los entrega por tramos. Cada partido se
+	 * entrega con la revisión de la instantánea.
+	 * 
+	 * @param tamañoTramo el número de partidos de cada tramo
+	 * @param receptor    el destino de cada tramo
+	 * @throws AccesoBDException si los datos no son válidos
+	 */
+	public void recorrer(int tamañoTramo, Consumer<List<CambioPartido>> receptor) throws AccesoBDException {
+		ByteBuffer lectura = datos.duplicate();
+		List<CambioPartido> tramo = new ArrayList<>(tamañoTramo);
+		long id = 0;
+
+		try {
+			for (int i = 0; i < filas; i++) {
+				id += desdeZigzag(leerVarintLargo(lectura));
+				String temporada = nombres[leerVarint(lectura)];
+				int jornadaResultado = leerVarint(lectura);
+				String local = nombres[leerVarint(lectura)];
+				String visitante = nombres[leerVarint(lectura)];
+				ElementoPartido1X2 partido = ElementoPartido1X2.of(temporada, jornadaResultado >>> 2, local,
+						visitante, RESULTADOS[jornadaResultado & 3].toString());
+				tramo.add(new CambioPartido(id, revisión, partido));
+				if (tramo.size() == tamañoTramo) {
+					receptor.accept(tramo);
+					tramo = new ArrayList<>(tamañoTramo);
+				}
+			}
+		} catch (DatoPartido1X2Exception | RuntimeException e) {
+			String mensaje = String.format("Instantánea «%s» no válida: %s", archivo, e.getMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+		if (!tramo.isEmpty()) {
+			receptor.accept(tramo);
+		}
+	}
+
+	/**
+	 * Graba una instantánea de forma atómica: se escribe en un archivo temporal
+	 * junto al definitivo y después lo sustituye.
+	 * 
+	 * @param archivo  la ruta del archivo
+	 * @param revisión la revisión de la base de datos a la que corresponden los
+	 *                 partidos
+	 * @param ids      los identificadores de fila de los partidos
+	 * @param partidos los partidos, en el mismo orden
+	 * @throws AccesoBDException si no se puede grabar
+	 */
+	public static void grabar(Path archivo, long revisión, long[] ids, List<ElementoPartido1X2> partidos)
+			throws AccesoBDException {
+		Map<String, Integer> identificadores = new HashMap<>();
+		List<byte[]> nombres = new ArrayList<>();
+		ByteBuffer filas = ByteBuffer.allocate(Math.max(64, partidos.size() * 8));
+
+		long idAnterior = 0;
+		for (int i = 0; i < partidos.size(); i++) {
+			ElementoPartido1X2 partido = partidos.get(i);
+			if (filas.remaining() < 5 * 5 + 10) {
+				filas = ByteBuffer.allocate(filas.capacity() * 2).put(filas.flip());
+			}
+			escribirVarint(filas, aZigzag(ids[i] - idAnterior));
+			idAnterior = ids[i];
+			escribirVarint(filas, identificar(partido.getTemporada(), identificadores, nombres));
+			escribirVarint(filas, (long) partido.getJornada() << 2 | partido.getResultado().ordinal());
+			escribirVarint(filas, identificar(partido.getEquipoLocal(), identificadores, nombres));
+			escribirVarint(filas, identificar(partido.getEquipoVisitante(), identificadores, nombres));
+		}
+		filas.flip();
+
+		int tamañoNombres = 0;
+		for (byte[] nombre : nombres) {
+			tamañoNombres += 5 + nombre.length;
+		}
+		ByteBuffer contenido = ByteBuffer.allocate(TAMAÑO_CABECERA + tamañoNombres + filas.remaining() + 4);
+		contenido.putInt(MARCA).putInt(VERSIÓN).putLong(revisión).putInt(partidos.size()).putInt(nombres.size());
+		for (byte[] nombre : nombres) {
+			escribirVarint(contenido, nombre.length);
+			contenido.put(nombre);
+		}
+		contenido.put(filas);
+		CRC32 crc = new CRC32();
+		crc.update(contenido.array(), 0, contenido.position());
+		contenido.putInt((int) crc.getValue()).flip();
+
+		Path temporal = null;
+		try {
+			Path directorio = archivo.toAbsolutePath().getParent();
+			temporal = Files.createTempFile(directorio, archivo.getFileName().toString(), ".tmp");
+			try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+				while (contenido.hasRemaining()) {
+					canal.write(contenido);
+				}
+				canal.force(true);
+			}
+			Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			if (temporal != null) {
+				try {
+					Files.deleteIfExists(temporal);
+				} catch (IOException eBorrado) {
+					e.addSuppressed(eBorrado);
+				}
+			}
+			String mensaje = String.format("Error al grabar instantánea «%s»: %s", archivo, e.getLocalizedMessage());
+			throw new AccesoBDException(mensaje, e);
+		}
+	}
+
+	/**
+	 * Graba una instantánea con todos los resultados de la base de datos, leídos
+	 * en orden de revisión; las bajas solo cuentan para la revisión del sello, y
+	 * un reinicio a mitad de lectura descarta lo leído antes.
+	 * 
+	 * @param bd      el acceso a la base de datos
+	 * @param archivo la ruta del archivo
+	 * @return el número de partidos grabados
+	 * @throws AccesoBDException si se produce alguna incidencia al leer o al
+	 *                           grabar
+	 */
+	public static int grabar(AccesoBD bd, Path archivo) throws AccesoBDException {
+		List<CambioPartido> cambios = new ArrayList<>();
+		long revisión = 0;
+		while (bd.leerCambios(revisión, 10000, cambios) > 0) {
+			revisión = cambios.get(cambios.size() - 1).getRevisión();
+		}
+
+		for (int i = cambios.size() - 1; i >= 0; i--) {
+			if (cambios.get(i).isReinicio()) {
+				cambios.subList(0, i + 1).clear();
+				break;
+			}
+		}
+		cambios.removeIf(CambioPartido::isBaja);
+		long[] ids = new long[cambios.size()];
+		List<ElementoPartido1X2> partidos = new ArrayList<>(cambios.size());
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = cambios.get(i).getId();
+			partidos.add(cambios.get(i).getPartido());
+		}
+		grabar(archivo, revisión, ids, partidos);
+		return ids.length;
+	}
+
+	/**
+	 * Obtiene el identificador de un nombre en el diccionario, añadiéndolo si es
+	 * nuevo.
+	 * 
+	 * @param nombre          el nombre
+	 * @param identificadores los identificadores ya asignados
+	 * @param nombres         los nombres codificados, por identificador
+	 * @return el identificador
+	 */
+	private static int identificar(String nombre, Map<String, Integer> identificadores, List<byte[]> nombres) {
+		return identificadores.computeIfAbsent(nombre, nuevo -> {
+			nombres.add(nuevo.getBytes(StandardCharsets.UTF_8));
+			return nombres.size() - 1;
+		});
+	}
+
+	/**
+	 * Transforma un valor con signo para que los de valor absoluto pequeño
+	 * ocupen pocos bytes como entero de longitud variable: 0, -1, 1, -2… pasan a
+	 * ser 0, 1, 2, 3…
+	 * 
+	 * @param valor el valor con signo
+	 * @return el código sin signo
+	 */
+	private static long aZigzag(long valor) {
+		return valor << 1 ^ valor >> 63;
+	}
+
+	/**
+	 * Deshace la transformación de {@link #aZigzag(long)}.
+	 * 
+	 * @param código el código sin signo
+	 * @return el valor con signo
+	 */
+	private static long desdeZigzag(long código) {
+		return código >>> 1 ^ -(código & 1);
+	}
+
+	/**
+	 * Escribe un entero no negativo en grupos de siete bits, del menos al más
+	 * significativo, con el bit alto como indicador de continuación.
+	 * 
+	 * @param destino el búfer de destino
+	 * @param valor   el valor
+	 */
+	private static void escribirVarint(ByteBuffer destino, long valor) {
+		while ((valor & ~0x7FL) != 0) {
+			destino.put((byte) (valor & 0x7F | 0x80));
+			valor >>>= 7;
+		}
+		destino.put((byte) valor);
+	}
+
+	/**
+	 * Lee un entero escrito con {@link #escribirVarint(ByteBuffer, long)}.
+	 * 
+	 * @param origen el búfer de origen
+	 * @return el valor
+	 */
+	private static long leerVarintLargo(ByteBuffer origen) {
+		long valor = 0;
+		for (int desplazamiento = 0;; desplazamiento += 7) {
+			byte b = origen.get();
+			valor |= (long) (b & 0x7F) << desplazamiento;
+			if (b >= 0) {
+				return valor;
+			}
+		}
+	}
+
+	/**
+	 * Lee un entero de 32 bits escrito con
+	 * {@link #escribirVarint(ByteBuffer, long)}.
+	 * 
+	 * @param origen el búfer de origen
+	 * @return el valor
+	 */
+	private static int leerVarint(ByteBuffer origen) {
+		byte b = origen.get();
+		if (b >= 0) { // Caso habitual: un solo byte
+			return b;
+		}
+		return (int) (b & 0x7F | leerVarintLargo(origen) << 7);
+	}
+}
@@ -0,0 +1,614 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mantenimiento en segundo plano de la base de datos de un
+ * {@link AccesoBDConcurrente}: traslada las temporadas cerradas a archivos
+ * propios y devuelve al sistema el espacio que dejan libre.
+ * 
+ * <p>
+ * El trabajo se reparte en pasos breves, cada uno con el cerrojo de escritura
+ * solo durante su transacción, y únicamente se realiza cuando el proceso no ha
+ * accedido a la base de datos desde el ciclo anterior. Cada ciclo encadena
+ * pasos hasta agotar su presupuesto de tiempo o detectar nueva actividad, de
+ * modo que las consultas no esperan nunca más de un paso.
+ * </p>
+ * 
+ * <p>
+ * Las temporadas cerradas –todas salvo las más recientes– se trasladan por
+ * tramos a la base de datos de su {@link AlmacenFragmentado fragmento}, donde
+ * siguen disponibles. La primera vez, si el archivo no admite la recuperación
+ * incremental de espacio, se compacta entero para activarla.
+ * </p>
+ * 
+ * <p>
+ * Las bajas que anotan los partidos borrados o archivados se podan salvo las
+ * de las revisiones más recientes: quien lea los cambios desde una revisión
+ * anterior vuelve a cargarlo todo.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class MantenimientoBD implements AutoCloseable {
+	/**
+	 * Clave de configuración del intervalo, en milisegundos, entre ciclos de
+	 * mantenimiento. Un valor nulo o negativo lo desactiva.
+	 */
+	public static final String CLAVE_INTERVALO = "mantenimiento.intervalo.ms";
+
+	/**
+	 * Clave de configuración del tiempo máximo, en milisegundos, dedicado a cada
+	 * ciclo.
+	 */
+	public static final String CLAVE_PRESUPUESTO = "mantenimiento.paso.ms";
+
+	/**
+	 * Clave de configuración del número máximo de páginas liberadas en cada
+	 * paso.
+	 */
+	public static final String CLAVE_PÁGINAS = "mantenimiento.paso.paginas";
+
+	/**
+	 * Clave de configuración del número de temporadas más recientes que no se
+	 * archivan. Un valor nulo o negativo desactiva el archivo.
+	 */
+	public static final String CLAVE_TEMPORADAS_ABIERTAS = "mantenimiento.temporadas.abiertas";
+
+	/**
+	 * Clave de configuración del número de revisiones más recientes cuyas bajas
+	 * se conservan. Un valor negativo desactiva la poda.
+	 */
+	public static final String CLAVE_RETENCIÓN_BAJAS = "mantenimiento.bajas.retencion";
+
+	/**
+	 * Intervalo predeterminado entre ciclos, en milisegundos.
+	 */
+	public static final int INTERVALO_PREDETERMINADO = 1000;
+
+	/**
+	 * Tiempo máximo predeterminado de cada ciclo, en milisegundos.
+	 */
+	public static final int PRESUPUESTO_PREDETERMINADO = 20;
+
+	/**
+	 * Número predeterminado de páginas liberadas en cada paso.
+	 */
+	public static final int PÁGINAS_PREDETERMINADAS = 256;
+
+	/**
+	 * Número predeterminado de temporadas que no se archivan: ninguna se archiva
+	 * salvo que se configure, porque las consultas de la base de datos principal
+	 * dejan de verlas.
+	 */
+	public static final int TEMPORADAS_ABIERTAS_PREDETERMINADAS = 0;
+
+	/**
+	 * Número predeterminado de revisiones más recientes cuyas bajas se
+	 * conservan.
+	 */
+	public static final int RETENCIÓN_BAJAS_PREDETERMINADA = 10_000;
+
+	/**
+	 * Número máximo de bajas podadas en cada paso.
+	 */
+	private static final int PODA_MÁXIMA = 10_000;
+
+	/**
+	 * Número mínimo de partidos archivados en cada paso.
+	 */
+	private static final int TRAMO_MÍNIMO = 100;
+
+	/**
+	 * Número máximo de partidos archivados en cada paso.
+	 */
+	private static final int TRAMO_MÁXIMO = 20_000;
+
+	/**
+	 * Acceso a la base de datos mantenida.
+	 */
+	private final AccesoBDConcurrente acceso;
+
+	/**
+	 * Configuración, para abrir las bases de datos de archivo.
+	 */
+	private final Properties configuración;
+
+	/**
+	 * Directorio de las bases de datos de archivo.
+	 */
+	private final Path directorio;
+
+	/**
+	 * Intervalo entre ciclos, en milisegundos.
+	 */
+	private final long intervaloMs;
+
+	/**
+	 * Tiempo máximo de cada ciclo, en nanosegundos.
+	 */
+	private final long presupuestoNanos;
+
+	/**
+	 * Número máximo de páginas liberadas en cada paso.
+	 */
+	private final int páginasPaso;
+
+	/**
+	 * Número de temporadas más recientes que no se archivan.
+	 */
+	private final int temporadasAbiertas;
+
+	/**
+	 * Número de revisiones más recientes cuyas bajas se conservan.
+	 */
+	private final long retenciónBajas;
+
+	/**
+	 * Planificador de los ciclos, creado al iniciar.
+	 */
+	private ScheduledExecutorService planificador;
+
+	/**
+	 * Número de operaciones del proceso en el ciclo anterior.
+	 */
+	private long operacionesAnteriores = -1;
+
+	/**
+	 * Si ya se ha comprobado el modo de recuperación de espacio.
+	 */
+	private boolean modoComprobado;
+
+	/**
+	 * Temporadas cerradas pendientes de archivar, la primera en curso.
+	 */
+	private final ArrayDeque<String> pendientes = new ArrayDeque<>();
+
+	/**
+	 * Número de modificaciones del proceso cuando se buscaron por última vez
+	 * las temporadas cerradas.
+	 */
+	private long modificacionesRevisadas = -1;
+
+	/**
+	 * Número de modificaciones del proceso cuando se podaron por última vez
+	 * las bajas sin que quedara ninguna por podar.
+	 */
+	private long modificacionesPodadas = -1;
+
+	/**
+	 * Archivos de temporada con el esquema ya preparado.
+	 */
+	private final Set<Path> preparados = new HashSet<>();
+
+	/**
+	 * Número de partidos archivados en cada paso, ajustado según su duración.
+	 */
+	private int tramo = 500;
+
+	/**
+	 * Si el ciclo anterior liberó páginas, para informar al terminar.
+	 */
+	private boolean liberando;
+
+	/**
+	 * Páginas libres en la última comprobación.
+	 */
+	private volatile long páginasLibres;
+
+	/**
+	 * Tamaño de página, en bytes.
+	 */
+	private volatile long tamañoPágina;
+
+	/**
+	 * Páginas devueltas al sistema.
+	 */
+	private volatile long páginasLiberadas;
+
+	/**
+	 * Partidos trasladados a los archivos de temporada.
+	 */
+	private volatile long partidosArchivados;
+
+	/**
+	 * Temporadas archivadas por completo.
+	 */
+	private volatile long temporadasArchivadas;
+
+	/**
+	 * Bajas podadas.
+	 */
+	private volatile long bajasPodadas;
+
+	/**
+	 * Pasos realizados con algún trabajo.
+	 */
+	private volatile long pasos;
+
+	/**
+	 * Duración máxima de un paso, en nanosegundos.
+	 */
+	private volatile long máxPasoNanos;
+
+	/**
+	 * Ciclos aplazados por actividad en la base de datos.
+	 */
+	private volatile long aplazamientos;
+
+	/**
+	 * Toma los intervalos, límites y el directorio de archivo de la
+	 * configuración.
+	 * 
+	 * @param acceso        el acceso a la base de datos
+	 * @param configuración la configuración
+	 * @see #CLAVE_INTERVALO
+	 * @see #CLAVE_PRESUPUESTO
+	 * @see #CLAVE_PÁGINAS
+	 * @see #CLAVE_TEMPORADAS_ABIERTAS
+	 * @see #CLAVE_RETENCIÓN_BAJAS
+	 * @see AlmacenFragmentado#CLAVE_DIRECTORIO
+	 */
+	public MantenimientoBD(AccesoBDConcurrente acceso, Properties configuración) {
+		this.acceso = acceso;
+		this.configuración = configuración;
+		directorio = Path.of(configuración.getProperty(AlmacenFragmentado.CLAVE_DIRECTORIO,
+				AlmacenFragmentado.DIRECTORIO_PREDETERMINADO));
+		intervaloMs = RegistroConsultasLentas.leerNúmero(configuración, CLAVE_INTERVALO, INTERVALO_PREDETERMINADO);
+		presupuestoNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_PRESUPUESTO, PRESUPUESTO_PREDETERMINADO)));
+		páginasPaso = (int) Math.max(1,
+				RegistroConsultasLentas.leerNúmero(configuración, CLAVE_PÁGINAS, PÁGINAS_PREDETERMINADAS));
+		temporadasAbiertas = (int) RegistroConsultasLentas.leerNúmero(configuración, CLAVE_TEMPORADAS_ABIERTAS,
+				TEMPORADAS_ABIERTAS_PREDETERMINADAS);
+		retenciónBajas = RegistroConsultasLentas.leerNúmero(configuración, CLAVE_RETENCIÓN_BAJAS,
+				RETENCIÓN_BAJAS_PREDETERMINADA);
+	}
+
+	/**
+	 * Programa los ciclos de mantenimiento, salvo que estén desactivados en la
+	 * configuración.
+	 */
+	public synchronized void iniciar() {
+		if (planificador != null || intervaloMs <= 0) {
+			return;
+		}
+
+		planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+			Thread hilo = new Thread(tarea, "Mantenimiento BD");
+			hilo.setDaemon(true);
+			hilo.setPriority(Thread.MIN_PRIORITY);
+			return hilo;
+		});
+		planificador.scheduleWithFixedDelay(this::ciclo, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Realiza un ciclo de mantenimiento si no ha habido actividad desde el
+	 * anterior. Las incidencias se informan por la salida de error sin detener
+	 * los ciclos siguientes.
+	 */
+	private synchronized void ciclo() {
+		long operaciones = AccesoBD.getOperaciones();
+		boolean inactivo = operaciones == operacionesAnteriores;
+
+		operacionesAnteriores = operaciones;
+		if (!inactivo) {
+			aplazamientos++;
+			return;
+		}
+
+		long límite = System.nanoTime() + presupuestoNanos;
+		try {
+			while (paso() && System.nanoTime() < límite && AccesoBD.getOperaciones() == operaciones) {
+				// Sigue con el siguiente paso
+			}
+		} catch (AccesoBDException | RuntimeException e) {
+			System.err.printf("Mantenimiento: %s%n", e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Realiza todo el mantenimiento pendiente, sin esperar a periodos de
+	 * inactividad ni limitar su duración.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public synchronized void completar() throws AccesoBDException {
+		while (paso()) {
+			// Sigue con el siguiente paso
+		}
+	}
+
+	/**
+	 * Realiza el siguiente paso de mantenimiento: la comprobación inicial del
+	 * modo de recuperación, la poda de un grupo de bajas, el traslado de un
+	 * tramo de la temporada cerrada en curso o la liberación de un grupo de
+	 * páginas.
+	 * 
+	 * @return si queda trabajo pendiente
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private boolean paso() throws AccesoBDException {
+		long inicio = System.nanoTime();
+		boolean pendiente = true;
+
+		if (!modoComprobado) {
+			modoComprobado = true;
+			if (acceso.modificar(AccesoBD::activarVacíoIncremental)) {
+				System.err.printf("Mantenimiento: archivo compactado en modo incremental (%.1f s)%n",
+						(System.nanoTime() - inicio) / 1e9);
+			}
+		} else {
+			buscarTemporadasCerradas();
+			if (podarBajas()) {
+				// Poda antes de seguir archivando: cada tramo anota sus bajas
+			} else if (!pendientes.isEmpty()) {
+				archivarTramo(pendientes.peek());
+			} else {
+				pendiente = liberarPáginas();
+			}
+		}
+
+		if (pendiente) {
+			pasos++;
+			máxPasoNanos = Math.max(máxPasoNanos, System.nanoTime() - inicio);
+		}
+		return pendiente;
+	}
+
+	/**
+	 * Busca las temporadas cerradas si la base de datos ha cambiado desde la
+	 * última búsqueda.
+	 * 
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private void buscarTemporadasCerradas() throws AccesoBDException {
+		long modificaciones = AccesoBD.getModificaciones();
+		if (temporadasAbiertas <= 0 || modificaciones == modificacionesRevisadas) {
+			return;
+		}
+
+		modificacionesRevisadas = modificaciones;
+		List<String> temporadas = acceso.consultar(AccesoBD::temporadas);
+		pendientes.clear();
+		pendientes.addAll(temporadas.subList(0, Math.max(0, temporadas.size() - temporadasAbiertas)));
+	}
+
+	/**
+	 * Traslada un tramo de una temporada cerrada a su archivo y ajusta el tamaño
+	 * del tramo siguiente al presupuesto de tiempo.
+	 * 
+	 * @param temporada la temporada
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private void archivarTramo(String temporada) throws AccesoBDException {
+		Path archivo = prepararArchivo(temporada);
+		int límite = tramo;
+
+		long inicio = System.nanoTime();
+		int archivados = acceso.modificar(bd -> {
+			int número = bd.archivarTramo(temporada, archivo, límite);
+			comprobarEspacio(bd);
+			return número;
+		});
+		long duración = System.nanoTime() - inicio;
+
+		partidosArchivados += archivados;
+		modificacionesRevisadas = AccesoBD.getModificaciones();
+		if (archivados < límite) {
+			pendientes.poll();
+			temporadasArchivadas++;
+			System.err.printf("Mantenimiento: temporada «%s» archivada en «%s»%n", temporada, archivo);
+		}
+
+		if (duración > presupuestoNanos) {
+			tramo = Math.max(TRAMO_MÍNIMO, tramo / 2);
+		} else if (duración < presupuestoNanos / 4) {
+			tramo = Math.min(TRAMO_MÁXIMO, tramo * 2);
+		}
+	}
+
+	/**
+	 * Poda un grupo de bajas antiguas si la base de datos ha cambiado desde que
+	 * no quedaba ninguna por podar.
+	 * 
+	 * @return si se ha podado alguna
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private boolean podarBajas() throws AccesoBDException {
+		long modificaciones = AccesoBD.getModificaciones();
+		if (retenciónBajas < 0 || modificaciones == modificacionesPodadas) {
+			return false;
+		}
+
+		int podadas = acceso.modificar(bd -> bd.podarBajas(retenciónBajas, PODA_MÁXIMA));
+		bajasPodadas += podadas;
+		if (podadas == 0) {
+			modificacionesPodadas = modificaciones;
+		}
+		return podadas > 0;
+	}
+
+	/**
+	 * Crea, si no existe, la base de datos de archivo de una temporada con el
+	 * esquema completo.
+	 * 
+	 * @param temporada la temporada
+	 * @return la ruta de la base de datos
+	 * @throws AccesoBDException si no se puede crear
+	 */
+	private Path prepararArchivo(String temporada) throws AccesoBDException {
+		Path archivo = AlmacenFragmentado.archivoFragmento(directorio, temporada);
+
+		if (!preparados.contains(archivo)) {
+			try {
+				Files.createDirectories(directorio);
+			} catch (IOException e) {
+				String mensaje = String.format("Error al crear directorio «%s»: %s", directorio,
+						e.getLocalizedMessage());
+				throw new AccesoBDException(mensaje, e);
+			}
+
+			Properties propia = new Properties();
+			propia.putAll(configuración);
+			propia.setProperty("jdbc.url", "jdbc:sqlite:" + archivo);
+			try (AccesoBD bd = new AccesoBD(propia)) {
+				bd.abrir();
+			}
+			preparados.add(archivo);
+		}
+		return archivo;
+	}
+
+	/**
+	 * Devuelve al sistema un grupo de páginas libres e informa del espacio
+	 * recuperado al terminar.
+	 * 
+	 * @return si se ha liberado alguna página
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private boolean liberarPáginas() throws AccesoBDException {
+		long liberadas = acceso.modificar(bd -> {
+			long número = bd.liberarPáginas(páginasPaso);
+			comprobarEspacio(bd);
+			return número;
+		});
+
+		páginasLiberadas += liberadas;
+		if (liberadas > 0) {
+			liberando = true;
+		} else if (liberando) {
+			liberando = false;
+			System.err.println(this);
+		}
+		return liberadas > 0;
+	}
+
+	/**
+	 * Anota el número de páginas libres y el tamaño de página actuales.
+	 * 
+	 * @param bd el acceso a la base de datos
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private void comprobarEspacio(AccesoBD bd) throws AccesoBDException {
+		páginasLibres = bd.páginasLibres();
+		tamañoPágina = bd.tamañoPágina();
+	}
+
+	/**
+	 * Proporciona el espacio ocupado por páginas libres en la última
+	 * comprobación.
+	 * 
+	 * @return el número de bytes
+	 */
+	public long getBytesLibres() {
+		return páginasLibres * tamañoPágina;
+	}
+
+	/**
+	 * Proporciona el espacio devuelto al sistema hasta el momento.
+	 * 
+	 * @return el número de bytes
+	 */
+	public long getBytesRecuperados() {
+		return páginasLiberadas * tamañoPágina;
+	}
+
+	/**
+	 * Proporciona el número de partidos trasladados a los archivos de temporada.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getPartidosArchivados() {
+		return partidosArchivados;
+	}
+
+	/**
+	 * Detiene los ciclos de mantenimiento, esperando a que termine el paso en
+	 * curso.
+	 */
+	@Override
+	public void close() {
+		ScheduledExecutorService cerrado;
+		synchronized (this) {
+			cerrado = planificador;
+			planificador = null;
+		}
+
+		if (cerrado != null) {
+			cerrado.shutdown();
+			try {
+				cerrado.awaitTermination(30, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Proporciona las estadísticas de mantenimiento en formato JSON.
+	 * 
+	 * @return el texto JSON
+	 */
+	public String toStringJSON() {
+		return String.format(Locale.ROOT,
+				"{\"paginasLibres\":%d,\"bytesLibres\":%d,\"paginasLiberadas\":%d,\"bytesRecuperados\":%d,"
+						+ "\"partidosArchivados\":%d,\"temporadasArchivadas\":%d,\"bajasPodadas\":%d,\"pasos\":%d,"
+						+ "\"maxPasoMs\":%.3f,\"aplazamientos\":%d}",
+				páginasLibres, getBytesLibres(), páginasLiberadas, getBytesRecuperados(), partidosArchivados,
+				temporadasArchivadas, bajasPodadas, pasos, máxPasoNanos / 1e6, aplazamientos);
+	}
+
+	/**
+	 * Resume las estadísticas de mantenimiento.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"Mantenimiento: %d páginas libres (%d bytes), %d bytes recuperados, %d partidos archivados "
+						+ "de %d temporadas, %d bajas podadas, %d pasos (máx. %.1f ms), %d ciclos aplazados",
+				páginasLibres, getBytesLibres(), getBytesRecuperados(), partidosArchivados, temporadasArchivadas,
+				bajasPodadas, pasos, máxPasoNanos / 1e6, aplazamientos);
+	}
+
+	/**
+	 * Realiza de una vez todo el mantenimiento pendiente de la base de datos
+	 * configurada en el archivo de configuración predeterminado e informa del
+	 * resultado. Con la opción <code>--enfrentamientos</code> reconstruye antes
+	 * el resumen de enfrentamientos entre equipos.
+	 * 
+	 * @param args las opciones de la línea de órdenes
+	 */
+	public static void main(String[] args) {
+		Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+
+		try (AccesoBDConcurrente acceso = new AccesoBDConcurrente(configuración);
+				MantenimientoBD mantenimiento = new MantenimientoBD(acceso, configuración)) {
+			if (Arrays.asList(args).contains("--enfrentamientos")) {
+				int parejas = acceso.modificar(AccesoBD::reconstruirEnfrentamientos);
+				System.out.printf("Enfrentamientos: %d parejas reconstruidas%n", parejas);
+			}
+			mantenimiento.completar();
+			System.out.println(mantenimiento);
+		} catch (AccesoBDException e) {
+			System.err.println(e.getLocalizedMessage());
+			System.exit(2);
+		}
+	}
+}
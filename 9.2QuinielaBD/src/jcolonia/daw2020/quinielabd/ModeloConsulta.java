@@ -0,0 +1,420 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Modelo de tabla de resultados filtrados y ordenados por la base de datos. Solo
+ * se conoce el número total de filas; los partidos se piden por páginas de
+ * {@value #TAMAÑO_PÁGINA} conforme la tabla necesita mostrarlos y se conservan
+ * las {@value #MÁXIMO_PÁGINAS} usadas más recientemente. Mientras una página
+ * no ha llegado sus celdas aparecen vacías.
+ * 
+ * <p>
+ * Cada página leída deja anotado dónde empieza la siguiente, como
+ * {@link CursorResultados}, de modo que al avanzar por la tabla cada página
+ * cuesta lo mismo sea cual sea su posición; solo un salto a una página lejana
+ * se lee saltando las filas anteriores.
+ * </p>
+ * 
+ * <p>
+ * Como cualquier modelo de Swing, solo debe usarse desde el hilo de eventos; las
+ * consultas se realizan en segundo plano.
+ * </p>
+ * 
+ * <p>
+ * Cada consulta tiene su propio plazo y se cancela al recargar o al
+ * {@link #cancelar() abandonar} el modelo, liberando enseguida su conexión.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class ModeloConsulta extends AbstractTableModel {
+	private static final long serialVersionUID = 20210827001L;
+
+	/**
+	 * Número de partidos de cada página.
+	 */
+	public static final int TAMAÑO_PÁGINA = 200;
+
+	/**
+	 * Número máximo de páginas conservadas.
+	 */
+	public static final int MÁXIMO_PÁGINAS = 50;
+
+	/**
+	 * Títulos de las columnas.
+	 */
+	private static final String[] COLUMNAS = { "#", "Local", "Visitante", "Resultado", "Datos" };
+
+	/**
+	 * Criterios de ordenación asociados a cada columna; nulo si la columna no se
+	 * puede ordenar.
+	 */
+	private static final OrdenResultados[] ORDEN_COLUMNAS = { OrdenResultados.GRABACIÓN, OrdenResultados.LOCAL,
+			OrdenResultados.VISITANTE, OrdenResultados.RESULTADO, null };
+
+	/**
+	 * Resultado de una recarga: revisión, número de filas y primera página,
+	 * leídos en la misma conexión.
+	 */
+	private static class Recuento {
+		private long revisión;
+		private int total;
+		private final List<ElementoPartido1X2> primera = new ArrayList<>(TAMAÑO_PÁGINA);
+		private CursorResultados siguiente;
+	}
+
+	/**
+	 * Acceso compartido a la base de datos.
+	 */
+	private final transient AccesoBDConcurrente acceso;
+
+	/**
+	 * Criterios de la consulta.
+	 */
+	private final transient FiltroResultados filtro;
+
+	/**
+	 * Páginas cargadas por orden de uso, de la más antigua a la más reciente.
+	 */
+	private final LinkedHashMap<Integer, List<ElementoPartido1X2>> páginas;
+
+	/**
+	 * Posición del principio de cada página de la que se conoce, por número de
+	 * página.
+	 */
+	private final Map<Integer, CursorResultados> inicios = new HashMap<>();
+
+	/**
+	 * Páginas pedidas y aún no recibidas.
+	 */
+	private final Set<Integer> pedidas = new HashSet<>();
+
+	/**
+	 * Número total de filas de la consulta.
+	 */
+	private int total;
+
+	/**
+	 * Revisión de la base de datos en la última carga.
+	 */
+	private long revisión = -1;
+
+	/**
+	 * Número de la carga en curso; las páginas de cargas anteriores se descartan.
+	 */
+	private int generación;
+
+	/**
+	 * Plazo de cada consulta, en milisegundos; cero para ninguno.
+	 */
+	private final long plazoMs;
+
+	/**
+	 * Avisos de cancelación de las consultas en curso.
+	 */
+	private final transient Set<CancelacionBD> enCurso = new HashSet<>();
+
+	/**
+	 * Crea el modelo de una consulta, vacío hasta llamar a {@link #recargar()},
+	 * con el plazo predeterminado para cada consulta.
+	 * 
+	 * @param acceso el acceso compartido a la base de datos
+	 * @param filtro los criterios de selección y ordenación
+	 * @see CancelacionBD#PLAZO_PREDETERMINADO
+	 */
+	public ModeloConsulta(AccesoBDConcurrente acceso, FiltroResultados filtro) {
+		this(acceso, filtro, CancelacionBD.PLAZO_PREDETERMINADO);
+	}
+
+	/**
+	 * Crea el modelo de una consulta, vacío hasta llamar a {@link #recargar()}.
+	 * 
+	 * @param acceso  el acceso compartido a la base de datos
+	 * @param filtro  los criterios de selección y ordenación
+	 * @param plazoMs el plazo de cada consulta en milisegundos; cero para
+	 *                ninguno
+	 */
+	public ModeloConsulta(AccesoBDConcurrente acceso, FiltroResultados filtro, long plazoMs) {
+		this.acceso = acceso;
+		this.filtro = filtro;
+		this.plazoMs = plazoMs;
+		páginas = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 20210827002L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<ElementoPartido1X2>> másAntigua) {
+				return size() > MÁXIMO_PÁGINAS;
+			}
+		};
+	}
+
+	/**
+	 * Proporciona el criterio de ordenación asociado a una columna.
+	 * 
+	 * @param columna el número de columna del modelo
+	 * @return el criterio, o nulo si la columna no se puede ordenar
+	 */
+	public static OrdenResultados ordenColumna(int columna) {
+		return columna >= 0 && columna < ORDEN_COLUMNAS.length ? ORDEN_COLUMNAS[columna] : null;
+	}
+
+	/**
+	 * Proporciona los criterios de la consulta.
+	 * 
+	 * @return el filtro correspondiente
+	 */
+	public FiltroResultados getFiltro() {
+		return filtro;
+	}
+
+	@Override
+	public int getRowCount() {
+		return total;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNAS.length;
+	}
+
+	@Override
+	public String getColumnName(int columna) {
+		return COLUMNAS[columna];
+	}
+
+	@Override
+	public Class<?> getColumnClass(int columna) {
+		return columna == 0 ? Integer.class : String.class;
+	}
+
+	@Override
+	public Object getValueAt(int fila, int columna) {
+		if (columna == 0) {
+			return fila + 1;
+		}
+
+		int número = fila / TAMAÑO_PÁGINA;
+		List<ElementoPartido1X2> página = páginas.get(número);
+		if (página == null) {
+			pedir(número);
+			return null;
+		}
+		if (fila % TAMAÑO_PÁGINA >= página.size()) {
+			return null;
+		}
+
+		ElementoPartido1X2 partido = página.get(fila % TAMAÑO_PÁGINA);
+		switch (columna) {
+		case 1:
+			return partido.getEquipoLocal();
+		case 2:
+			return partido.getEquipoVisitante();
+		case 3:
+			return partido.getResultado().toString();
+		default:
+			return partido.toStringPuntos();
+		}
+	}
+
+	/**
+	 * Vuelve a contar las filas y descarta las páginas cargadas, que se pedirán
+	 * de nuevo según se muestren. La primera página se pide junto con el
+	 * recuento.
+	 */
+	public void recargar() {
+		cancelarConsultas();
+		int carga = ++generación;
+		pedidas.clear();
+		pedidas.add(0);
+		inicios.clear();
+
+		CancelacionBD cancelación = iniciarConsulta();
+		new SwingWorker<Recuento, Void>() {
+			@Override
+			protected Recuento doInBackground() throws AccesoBDException {
+				return acceso.consultar(lector -> {
+					Recuento recuento = new Recuento();
+					recuento.revisión = lector.últimaRevisión();
+					recuento.total = lector.contar(filtro);
+					recuento.siguiente = new CursorResultados(filtro);
+					lector.recorrer(recuento.siguiente, TAMAÑO_PÁGINA, recuento.primera::add);
+					return recuento;
+				}, cancelación);
+			}
+
+			@Override
+			protected void done() {
+				terminarConsulta(cancelación);
+				if (carga != generación) {
+					return;
+				}
+				pedidas.clear();
+				try {
+					Recuento recuento = get();
+					revisión = recuento.revisión;
+					total = recuento.total;
+					páginas.clear();
+					páginas.put(0, recuento.primera);
+					inicios.put(1, recuento.siguiente);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					informar("Error al consultar resultados", e, cancelación);
+				}
+				fireTableDataChanged();
+			}
+		}.execute();
+	}
+
+	/**
+	 * Recarga la consulta si la base de datos ha cambiado desde la última carga.
+	 * La comprobación se hace en segundo plano.
+	 */
+	public void comprobarCambios() {
+		if (!pedidas.isEmpty()) {
+			return;
+		}
+
+		int carga = generación;
+		CancelacionBD cancelación = iniciarConsulta();
+		new SwingWorker<Long, Void>() {
+			@Override
+			protected Long doInBackground() throws AccesoBDException {
+				return acceso.consultar(AccesoBD::últimaRevisión, cancelación);
+			}
+
+			@Override
+			protected void done() {
+				terminarConsulta(cancelación);
+				try {
+					if (carga == generación && get() != revisión) {
+						recargar();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					informar("Error al consultar revisión", e, cancelación);
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Pide en segundo plano una página no cargada, salvo que ya esté pedida.
+	 * Continúa desde el principio anotado de la página o, si no se conoce,
+	 * salta las filas anteriores. Cuando llega se avisa de la actualización de
+	 * sus filas.
+	 * 
+	 * @param número el número de página, desde cero
+	 */
+	private void pedir(int número) {
+		if (!pedidas.add(número)) {
+			return;
+		}
+
+		int carga = generación;
+		CursorResultados inicio = inicios.get(número);
+		CursorResultados cursor = inicio != null ? new CursorResultados(inicio)
+				: new CursorResultados(filtro, número * TAMAÑO_PÁGINA);
+		CancelacionBD cancelación = iniciarConsulta();
+		new SwingWorker<List<ElementoPartido1X2>, Void>() {
+			@Override
+			protected List<ElementoPartido1X2> doInBackground() throws AccesoBDException {
+				List<ElementoPartido1X2> página = new ArrayList<>(TAMAÑO_PÁGINA);
+				acceso.consultar(lector -> lector.recorrer(cursor, TAMAÑO_PÁGINA, página::add), cancelación);
+				return página;
+			}
+
+			@Override
+			protected void done() {
+				terminarConsulta(cancelación);
+				if (carga != generación) {
+					return;
+				}
+				pedidas.remove(número);
+				try {
+					páginas.put(número, get());
+					inicios.putIfAbsent(número + 1, cursor);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					informar("Error al consultar resultados", e, cancelación);
+					return;
+				}
+				int primera = número * TAMAÑO_PÁGINA;
+				int última = Math.min(total, primera + TAMAÑO_PÁGINA) - 1;
+				if (última >= primera) {
+					fireTableRowsUpdated(primera, última);
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Cancela todas las consultas en curso y descarta sus respuestas. Se usa al
+	 * abandonar el modelo; una nueva {@link #recargar() recarga} lo reanuda.
+	 */
+	public void cancelar() {
+		cancelarConsultas();
+		generación++;
+		pedidas.clear();
+	}
+
+	/**
+	 * Cancela las consultas en curso, que terminan enseguida con error.
+	 */
+	private void cancelarConsultas() {
+		for (CancelacionBD cancelación : enCurso) {
+			cancelación.cancelar();
+		}
+	}
+
+	/**
+	 * Crea el aviso de cancelación, con el plazo del modelo, de una consulta
+	 * nueva.
+	 * 
+	 * @return el aviso creado
+	 */
+	private CancelacionBD iniciarConsulta() {
+		CancelacionBD cancelación = CancelacionBD.conPlazo(plazoMs);
+		enCurso.add(cancelación);
+		return cancelación;
+	}
+
+	/**
+	 * Descarta el aviso de cancelación de una consulta terminada.
+	 * 
+	 * @param cancelación el aviso
+	 */
+	private void terminarConsulta(CancelacionBD cancelación) {
+		enCurso.remove(cancelación);
+		cancelación.close();
+	}
+
+	/**
+	 * Informa de una consulta fallida por la salida de error, salvo que se haya
+	 * cancelado a propósito.
+	 * 
+	 * @param texto       la descripción de la consulta
+	 * @param e           la incidencia
+	 * @param cancelación el aviso de cancelación de la consulta
+	 */
+	private static void informar(String texto, ExecutionException e, CancelacionBD cancelación) {
+		if (!cancelación.isCancelada() || cancelación.isVencida()) {
+			System.err.printf("%s: %s%n", texto, e.getCause().getLocalizedMessage());
+		}
+	}
+}
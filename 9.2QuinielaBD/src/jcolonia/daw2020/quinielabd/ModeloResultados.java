@@ -0,0 +1,224 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Modelo de tabla de resultados guardado directamente sobre los partidos. Los
+ * textos de cada celda se obtienen al pintarla, sin copias por fila, y los
+ * cambios se incorporan por tramos con un único aviso por rango de filas.
+ * 
+ * <p>
+ * Como cualquier modelo de Swing, solo debe usarse desde el hilo de eventos.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class ModeloResultados extends AbstractTableModel {
+	private static final long serialVersionUID = 20210826001L;
+
+	/**
+	 * Títulos de las columnas.
+	 */
+	private static final String[] COLUMNAS = { "#", "Local", "Visitante", "Resultado", "Datos" };
+
+	/**
+	 * Partidos mostrados, por orden de fila.
+	 */
+	private final ArrayList<ElementoPartido1X2> partidos = new ArrayList<>();
+
+	/**
+	 * Fila en la que se muestra cada partido, por identificador.
+	 */
+	private final Map<Long, Integer> filasPorId = new HashMap<>();
+
+	/**
+	 * Identificador de cada partido, por orden de fila.
+	 */
+	private long[] ids = new long[1024];
+
+	/**
+	 * Última revisión de la base de datos incorporada.
+	 */
+	private long últimaRevisión;
+
+	@Override
+	public int getRowCount() {
+		return partidos.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return COLUMNAS.length;
+	}
+
+	@Override
+	public String getColumnName(int columna) {
+		return COLUMNAS[columna];
+	}
+
+	@Override
+	public Class<?> getColumnClass(int columna) {
+		return columna == 0 ? Integer.class : String.class;
+	}
+
+	@Override
+	public Object getValueAt(int fila, int columna) {
+		ElementoPartido1X2 partido = partidos.get(fila);
+
+		switch (columna) {
+		case 0:
+			return fila + 1;
+		case 1:
+			return partido.getEquipoLocal();
+		case 2:
+			return partido.getEquipoVisitante();
+		case 3:
+			return partido.getResultado().toString();
+		default:
+			return partido.toStringPuntos();
+		}
+	}
+
+	/**
+	 * Proporciona el partido de una fila.
+	 * 
+	 * @param fila el número de fila, desde cero
+	 * @return el partido correspondiente
+	 */
+	public ElementoPartido1X2 getPartido(int fila) {
+		return partidos.get(fila);
+	}
+
+	/**
+	 * Proporciona la última revisión de la base de datos incorporada.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public long getÚltimaRevisión() {
+		return últimaRevisión;
+	}
+
+	/**
+	 * Incorpora un tramo de cambios: los partidos nuevos se añaden al final con un
+	 * único aviso de inserción y los ya presentes se sustituyen en su fila con un
+	 * único aviso de actualización que abarca todas las modificadas. Si el tramo
+	 * contiene bajas, sus filas se retiran al final y las siguientes se
+	 * renumeran, con un aviso de cambio completo. Un reinicio descarta todos los
+	 * partidos anteriores, también con un aviso de cambio completo.
+	 * 
+	 * @param cambios los cambios, en orden de revisión
+	 */
+	public void incorporar(List<CambioPartido> cambios) {
+		int primeraNueva = partidos.size();
+		int primeraModificada = Integer.MAX_VALUE, últimaModificada = -1;
+		int primeraBorrada = Integer.MAX_VALUE;
+		boolean reiniciado = false;
+
+		partidos.ensureCapacity(partidos.size() + cambios.size());
+		for (CambioPartido cambio : cambios) {
+			if (cambio.isReinicio()) {
+				partidos.clear();
+				filasPorId.clear();
+				últimaRevisión = 0;
+				primeraModificada = primeraBorrada = Integer.MAX_VALUE;
+				últimaModificada = -1;
+				reiniciado = true;
+			} else if (cambio.isBaja()) {
+				Integer fila = filasPorId.remove(cambio.getId());
+				if (fila != null) {
+					partidos.set(fila, null);
+					primeraBorrada = Math.min(primeraBorrada, fila);
+				}
+			} else {
+				Integer fila = filasPorId.putIfAbsent(cambio.getId(), partidos.size());
+				if (fila == null) {
+					if (partidos.size() == ids.length) {
+						ids = Arrays.copyOf(ids, ids.length * 2);
+					}
+					ids[partidos.size()] = cambio.getId();
+					partidos.add(cambio.getPartido());
+				} else {
+					partidos.set(fila, cambio.getPartido());
+					primeraModificada = Math.min(primeraModificada, fila);
+					últimaModificada = Math.max(últimaModificada, fila);
+				}
+			}
+			últimaRevisión = Math.max(últimaRevisión, cambio.getRevisión());
+		}
+
+		if (reiniciado || primeraBorrada < partidos.size()) {
+			if (primeraBorrada < partidos.size()) {
+				retirarBorradas(primeraBorrada);
+			}
+			fireTableDataChanged();
+			return;
+		}
+		if (partidos.size() > primeraNueva) {
+			fireTableRowsInserted(primeraNueva, partidos.size() - 1);
+		}
+		if (últimaModificada >= 0) {
+			fireTableRowsUpdated(primeraModificada, últimaModificada);
+		}
+	}
+
+	/**
+	 * Retira las filas de los partidos borrados, desplazando las siguientes y
+	 * actualizando su número de fila por identificador.
+	 * 
+	 * @param desde la primera fila borrada
+	 */
+	private void retirarBorradas(int desde) {
+		int destino = desde;
+
+		for (int fila = desde; fila < partidos.size(); fila++) {
+			ElementoPartido1X2 partido = partidos.get(fila);
+			if (partido != null) {
+				partidos.set(destino, partido);
+				ids[destino] = ids[fila];
+				filasPorId.put(ids[destino], destino);
+				destino++;
+			}
+		}
+		partidos.subList(destino, partidos.size()).clear();
+	}
+
+	/**
+	 * Copia los identificadores de los partidos mostrados, para grabar una
+	 * instantánea fuera del hilo de eventos.
+	 * 
+	 * @return los identificadores, por orden de fila
+	 * @see #copiarPartidos()
+	 */
+	public long[] copiarIds() {
+		return Arrays.copyOf(ids, partidos.size());
+	}
+
+	/**
+	 * Copia la lista de partidos mostrados, para grabar una instantánea fuera del
+	 * hilo de eventos.
+	 * 
+	 * @return los partidos, por orden de fila
+	 * @see #copiarIds()
+	 */
+	public List<ElementoPartido1X2> copiarPartidos() {
+		return new ArrayList<>(partidos);
+	}
+
+	/**
+	 * Elimina todos los partidos y olvida la última revisión, de modo que la
+	 * siguiente carga será completa.
+	 */
+	public void vaciar() {
+		partidos.clear();
+		filasPorId.clear();
+		últimaRevisión = 0;
+		fireTableDataChanged();
+	}
+}
@@ -0,0 +1,153 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Criterios de ordenación de las consultas de resultados. Cada uno se
+ * corresponde con un índice de la tabla «Resultados», de modo que la base de
+ * datos puede devolver las primeras filas sin ordenar la tabla completa.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ * @see FiltroResultados#setOrden(OrdenResultados, boolean)
+ */
+public enum OrdenResultados {
+	/**
+	 * Orden de grabación.
+	 */
+	GRABACIÓN(null, "rowid"),
+	/**
+	 * Por equipo local.
+	 */
+	LOCAL(Comparator.comparing(ElementoPartido1X2::getEquipoLocal), "nombre_local", "rowid"),
+	/**
+	 * Por equipo visitante.
+	 */
+	VISITANTE(Comparator.comparing(ElementoPartido1X2::getEquipoVisitante), "nombre_visitante", "rowid"),
+	/**
+	 * Por resultado 1-X-2.
+	 */
+	RESULTADO(Comparator.comparing(partido -> partido.getResultado().toString()), "resultado", "rowid"),
+	/**
+	 * Por temporada y jornada; dentro de cada jornada, por orden de grabación.
+	 */
+	CALENDARIO(Comparator.comparing(ElementoPartido1X2::getTemporada).thenComparingInt(ElementoPartido1X2::getJornada),
+			"temporada", "jornada", "rowid");
+
+	/**
+	 * Comparación equivalente para los almacenes que no disponen de SQL, sin el
+	 * desempate por orden de grabación; nula para el propio orden de grabación.
+	 */
+	private final Comparator<ElementoPartido1X2> comparador;
+
+	/**
+	 * Columnas de la ordenación, de la principal al desempate. Coinciden con las
+	 * de un índice, seguidas en su caso del «rowid» implícito.
+	 */
+	private final String[] columnas;
+
+	/**
+	 * Almacena la comparación y las columnas asociadas a cada criterio.
+	 * 
+	 * @param comparador la comparación equivalente, o nula
+	 * @param columnas   las columnas correspondientes
+	 */
+	OrdenResultados(Comparator<ElementoPartido1X2> comparador, String... columnas) {
+		this.comparador = comparador;
+		this.columnas = columnas;
+	}
+
+	/**
+	 * Proporciona la comparación equivalente al criterio, en sentido ascendente
+	 * y sin desempate por orden de grabación.
+	 * 
+	 * @return la comparación, o nula para el orden de grabación
+	 */
+	Comparator<ElementoPartido1X2> comparador() {
+		return comparador;
+	}
+
+	/**
+	 * Compone la cláusula «ORDER BY» del criterio.
+	 * 
+	 * @param descendente si el orden es descendente
+	 * @return la cláusula, precedida de un espacio
+	 */
+	String cláusulaOrderBy(boolean descendente) {
+		String sentido = descendente ? " DESC" : "";
+		return " ORDER BY " + String.join(sentido + ", ", columnas) + sentido;
+	}
+
+	/**
+	 * Proporciona las columnas de la ordenación. En conjunto identifican cada
+	 * fila, por lo que sus valores sirven de posición para continuar un
+	 * recorrido.
+	 * 
+	 * @return las columnas, separadas por comas
+	 */
+	String columnasClave() {
+		return String.join(", ", columnas);
+	}
+
+	/**
+	 * Proporciona el número de columnas de la ordenación.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	int númColumnas() {
+		return columnas.length;
+	}
+
+	/**
+	 * Compone las condiciones que seleccionan las filas situadas después de una
+	 * posición, con un parámetro por columna de la ordenación. Hay que aplicarlas
+	 * en el orden dado, cada una tras agotar la anterior, y la de índice
+	 * <code>i</code> usa los valores de las primeras
+	 * <code>númColumnas() - i</code> columnas.
+	 * 
+	 * <p>
+	 * Si todas las columnas pertenecen al índice basta con compararlas como un
+	 * único valor, y la base de datos busca la posición directamente. El
+	 * «rowid» implícito no se puede buscar así, por lo que las ordenaciones que
+	 * terminan en él se dividen en dos: primero el resto de filas con los mismos
+	 * valores principales, buscadas por «rowid», y después las de valores
+	 * principales siguientes.
+	 * </p>
+	 * 
+	 * @param descendente si el orden es descendente
+	 * @return las condiciones, sin espacios iniciales
+	 */
+	List<String> condicionesPosteriores(boolean descendente) {
+		String mayor = descendente ? "<" : ">";
+
+		int principales = columnas.length - 1;
+		if (principales > 0 && columnas[principales].equals("rowid")) {
+			String[] iguales = new String[principales];
+			for (int i = 0; i < principales; i++) {
+				iguales[i] = columnas[i] + " = ?";
+			}
+			return List.of(String.format("%s AND rowid %s ?", String.join(" AND ", iguales), mayor),
+					posteriores(principales, mayor));
+		}
+		return List.of(posteriores(columnas.length, mayor));
+	}
+
+	/**
+	 * Compone la condición de que las primeras columnas de la ordenación, como
+	 * un único valor, vayan después de una posición.
+	 * 
+	 * @param númColumnas el número de columnas comparadas
+	 * @param mayor       el operador de comparación del sentido de la ordenación
+	 * @return la condición, con un parámetro por columna
+	 */
+	private String posteriores(int númColumnas, String mayor) {
+		if (númColumnas == 1) {
+			return String.format("%s %s ?", columnas[0], mayor);
+		}
+		String marcas = String.join(", ", Collections.nCopies(númColumnas, "?"));
+		return String.format("(%s) %s (%s)", String.join(", ", Arrays.copyOf(columnas, númColumnas)), mayor, marcas);
+	}
+}
@@ -0,0 +1,577 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Previsión de las probabilidades de cada resultado 1X2 de un partido, para
+ * elegir los pronósticos de una quiniela. Combina la fuerza de los equipos
+ * según su {@link ValoracionElo valoración} con las frecuencias históricas: la
+ * proporción de empates de todos los partidos y el balance de los
+ * {@link AccesoBD#enfrentamiento(String, String) enfrentamientos} anteriores
+ * entre ambos equipos.
+ * 
+ * <p>
+ * La puntuación esperada del local <code>e</code> se reparte entre victoria y
+ * empate con una probabilidad de empate <code>x = f · 4e(1 − e)</code>, donde
+ * <code>f</code> es la proporción histórica de empates: máxima entre equipos
+ * igualados. El resultado se combina con las frecuencias de los
+ * enfrentamientos previos como si el modelo valiera por un número fijo de
+ * partidos, de modo que un historial largo entre ambos pesa más que uno corto.
+ * </p>
+ * 
+ * <p>
+ * Las previsiones se calculan por lotes –una jornada o miles de partidos
+ * hipotéticos de una vez– y se guardan por partido hasta que llegan resultados
+ * nuevos, que cambian las valoraciones. Solo se guardan las de partidos entre
+ * equipos con valoración, hasta un máximo configurable con
+ * {@value #CLAVE_CAPACIDAD}, descartando las menos usadas. Un lote ya
+ * calculado se resuelve sin acceder a la base de datos; los enfrentamientos
+ * previos de los demás partidos del lote se leen en una sola consulta, fuera
+ * del cerrojo del servicio, de modo que otras previsiones no esperan a la base
+ * de datos.
+ * </p>
+ * 
+ * <p>
+ * Las previsiones guardadas tampoco esperan a la valoración: se actualiza
+ * fuera del cerrojo, y cuando hay que reconstruirla puede
+ * {@link #reconstruir(AccesoBD) reconstruirse aparte} para sustituir después
+ * el servicio entero.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class PrevisionPartidos {
+	/**
+	 * Clave de configuración del peso del modelo, en partidos, al combinarlo con
+	 * los enfrentamientos previos.
+	 */
+	public static final String CLAVE_PESO_MODELO = "prevision.peso.modelo";
+
+	/**
+	 * Peso predeterminado del modelo, en partidos.
+	 */
+	public static final int PESO_MODELO_PREDETERMINADO = 10;
+
+	/**
+	 * Clave de configuración del número máximo de previsiones guardadas.
+	 */
+	public static final String CLAVE_CAPACIDAD = "prevision.guardadas";
+
+	/**
+	 * Número máximo predeterminado de previsiones guardadas.
+	 */
+	public static final int CAPACIDAD_PREDETERMINADA = 10_000;
+
+	/**
+	 * Número de resultados posibles, y de probabilidades por partido.
+	 */
+	public static final int NÚM_RESULTADOS = Resultado1X2.values().length;
+
+	/**
+	 * Resultados posibles por ordinal, copiados una sola vez.
+	 */
+	private static final Resultado1X2[] RESULTADOS = Resultado1X2.values();
+
+	/**
+	 * Valoración de los equipos.
+	 */
+	private final ValoracionElo valoración;
+
+	/**
+	 * Peso del modelo, en partidos.
+	 */
+	private final int pesoModelo;
+
+	/**
+	 * Número máximo de previsiones guardadas.
+	 */
+	private final int capacidad;
+
+	/**
+	 * Probabilidades guardadas de cada partido, en orden de ordinal del
+	 * {@link Resultado1X2}, por {@link #clave(String, String) clave} de sus
+	 * equipos. Se recorre en orden de uso, para descartar la menos usada.
+	 */
+	private final Map<String, double[]> guardadas;
+
+	/**
+	 * Número de veces que se han descartado todas las previsiones guardadas,
+	 * para no guardar las calculadas con datos anteriores.
+	 */
+	private long generación;
+
+	/**
+	 * Número de previsiones tomadas de las guardadas.
+	 */
+	private long aciertos;
+
+	/**
+	 * Número de previsiones calculadas.
+	 */
+	private long fallos;
+
+	/**
+	 * Previsión de un partido, con la probabilidad de cada resultado.
+	 */
+	public static class Prevision {
+		/**
+		 * Nombre del equipo local.
+		 */
+		private final String local;
+
+		/**
+		 * Nombre del equipo visitante.
+		 */
+		private final String visitante;
+
+		/**
+		 * Probabilidades de cada resultado, por ordinal.
+		 */
+		private final double[] probabilidades;
+
+		/**
+		 * Crea la previsión de un partido.
+		 * 
+		 * @param local          el nombre del equipo local
+		 * @param visitante      el nombre del equipo visitante
+		 * @param probabilidades las probabilidades por ordinal del resultado
+		 */
+		private Prevision(String local, String visitante, double[] probabilidades) {
+			this.local = local;
+			this.visitante = visitante;
+			this.probabilidades = probabilidades;
+		}
+
+		/**
+		 * Proporciona el nombre del equipo local.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public String getLocal() {
+			return local;
+		}
+
+		/**
+		 * Proporciona el nombre del equipo visitante.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public String getVisitante() {
+			return visitante;
+		}
+
+		/**
+		 * Proporciona la probabilidad de un resultado.
+		 * 
+		 * @param resultado el resultado
+		 * @return la probabilidad, entre 0 y 1
+		 */
+		public double getProbabilidad(Resultado1X2 resultado) {
+			return probabilidades[resultado.ordinal()];
+		}
+
+		/**
+		 * Proporciona el resultado más probable, el pronóstico sencillo.
+		 * 
+		 * @return el resultado correspondiente
+		 */
+		public Resultado1X2 getMásProbable() {
+			int mejor = 0;
+			for (int i = 1; i < probabilidades.length; i++) {
+				if (probabilidades[i] > probabilidades[mejor]) {
+					mejor = i;
+				}
+			}
+			return RESULTADOS[mejor];
+		}
+
+		/**
+		 * Genera la previsión en formato JSON.
+		 * 
+		 * @return el texto correspondiente
+		 */
+		public String toStringJSON() {
+			return String.format(Locale.ROOT, "{\"local\":%s,\"visitante\":%s,\"1\":%.4f,\"X\":%.4f,\"2\":%.4f}",
+					ElementoPartido1X2.textoJSON(local), ElementoPartido1X2.textoJSON(visitante),
+					getProbabilidad(Resultado1X2.Local1), getProbabilidad(Resultado1X2.EmpateX),
+					getProbabilidad(Resultado1X2.Visitante2));
+		}
+
+		/**
+		 * Genera un texto con los equipos y las probabilidades.
+		 * 
+		 * @return el texto correspondiente
+		 */
+		@Override
+		public String toString() {
+			return String.format("%s - %s: 1 %.1f%%, X %.1f%%, 2 %.1f%% → %s", local, visitante,
+					100 * getProbabilidad(Resultado1X2.Local1), 100 * getProbabilidad(Resultado1X2.EmpateX),
+					100 * getProbabilidad(Resultado1X2.Visitante2), getMásProbable());
+		}
+	}
+
+	/**
+	 * Crea el servicio de previsiones sobre una valoración de los equipos, con
+	 * el peso predeterminado del modelo.
+	 * 
+	 * @param valoración la valoración de los equipos
+	 */
+	public PrevisionPartidos(ValoracionElo valoración) {
+		this(valoración, PESO_MODELO_PREDETERMINADO, CAPACIDAD_PREDETERMINADA);
+	}
+
+	/**
+	 * Crea el servicio de previsiones sobre una valoración de los equipos.
+	 * 
+	 * @param valoración la valoración de los equipos
+	 * @param pesoModelo el peso del modelo, en partidos, frente a los
+	 *                   enfrentamientos previos; cero para usar solo estos
+	 * @param capacidad  el número máximo de previsiones guardadas; cero para no
+	 *                   guardar ninguna
+	 */
+	public PrevisionPartidos(ValoracionElo valoración, int pesoModelo, int capacidad) {
+		this.valoración = Objects.requireNonNull(valoración);
+		this.pesoModelo = Math.max(0, pesoModelo);
+		this.capacidad = Math.max(0, capacidad);
+		guardadas = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 20210826001L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, double[]> menosUsada) {
+				return size() > PrevisionPartidos.this.capacidad;
+			}
+		};
+	}
+
+	/**
+	 * Crea el servicio de previsiones con la valoración, el peso del modelo y el
+	 * número máximo de previsiones guardadas indicados en una configuración.
+	 * 
+	 * @param configuración la configuración
+	 */
+	public PrevisionPartidos(Properties configuración) {
+		this(new ValoracionElo(configuración),
+				(int) RegistroConsultasLentas.leerNúmero(configuración, CLAVE_PESO_MODELO,
+						PESO_MODELO_PREDETERMINADO),
+				(int) RegistroConsultasLentas.leerNúmero(configuración, CLAVE_CAPACIDAD, CAPACIDAD_PREDETERMINADA));
+	}
+
+	/**
+	 * Proporciona la valoración de los equipos.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public ValoracionElo getValoración() {
+		return valoración;
+	}
+
+	/**
+	 * Incorpora a la valoración los resultados nuevos de la base de datos,
+	 * reconstruyéndola si es necesario, y si hay alguno descarta las previsiones
+	 * guardadas. Mientras tanto se siguen sirviendo las guardadas.
+	 * 
+	 * @param bd el acceso a la base de datos, con la conexión abierta
+	 * @return el número de partidos incorporados
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see ValoracionElo#actualizar(AccesoBD)
+	 */
+	public int actualizar(AccesoBD bd) throws AccesoBDException {
+		long revisión = valoración.getÚltimaRevisión();
+		int incorporados = valoración.actualizar(bd);
+		if (incorporados > 0 || valoración.getÚltimaRevisión() != revisión) {
+			synchronized (this) {
+				descartarGuardadas();
+			}
+		}
+		return incorporados;
+	}
+
+	/**
+	 * Incorpora a la valoración los resultados nuevos de la base de datos que
+	 * pueden añadirse sin reconstruirla y, si hay alguno, descarta las
+	 * previsiones guardadas. Mientras tanto se siguen sirviendo las guardadas.
+	 * 
+	 * @param bd el acceso a la base de datos, con la conexión abierta
+	 * @return si la valoración está al día; si no, hay que reconstruirla
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see ValoracionElo#avanzar(AccesoBD)
+	 * @see #reconstruir(AccesoBD)
+	 */
+	public boolean avanzar(AccesoBD bd) throws AccesoBDException {
+		long revisión = valoración.getÚltimaRevisión();
+		int incorporados = valoración.avanzar(bd);
+		if (incorporados > 0 || valoración.getÚltimaRevisión() != revisión) {
+			synchronized (this) {
+				descartarGuardadas();
+			}
+		}
+		return !valoración.isDesfasada();
+	}
+
+	/**
+	 * Crea otro servicio de previsiones con los mismos parámetros y una
+	 * valoración reconstruida desde cero, sin afectar a este, que sigue
+	 * atendiendo mientras tanto.
+	 * 
+	 * @param bd el acceso a la base de datos, con la conexión abierta
+	 * @return el nuevo servicio, al día
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public PrevisionPartidos reconstruir(AccesoBD bd) throws AccesoBDException {
+		PrevisionPartidos nueva = new PrevisionPartidos(new ValoracionElo(valoración.getK(), valoración.getVentaja()),
+				pesoModelo, capacidad);
+		nueva.valoración.reconstruir(bd);
+		return nueva;
+	}
+
+	/**
+	 * Incorpora a la valoración un partido recién grabado y descarta las
+	 * previsiones guardadas.
+	 * 
+	 * @param partido el partido, con resultado y su identificador de fila
+	 * @see ValoracionElo#añadir(CambioPartido)
+	 */
+	public synchronized void añadir(CambioPartido partido) {
+		valoración.añadir(partido);
+		descartarGuardadas();
+	}
+
+	/**
+	 * Descarta todas las previsiones guardadas, que dejan de valer con los
+	 * resultados nuevos.
+	 */
+	private void descartarGuardadas() {
+		guardadas.clear();
+		generación++;
+	}
+
+	/**
+	 * Obtiene la clave de una previsión guardada, sin distinguir mayúsculas y
+	 * minúsculas en los nombres de los equipos.
+	 * 
+	 * @param local     el nombre del equipo local
+	 * @param visitante el nombre del equipo visitante
+	 * @return la clave correspondiente
+	 */
+	private static String clave(String local, String visitante) {
+		return local.toUpperCase() + '\t' + visitante.toUpperCase();
+	}
+
+	/**
+	 * Calcula en un solo lote las probabilidades de una serie de partidos. Los
+	 * partidos ya previstos desde los últimos resultados se toman de los
+	 * guardados; los enfrentamientos previos de los demás se consultan todos a
+	 * la vez y sus probabilidades se calculan, sin retener el cerrojo mientras
+	 * tanto.
+	 * 
+	 * @param bd         el acceso a la base de datos, con la conexión abierta
+	 * @param locales    los nombres de los equipos locales
+	 * @param visitantes los nombres de los equipos visitantes, en el mismo orden
+	 * @param destino    el vector en el que se escriben las probabilidades, tres
+	 *                   por partido en orden de ordinal del {@link Resultado1X2};
+	 *                   de al menos <code>3 · locales.length</code> posiciones
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	public void prever(AccesoBD bd, String[] locales, String[] visitantes, double[] destino)
+			throws AccesoBDException {
+		if (locales.length != visitantes.length || destino.length < NÚM_RESULTADOS * locales.length) {
+			throw new IllegalArgumentException(String.format("Lote mal formado: %d locales, %d visitantes, %d posiciones",
+					locales.length, visitantes.length, destino.length));
+		}
+
+		int[] pendientes = new int[locales.length];
+		int númPendientes = 0;
+		long generaciónInicial;
+		synchronized (this) {
+			generaciónInicial = generación;
+			for (int i = 0; i < locales.length; i++) {
+				double[] probabilidades = guardadas.get(clave(locales[i], visitantes[i]));
+				if (probabilidades == null) {
+					pendientes[númPendientes++] = i;
+				} else {
+					System.arraycopy(probabilidades, 0, destino, NÚM_RESULTADOS * i, NÚM_RESULTADOS);
+					aciertos++;
+				}
+			}
+		}
+		if (númPendientes == 0) {
+			return;
+		}
+
+		String[] equipos = new String[númPendientes];
+		String[] rivales = new String[númPendientes];
+		for (int k = 0; k < númPendientes; k++) {
+			equipos[k] = locales[pendientes[k]];
+			rivales[k] = visitantes[pendientes[k]];
+		}
+		BalanceEquipo[] previos = bd.enfrentamientos(equipos, rivales);
+
+		double empates = valoración.getFrecuencia(Resultado1X2.EmpateX);
+		double[][] calculadas = new double[númPendientes][];
+		boolean[] registradas = new boolean[númPendientes];
+		for (int k = 0; k < númPendientes; k++) {
+			calculadas[k] = calcular(equipos[k], rivales[k], empates, previos[k]);
+			registradas[k] = valoración.isRegistrado(equipos[k]) && valoración.isRegistrado(rivales[k]);
+		}
+
+		synchronized (this) {
+			for (int k = 0; k < númPendientes; k++) {
+				if (generación == generaciónInicial && registradas[k]) {
+					guardadas.put(clave(equipos[k], rivales[k]), calculadas[k]);
+				}
+				System.arraycopy(calculadas[k], 0, destino, NÚM_RESULTADOS * pendientes[k], NÚM_RESULTADOS);
+				fallos++;
+			}
+		}
+	}
+
+	/**
+	 * Calcula en un solo lote las previsiones de una serie de partidos, por
+	 * ejemplo los de una jornada, sin tener en cuenta su resultado si lo tienen.
+	 * 
+	 * @param bd       el acceso a la base de datos, con la conexión abierta
+	 * @param partidos los partidos
+	 * @return las previsiones, en el mismo orden
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see #prever(AccesoBD, String[], String[], double[])
+	 */
+	public List<Prevision> prever(AccesoBD bd, List<ElementoPartido1X2> partidos) throws AccesoBDException {
+		String[] locales = new String[partidos.size()];
+		String[] visitantes = new String[partidos.size()];
+		for (int i = 0; i < locales.length; i++) {
+			locales[i] = partidos.get(i).getEquipoLocal();
+			visitantes[i] = partidos.get(i).getEquipoVisitante();
+		}
+		return prever(bd, locales, visitantes);
+	}
+
+	/**
+	 * Calcula en un solo lote las previsiones de una serie de partidos dados por
+	 * sus equipos.
+	 * 
+	 * @param bd         el acceso a la base de datos, con la conexión abierta
+	 * @param locales    los nombres de los equipos locales
+	 * @param visitantes los nombres de los equipos visitantes, en el mismo orden
+	 * @return las previsiones, en el mismo orden
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 * @see #prever(AccesoBD, String[], String[], double[])
+	 */
+	public List<Prevision> prever(AccesoBD bd, String[] locales, String[] visitantes) throws AccesoBDException {
+		double[] probabilidades = new double[NÚM_RESULTADOS * locales.length];
+		prever(bd, locales, visitantes, probabilidades);
+
+		List<Prevision> previsiones = new ArrayList<>(locales.length);
+		for (int i = 0; i < locales.length; i++) {
+			double[] partido = new double[NÚM_RESULTADOS];
+			System.arraycopy(probabilidades, NÚM_RESULTADOS * i, partido, 0, NÚM_RESULTADOS);
+			previsiones.add(new Prevision(locales[i], visitantes[i], partido));
+		}
+		return previsiones;
+	}
+
+	/**
+	 * Calcula las probabilidades de un partido combinando el modelo con sus
+	 * enfrentamientos previos.
+	 * 
+	 * @param local     el nombre del equipo local
+	 * @param visitante el nombre del equipo visitante
+	 * @param empates   la proporción histórica de empates
+	 * @param previos   el balance del local frente al visitante
+	 * @return las probabilidades por ordinal del resultado
+	 */
+	private double[] calcular(String local, String visitante, double empates, BalanceEquipo previos) {
+		double esperado = valoración.getEsperadoLocal(local, visitante);
+		double empate = Math.min(empates * 4 * esperado * (1 - esperado), 2 * Math.min(esperado, 1 - esperado));
+		double[] probabilidades = new double[NÚM_RESULTADOS];
+		probabilidades[Resultado1X2.Local1.ordinal()] = esperado - empate / 2;
+		probabilidades[Resultado1X2.EmpateX.ordinal()] = empate;
+		probabilidades[Resultado1X2.Visitante2.ordinal()] = 1 - esperado - empate / 2;
+
+		int jugados = previos.getJugados();
+		if (jugados > 0) {
+			double peso = pesoModelo + jugados;
+			probabilidades[Resultado1X2.Local1.ordinal()] = (pesoModelo
+					* probabilidades[Resultado1X2.Local1.ordinal()] + previos.getGanados()) / peso;
+			probabilidades[Resultado1X2.EmpateX.ordinal()] = (pesoModelo
+					* probabilidades[Resultado1X2.EmpateX.ordinal()] + previos.getEmpatados()) / peso;
+			probabilidades[Resultado1X2.Visitante2.ordinal()] = (pesoModelo
+					* probabilidades[Resultado1X2.Visitante2.ordinal()] + previos.getPerdidos()) / peso;
+		}
+		return probabilidades;
+	}
+
+	/**
+	 * Proporciona el número de previsiones tomadas de las guardadas.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized long getAciertos() {
+		return aciertos;
+	}
+
+	/**
+	 * Proporciona el número de previsiones calculadas.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized long getFallos() {
+		return fallos;
+	}
+
+	/**
+	 * Genera un resumen de las previsiones guardadas.
+	 * 
+	 * @return el texto correspondiente
+	 */
+	@Override
+	public synchronized String toString() {
+		long total = aciertos + fallos;
+		return String.format("Previsiones: %d aciertos, %d calculadas (%.1f%% guardadas)", aciertos, fallos,
+				total == 0 ? 0.0 : 100.0 * aciertos / total);
+	}
+
+	/**
+	 * Prevé los partidos de la última jornada grabada en la base de datos
+	 * configurada en el archivo de configuración predeterminado, como si aún no
+	 * se hubieran jugado, y mide el tiempo de una jornada ya prevista.
+	 * 
+	 * @param args no se utiliza
+	 */
+	public static void main(String[] args) {
+		Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+
+		try (AccesoBDConcurrente acceso = new AccesoBDConcurrente(configuración)) {
+			PrevisionPartidos previsión = new PrevisionPartidos(configuración);
+			acceso.consultar(previsión::actualizar);
+
+			List<ElementoPartido1X2> jornada = acceso.consultar(lector -> {
+				List<String> temporadas = lector.temporadas();
+				FiltroResultados filtro = new FiltroResultados();
+				filtro.setTemporada(temporadas.isEmpty() ? null : temporadas.get(temporadas.size() - 1));
+				filtro.setOrden(OrdenResultados.CALENDARIO, true);
+				List<ElementoPartido1X2> partidos = new ArrayList<>();
+				lector.leer(filtro, 0, 15, partidos);
+				return partidos;
+			});
+
+			List<Prevision> previsiones = acceso.consultar(lector -> previsión.prever(lector, jornada));
+			for (int i = 0; i < previsiones.size(); i++) {
+				System.out.printf("%s (real: %s)%n", previsiones.get(i), jornada.get(i).getResultado());
+			}
+
+			long inicio = System.nanoTime();
+			acceso.consultar(lector -> previsión.prever(lector, jornada));
+			System.out.printf("Jornada ya prevista en %.3f ms%n%s%n", (System.nanoTime() - inicio) / 1e6,
+					previsión);
+		} catch (AccesoBDException e) {
+			System.err.printf("Error de acceso a datos: %s%n", e.getLocalizedMessage());
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * Prueba común de los {@link AlmacenPartidos almacenes}: somete a cada tipo de
+ * almacén a la misma carga de trabajo, comprueba que todos se comportan igual
+ * –grabación idempotente, actualización de resultados, paginación, filtros,
+ * ordenación, persistencia y, en su caso, compactación– e informa del tiempo de cada operación para
+ * compararlos. Los almacenes se crean en un directorio temporal. Las consultas
+ * de cada almacén se contrastan con las del almacén en memoria.
+ * 
+ * <p>
+ * Uso: <code>PruebaAlmacenes [partidos [tipo…]]</code>, por omisión
+ * <code>50000 sqlite memoria registro binario fragmentos</code>. Termina con código 1 si alguna
+ * comprobación falla.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class PruebaAlmacenes {
+	/**
+	 * Equipos de los partidos generados.
+	 */
+	private static final String[] EQUIPOS = { "EQUIPO ALFA", "EQUIPO BETA", "EQUIPO GAMMA", "EQUIPO DELTA",
+			"ATLETICO NORTE", "ATLETICO SUR", "REAL ESTE", "REAL OESTE", "DEPORTIVO UNO", "DEPORTIVO DOS",
+			"UNION CENTRO", "UNION COSTA" };
+
+	/**
+	 * Número de partidos de cada página en la comprobación de paginación.
+	 */
+	private static final int TAMAÑO_PÁGINA = 97;
+
+	/**
+	 * Número de comprobaciones fallidas.
+	 */
+	private static int fallos;
+
+	/**
+	 * Lanza la prueba.
+	 * 
+	 * @param args el número de partidos y los tipos de almacén, todos opcionales
+	 * @throws IOException si no se puede crear el directorio temporal
+	 */
+	public static void main(String[] args) throws IOException {
+		int númPartidos = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		List<String> tipos = args.length > 1 ? Arrays.asList(args).subList(1, args.length)
+				: List.of("sqlite", "memoria", "registro", "binario", "fragmentos");
+
+		List<ElementoPartido1X2> partidos = generar(númPartidos);
+		Path directorio = Files.createTempDirectory("almacenes");
+
+		List<List<String>> referencia = null;
+		try (AlmacenMemoria memoria = new AlmacenMemoria()) {
+			memoria.escribir(partidos, false);
+			referencia = consultar(memoria);
+		} catch (AccesoBDException e) {
+			System.err.printf("Error en almacén de referencia: %s%n", e.getLocalizedMessage());
+			System.exit(1);
+		}
+
+		System.out.printf("%d partidos%n%-9s %10s %10s %10s %10s %10s %10s%n", númPartidos, "almacén", "carga",
+				"repetida", "recorrido", "consultas", "páginas", "inserción");
+		for (String tipo : tipos) {
+			try {
+				probar(tipo, configuración(tipo, directorio), partidos, referencia);
+			} catch (AccesoBDException e) {
+				fallo(tipo, "incidencia: " + e.getLocalizedMessage());
+			}
+		}
+
+		System.out.println(fallos == 0 ? "Todas las comprobaciones superadas" : fallos + " comprobaciones fallidas");
+		System.exit(fallos == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Somete un almacén a la carga de trabajo y comprueba sus respuestas.
+	 * 
+	 * @param tipo          el tipo de almacén
+	 * @param configuración su configuración
+	 * @param partidos      los partidos generados
+	 * @param referencia    las respuestas del almacén de referencia
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private static void probar(String tipo, Properties configuración, List<ElementoPartido1X2> partidos,
+			List<List<String>> referencia) throws AccesoBDException {
+		int n = partidos.size();
+		long[] tiempos = new long[6];
+		FiltroResultados todos = new FiltroResultados();
+
+		try (AlmacenPartidos almacén = AlmacenPartidos.of(configuración)) {
+			almacén.abrir();
+
+			long inicio = System.nanoTime();
+			comprobar(tipo, "carga", almacén.escribir(partidos, false) == n);
+			tiempos[0] = System.nanoTime() - inicio;
+
+			inicio = System.nanoTime();
+			comprobar(tipo, "carga repetida", almacén.escribir(partidos, false) == 0);
+			tiempos[1] = System.nanoTime() - inicio;
+
+			inicio = System.nanoTime();
+			Vector<ElementoPartido1X2> leídos = new Vector<>();
+			almacén.leer(leídos);
+			tiempos[2] = System.nanoTime() - inicio;
+			comprobar(tipo, "lectura completa", firmas(leídos).equals(firmas(partidos)));
+
+			inicio = System.nanoTime();
+			comprobar(tipo, "consultas", consultar(almacén).equals(referencia));
+			tiempos[3] = System.nanoTime() - inicio;
+
+			inicio = System.nanoTime();
+			comprobar(tipo, "paginación", paginar(almacén));
+			tiempos[4] = System.nanoTime() - inicio;
+
+			ElementoPartido1X2 primero = partidos.get(0);
+			ElementoPartido1X2 cambiado = ElementoPartido1X2.of(primero.getTemporada(), primero.getJornada(),
+					primero.getEquipoLocal(), primero.getEquipoVisitante(), otroResultado(primero));
+			comprobar(tipo, "actualización", almacén.insertar(cambiado) == 1);
+			comprobar(tipo, "actualización repetida", almacén.insertar(cambiado) == 0);
+			comprobar(tipo, "conservación", almacén.escribir(List.of(primero), false) == 0);
+			List<ElementoPartido1X2> página = new ArrayList<>();
+			almacén.leer(todos, 0, 1, página);
+			comprobar(tipo, "posición actualizada",
+					página.size() == 1 && página.get(0).getResultado() == cambiado.getResultado());
+
+			List<ElementoPartido1X2> nuevos = generarNuevos(200);
+			inicio = System.nanoTime();
+			for (ElementoPartido1X2 nuevo : nuevos) {
+				almacén.insertar(nuevo);
+			}
+			tiempos[5] = System.nanoTime() - inicio;
+			comprobar(tipo, "recuento final", almacén.contar(todos) == n + nuevos.size());
+
+			if (almacén instanceof AlmacenBinario) {
+				AlmacenBinario binario = (AlmacenBinario) almacén;
+				comprobar(tipo, "traslado", binario.compactar() == n + nuevos.size());
+				comprobar(tipo, "compactación", binario.getRegistros() == n + nuevos.size());
+				try (AccesoBD destino = new AccesoBD(configuración)) {
+					destino.abrir();
+					comprobar(tipo, "destino", destino.contar(todos) == n + nuevos.size());
+				}
+			}
+		} catch (DatoPartido1X2Exception e) {
+			fallo(tipo, "datos: " + e.getLocalizedMessage());
+		}
+
+		if (!"memoria".equals(tipo)) {
+			try (AlmacenPartidos almacén = AlmacenPartidos.of(configuración)) {
+				almacén.abrir();
+				comprobar(tipo, "persistencia", almacén.contar(todos) == n + 200);
+			}
+		}
+
+		System.out.printf("%-9s", tipo);
+		for (long tiempo : tiempos) {
+			System.out.printf(" %8.1fms", tiempo / 1e6);
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Realiza una serie fija de consultas filtradas y ordenadas.
+	 * 
+	 * @param almacén el almacén consultado
+	 * @return las firmas de los partidos obtenidos en cada consulta, precedidas
+	 *         del recuento
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private static List<List<String>> consultar(AlmacenPartidos almacén) throws AccesoBDException {
+		List<List<String>> respuestas = new ArrayList<>();
+
+		for (OrdenResultados orden : OrdenResultados.values()) {
+			for (boolean descendente : new boolean[] { false, true }) {
+				for (int criterio = 0; criterio < 5; criterio++) {
+					FiltroResultados filtro = new FiltroResultados();
+					filtro.setOrden(orden, descendente);
+					switch (criterio) {
+					case 1:
+						filtro.setEquipo("equipo beta");
+						break;
+					case 2:
+						filtro.setBúsqueda("atletico");
+						filtro.setResultado(Resultado1X2.EmpateX);
+						break;
+					case 3:
+						filtro.setTemporada("2003-2004");
+						filtro.setJornada(7);
+						break;
+					case 4:
+						filtro.setBúsqueda("re");
+						break;
+					default:
+					}
+
+					List<ElementoPartido1X2> página = new ArrayList<>();
+					almacén.leer(filtro, 13, 50, página);
+					List<String> respuesta = firmas(página);
+					respuesta.add(0, Integer.toString(almacén.contar(filtro)));
+					respuestas.add(respuesta);
+				}
+			}
+		}
+		return respuestas;
+	}
+
+	/**
+	 * Comprueba que las páginas consecutivas de una consulta ordenada coinciden
+	 * con la consulta completa.
+	 * 
+	 * @param almacén el almacén consultado
+	 * @return si coinciden
+	 * @throws AccesoBDException si se produce alguna incidencia
+	 */
+	private static boolean paginar(AlmacenPartidos almacén) throws AccesoBDException {
+		FiltroResultados filtro = new FiltroResultados();
+		filtro.setResultado(Resultado1X2.Local1);
+		filtro.setOrden(OrdenResultados.VISITANTE, true);
+
+		List<ElementoPartido1X2> completa = new ArrayList<>();
+		almacén.leer(filtro, 0, 0, completa);
+
+		List<ElementoPartido1X2> porPáginas = new ArrayList<>();
+		while (almacén.leer(filtro, porPáginas.size(), TAMAÑO_PÁGINA, porPáginas) == TAMAÑO_PÁGINA) {
+		}
+		return firmas(completa).equals(firmas(porPáginas));
+	}
+
+	/**
+	 * Genera partidos distintos con resultados aleatorios reproducibles.
+	 * 
+	 * @param número el número de partidos
+	 * @return los partidos generados
+	 */
+	private static List<ElementoPartido1X2> generar(int número) {
+		List<ElementoPartido1X2> partidos = new ArrayList<>(número);
+		Random rnd = new Random(2021);
+
+		try {
+			for (int i = 0; partidos.size() < número; i++) {
+				int porTemporada = 38 * EQUIPOS.length;
+				int temporada = 2000 + i / porTemporada;
+				int jornada = 1 + i % porTemporada / EQUIPOS.length;
+				int local = i % EQUIPOS.length;
+				int visitante = (local + jornada) % EQUIPOS.length;
+				if (visitante == local) {
+					continue;
+				}
+				partidos.add(ElementoPartido1X2.of(String.format("%d-%d", temporada, temporada + 1), jornada,
+						EQUIPOS[local], EQUIPOS[visitante], Resultado1X2.values()[rnd.nextInt(3)].toString()));
+			}
+		} catch (DatoPartido1X2Exception e) {
+			throw new IllegalStateException(e);
+		}
+		return partidos;
+	}
+
+	/**
+	 * Genera partidos de una temporada que no coincide con las de
+	 * {@link #generar(int)}.
+	 * 
+	 * @param número el número de partidos
+	 * @return los partidos generados
+	 * @throws DatoPartido1X2Exception si los datos no son válidos
+	 */
+	private static List<ElementoPartido1X2> generarNuevos(int número) throws DatoPartido1X2Exception {
+		List<ElementoPartido1X2> partidos = new ArrayList<>(número);
+		for (int i = 0; i < número; i++) {
+			partidos.add(ElementoPartido1X2.of("NUEVA", i + 1, EQUIPOS[0], EQUIPOS[1], "X"));
+		}
+		return partidos;
+	}
+
+	/**
+	 * Elige un resultado distinto del de un partido.
+	 * 
+	 * @param partido el partido
+	 * @return el texto de otro resultado
+	 */
+	private static String otroResultado(ElementoPartido1X2 partido) {
+		return partido.getResultado() == Resultado1X2.Local1 ? "2" : "1";
+	}
+
+	/**
+	 * Resume cada partido en un texto con todos sus datos.
+	 * 
+	 * @param partidos los partidos
+	 * @return los textos, en el mismo orden
+	 */
+	private static List<String> firmas(List<ElementoPartido1X2> partidos) {
+		List<String> firmas = new ArrayList<>(partidos.size());
+		for (ElementoPartido1X2 partido : partidos) {
+			firmas.add(AlmacenMemoria.clave(partido) + "\u0000" + partido.getResultado());
+		}
+		return firmas;
+	}
+
+	/**
+	 * Crea la configuración de un tipo de almacén en el directorio de pruebas.
+	 * 
+	 * @param tipo       el tipo de almacén
+	 * @param directorio el directorio de pruebas
+	 * @return la configuración
+	 */
+	private static Properties configuración(String tipo, Path directorio) {
+		Properties configuración = new Properties();
+		configuración.setProperty(AlmacenPartidos.CLAVE_TIPO, tipo);
+		configuración.setProperty("jdbc.url", "jdbc:sqlite:" + directorio.resolve(tipo + ".db"));
+		configuración.setProperty(AlmacenRegistro.CLAVE_ARCHIVO, directorio.resolve(tipo + ".log").toString());
+		configuración.setProperty(AlmacenFragmentado.CLAVE_DIRECTORIO, directorio.resolve(tipo).toString());
+		configuración.setProperty(AlmacenBinario.CLAVE_ARCHIVO, directorio.resolve(tipo + ".bin").toString());
+		configuración.setProperty(RegistroConsultasLentas.CLAVE_UMBRAL, "10000");
+		configuración.setProperty(RegistroConsultasLentas.CLAVE_INTERVALO_RESUMEN, "0");
+		return configuración;
+	}
+
+	/**
+	 * Anota el resultado de una comprobación.
+	 * 
+	 * @param tipo        el tipo de almacén
+	 * @param comprobación la descripción de la comprobación
+	 * @param superada    si se ha superado
+	 */
+	private static void comprobar(String tipo, String comprobación, boolean superada) {
+		if (!superada) {
+			fallo(tipo, comprobación);
+		}
+	}
+
+	/**
+	 * Informa de una comprobación fallida.
+	 * 
+	 * @param tipo        el tipo de almacén
+	 * @param descripción la descripción del fallo
+	 */
+	private static void fallo(String tipo, String descripción) {
+		fallos++;
+		System.err.printf("[%s] Falla: %s%n", tipo, descripción);
+	}
+}
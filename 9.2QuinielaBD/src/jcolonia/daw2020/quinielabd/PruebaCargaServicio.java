@@ -0,0 +1,101 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prueba de carga del {@link ServicioConsultas}: lanza un número dado de
+ * clientes simultáneos, cada uno con una serie de peticiones variadas, contra
+ * una instancia en marcha e informa del rendimiento, la latencia por percentiles
+ * y los errores.
+ * 
+ * <p>
+ * Uso: <code>PruebaCargaServicio [url-base [clientes [peticiones-por-cliente]]]</code>,
+ * por omisión <code>http://localhost:8080 1000 20</code>.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class PruebaCargaServicio {
+	/**
+	 * Rutas solicitadas de forma rotatoria.
+	 */
+	private static final String[] RUTAS = { "/resultados?pagina=1&tamano=50", "/resultados?jornada=1",
+			"/clasificacion", "/resultados?pagina=3&tamano=20", "/equipos/REAL%20BETIS" };
+
+	/**
+	 * Lanza la prueba.
+	 * 
+	 * @param args la URL base, el número de clientes y el de peticiones por
+	 *             cliente, todos opcionales
+	 * @throws InterruptedException si se interrumpe la espera
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String base = args.length > 0 ? args[0] : "http://localhost:" + ServicioConsultas.PUERTO_PREDETERMINADO;
+		int clientes = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int porCliente = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int total = clientes * porCliente;
+		if (clientes <= 0 || porCliente <= 0) {
+			System.err.printf("Sin peticiones que lanzar: %d clientes, %d peticiones por cliente%n", clientes,
+					porCliente);
+			return;
+		}
+
+		ExecutorService ejecutor = ServicioConsultas.crearEjecutor();
+		HttpClient cliente = HttpClient.newBuilder().executor(ejecutor).connectTimeout(Duration.ofSeconds(10))
+				.build();
+		Semaphore enCurso = new Semaphore(clientes);
+		CountDownLatch terminadas = new CountDownLatch(total);
+		AtomicInteger errores = new AtomicInteger();
+		AtomicInteger siguiente = new AtomicInteger();
+		long[] latencias = new long[total];
+
+		long inicio = System.nanoTime();
+		for (int i = 0; i < total; i++) {
+			enCurso.acquire();
+			HttpRequest petición = HttpRequest.newBuilder(URI.create(base + RUTAS[i % RUTAS.length]))
+					.timeout(Duration.ofSeconds(30)).GET().build();
+			long envío = System.nanoTime();
+			cliente.sendAsync(petición, HttpResponse.BodyHandlers.discarding()).whenComplete((respuesta, error) -> {
+				latencias[siguiente.getAndIncrement()] = System.nanoTime() - envío;
+				if (error != null || respuesta.statusCode() >= 400) {
+					errores.incrementAndGet();
+				}
+				enCurso.release();
+				terminadas.countDown();
+			});
+		}
+		terminadas.await();
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		ejecutor.shutdown();
+
+		Arrays.sort(latencias);
+		System.out.printf("%d peticiones, %d clientes simultáneos, %.2f s, %.0f peticiones/s, %d errores%n", total,
+				clientes, segundos, total / segundos, errores.get());
+		System.out.printf("Latencia: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, máx %.1f ms%n",
+				percentil(latencias, 0.50), percentil(latencias, 0.95), percentil(latencias, 0.99),
+				latencias[total - 1] / 1e6);
+	}
+
+	/**
+	 * Obtiene un percentil de una serie de latencias ordenada.
+	 * 
+	 * @param latencias las latencias en nanosegundos, en orden creciente; al
+	 *                  menos una
+	 * @param fracción  el percentil como fracción de uno
+	 * @return el valor en milisegundos
+	 */
+	private static double percentil(long[] latencias, double fracción) {
+		int posición = (int) Math.min(latencias.length - 1, Math.round(fracción * (latencias.length - 1)));
+		return latencias[posición] / 1e6;
+	}
+}
@@ -0,0 +1,357 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publicador de los resultados que cumplen un filtro, según el modelo de
+ * {@link Flow}: cada suscriptor recibe los partidos a medida que los pide con
+ * {@link Flow.Subscription#request(long)}, y la lectura de la base de datos
+ * avanza al ritmo de su consumo.
+ * 
+ * <p>
+ * Cada suscripción es independiente y recorre los resultados por tramos de
+ * hasta {@link #getTamañoTramo() tamaño fijo}, con una conexión de lectura de
+ * {@link AccesoBDConcurrente} que solo retiene mientras lee un tramo. Cada
+ * tramo continúa desde la posición del anterior con un
+ * {@link CursorResultados}, de modo que leerlo cuesta lo mismo al principio
+ * que al final y las grabaciones concurrentes no hacen repetir ni saltar
+ * partidos. Un tramo nuevo solo se lee cuando el anterior se ha entregado y el
+ * suscriptor pide más, de modo que la memoria ocupada por suscripción no pasa
+ * de un tramo sea cual sea la diferencia de velocidad. Al cancelar la
+ * suscripción se interrumpe la lectura en curso.
+ * </p>
+ * 
+ * <p>
+ * Las señales a cada suscriptor se entregan de una en una desde el ejecutor
+ * del publicador, nunca desde el hilo que llama a <code>request</code>.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class PublicadorResultados implements Flow.Publisher<ElementoPartido1X2> {
+	/**
+	 * Tamaño de tramo predeterminado, en partidos.
+	 */
+	public static final int TAMAÑO_TRAMO_PREDETERMINADO = 1000;
+
+	/**
+	 * Ejecutor compartido de los publicadores creados sin ejecutor propio,
+	 * creado con el primero.
+	 */
+	private static ExecutorService ejecutorCompartido;
+
+	/**
+	 * Acceso compartido a la base de datos.
+	 */
+	private final AccesoBDConcurrente acceso;
+
+	/**
+	 * Copia de los criterios de selección.
+	 */
+	private final FiltroResultados filtro;
+
+	/**
+	 * Ejecutor de las lecturas y de las señales a los suscriptores.
+	 */
+	private final Executor ejecutor;
+
+	/**
+	 * Número máximo de partidos leídos de una vez.
+	 */
+	private final int tamañoTramo;
+
+	/**
+	 * Crea un publicador con el tamaño de tramo predeterminado y el ejecutor
+	 * compartido.
+	 * 
+	 * @param acceso el acceso compartido a la base de datos
+	 * @param filtro los criterios de selección, que se copian
+	 */
+	public PublicadorResultados(AccesoBDConcurrente acceso, FiltroResultados filtro) {
+		this(acceso, filtro, ejecutorCompartido(), TAMAÑO_TRAMO_PREDETERMINADO);
+	}
+
+	/**
+	 * Crea un publicador.
+	 * 
+	 * @param acceso      el acceso compartido a la base de datos
+	 * @param filtro      los criterios de selección, que se copian
+	 * @param ejecutor    el ejecutor de las lecturas, que pueden bloquearse
+	 * @param tamañoTramo el número máximo de partidos leídos de una vez, al
+	 *                    menos uno
+	 */
+	public PublicadorResultados(AccesoBDConcurrente acceso, FiltroResultados filtro, Executor ejecutor,
+			int tamañoTramo) {
+		this.acceso = Objects.requireNonNull(acceso);
+		this.filtro = new FiltroResultados(filtro);
+		this.ejecutor = Objects.requireNonNull(ejecutor);
+		this.tamañoTramo = Math.max(1, tamañoTramo);
+	}
+
+	/**
+	 * Proporciona el ejecutor compartido, creándolo si es necesario.
+	 * 
+	 * @return el ejecutor compartido
+	 */
+	private static synchronized ExecutorService ejecutorCompartido() {
+		if (ejecutorCompartido == null) {
+			ejecutorCompartido = Executors.newCachedThreadPool(tarea -> {
+				Thread hilo = new Thread(tarea, "Publicador resultados");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+		}
+		return ejecutorCompartido;
+	}
+
+	/**
+	 * Proporciona el número máximo de partidos leídos de una vez.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getTamañoTramo() {
+		return tamañoTramo;
+	}
+
+	/**
+	 * Suscribe a un receptor de los resultados, que recibe su suscripción y
+	 * después los partidos que pida.
+	 * 
+	 * @param suscriptor el receptor de los resultados
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super ElementoPartido1X2> suscriptor) {
+		new Suscripcion(Objects.requireNonNull(suscriptor)).programar();
+	}
+
+	/**
+	 * Suscripción de un receptor, con su propia posición de lectura.
+	 */
+	private class Suscripcion implements Flow.Subscription {
+		/**
+		 * Receptor de los resultados.
+		 */
+		private final Flow.Subscriber<? super ElementoPartido1X2> suscriptor;
+
+		/**
+		 * Partidos pedidos y aún no entregados; {@link Long#MAX_VALUE} para
+		 * ilimitados.
+		 */
+		private final AtomicLong demanda = new AtomicLong();
+
+		/**
+		 * Número de entregas solicitadas pendientes, para que solo una esté en
+		 * marcha a la vez.
+		 */
+		private final AtomicInteger pendientes = new AtomicInteger();
+
+		/**
+		 * Partidos leídos del tramo actual aún no entregados. Solo lo usa la
+		 * entrega en marcha.
+		 */
+		private final ArrayDeque<ElementoPartido1X2> tramo = new ArrayDeque<>();
+
+		/**
+		 * Posición del siguiente tramo, que indica también si ya se ha leído el
+		 * último.
+		 */
+		private final CursorResultados cursor = new CursorResultados(filtro);
+
+		/**
+		 * Si ya se ha entregado la suscripción al receptor.
+		 */
+		private boolean iniciada;
+
+		/**
+		 * Si se ha enviado la señal final, de fin o de error.
+		 */
+		private boolean terminada;
+
+		/**
+		 * Si el receptor ha cancelado la suscripción.
+		 */
+		private volatile boolean cancelada;
+
+		/**
+		 * Petición no válida recibida, que termina la suscripción con error.
+		 */
+		private volatile IllegalArgumentException peticiónNoVálida;
+
+		/**
+		 * Aviso de cancelación de la lectura en curso, o nulo si no hay ninguna.
+		 */
+		private volatile CancelacionBD lectura;
+
+		/**
+		 * Crea la suscripción de un receptor.
+		 * 
+		 * @param suscriptor el receptor de los resultados
+		 */
+		private Suscripcion(Flow.Subscriber<? super ElementoPartido1X2> suscriptor) {
+			this.suscriptor = suscriptor;
+		}
+
+		/**
+		 * Añade partidos a la demanda del receptor.
+		 * 
+		 * @param n el número de partidos, positivo
+		 */
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				peticiónNoVálida = new IllegalArgumentException(
+						String.format("Petición no válida de %d partidos", n));
+			} else {
+				demanda.getAndUpdate(actual -> actual + n < 0 ? Long.MAX_VALUE : actual + n);
+			}
+			programar();
+		}
+
+		/**
+		 * Cancela la suscripción, interrumpiendo la lectura en curso.
+		 */
+		@Override
+		public void cancel() {
+			cancelada = true;
+			CancelacionBD enCurso = lectura;
+			if (enCurso != null) {
+				enCurso.cancelar();
+			}
+			programar();
+		}
+
+		/**
+		 * Solicita una entrega, que se pone en marcha en el ejecutor si no hay otra
+		 * en curso; si la hay, esta repite su trabajo antes de terminar.
+		 */
+		private void programar() {
+			if (pendientes.getAndIncrement() == 0) {
+				ejecutor.execute(this::entregar);
+			}
+		}
+
+		/**
+		 * Entrega partidos mientras haya demanda, leyendo tramos según se agotan, y
+		 * envía la señal final cuando corresponde.
+		 */
+		private void entregar() {
+			int solicitadas = 1;
+
+			do {
+				if (!iniciada) {
+					iniciada = true;
+					suscriptor.onSubscribe(this);
+				}
+				while (!terminada) {
+					if (cancelada) {
+						terminar();
+					} else if (peticiónNoVálida != null) {
+						terminar();
+						suscriptor.onError(peticiónNoVálida);
+					} else if (tramo.isEmpty() && cursor.isAgotado()) {
+						terminar();
+						suscriptor.onComplete();
+					} else if (demanda.get() == 0) {
+						break;
+					} else if (tramo.isEmpty()) {
+						leerTramo();
+					} else {
+						demanda.getAndUpdate(actual -> actual == Long.MAX_VALUE ? actual : actual - 1);
+						suscriptor.onNext(tramo.poll());
+					}
+				}
+				solicitadas = pendientes.addAndGet(-solicitadas);
+			} while (solicitadas != 0);
+		}
+
+		/**
+		 * Lee el tramo siguiente; si falla la lectura termina la suscripción con
+		 * error, salvo que se deba a su cancelación.
+		 */
+		private void leerTramo() {
+			try (CancelacionBD aviso = new CancelacionBD()) {
+				lectura = aviso;
+				if (cancelada) { // Cancelada antes de anotar el aviso
+					return;
+				}
+				acceso.consultar(lector -> lector.recorrer(cursor, tamañoTramo, tramo::add), aviso);
+			} catch (AccesoBDException e) {
+				if (!cancelada) {
+					terminar();
+					suscriptor.onError(e);
+				}
+			} finally {
+				lectura = null;
+			}
+		}
+
+		/**
+		 * Marca la suscripción como terminada y descarta los partidos pendientes.
+		 */
+		private void terminar() {
+			terminada = true;
+			tramo.clear();
+		}
+	}
+
+	/**
+	 * Recorre todos los resultados de la base de datos configurada con un
+	 * suscriptor que los pide de cien en cien, e informa del total recibido.
+	 * 
+	 * @param args no se usa
+	 */
+	public static void main(String[] args) {
+		Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+
+		try (AccesoBDConcurrente acceso = new AccesoBDConcurrente(configuración)) {
+			PublicadorResultados publicador = new PublicadorResultados(acceso, new FiltroResultados());
+			CountDownLatch fin = new CountDownLatch(1);
+			AtomicLong recibidos = new AtomicLong();
+
+			publicador.subscribe(new Flow.Subscriber<>() {
+				private Flow.Subscription suscripción;
+
+				@Override
+				public void onSubscribe(Flow.Subscription suscripción) {
+					this.suscripción = suscripción;
+					suscripción.request(100);
+				}
+
+				@Override
+				public void onNext(ElementoPartido1X2 partido) {
+					if (recibidos.incrementAndGet() % 100 == 0) {
+						suscripción.request(100);
+					}
+				}
+
+				@Override
+				public void onError(Throwable e) {
+					System.err.printf("Error al recibir resultados: %s%n", e.getLocalizedMessage());
+					fin.countDown();
+				}
+
+				@Override
+				public void onComplete() {
+					fin.countDown();
+				}
+			});
+
+			fin.await();
+			System.out.printf("Recibidos %d resultados%n", recibidos.get());
+		} catch (AccesoBDException e) {
+			System.err.printf("Error de acceso a datos: %s%n", e.getLocalizedMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de sentencias SQL lentas ejecutadas por {@link AccesoBD}. Cada
+ * sentencia que supera el umbral configurado se informa por la salida de error
+ * junto con la forma de sus parámetros, su duración y el plan de ejecución
+ * obtenido con «EXPLAIN QUERY PLAN», señalando los recorridos completos de
+ * tabla –posibles índices ausentes–.
+ * 
+ * <p>
+ * Los tiempos de todas las sentencias se acumulan por texto SQL para todo el
+ * proceso y, si así se configura, se emite periódicamente un resumen con las
+ * que más tiempo total consumen.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class RegistroConsultasLentas {
+	/**
+	 * Clave de configuración del umbral, en milisegundos, a partir del cual una
+	 * sentencia se considera lenta.
+	 */
+	public static final String CLAVE_UMBRAL = "bd.lentas.umbral.ms";
+
+	/**
+	 * Clave de configuración del intervalo, en segundos, entre resúmenes
+	 * periódicos. Un valor nulo o negativo los desactiva.
+	 */
+	public static final String CLAVE_INTERVALO_RESUMEN = "bd.lentas.resumen.s";
+
+	/**
+	 * Umbral predeterminado, en milisegundos.
+	 */
+	public static final long UMBRAL_PREDETERMINADO = 100;
+
+	/**
+	 * Número de sentencias incluidas en cada resumen periódico.
+	 */
+	private static final int MÁX_RESUMEN = 10;
+
+	/**
+	 * Tiempos acumulados por sentencia SQL, compartidos por todo el proceso.
+	 */
+	private static final Map<String, Acumulado> ESTADÍSTICAS = new ConcurrentHashMap<>();
+
+	/**
+	 * Planificador de los resúmenes periódicos, creado con el primer registro que
+	 * los solicite.
+	 */
+	private static ScheduledExecutorService planificador;
+
+	/**
+	 * Umbral de sentencia lenta, en nanosegundos.
+	 */
+	private final long umbralNanos;
+
+	/**
+	 * Tiempos acumulados de una misma sentencia SQL.
+	 */
+	private static class Acumulado {
+		/**
+		 * El texto de la sentencia.
+		 */
+		private final String sql;
+		/**
+		 * Número de ejecuciones.
+		 */
+		private final LongAdder ejecuciones = new LongAdder();
+		/**
+		 * Tiempo total, en nanosegundos.
+		 */
+		private final LongAdder totalNanos = new LongAdder();
+		/**
+		 * Tiempo máximo de una ejecución, en nanosegundos.
+		 */
+		private final LongAccumulator máxNanos = new LongAccumulator(Long::max, 0);
+		/**
+		 * Número de ejecuciones que han superado el umbral.
+		 */
+		private final LongAdder lentas = new LongAdder();
+		/**
+		 * Si el último plan capturado contenía un recorrido completo de tabla.
+		 */
+		private volatile boolean recorridoCompleto;
+
+		/**
+		 * Inicia las estadísticas de una sentencia.
+		 * 
+		 * @param sql el texto de la sentencia
+		 */
+		private Acumulado(String sql) {
+			this.sql = sql;
+		}
+	}
+
+	/**
+	 * Crea un registro con un umbral dado, sin resúmenes periódicos.
+	 * 
+	 * @param umbralMs el umbral en milisegundos
+	 */
+	public RegistroConsultasLentas(long umbralMs) {
+		umbralNanos = TimeUnit.MILLISECONDS.toNanos(umbralMs);
+	}
+
+	/**
+	 * Crea un registro a partir de la configuración de acceso a la base de datos,
+	 * activando los resúmenes periódicos si así se indica.
+	 * 
+	 * @param configuración la configuración
+	 * @return el registro creado
+	 * @see #CLAVE_UMBRAL
+	 * @see #CLAVE_INTERVALO_RESUMEN
+	 */
+	public static RegistroConsultasLentas of(Properties configuración) {
+		long umbralMs, intervaloS;
+
+		umbralMs = leerNúmero(configuración, CLAVE_UMBRAL, UMBRAL_PREDETERMINADO);
+		intervaloS = leerNúmero(configuración, CLAVE_INTERVALO_RESUMEN, 0);
+		if (intervaloS > 0) {
+			activarResumen(intervaloS);
+		}
+		return new RegistroConsultasLentas(umbralMs);
+	}
+
+	/**
+	 * Lee un valor numérico de la configuración.
+	 * 
+	 * @param configuración la configuración
+	 * @param clave         la clave del valor
+	 * @param predeterminado el valor si falta o no es válido
+	 * @return el valor leído
+	 */
+	static long leerNúmero(Properties configuración, String clave, long predeterminado) {
+		String texto = configuración.getProperty(clave);
+		long valor = predeterminado;
+
+		if (texto != null && !texto.isBlank()) {
+			try {
+				valor = Long.parseLong(texto.strip());
+			} catch (NumberFormatException e) {
+				System.err.printf("Valor no válido para «%s»: %s%n", clave, texto);
+			}
+		}
+		return valor;
+	}
+
+	/**
+	 * Programa, una sola vez por proceso, la emisión periódica del resumen.
+	 * 
+	 * @param intervaloS el intervalo en segundos
+	 */
+	private static synchronized void activarResumen(long intervaloS) {
+		if (planificador == null) {
+			planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+				Thread hilo = new Thread(tarea, "Resumen consultas lentas");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+			planificador.scheduleAtFixedRate(() -> System.err.print(resumen(MÁX_RESUMEN)), intervaloS, intervaloS,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Acumula el tiempo de una sentencia y, si supera el umbral, la informa junto
+	 * con su plan de ejecución.
+	 * 
+	 * @param conexión   la conexión empleada, para obtener el plan
+	 * @param sql        la sentencia ejecutada
+	 * @param parámetros los parámetros enlazados, en su caso
+	 * @param nanos      la duración en nanosegundos
+	 */
+	public void registrar(Connection conexión, String sql, Object[] parámetros, long nanos) {
+		Acumulado estadística = ESTADÍSTICAS.computeIfAbsent(sql, Acumulado::new);
+		estadística.ejecuciones.increment();
+		estadística.totalNanos.add(nanos);
+		estadística.máxNanos.accumulate(nanos);
+
+		if (nanos >= umbralNanos) {
+			estadística.lentas.increment();
+			informar(conexión, estadística, parámetros, nanos);
+		}
+	}
+
+	/**
+	 * Informa de una sentencia lenta por la salida de error.
+	 * 
+	 * @param conexión    la conexión empleada
+	 * @param estadística las estadísticas de la sentencia
+	 * @param parámetros  los parámetros enlazados
+	 * @param nanos       la duración en nanosegundos
+	 */
+	private void informar(Connection conexión, Acumulado estadística, Object[] parámetros, long nanos) {
+		StringBuilder informe = new StringBuilder();
+		List<String> plan;
+
+		informe.append(String.format("Sentencia lenta (%.1f ms): %s %s%n", nanos / 1e6, estadística.sql,
+				formaParámetros(parámetros)));
+
+		try {
+			plan = planConsulta(conexión, estadística.sql, parámetros);
+			estadística.recorridoCompleto = false;
+			for (String paso : plan) {
+				boolean completo = esRecorridoCompleto(paso);
+				estadística.recorridoCompleto |= completo;
+				informe.append(String.format("    %s%s%n", paso, completo ? "   ⚠ recorrido completo" : ""));
+			}
+		} catch (SQLException e) {
+			informe.append(String.format("    Plan no disponible: %s%n", e.getLocalizedMessage()));
+		}
+		System.err.print(informe);
+	}
+
+	/**
+	 * Obtiene el plan de ejecución de una sentencia con «EXPLAIN QUERY PLAN».
+	 * 
+	 * @param conexión   la conexión a la base de datos
+	 * @param sql        la sentencia
+	 * @param parámetros los parámetros a enlazar, en su caso
+	 * @return los pasos del plan, vacío si no tiene
+	 * @throws SQLException si se produce alguna incidencia
+	 */
+	public static List<String> planConsulta(Connection conexión, String sql, Object[] parámetros)
+			throws SQLException {
+		List<String> plan = new ArrayList<>();
+
+		try (PreparedStatement sentencia = conexión.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+			if (parámetros != null) {
+				for (int i = 0; i < parámetros.length; i++) {
+					sentencia.setObject(i + 1, parámetros[i]);
+				}
+			}
+			try (ResultSet pasos = sentencia.executeQuery()) {
+				while (pasos.next()) {
+					plan.add(pasos.getString("detail"));
+				}
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Indica si un paso del plan recorre una tabla completa sin usar índices.
+	 * 
+	 * @param paso el texto del paso –columna «detail»–
+	 * @return si es un recorrido completo
+	 */
+	static boolean esRecorridoCompleto(String paso) {
+		return paso != null && paso.startsWith("SCAN ") && !paso.contains(" INDEX ");
+	}
+
+	/**
+	 * Describe los tipos de los parámetros enlazados, sin sus valores.
+	 * 
+	 * @param parámetros los parámetros
+	 * @return el texto correspondiente, como «(TEXT, INTEGER)»
+	 */
+	static String formaParámetros(Object[] parámetros) {
+		StringBuilder forma = new StringBuilder("(");
+
+		if (parámetros != null) {
+			for (int i = 0; i < parámetros.length; i++) {
+				Object valor = parámetros[i];
+				String tipo;
+
+				if (valor == null) {
+					tipo = "NULL";
+				} else if (valor instanceof Number) {
+					tipo = (valor instanceof Double || valor instanceof Float) ? "REAL" : "INTEGER";
+				} else if (valor instanceof byte[]) {
+					tipo = "BLOB";
+				} else {
+					tipo = "TEXT";
+				}
+				forma.append(i == 0 ? "" : ", ").append(tipo);
+			}
+		}
+		return forma.append(')').toString();
+	}
+
+	/**
+	 * Compone un resumen con las sentencias que más tiempo total han consumido.
+	 * 
+	 * @param máximo el número máximo de sentencias a incluir
+	 * @return el texto del resumen
+	 */
+	public static String resumen(int máximo) {
+		List<Acumulado> lista = new ArrayList<>(ESTADÍSTICAS.values());
+		StringBuilder texto = new StringBuilder();
+
+		lista.sort(Comparator.comparingLong((Acumulado e) -> e.totalNanos.sum()).reversed());
+
+		texto.append(String.format("Resumen de sentencias SQL por tiempo total:%n"));
+		for (int i = 0; i < lista.size() && i < máximo; i++) {
+			Acumulado e = lista.get(i);
+			long ejecuciones = e.ejecuciones.sum();
+			long total = e.totalNanos.sum();
+			texto.append(String.format("%3d. %9.1f ms total, %6d ejec., %7.2f ms media, %7.1f ms máx, %d lentas%s%n     %s%n",
+					i + 1, total / 1e6, ejecuciones, ejecuciones == 0 ? 0 : total / 1e6 / ejecuciones,
+					e.máxNanos.get() / 1e6, e.lentas.sum(), e.recorridoCompleto ? " ⚠ recorrido completo" : "", e.sql));
+		}
+		return texto.toString();
+	}
+}
@@ -0,0 +1,904 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Servicio HTTP de consulta de resultados en formato JSON, basado en el
+ * servidor incluido en el JDK. Atiende cada petición en un hilo propio –hilos
+ * virtuales cuando la plataforma los ofrece– y lee los datos a través de un
+ * {@link AccesoBDConcurrente}. Rutas disponibles, solo con el método GET:
+ * 
+ * <ul>
+ * <li><code>/resultados?equipo=…&amp;temporada=…&amp;jornada=…&amp;pagina=…&amp;tamano=…</code>
+ * – resultados paginados y filtrados; con <code>tamano=0</code> se envían
+ * todos.</li>
+ * <li><code>/clasificacion?temporada=…&amp;jornada=…</code> – clasificación.</li>
+ * <li><code>/equipos?q=…&amp;limite=…</code> – equipos cuyo nombre contiene un
+ * texto, del más al menos relevante.</li>
+ * <li><code>/equipos/{nombre}?temporada=…</code> – balance de un equipo.</li>
+ * <li><code>/enfrentamientos?a=…&amp;b=…&amp;n=…</code> – balance histórico del
+ * primer equipo frente al segundo y sus últimos partidos.</li>
+ * <li><code>/forma?equipo=…</code> – últimos resultados y rachas de un
+ * equipo.</li>
+ * <li><code>/prevision?local=…&amp;visitante=…</code> – probabilidades 1X2 de
+ * uno o varios partidos, con los equipos separados por comas.</li>
+ * <li><code>/metricas</code> – uso de la caché de respuestas.</li>
+ * </ul>
+ * 
+ * Las respuestas llevan una etiqueta ETag ligada a la versión de los datos y
+ * se guardan en una {@link CacheRespuestas}: mientras los datos no cambian se
+ * sirven sin acceder a la base de datos, o con un 304 si el cliente ya las
+ * tiene.
+ * 
+ * Las respuestas de resultados se generan por tramos de
+ * {@value #TAMAÑO_TRAMO} partidos y se envían según se leen, sin reunir la
+ * respuesta completa en memoria ni retener una conexión de lectura mientras
+ * el cliente recibe los datos.
+ * 
+ * Cada consulta de una petición tiene un plazo –el de la clave
+ * {@value CancelacionBD#CLAVE_PLAZO} de la configuración–, que incluye la
+ * espera de una conexión libre; si se agota se interrumpe la consulta y se
+ * responde con un 503. Las respuestas por tramos aplican el plazo a cada
+ * tramo, de modo que un cliente lento no agota el de toda la respuesta.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class ServicioConsultas implements AutoCloseable {
+	/**
+	 * Puerto predeterminado del servicio.
+	 */
+	public static final int PUERTO_PREDETERMINADO = 8080;
+
+	/**
+	 * Tamaño de página predeterminado de los resultados.
+	 */
+	public static final int TAMAÑO_PÁGINA_PREDETERMINADO = 100;
+
+	/**
+	 * Número máximo predeterminado de equipos de una búsqueda.
+	 */
+	public static final int LÍMITE_BÚSQUEDA_PREDETERMINADO = 20;
+
+	/**
+	 * Número predeterminado de últimos partidos de un enfrentamiento.
+	 */
+	public static final int ÚLTIMOS_ENFRENTAMIENTOS_PREDETERMINADO = 5;
+
+	/**
+	 * Número de partidos leídos de la base de datos en cada tramo de una
+	 * respuesta.
+	 */
+	private static final int TAMAÑO_TRAMO = 1000;
+
+	/**
+	 * Número máximo de conexiones a la espera de ser aceptadas.
+	 */
+	private static final int MÁX_CONEXIONES_PENDIENTES = 4096;
+
+	/**
+	 * Tipo de contenido de todas las respuestas.
+	 */
+	private static final String TIPO_JSON = "application/json; charset=UTF-8";
+
+	/**
+	 * Acceso compartido a la base de datos.
+	 */
+	private final AccesoBDConcurrente acceso;
+
+	/**
+	 * Servidor HTTP.
+	 */
+	private final HttpServer servidor;
+
+	/**
+	 * Ejecutor de las peticiones.
+	 */
+	private final ExecutorService ejecutor;
+
+	/**
+	 * Caché de respuestas, vigente mientras no cambian los datos.
+	 */
+	private final CacheRespuestas cache;
+
+	/**
+	 * Plazo de cada consulta, en milisegundos; nulo o negativo para ninguno.
+	 */
+	private final long plazoMs;
+
+	/**
+	 * Forma reciente de los equipos, que se actualiza al consultarla.
+	 */
+	private volatile FormaEquipos forma = new FormaEquipos();
+
+	/**
+	 * Previsión de resultados, que se actualiza en segundo plano cuando cambian
+	 * los datos.
+	 */
+	private volatile PrevisionPartidos previsión = new PrevisionPartidos(new ValoracionElo());
+
+	/**
+	 * Previsión de resultados ya actualizada por el servicio, o nulo si aún no
+	 * se ha actualizado la vigente.
+	 */
+	private PrevisionPartidos previsiónActualizada;
+
+	/**
+	 * Generación de los datos con la que se actualizó por última vez la
+	 * previsión.
+	 */
+	private long generaciónPrevisión;
+
+	/**
+	 * Si hay una actualización de la previsión en curso.
+	 */
+	private boolean actualizandoPrevisión;
+
+	/**
+	 * Petición incorrecta, que se responde con un código de error HTTP.
+	 */
+	private static class RechazoHTTP extends Exception {
+		/**
+		 * Número de serie, asociado a la versión de la clase.
+		 */
+		private static final long serialVersionUID = 20210825001L;
+
+		/**
+		 * Código de estado HTTP de la respuesta.
+		 */
+		private final int código;
+
+		/**
+		 * Crea la excepción.
+		 * 
+		 * @param código  el código de estado HTTP
+		 * @param mensaje el texto descriptivo
+		 */
+		private RechazoHTTP(int código, String mensaje) {
+			super(mensaje, null, false, false);
+			this.código = código;
+		}
+	}
+
+	/**
+	 * Crea el servicio sobre un puerto, sin arrancarlo, con el plazo
+	 * predeterminado de las consultas.
+	 * 
+	 * @param acceso el acceso compartido a la base de datos
+	 * @param cache  la caché de respuestas
+	 * @param puerto el puerto de escucha
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public ServicioConsultas(AccesoBDConcurrente acceso, CacheRespuestas cache, int puerto) throws IOException {
+		this(acceso, cache, puerto, CancelacionBD.PLAZO_PREDETERMINADO);
+	}
+
+	/**
+	 * Crea el servicio sobre un puerto, sin arrancarlo.
+	 * 
+	 * @param acceso  el acceso compartido a la base de datos
+	 * @param cache   la caché de respuestas
+	 * @param puerto  el puerto de escucha
+	 * @param plazoMs el plazo de cada consulta, en milisegundos; nulo o negativo
+	 *                para ninguno
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public ServicioConsultas(AccesoBDConcurrente acceso, CacheRespuestas cache, int puerto, long plazoMs)
+			throws IOException {
+		this.acceso = acceso;
+		this.cache = cache;
+		this.plazoMs = plazoMs;
+		servidor = HttpServer.create(new InetSocketAddress(puerto), MÁX_CONEXIONES_PENDIENTES);
+		ejecutor = crearEjecutor();
+		servidor.setExecutor(ejecutor);
+		servidor.createContext("/resultados", intercambio -> atender(intercambio, this::resultados));
+		servidor.createContext("/clasificacion", intercambio -> atender(intercambio, this::clasificación));
+		servidor.createContext("/equipos", intercambio -> atender(intercambio, this::búsqueda));
+		servidor.createContext("/equipos/", intercambio -> atender(intercambio, this::equipo));
+		servidor.createContext("/enfrentamientos", intercambio -> atender(intercambio, this::enfrentamiento));
+		servidor.createContext("/forma", intercambio -> atender(intercambio, this::forma));
+		servidor.createContext("/prevision", intercambio -> atender(intercambio, this::previsión));
+		servidor.createContext("/metricas", this::métricas);
+	}
+
+	/**
+	 * Crea un ejecutor con un hilo virtual por petición si la plataforma lo
+	 * permite –Java 21 o posterior–, o con hilos convencionales reutilizables en
+	 * otro caso.
+	 * 
+	 * @return el ejecutor creado
+	 */
+	static ExecutorService crearEjecutor() {
+		try {
+			Method fábrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) fábrica.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Arranca el servicio.
+	 */
+	public void iniciar() {
+		servidor.start();
+	}
+
+	/**
+	 * Sustituye la forma reciente de los equipos, por ejemplo por una con otra
+	 * longitud o ya reconstruida antes de arrancar el servicio; si no, se
+	 * reconstruye con la primera consulta.
+	 * 
+	 * @param forma la forma de los equipos
+	 */
+	public void setForma(FormaEquipos forma) {
+		this.forma = Objects.requireNonNull(forma);
+	}
+
+	/**
+	 * Sustituye la previsión de resultados, por ejemplo por una con otros
+	 * parámetros o ya actualizada antes de arrancar el servicio; si no, se
+	 * actualiza con la primera consulta, que la espera.
+	 * 
+	 * @param previsión la previsión de resultados
+	 */
+	public synchronized void setPrevisión(PrevisionPartidos previsión) {
+		this.previsión = Objects.requireNonNull(previsión);
+	}
+
+	/**
+	 * Proporciona el puerto de escucha.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public int getPuerto() {
+		return servidor.getAddress().getPort();
+	}
+
+	/**
+	 * Cuerpo de una respuesta, generado una vez validada la petición.
+	 */
+	@FunctionalInterface
+	private interface Cuerpo {
+		/**
+		 * Escribe el cuerpo de la respuesta.
+		 * 
+		 * @param salida el destino del texto JSON
+		 * @throws IOException       si falla la comunicación
+		 * @throws AccesoBDException si falla el acceso a los datos
+		 */
+		void escribir(Writer salida) throws IOException, AccesoBDException;
+
+		/**
+		 * Indica si el cuerpo puede ser voluminoso, y entonces se envía por tramos
+		 * según se genera en lugar de reunirlo y guardarlo en la caché.
+		 * 
+		 * @return si se envía por tramos
+		 */
+		default boolean enTramos() {
+			return false;
+		}
+	}
+
+	/**
+	 * Operación de atención a una ruta concreta.
+	 */
+	@FunctionalInterface
+	private interface Ruta {
+		/**
+		 * Valida la petición y prepara el cuerpo de la respuesta.
+		 * 
+		 * @param intercambio la petición y respuesta HTTP
+		 * @param parámetros  los parámetros de la URL
+		 * @param cancelación el aviso de cancelación de la petición, con su plazo
+		 * @return el cuerpo de la respuesta
+		 * @throws AccesoBDException si falla el acceso a los datos
+		 * @throws RechazoHTTP       si la petición no es válida
+		 */
+		Cuerpo preparar(HttpExchange intercambio, Map<String, String> parámetros, CancelacionBD cancelación)
+				throws AccesoBDException, RechazoHTTP;
+	}
+
+	/**
+	 * Atiende una petición convirtiendo las incidencias en respuestas de error.
+	 * Las peticiones condicionales con la etiqueta vigente se responden con 304,
+	 * y los cuerpos ya generados para la misma URL se toman de la caché; en ambos
+	 * casos sin acceder a la base de datos. Si se agota el plazo de la petición
+	 * se responde con un 503.
+	 * 
+	 * <p>
+	 * Una respuesta por tramos que falla después de enviar las cabeceras ya no
+	 * puede cambiar de código: se interrumpe la conexión sin el tramo final, de
+	 * modo que el cliente la recibe como incompleta y no como un 200 correcto.
+	 * </p>
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param ruta        la operación de la ruta solicitada
+	 * @throws IOException si falla la comunicación o se interrumpe la respuesta
+	 */
+	private void atender(HttpExchange intercambio, Ruta ruta) throws IOException {
+		CancelacionBD cancelación = CancelacionBD.conPlazo(plazoMs);
+		boolean enviando = false;
+		try {
+			if (!"GET".equals(intercambio.getRequestMethod())) {
+				throw new RechazoHTTP(405, "Método no permitido");
+			}
+
+			String url = intercambio.getRequestURI().toString();
+			long generación = cache.generación();
+			intercambio.getResponseHeaders().set("ETag", cache.etiqueta(generación));
+			intercambio.getResponseHeaders().set("Cache-Control", "no-cache");
+
+			if (cache.noModificada(intercambio.getRequestHeaders().getFirst("If-None-Match"), generación)) {
+				intercambio.sendResponseHeaders(304, -1);
+				return;
+			}
+
+			byte[] guardado = cache.obtener(url, generación);
+			if (guardado != null) {
+				enviarJSON(intercambio, 200, guardado);
+				return;
+			}
+
+			Cuerpo cuerpo = ruta.preparar(intercambio, leerParámetros(intercambio.getRequestURI().getRawQuery()),
+					cancelación);
+			if (cuerpo.enTramos()) {
+				intercambio.getResponseHeaders().set("Content-Type", TIPO_JSON);
+				intercambio.sendResponseHeaders(200, 0); // Envío por tramos, longitud desconocida
+				enviando = true;
+				Writer salida = new OutputStreamWriter(intercambio.getResponseBody(), StandardCharsets.UTF_8);
+				cuerpo.escribir(salida);
+				salida.flush();
+				enviando = false;
+			} else {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				Writer salida = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+				cuerpo.escribir(salida);
+				salida.flush();
+				byte[] generado = buffer.toByteArray();
+				cache.guardar(url, generación, generado);
+				enviarJSON(intercambio, 200, generado);
+			}
+		} catch (RechazoHTTP e) {
+			enviarError(intercambio, e.código, e.getMessage());
+		} catch (AccesoBDException e) {
+			if (enviando) {
+				System.err.printf("Respuesta interrumpida %s: %s%n", intercambio.getRequestURI(),
+						e.getLocalizedMessage());
+				throw new IOException(e.getLocalizedMessage(), e);
+			}
+			enviarError(intercambio, cancelación.isVencida() ? 503 : 500, e.getLocalizedMessage());
+		} finally {
+			cancelación.close();
+			if (!enviando) { // Si no, el servidor cierra la conexión sin el tramo final
+				intercambio.close();
+			}
+		}
+	}
+
+	/**
+	 * Prepara la ruta de resultados. Las páginas de más de
+	 * {@value #TAMAÑO_TRAMO} partidos –o sin límite– se envían por tramos, cada
+	 * uno con su propio plazo.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws RechazoHTTP si la petición no es válida
+	 */
+	private Cuerpo resultados(HttpExchange intercambio, Map<String, String> parámetros, CancelacionBD cancelación)
+			throws RechazoHTTP {
+		FiltroResultados filtro = leerFiltro(parámetros);
+		int página = leerEntero(parámetros, "pagina", 1);
+		int tamaño = leerEntero(parámetros, "tamano", TAMAÑO_PÁGINA_PREDETERMINADO);
+		if (página < 1 || tamaño < 0) {
+			throw new RechazoHTTP(400, "Página o tamaño no válidos");
+		}
+
+		return new Cuerpo() {
+			@Override
+			public void escribir(Writer salida) throws IOException, AccesoBDException {
+				escribirResultados(salida, filtro, página, tamaño, enTramos() ? null : cancelación);
+			}
+
+			@Override
+			public boolean enTramos() {
+				return tamaño == 0 || tamaño > TAMAÑO_TRAMO;
+			}
+		};
+	}
+
+	/**
+	 * Escribe una página de resultados leyéndola por tramos. Cada tramo continúa
+	 * desde la posición del anterior, de modo que volcar la tabla entera cuesta
+	 * una sola pasada.
+	 * 
+	 * @param salida      el destino del texto JSON
+	 * @param filtro      los criterios de selección
+	 * @param página      el número de página, desde uno
+	 * @param tamaño      el tamaño de página, cero para todos los resultados
+	 * @param cancelación el aviso de cancelación de la lectura, o nulo para dar
+	 *                    a cada tramo su propio plazo
+	 * @throws IOException       si falla la comunicación
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 */
+	private void escribirResultados(Writer salida, FiltroResultados filtro, int página, int tamaño,
+			CancelacionBD cancelación) throws IOException, AccesoBDException {
+		salida.write(String.format("{\"pagina\":%d,\"tamano\":%d,\"partidos\":[", página, tamaño));
+
+		List<ElementoPartido1X2> tramo = new ArrayList<>(TAMAÑO_TRAMO);
+		long desplazamiento = (long) (página - 1) * tamaño;
+		CursorResultados cursor = new CursorResultados(filtro, (int) Math.min(desplazamiento, Integer.MAX_VALUE));
+		int pendientes = tamaño == 0 ? Integer.MAX_VALUE : tamaño;
+		boolean primero = true;
+
+		while (pendientes > 0) {
+			int límite = Math.min(pendientes, TAMAÑO_TRAMO);
+			tramo.clear();
+			if (cancelación != null) {
+				acceso.consultar(lector -> lector.recorrer(cursor, límite, tramo::add), cancelación);
+			} else {
+				try (CancelacionBD plazoTramo = CancelacionBD.conPlazo(plazoMs)) {
+					acceso.consultar(lector -> lector.recorrer(cursor, límite, tramo::add), plazoTramo);
+				}
+			}
+
+			for (ElementoPartido1X2 partido : tramo) {
+				if (!primero) {
+					salida.write(',');
+				}
+				salida.write(partido.toStringJSON());
+				primero = false;
+			}
+
+			if (cursor.isAgotado()) {
+				break;
+			}
+			pendientes -= límite;
+		}
+		salida.write("]}");
+	}
+
+	/**
+	 * Prepara la ruta de clasificación.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 * @throws RechazoHTTP       si la petición no es válida
+	 */
+	private Cuerpo clasificación(HttpExchange intercambio, Map<String, String> parámetros,
+			CancelacionBD cancelación) throws AccesoBDException, RechazoHTTP {
+		FiltroResultados filtro = leerFiltro(parámetros);
+		filtro.setEquipo(null);
+		List<BalanceEquipo> balances = acceso.consultar(lector -> lector.clasificación(filtro), cancelación);
+
+		return salida -> {
+			salida.write("{\"clasificacion\":[");
+			for (int i = 0; i < balances.size(); i++) {
+				salida.write(i == 0 ? "" : ",");
+				salida.write(balances.get(i).toStringJSON());
+			}
+			salida.write("]}");
+		};
+	}
+
+	/**
+	 * Prepara la ruta de búsqueda de equipos por una parte de su nombre.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 * @throws RechazoHTTP       si la petición no es válida
+	 */
+	private Cuerpo búsqueda(HttpExchange intercambio, Map<String, String> parámetros,
+			CancelacionBD cancelación) throws AccesoBDException, RechazoHTTP {
+		String texto = parámetros.get("q");
+		int límite = leerEntero(parámetros, "limite", LÍMITE_BÚSQUEDA_PREDETERMINADO);
+		if (texto == null || texto.isBlank()) {
+			throw new RechazoHTTP(400, "Falta el texto buscado");
+		}
+		if (límite < 1) {
+			throw new RechazoHTTP(400, "Límite no válido");
+		}
+
+		List<String> equipos = acceso.consultar(lector -> lector.buscarEquipos(texto, límite), cancelación);
+		return salida -> {
+			salida.write("{\"equipos\":[");
+			for (int i = 0; i < equipos.size(); i++) {
+				salida.write(i == 0 ? "" : ",");
+				salida.write(ElementoPartido1X2.textoJSON(equipos.get(i)));
+			}
+			salida.write("]}");
+		};
+	}
+
+	/**
+	 * Prepara la ruta de balance de un equipo.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 * @throws RechazoHTTP       si la petición no es válida o el equipo no tiene
+	 *                           resultados
+	 */
+	private Cuerpo equipo(HttpExchange intercambio, Map<String, String> parámetros,
+			CancelacionBD cancelación) throws AccesoBDException, RechazoHTTP {
+		String ruta = intercambio.getRequestURI().getRawPath();
+		String equipo = URLDecoder.decode(ruta.substring(ruta.indexOf("/equipos/") + "/equipos/".length()),
+				StandardCharsets.UTF_8);
+		if (equipo.isBlank()) {
+			throw new RechazoHTTP(400, "Falta el nombre del equipo");
+		}
+
+		FiltroResultados filtro = leerFiltro(parámetros);
+		filtro.setEquipo(equipo);
+		List<BalanceEquipo> balances = acceso.consultar(lector -> lector.clasificación(filtro), cancelación);
+		if (balances.isEmpty()) {
+			throw new RechazoHTTP(404, "Equipo sin resultados");
+		}
+		return salida -> salida.write(balances.get(0).toStringJSON());
+	}
+
+	/**
+	 * Prepara la ruta de enfrentamiento entre dos equipos.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 * @throws RechazoHTTP       si la petición no es válida
+	 */
+	private Cuerpo enfrentamiento(HttpExchange intercambio, Map<String, String> parámetros,
+			CancelacionBD cancelación) throws AccesoBDException, RechazoHTTP {
+		String equipo = parámetros.get("a");
+		String rival = parámetros.get("b");
+		int límite = leerEntero(parámetros, "n", ÚLTIMOS_ENFRENTAMIENTOS_PREDETERMINADO);
+		if (equipo == null || equipo.isBlank() || rival == null || rival.isBlank()) {
+			throw new RechazoHTTP(400, "Faltan los equipos");
+		}
+		if (límite < 0) {
+			throw new RechazoHTTP(400, "Número de partidos no válido");
+		}
+
+		BalanceEquipo balance = acceso.consultar(lector -> lector.enfrentamiento(equipo, rival), cancelación);
+		List<ElementoPartido1X2> partidos = acceso
+				.consultar(lector -> lector.últimosEnfrentamientos(equipo, rival, límite), cancelación);
+		return salida -> {
+			salida.write("{\"balance\":");
+			salida.write(balance.toStringJSON());
+			salida.write(",\"ultimos\":[");
+			for (int i = 0; i < partidos.size(); i++) {
+				salida.write(i == 0 ? "" : ",");
+				salida.write(partidos.get(i).toStringJSON());
+			}
+			salida.write("]}");
+		};
+	}
+
+	/**
+	 * Prepara la ruta de forma reciente de un equipo, incorporando antes los
+	 * cambios pendientes.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 * @throws RechazoHTTP       si la petición no es válida o el equipo no tiene
+	 *                           resultados
+	 */
+	private Cuerpo forma(HttpExchange intercambio, Map<String, String> parámetros, CancelacionBD cancelación)
+			throws AccesoBDException, RechazoHTTP {
+		String equipo = parámetros.get("equipo");
+		if (equipo == null || equipo.isBlank()) {
+			throw new RechazoHTTP(400, "Falta el nombre del equipo");
+		}
+
+		FormaEquipos vigente = forma;
+		acceso.consultar(vigente::actualizar, cancelación);
+		if (vigente.getNúmResultados(equipo) == 0) {
+			throw new RechazoHTTP(404, "Equipo sin resultados");
+		}
+		String json = vigente.toStringJSON(equipo);
+		return salida -> salida.write(json);
+	}
+
+	/**
+	 * Prepara la ruta de previsión de partidos. Todos los partidos se prevén en
+	 * un único lote, con la valoración vigente mientras se incorporan en segundo
+	 * plano los resultados nuevos.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param parámetros  los parámetros de la URL
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @return el cuerpo de la respuesta
+	 * @throws AccesoBDException si falla el acceso a los datos
+	 * @throws RechazoHTTP       si la petición no es válida
+	 */
+	private Cuerpo previsión(HttpExchange intercambio, Map<String, String> parámetros,
+			CancelacionBD cancelación) throws AccesoBDException, RechazoHTTP {
+		String textoLocales = parámetros.get("local");
+		String textoVisitantes = parámetros.get("visitante");
+		if (textoLocales == null || textoLocales.isBlank() || textoVisitantes == null || textoVisitantes.isBlank()) {
+			throw new RechazoHTTP(400, "Faltan los equipos");
+		}
+		String[] locales = textoLocales.strip().toUpperCase().split("\\s*,\\s*");
+		String[] visitantes = textoVisitantes.strip().toUpperCase().split("\\s*,\\s*");
+		if (locales.length != visitantes.length) {
+			throw new RechazoHTTP(400, "Distinto número de locales y visitantes");
+		}
+
+		PrevisionPartidos vigente = previsión;
+		actualizarPrevisión(vigente, cancelación);
+		List<PrevisionPartidos.Prevision> previsiones = acceso.consultar(
+				lector -> vigente.prever(lector, locales, visitantes), cancelación);
+		return salida -> {
+			salida.write("{\"previsiones\":[");
+			for (int i = 0; i < previsiones.size(); i++) {
+				salida.write(i == 0 ? "" : ",");
+				salida.write(previsiones.get(i).toStringJSON());
+			}
+			salida.write("]}");
+		};
+	}
+
+	/**
+	 * Pone al día la previsión de resultados si han cambiado los datos desde la
+	 * última vez, sin esperar salvo la primera vez que se actualiza. Los
+	 * resultados nuevos se incorporan en segundo plano; si hay que reconstruir
+	 * la valoración, se reconstruye otra previsión aparte y después sustituye a
+	 * la vigente, que mientras tanto sigue atendiendo.
+	 * 
+	 * @param vigente     la previsión vigente
+	 * @param cancelación el aviso de cancelación de la petición, con su plazo
+	 * @throws AccesoBDException si falla la primera actualización
+	 */
+	private void actualizarPrevisión(PrevisionPartidos vigente, CancelacionBD cancelación)
+			throws AccesoBDException {
+		long generación = cache.generación();
+		boolean primera;
+		synchronized (this) {
+			primera = vigente != previsiónActualizada;
+			if (!primera) {
+				if (generación == generaciónPrevisión || actualizandoPrevisión) {
+					return;
+				}
+				actualizandoPrevisión = true;
+				generaciónPrevisión = generación;
+			}
+		}
+
+		if (primera) {
+			acceso.consultar(vigente::actualizar, cancelación);
+			synchronized (this) {
+				previsiónActualizada = vigente;
+				generaciónPrevisión = generación;
+			}
+			return;
+		}
+
+		try {
+			ejecutor.execute(() -> {
+				try {
+					PrevisionPartidos nueva = acceso.consultar(lector -> vigente.avanzar(lector) ? vigente
+							: vigente.reconstruir(lector));
+					synchronized (this) {
+						if (previsión == vigente) {
+							previsión = nueva;
+							previsiónActualizada = nueva;
+						}
+					}
+				} catch (AccesoBDException | RuntimeException e) {
+					System.err.printf("Error al actualizar la previsión: %s%n", e.getLocalizedMessage());
+					synchronized (this) {
+						generaciónPrevisión = -1;
+					}
+				} finally {
+					synchronized (this) {
+						actualizandoPrevisión = false;
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			synchronized (this) {
+				actualizandoPrevisión = false;
+			}
+		}
+	}
+
+	/**
+	 * Atiende la ruta de métricas de la caché de respuestas, que nunca se guarda
+	 * en la caché.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @throws IOException si falla la comunicación
+	 */
+	private void métricas(HttpExchange intercambio) throws IOException {
+		try {
+			enviarJSON(intercambio, 200, cache.toStringJSON().getBytes(StandardCharsets.UTF_8));
+		} finally {
+			intercambio.close();
+		}
+	}
+
+	/**
+	 * Construye el filtro de resultados a partir de los parámetros de la URL.
+	 * 
+	 * @param parámetros los parámetros de la URL
+	 * @return el filtro correspondiente
+	 * @throws RechazoHTTP si algún parámetro no es válido
+	 */
+	private static FiltroResultados leerFiltro(Map<String, String> parámetros) throws RechazoHTTP {
+		FiltroResultados filtro = new FiltroResultados();
+		filtro.setEquipo(parámetros.get("equipo"));
+		filtro.setTemporada(parámetros.get("temporada"));
+		filtro.setJornada(leerEntero(parámetros, "jornada", 0));
+		return filtro;
+	}
+
+	/**
+	 * Lee un parámetro entero de la URL.
+	 * 
+	 * @param parámetros     los parámetros de la URL
+	 * @param nombre         el nombre del parámetro
+	 * @param predeterminado el valor si no está presente
+	 * @return el valor leído
+	 * @throws RechazoHTTP si el valor no es un número entero
+	 */
+	private static int leerEntero(Map<String, String> parámetros, String nombre, int predeterminado)
+			throws RechazoHTTP {
+		String texto = parámetros.get(nombre);
+		if (texto == null || texto.isBlank()) {
+			return predeterminado;
+		}
+		try {
+			return Integer.parseInt(texto.strip());
+		} catch (NumberFormatException e) {
+			throw new RechazoHTTP(400, String.format("Valor no válido para «%s»", nombre));
+		}
+	}
+
+	/**
+	 * Separa y decodifica los parámetros de la consulta de una URL.
+	 * 
+	 * @param consulta la parte de consulta sin decodificar, o nula
+	 * @return los parámetros por nombre
+	 */
+	static Map<String, String> leerParámetros(String consulta) {
+		Map<String, String> parámetros = new HashMap<>();
+
+		if (consulta != null) {
+			for (String par : consulta.split("&")) {
+				int igual = par.indexOf('=');
+				String nombre = igual < 0 ? par : par.substring(0, igual);
+				String valor = igual < 0 ? "" : par.substring(igual + 1);
+				parámetros.put(URLDecoder.decode(nombre, StandardCharsets.UTF_8),
+						URLDecoder.decode(valor, StandardCharsets.UTF_8));
+			}
+		}
+		return parámetros;
+	}
+
+	/**
+	 * Envía una respuesta JSON completa.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param código      el código de estado HTTP
+	 * @param cuerpo      el cuerpo de la respuesta, en UTF-8
+	 * @throws IOException si falla la comunicación
+	 */
+	private static void enviarJSON(HttpExchange intercambio, int código, byte[] cuerpo) throws IOException {
+		intercambio.getResponseHeaders().set("Content-Type", TIPO_JSON);
+		intercambio.sendResponseHeaders(código, cuerpo.length);
+		try (OutputStream salida = intercambio.getResponseBody()) {
+			salida.write(cuerpo);
+		}
+	}
+
+	/**
+	 * Envía una respuesta de error con su descripción en JSON, salvo que ya se
+	 * hayan enviado las cabeceras.
+	 * 
+	 * @param intercambio la petición y respuesta HTTP
+	 * @param código      el código de estado HTTP
+	 * @param mensaje     la descripción del error
+	 * @throws IOException si falla la comunicación
+	 */
+	private static void enviarError(HttpExchange intercambio, int código, String mensaje) throws IOException {
+		if (intercambio.getResponseCode() < 0) {
+			String json = String.format("{\"error\":%s}", ElementoPartido1X2.textoJSON(mensaje));
+			intercambio.getResponseHeaders().remove("ETag");
+			enviarJSON(intercambio, código, json.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Detiene el servicio, dando un segundo a las peticiones en curso, y libera
+	 * sus hilos. No cierra el acceso a la base de datos.
+	 */
+	@Override
+	public void close() {
+		servidor.stop(1);
+		ejecutor.shutdown();
+	}
+
+	/**
+	 * Arranca el servicio sobre la base de datos configurada en el archivo de
+	 * configuración predeterminado.
+	 * 
+	 * @param args el puerto de escucha, opcional
+	 */
+	public static void main(String[] args) {
+		int puerto = PUERTO_PREDETERMINADO;
+
+		if (args.length > 0) {
+			try {
+				puerto = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				System.err.printf("Puerto no válido: %s%n", args[0]);
+				System.exit(1);
+			}
+		}
+
+		try {
+			Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+			AccesoBDConcurrente acceso = new AccesoBDConcurrente(configuración);
+			CacheRespuestas cache = new CacheRespuestas(configuración);
+			long plazoMs = RegistroConsultasLentas.leerNúmero(configuración, CancelacionBD.CLAVE_PLAZO,
+					CancelacionBD.PLAZO_PREDETERMINADO);
+			ServicioConsultas servicio = new ServicioConsultas(acceso, cache, puerto, plazoMs);
+			FormaEquipos forma = new FormaEquipos(configuración);
+			acceso.consultar(forma::reconstruir);
+			servicio.setForma(forma);
+			PrevisionPartidos previsión = new PrevisionPartidos(configuración);
+			acceso.consultar(previsión::actualizar);
+			servicio.setPrevisión(previsión);
+			MantenimientoBD mantenimiento = new MantenimientoBD(acceso, configuración);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				servicio.close();
+				mantenimiento.close();
+				try {
+					cache.close();
+					acceso.close();
+				} catch (AccesoBDException e) {
+					System.err.println(e.getLocalizedMessage());
+				}
+			}));
+			servicio.iniciar();
+			mantenimiento.iniciar();
+			System.out.printf("Servicio de consultas escuchando en el puerto %d%n", servicio.getPuerto());
+		} catch (AccesoBDException | IOException e) {
+			System.err.println(e.getLocalizedMessage());
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package jcolonia.daw2020.quinielabd;
+
+/**
+ * Resultado de validar un dato de partido sin lanzar excepciones, pensado para
+ * las cargas masivas: rechazar un dato cuesta lo mismo que aceptarlo. Los
+ * métodos que validan lanzando excepciones se apoyan en estos códigos mediante
+ * {@link #comprobar()}.
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ * @see ElementoPartido1X2#probarDato(String)
+ * @see ElementoPartido1X2#probarLínea(String)
+ */
+public enum ValidacionPartido {
+	/**
+	 * Dato válido.
+	 */
+	CORRECTO("Dato válido"),
+	/**
+	 * Texto nulo o vacío.
+	 */
+	DATO_VACÍO("Dato vacío"),
+	/**
+	 * Nombre de equipo de menos de cinco caracteres.
+	 */
+	NOMBRE_CORTO("Nombre demasiado corto"),
+	/**
+	 * Nombre de equipo de más de veinte caracteres.
+	 */
+	NOMBRE_LARGO("Nombre demasiado largo"),
+	/**
+	 * Equipo visitante igual al local.
+	 */
+	EQUIPO_REPETIDO("Equipo repetido"),
+	/**
+	 * Resultado distinto de 1, X o 2.
+	 */
+	RESULTADO_NO_VÁLIDO("Resultado no válido"),
+	/**
+	 * Jornada negativa o no numérica.
+	 */
+	JORNADA_NO_VÁLIDA("Jornada no válida"),
+	/**
+	 * Temporada sin la jornada que debe seguirla.
+	 */
+	FALTA_JORNADA("Falta la jornada"),
+	/**
+	 * Línea con menos campos de los necesarios.
+	 */
+	FALTAN_CAMPOS("Línea CSV mal formada"),
+	/**
+	 * Partido con todos sus datos ya completos.
+	 */
+	DATOS_COMPLETOS("Datos partido ya están completos");
+
+	/**
+	 * Texto descriptivo, el mismo de las excepciones equivalentes.
+	 */
+	private final String mensaje;
+
+	/**
+	 * Almacena el texto descriptivo de cada código.
+	 * 
+	 * @param mensaje el texto descriptivo
+	 */
+	ValidacionPartido(String mensaje) {
+		this.mensaje = mensaje;
+	}
+
+	/**
+	 * Proporciona el texto descriptivo.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public String getMensaje() {
+		return mensaje;
+	}
+
+	/**
+	 * Indica si el dato es válido.
+	 * 
+	 * @return si es {@link #CORRECTO}
+	 */
+	public boolean isCorrecto() {
+		return this == CORRECTO;
+	}
+
+	/**
+	 * Lanza la excepción equivalente al código, si no es {@link #CORRECTO}.
+	 * 
+	 * @throws DatoPartido1X2Exception si el dato no es válido
+	 * @throws Partido1X2Exception     si el partido ya estaba completo
+	 */
+	public void comprobar() throws DatoPartido1X2Exception {
+		switch (this) {
+		case CORRECTO:
+			break;
+		case DATOS_COMPLETOS:
+		case FALTAN_CAMPOS:
+			throw new Partido1X2Exception(mensaje);
+		default:
+			throw new DatoPartido1X2Exception(mensaje);
+		}
+	}
+}
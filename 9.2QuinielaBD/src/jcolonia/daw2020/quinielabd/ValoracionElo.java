@@ -0,0 +1,586 @@
+package jcolonia.daw2020.quinielabd;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Valoración de la fuerza de cada equipo según el sistema Elo, a partir de los
+ * resultados 1X2 en orden de calendario y con una ventaja fija para el equipo
+ * local. Tras cada partido el local gana o pierde
+ * <code>k · (resultado − esperado)</code> puntos y el visitante los contrarios,
+ * donde el resultado vale 1, ½ o 0 y el esperado es
+ * <code>1 / (1 + 10^((visitante − local − ventaja) / 400))</code>.
+ * 
+ * <p>
+ * El historial se guarda en memoria en vectores de enteros, en orden de
+ * calendario, de modo que el cálculo completo no vuelve a leer la base de
+ * datos. Los equipos que nunca se han enfrentado, ni directamente ni a través
+ * de otros, forman ligas independientes: el cálculo completo las separa y las
+ * recorre en paralelo. Cada partido nuevo se incorpora en tiempo constante con
+ * {@link #añadir(CambioPartido)}, al grabarlo, o con
+ * {@link #actualizar(AccesoBD)}, que lee los cambios posteriores a la última
+ * revisión incorporada, como en todo {@link HistorialEquipos historial}.
+ * </p>
+ * 
+ * <p>
+ * El {@link #barrer(double[], double[]) barrido de parámetros} recalcula el
+ * historial con muchas combinaciones de factor <code>k</code> y ventaja local
+ * a la vez, y las ordena según el error cuadrático medio de sus previsiones
+ * antes de cada partido.
+ * </p>
+ * 
+ * @versión 2021.8.1
+ * @author <a href="dmartin.jcolonia@gmail.com">David H. Martín</a>
+ */
+public class ValoracionElo extends HistorialEquipos {
+	/**
+	 * Clave de configuración del factor <code>k</code>: puntos en juego en cada
+	 * partido.
+	 */
+	public static final String CLAVE_K = "elo.k";
+
+	/**
+	 * Clave de configuración de la ventaja del equipo local, en puntos.
+	 */
+	public static final String CLAVE_VENTAJA = "elo.ventaja";
+
+	/**
+	 * Factor <code>k</code> predeterminado.
+	 */
+	public static final double K_PREDETERMINADO = 20;
+
+	/**
+	 * Ventaja local predeterminada, en puntos.
+	 */
+	public static final double VENTAJA_PREDETERMINADA = 60;
+
+	/**
+	 * Valoración de un equipo sin partidos.
+	 */
+	public static final double VALORACIÓN_INICIAL = 1500;
+
+	/**
+	 * Número de partidos para el que se reserva espacio inicialmente.
+	 */
+	private static final int CAPACIDAD_INICIAL = 1024;
+
+	/**
+	 * Puntuación de cada resultado para el equipo local, por ordinal del
+	 * {@link Resultado1X2}.
+	 */
+	private static final double[] PUNTUACIONES = new double[Resultado1X2.values().length];
+
+	static {
+		PUNTUACIONES[Resultado1X2.Local1.ordinal()] = 1;
+		PUNTUACIONES[Resultado1X2.EmpateX.ordinal()] = 0.5;
+		PUNTUACIONES[Resultado1X2.Visitante2.ordinal()] = 0;
+	}
+
+	/**
+	 * Puntos en juego en cada partido.
+	 */
+	private double k;
+
+	/**
+	 * Ventaja del equipo local, en puntos.
+	 */
+	private double ventaja;
+
+	/**
+	 * Valoración actual de cada equipo, por índice; la inicial en los que aún
+	 * no se usan.
+	 */
+	private double[] valoraciones;
+
+	/**
+	 * Equipo local de cada partido del historial, en orden de calendario.
+	 */
+	private int[] locales = new int[CAPACIDAD_INICIAL];
+
+	/**
+	 * Equipo visitante de cada partido del historial.
+	 */
+	private int[] visitantes = new int[CAPACIDAD_INICIAL];
+
+	/**
+	 * Ordinal del resultado de cada partido del historial.
+	 */
+	private byte[] resultados = new byte[CAPACIDAD_INICIAL];
+
+	/**
+	 * Número de partidos del historial.
+	 */
+	private int númPartidos;
+
+	/**
+	 * Número de partidos del historial con cada resultado, por ordinal.
+	 */
+	private final int[] frecuencias = new int[PUNTUACIONES.length];
+
+	/**
+	 * Número de ligas independientes en el último cálculo completo.
+	 */
+	private int númLigas;
+
+	/**
+	 * Resultado de evaluar una combinación de parámetros sobre el historial.
+	 */
+	public static class Ajuste {
+		/**
+		 * Factor <code>k</code> evaluado.
+		 */
+		private final double k;
+
+		/**
+		 * Ventaja local evaluada.
+		 */
+		private final double ventaja;
+
+		/**
+		 * Error cuadrático medio de las previsiones.
+		 */
+		private final double error;
+
+		/**
+		 * Crea el resultado de una evaluación.
+		 * 
+		 * @param k       el factor <code>k</code>
+		 * @param ventaja la ventaja local
+		 * @param error   el error cuadrático medio
+		 */
+		private Ajuste(double k, double ventaja, double error) {
+			this.k = k;
+			this.ventaja = ventaja;
+			this.error = error;
+		}
+
+		/**
+		 * Proporciona el factor <code>k</code> evaluado.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public double getK() {
+			return k;
+		}
+
+		/**
+		 * Proporciona la ventaja local evaluada.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public double getVentaja() {
+			return ventaja;
+		}
+
+		/**
+		 * Proporciona el error cuadrático medio de las previsiones anteriores a
+		 * cada partido: menor cuanto mejor se ajusta al historial.
+		 * 
+		 * @return el valor correspondiente
+		 */
+		public double getError() {
+			return error;
+		}
+
+		/**
+		 * Genera un texto con los parámetros y su error.
+		 * 
+		 * @return el texto correspondiente
+		 */
+		@Override
+		public String toString() {
+			return String.format("k = %.1f, ventaja = %.0f: error %.5f", k, ventaja, error);
+		}
+	}
+
+	/**
+	 * Crea una valoración vacía con los parámetros predeterminados.
+	 */
+	public ValoracionElo() {
+		this(K_PREDETERMINADO, VENTAJA_PREDETERMINADA);
+	}
+
+	/**
+	 * Crea una valoración vacía.
+	 * 
+	 * @param k       los puntos en juego en cada partido, positivo
+	 * @param ventaja la ventaja del equipo local, en puntos
+	 */
+	public ValoracionElo(double k, double ventaja) {
+		this.k = k;
+		this.ventaja = ventaja;
+		reservar(getCapacidad());
+	}
+
+	/**
+	 * Crea una valoración vacía con los parámetros indicados en una
+	 * configuración.
+	 * 
+	 * @param configuración la configuración
+	 */
+	public ValoracionElo(Properties configuración) {
+		this(leerParámetro(configuración, CLAVE_K, K_PREDETERMINADO),
+				leerParámetro(configuración, CLAVE_VENTAJA, VENTAJA_PREDETERMINADA));
+	}
+
+	/**
+	 * Lee un parámetro decimal de la configuración, con un valor predeterminado
+	 * si falta o no es válido.
+	 * 
+	 * @param configuración  la configuración
+	 * @param clave          la clave del parámetro
+	 * @param predeterminado el valor predeterminado
+	 * @return el valor leído
+	 */
+	private static double leerParámetro(Properties configuración, String clave, double predeterminado) {
+		String texto = configuración.getProperty(clave);
+		if (texto == null) {
+			return predeterminado;
+		}
+		try {
+			return Double.parseDouble(texto.strip());
+		} catch (NumberFormatException e) {
+			System.err.printf("Valor no válido para «%s»: %s%n", clave, texto);
+			return predeterminado;
+		}
+	}
+
+	/**
+	 * Crea o amplía el vector de valoraciones, con la inicial en las posiciones
+	 * nuevas.
+	 * 
+	 * @param capacidad el número de equipos
+	 */
+	@Override
+	protected void reservar(int capacidad) {
+		int anterior = valoraciones == null ? 0 : valoraciones.length;
+		valoraciones = valoraciones == null ? new double[capacidad] : Arrays.copyOf(valoraciones, capacidad);
+		Arrays.fill(valoraciones, anterior, capacidad, VALORACIÓN_INICIAL);
+	}
+
+	/**
+	 * Vacía el historial y devuelve todas las valoraciones a la inicial.
+	 */
+	@Override
+	protected void vaciar() {
+		númPartidos = 0;
+		Arrays.fill(frecuencias, 0);
+		Arrays.fill(valoraciones, VALORACIÓN_INICIAL);
+	}
+
+	/**
+	 * Añade un partido al final del historial y, salvo al reconstruirlo,
+	 * actualiza la valoración de sus dos equipos.
+	 * 
+	 * @param local          el índice del equipo local
+	 * @param visitante      el índice del equipo visitante
+	 * @param resultado      el resultado del partido
+	 * @param reconstruyendo si se valora después todo el historial de una vez
+	 */
+	@Override
+	protected void incorporar(int local, int visitante, Resultado1X2 resultado, boolean reconstruyendo) {
+		if (númPartidos == locales.length) {
+			locales = Arrays.copyOf(locales, númPartidos * 2);
+			visitantes = Arrays.copyOf(visitantes, númPartidos * 2);
+			resultados = Arrays.copyOf(resultados, númPartidos * 2);
+		}
+		locales[númPartidos] = local;
+		visitantes[númPartidos] = visitante;
+		resultados[númPartidos] = (byte) resultado.ordinal();
+		frecuencias[resultado.ordinal()]++;
+		númPartidos++;
+		if (!reconstruyendo) {
+			jugar(númPartidos - 1, valoraciones, k, ventaja);
+		}
+	}
+
+	/**
+	 * Valora todo el historial reconstruido.
+	 */
+	@Override
+	protected void completar() {
+		recalcular();
+	}
+
+	/**
+	 * Valora un partido del historial: actualiza las valoraciones de sus dos
+	 * equipos según la diferencia entre el resultado y el esperado.
+	 * 
+	 * @param partido      la posición del partido en el historial
+	 * @param valoraciones las valoraciones de los equipos, que se actualizan
+	 * @param k            los puntos en juego
+	 * @param ventaja      la ventaja local
+	 * @return el cuadrado de la diferencia entre el resultado y el esperado
+	 */
+	private double jugar(int partido, double[] valoraciones, double k, double ventaja) {
+		int local = locales[partido];
+		int visitante = visitantes[partido];
+		double diferencia = PUNTUACIONES[resultados[partido]]
+				- esperado(valoraciones[local] + ventaja, valoraciones[visitante]);
+
+		valoraciones[local] += k * diferencia;
+		valoraciones[visitante] -= k * diferencia;
+		return diferencia * diferencia;
+	}
+
+	/**
+	 * Calcula la puntuación esperada de un equipo frente a otro.
+	 * 
+	 * @param valoración      la valoración del equipo, con la ventaja si juega
+	 *                        en casa
+	 * @param valoraciónRival la valoración del rival
+	 * @return la puntuación esperada, entre 0 y 1
+	 */
+	private static double esperado(double valoración, double valoraciónRival) {
+		return 1 / (1 + Math.pow(10, (valoraciónRival - valoración) / 400));
+	}
+
+	/**
+	 * Recalcula todas las valoraciones desde la inicial recorriendo el historial
+	 * completo. Las ligas independientes se recorren en paralelo, cada una en
+	 * orden de calendario.
+	 */
+	public synchronized void recalcular() {
+		int[] ligas = separarLigas();
+		int[] inicios = new int[númLigas + 1];
+		for (int partido = 0; partido < númPartidos; partido++) {
+			inicios[ligas[locales[partido]] + 1]++;
+		}
+		for (int liga = 0; liga < númLigas; liga++) {
+			inicios[liga + 1] += inicios[liga];
+		}
+
+		int[] orden = new int[númPartidos];
+		int[] siguientes = Arrays.copyOf(inicios, númLigas);
+		for (int partido = 0; partido < númPartidos; partido++) {
+			orden[siguientes[ligas[locales[partido]]]++] = partido;
+		}
+
+		Arrays.fill(valoraciones, 0, getNúmEquipos(), VALORACIÓN_INICIAL);
+		double[] destino = valoraciones;
+		IntStream.range(0, númLigas).parallel().forEach(liga -> {
+			for (int i = inicios[liga]; i < inicios[liga + 1]; i++) {
+				jugar(orden[i], destino, k, ventaja);
+			}
+		});
+	}
+
+	/**
+	 * Agrupa a los equipos en ligas independientes: dos equipos están en la
+	 * misma liga si se han enfrentado, directamente o a través de otros.
+	 * 
+	 * @return la liga de cada equipo, por índice, numeradas desde cero
+	 */
+	private int[] separarLigas() {
+		int númEquipos = getNúmEquipos();
+		int[] raíces = new int[númEquipos];
+		for (int equipo = 0; equipo < númEquipos; equipo++) {
+			raíces[equipo] = equipo;
+		}
+		for (int partido = 0; partido < númPartidos; partido++) {
+			int local = raíz(raíces, locales[partido]);
+			int visitante = raíz(raíces, visitantes[partido]);
+			if (local != visitante) {
+				raíces[Math.max(local, visitante)] = Math.min(local, visitante);
+			}
+		}
+
+		int[] ligas = new int[númEquipos];
+		númLigas = 0;
+		for (int equipo = 0; equipo < númEquipos; equipo++) {
+			int raíz = raíz(raíces, equipo);
+			ligas[equipo] = raíz == equipo ? númLigas++ : ligas[raíz];
+		}
+		return ligas;
+	}
+
+	/**
+	 * Busca el representante del grupo de un equipo, acortando el camino.
+	 * 
+	 * @param raíces el equipo del que depende cada uno
+	 * @param equipo el índice del equipo
+	 * @return el índice del representante
+	 */
+	private static int raíz(int[] raíces, int equipo) {
+		while (raíces[equipo] != equipo) {
+			raíces[equipo] = raíces[raíces[equipo]];
+			equipo = raíces[equipo];
+		}
+		return equipo;
+	}
+
+	/**
+	 * Evalúa en paralelo todas las combinaciones de los factores
+	 * <code>k</code> y ventajas locales indicados, recorriendo el historial
+	 * completo con cada una, sin modificar las valoraciones actuales.
+	 * 
+	 * @param ks       los factores <code>k</code>
+	 * @param ventajas las ventajas locales
+	 * @return las combinaciones evaluadas, de la que mejor se ajusta a la peor
+	 */
+	public synchronized List<Ajuste> barrer(double[] ks, double[] ventajas) {
+		int númEquipos = getNúmEquipos();
+		return IntStream.range(0, ks.length * ventajas.length).parallel().mapToObj(i -> {
+			double kEvaluado = ks[i / ventajas.length];
+			double ventajaEvaluada = ventajas[i % ventajas.length];
+			double[] evaluadas = new double[númEquipos];
+			Arrays.fill(evaluadas, VALORACIÓN_INICIAL);
+
+			double suma = 0;
+			for (int partido = 0; partido < númPartidos; partido++) {
+				suma += jugar(partido, evaluadas, kEvaluado, ventajaEvaluada);
+			}
+			return new Ajuste(kEvaluado, ventajaEvaluada, númPartidos == 0 ? 0 : suma / númPartidos);
+		}).sorted(Comparator.comparingDouble(Ajuste::getError)).collect(Collectors.toList());
+	}
+
+	/**
+	 * Cambia los parámetros y recalcula todas las valoraciones, por ejemplo con
+	 * el mejor resultado de un {@link #barrer(double[], double[]) barrido}.
+	 * 
+	 * @param k       los puntos en juego en cada partido, positivo
+	 * @param ventaja la ventaja del equipo local, en puntos
+	 */
+	public synchronized void setParámetros(double k, double ventaja) {
+		this.k = k;
+		this.ventaja = ventaja;
+		recalcular();
+	}
+
+	/**
+	 * Proporciona los puntos en juego en cada partido.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized double getK() {
+		return k;
+	}
+
+	/**
+	 * Proporciona la ventaja del equipo local.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized double getVentaja() {
+		return ventaja;
+	}
+
+	/**
+	 * Proporciona el número de partidos del historial.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized int getNúmPartidos() {
+		return númPartidos;
+	}
+
+	/**
+	 * Proporciona la proporción de partidos del historial con un resultado.
+	 * 
+	 * @param resultado el resultado
+	 * @return la proporción, entre 0 y 1; un tercio si no hay partidos
+	 */
+	public synchronized double getFrecuencia(Resultado1X2 resultado) {
+		return númPartidos == 0 ? 1.0 / frecuencias.length
+				: (double) frecuencias[resultado.ordinal()] / númPartidos;
+	}
+
+	/**
+	 * Proporciona el número de ligas independientes del último cálculo
+	 * completo.
+	 * 
+	 * @return el valor correspondiente
+	 */
+	public synchronized int getNúmLigas() {
+		return númLigas;
+	}
+
+	/**
+	 * Proporciona la valoración actual de un equipo.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return la valoración; la inicial si no tiene partidos
+	 */
+	public synchronized double getValoración(String equipo) {
+		int índice = índice(equipo);
+		return índice < 0 ? VALORACIÓN_INICIAL : valoraciones[índice];
+	}
+
+	/**
+	 * Calcula la puntuación esperada del equipo local en un partido según las
+	 * valoraciones actuales: la probabilidad de victoria más la mitad de la de
+	 * empate.
+	 * 
+	 * @param local     el nombre del equipo local
+	 * @param visitante el nombre del equipo visitante
+	 * @return la puntuación esperada, entre 0 y 1
+	 */
+	public synchronized double getEsperadoLocal(String local, String visitante) {
+		return esperado(getValoración(local) + ventaja, getValoración(visitante));
+	}
+
+	/**
+	 * Obtiene los equipos mejor valorados.
+	 * 
+	 * @param límite el número máximo de equipos
+	 * @return los nombres de los equipos, del mejor al peor valorado
+	 */
+	public synchronized List<String> mejores(int límite) {
+		return IntStream.range(0, getNúmEquipos()).boxed()
+				.sorted(Comparator.comparingDouble((Integer equipo) -> valoraciones[equipo]).reversed()).limit(límite)
+				.map(this::getNombre).collect(Collectors.toList());
+	}
+
+	/**
+	 * Genera la valoración de un equipo en formato JSON.
+	 * 
+	 * @param equipo el nombre del equipo
+	 * @return el texto correspondiente
+	 */
+	public synchronized String toStringJSON(String equipo) {
+		return String.format(Locale.ROOT, "{\"equipo\":%s,\"valoracion\":%.1f}",
+				ElementoPartido1X2.textoJSON(equipo.toUpperCase()), getValoración(equipo));
+	}
+
+	/**
+	 * Valora todos los equipos de la base de datos configurada en el archivo de
+	 * configuración predeterminado, muestra los mejor valorados y prueba varias
+	 * combinaciones de parámetros.
+	 * 
+	 * @param args no se utiliza
+	 */
+	public static void main(String[] args) {
+		Properties configuración = AccesoBDConcurrente.configuraciónPredeterminada();
+
+		try (AccesoBDConcurrente acceso = new AccesoBDConcurrente(configuración)) {
+			ValoracionElo valoración = new ValoracionElo(configuración);
+			long inicio = System.nanoTime();
+			acceso.consultar(valoración::reconstruir);
+			System.out.printf("Historial de %d partidos y %d equipos leído en %.0f ms%n", valoración.getNúmPartidos(),
+					valoración.getNúmEquipos(), (System.nanoTime() - inicio) / 1e6);
+
+			inicio = System.nanoTime();
+			valoración.recalcular();
+			System.out.printf("Valoraciones de %d ligas recalculadas en %.1f ms%n", valoración.getNúmLigas(),
+					(System.nanoTime() - inicio) / 1e6);
+			for (String equipo : valoración.mejores(10)) {
+				System.out.println(valoración.toStringJSON(equipo));
+			}
+
+			double[] ks = { 5, 10, 15, 20, 25, 30, 40 };
+			double[] ventajas = { 0, 20, 40, 60, 80, 100, 120 };
+			inicio = System.nanoTime();
+			List<Ajuste> ajustes = valoración.barrer(ks, ventajas);
+			System.out.printf("%d combinaciones evaluadas en %.0f ms; mejores:%n", ajustes.size(),
+					(System.nanoTime() - inicio) / 1e6);
+			ajustes.stream().limit(3).forEach(System.out::println);
+		} catch (AccesoBDException e) {
+			System.err.printf("Error de acceso a datos: %s%n", e.getLocalizedMessage());
+		}
+	}
+}
@@ -2,22 +2,47 @@ package jcolonia.daw2020.quinielabd;
 
 import java.awt.BorderLayout;
 import java.awt.EventQueue;
+import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Vector;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableColumn;
 import java.awt.Color;
 
 public class VisorQuiniela1X2 {
+	/**
+	 * Número máximo de cambios leídos en cada consulta a la base de datos.
+	 */
+	private static final int TAMAÑO_TRAMO = 1000;
+
+	/**
+	 * Intervalo, en milisegundos, de la comprobación automática de cambios.
+	 */
+	private static final int INTERVALO_SONDEO = 2000;
 
 	private JFrame frmVisorQuiniela1X2;
 	private JPanel panelExterior;
@@ -26,6 +51,71 @@ public class VisorQuiniela1X2 {
 	private JScrollPane panelDeslizante;
 	private JTable tablaDatos;
 	private JButton botónCargar;
+	private JPanel panelBotones;
+	private JCheckBox casillaSondeo;
+	private ModeloResultados modelo;
+	private JPanel panelFiltro;
+	private JTextField campoEquipo;
+	private JComboBox<String> selectorResultado;
+	private JSpinner selectorJornada;
+	private JButton botónFiltrar;
+	private JButton botónQuitarFiltro;
+
+	/**
+	 * Modelo de la consulta filtrada u ordenada en curso, o nulo si se muestran
+	 * todos los resultados en orden de grabación.
+	 */
+	private ModeloConsulta modeloConsulta;
+
+	/**
+	 * Criterio de ordenación elegido en las cabeceras de la tabla.
+	 */
+	private OrdenResultados orden = OrdenResultados.GRABACIÓN;
+
+	/**
+	 * Si la ordenación elegida es descendente.
+	 */
+	private boolean descendente;
+
+	/**
+	 * Acceso a la base de datos, abierto en la primera carga y mantenido para
+	 * las siguientes.
+	 */
+	private AccesoBDConcurrente acceso;
+
+	/**
+	 * Si hay una carga de cambios en curso.
+	 */
+	private boolean cargando;
+
+	/**
+	 * Aviso de cancelación de la carga de cambios en curso, o nulo si no hay
+	 * ninguna.
+	 */
+	private CancelacionBD cancelaciónCarga;
+
+	/**
+	 * Temporizador de la comprobación automática de cambios.
+	 */
+	private Timer sondeo;
+
+	/**
+	 * Ruta de la instantánea de resultados.
+	 */
+	private final Path rutaInstantánea = InstantaneaResultados
+			.ruta(AccesoBDConcurrente.configuraciónPredeterminada());
+
+	/**
+	 * Plazo, en milisegundos, de cada consulta filtrada.
+	 */
+	private final long plazoMs = RegistroConsultasLentas.leerNúmero(
+			AccesoBDConcurrente.configuraciónPredeterminada(), CancelacionBD.CLAVE_PLAZO,
+			CancelacionBD.PLAZO_PREDETERMINADO);
+
+	/**
+	 * Si la tabla completa tiene cambios que la instantánea aún no refleja.
+	 */
+	private boolean instantáneaPendiente;
 
 	/**
 	 * Launch the application.
@@ -64,6 +154,17 @@ public class VisorQuiniela1X2 {
 		frmVisorQuiniela1X2.setBounds(100, 100, 800, 320);
 		frmVisorQuiniela1X2.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frmVisorQuiniela1X2.getContentPane().add(getPanelExterior(), BorderLayout.CENTER);
+		frmVisorQuiniela1X2.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent evento) {
+				if (instantáneaPendiente) {
+					grabarInstantánea(getModelo().getÚltimaRevisión(), getModelo().copiarIds(),
+							getModelo().copiarPartidos());
+				}
+				cerrarConexión();
+			}
+		});
+		cargarInstantánea();
 	}
 
 	private JPanel getPanelExterior() {
@@ -72,7 +173,8 @@ public class VisorQuiniela1X2 {
 			panelExterior.setBorder(new EmptyBorder(10, 10, 10, 10));
 			panelExterior.setLayout(new BorderLayout(10, 10));
 			panelExterior.add(getPanelEtiqueta(), BorderLayout.CENTER);
-			panelExterior.add(getBotónCargar(), BorderLayout.SOUTH);
+			panelExterior.add(getPanelFiltro(), BorderLayout.NORTH);
+			panelExterior.add(getPanelBotones(), BorderLayout.SOUTH);
 		}
 		return panelExterior;
 	}
@@ -108,39 +210,120 @@ public class VisorQuiniela1X2 {
 
 	private JTable getTablaDatos() {
 		if (tablaDatos == null) {
-			tablaDatos = new JTable(new DefaultTableModel(new Object[][] {},
-					new String[] { "#", "Local", "Visitante", "Resultado", "Datos" }));
+			tablaDatos = new JTable(getModelo());
+			tablaDatos.getTableHeader().addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(MouseEvent evento) {
+					int columna = tablaDatos.columnAtPoint(evento.getPoint());
+					if (columna >= 0) {
+						ordenarPor(tablaDatos.convertColumnIndexToModel(columna));
+					}
+				}
+			});
 		}
 		return tablaDatos;
 	}
 
+	private JPanel getPanelFiltro() {
+		if (panelFiltro == null) {
+			panelFiltro = new JPanel();
+			panelFiltro.setLayout(new FlowLayout(FlowLayout.LEADING, 10, 0));
+			panelFiltro.add(new JLabel("Equipo:"));
+			panelFiltro.add(getCampoEquipo());
+			panelFiltro.add(new JLabel("Resultado:"));
+			panelFiltro.add(getSelectorResultado());
+			panelFiltro.add(new JLabel("Jornada:"));
+			panelFiltro.add(getSelectorJornada());
+			panelFiltro.add(getBotónFiltrar());
+			panelFiltro.add(getBotónQuitarFiltro());
+		}
+		return panelFiltro;
+	}
+
+	private JTextField getCampoEquipo() {
+		if (campoEquipo == null) {
+			campoEquipo = new JTextField(12);
+			campoEquipo.setName("campoEquipo");
+			campoEquipo.setToolTipText("Parte del nombre de un equipo");
+			campoEquipo.addActionListener(evento -> aplicarConsulta());
+		}
+		return campoEquipo;
+	}
+
+	private JComboBox<String> getSelectorResultado() {
+		if (selectorResultado == null) {
+			selectorResultado = new JComboBox<>(new String[] { "Todos", "1", "X", "2" });
+			selectorResultado.setName("selectorResultado");
+		}
+		return selectorResultado;
+	}
+
+	private JSpinner getSelectorJornada() {
+		if (selectorJornada == null) {
+			selectorJornada = new JSpinner(new SpinnerNumberModel(0, 0, 99, 1));
+			selectorJornada.setName("selectorJornada");
+			selectorJornada.setToolTipText("Cero para todas las jornadas");
+		}
+		return selectorJornada;
+	}
+
+	private JButton getBotónFiltrar() {
+		if (botónFiltrar == null) {
+			botónFiltrar = new JButton("Filtrar");
+			botónFiltrar.setName("botónFiltrar");
+			botónFiltrar.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent evento) {
+					aplicarConsulta();
+				}
+			});
+			botónFiltrar.setMnemonic('F');
+		}
+		return botónFiltrar;
+	}
+
+	private JButton getBotónQuitarFiltro() {
+		if (botónQuitarFiltro == null) {
+			botónQuitarFiltro = new JButton("Quitar filtro");
+			botónQuitarFiltro.setName("botónQuitarFiltro");
+			botónQuitarFiltro.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent evento) {
+					getCampoEquipo().setText("");
+					getSelectorResultado().setSelectedIndex(0);
+					getSelectorJornada().setValue(0);
+					orden = OrdenResultados.GRABACIÓN;
+					descendente = false;
+					aplicarConsulta();
+				}
+			});
+			botónQuitarFiltro.setMnemonic('Q');
+		}
+		return botónQuitarFiltro;
+	}
+
+	private ModeloResultados getModelo() {
+		if (modelo == null) {
+			modelo = new ModeloResultados();
+		}
+		return modelo;
+	}
+
+	private JPanel getPanelBotones() {
+		if (panelBotones == null) {
+			panelBotones = new JPanel();
+			panelBotones.setLayout(new FlowLayout(FlowLayout.CENTER, 10, 0));
+			panelBotones.add(getBotónCargar());
+			panelBotones.add(getCasillaSondeo());
+		}
+		return panelBotones;
+	}
+
 	private JButton getBotónCargar() {
 		if (botónCargar == null) {
 			botónCargar = new JButton("Cargar datos");
 			botónCargar.setName("botónCargar");
 			botónCargar.addActionListener(new ActionListener() {
 				public void actionPerformed(ActionEvent evento) {
-					String posición, local, visitante, resultado, datos;
-
-					int i = 0;
-
-					try (AccesoBD bd = new AccesoBD()) { // Cierre implícito con close()
-						bd.abrirConexión();
-						Vector<ElementoPartido1X2> lista = new Vector<ElementoPartido1X2>();
-						bd.leer(lista);
-						for (ElementoPartido1X2 partido : lista) {
-							posición = String.format("%d", ++i);
-							local = partido.getEquipoLocal();
-							visitante = partido.getEquipoVisitante();
-							resultado = partido.getResultado().toString();
-							datos = partido.toStringPuntos();
-							añadirFila(posición, local, visitante, resultado, datos);
-						}
-					} catch (AccesoBDException e) {
-						// TODO Bloque catch generado automáticamente
-						e.printStackTrace();
-					}
-
+					actualizar();
 				}
 			});
 			botónCargar.setMnemonic('A');
@@ -148,21 +331,397 @@ public class VisorQuiniela1X2 {
 		return botónCargar;
 	}
 
-	private void añadirFila(String posición, String local, String visitante, String resultado, String datos) {
-		Vector<String> nuevaFila;
-		DefaultTableModel modelo = (DefaultTableModel) getTablaDatos().getModel();
-		nuevaFila = new Vector<String>(modelo.getColumnCount());
-		nuevaFila.add(posición);
-		nuevaFila.add(local);
-		nuevaFila.add(visitante);
-		nuevaFila.add(resultado);
-		nuevaFila.add(datos);
+	private JCheckBox getCasillaSondeo() {
+		if (casillaSondeo == null) {
+			casillaSondeo = new JCheckBox("Actualizar automáticamente");
+			casillaSondeo.setName("casillaSondeo");
+			casillaSondeo.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent evento) {
+					if (casillaSondeo.isSelected()) {
+						getSondeo().start();
+						actualizar();
+					} else {
+						getSondeo().stop();
+					}
+				}
+			});
+			casillaSondeo.setMnemonic('U');
+		}
+		return casillaSondeo;
+	}
+
+	private Timer getSondeo() {
+		if (sondeo == null) {
+			sondeo = new Timer(INTERVALO_SONDEO, evento -> {
+				if (modeloConsulta == null) {
+					cargarCambios();
+				} else {
+					modeloConsulta.comprobarCambios();
+				}
+			});
+		}
+		return sondeo;
+	}
+
+	/**
+	 * Actualiza los datos mostrados: carga los cambios si se muestran todos los
+	 * resultados o repite la consulta filtrada en curso. Si ya hay una carga de
+	 * cambios en curso, la cancela; los tramos ya recibidos se conservan y la
+	 * siguiente carga continúa desde ellos.
+	 */
+	private void actualizar() {
+		if (modeloConsulta == null) {
+			if (cancelaciónCarga != null) {
+				cancelaciónCarga.cancelar();
+			} else {
+				cargarCambios();
+			}
+		} else {
+			modeloConsulta.recargar();
+		}
+	}
+
+	/**
+	 * Cambia la ordenación al pulsar la cabecera de una columna: la primera
+	 * pulsación ordena de forma ascendente y las siguientes invierten el
+	 * sentido. Las columnas sin criterio de ordenación se ignoran.
+	 * 
+	 * @param columna el número de columna del modelo
+	 */
+	private void ordenarPor(int columna) {
+		OrdenResultados elegido = ModeloConsulta.ordenColumna(columna);
+		if (elegido == null) {
+			return;
+		}
+
+		descendente = elegido == orden && !descendente;
+		orden = elegido;
+		aplicarConsulta();
+	}
+
+	/**
+	 * Aplica los criterios de la barra de filtro y la ordenación elegida. Sin
+	 * criterios se vuelve a la tabla completa en orden de grabación, que se
+	 * actualiza por cambios; en otro caso la selección y la ordenación las
+	 * realiza la base de datos y solo se leen las páginas que se muestran.
+	 */
+	private void aplicarConsulta() {
+		if (modeloConsulta != null) {
+			modeloConsulta.cancelar();
+		}
+
+		FiltroResultados filtro = new FiltroResultados();
+		filtro.setBúsqueda(getCampoEquipo().getText());
+		filtro.setJornada((Integer) getSelectorJornada().getValue());
+		for (Resultado1X2 resultado : Resultado1X2.values()) {
+			if (resultado.toString().equals(getSelectorResultado().getSelectedItem())) {
+				filtro.setResultado(resultado);
+			}
+		}
+		filtro.setOrden(orden, descendente);
+
+		if (filtro.isVacío()) {
+			modeloConsulta = null;
+			getTablaDatos().setModel(getModelo());
+			cargarCambios();
+		} else {
+			if (cancelaciónCarga != null) {
+				cancelaciónCarga.cancelar();
+			}
+			try {
+				modeloConsulta = new ModeloConsulta(getAcceso(), filtro, plazoMs);
+			} catch (AccesoBDException e) {
+				System.err.printf("Error al abrir conexión: %s%n", e.getLocalizedMessage());
+				return;
+			}
+			getTablaDatos().setModel(modeloConsulta);
+			modeloConsulta.recargar();
+		}
+		marcarOrden();
+	}
+
+	/**
+	 * Señala en la cabecera de la tabla la columna y el sentido de la ordenación.
+	 */
+	private void marcarOrden() {
+		for (int i = 0; i < getTablaDatos().getColumnCount(); i++) {
+			TableColumn columna = getTablaDatos().getColumnModel().getColumn(i);
+			int enModelo = columna.getModelIndex();
+			String título = getTablaDatos().getModel().getColumnName(enModelo);
+			if (ModeloConsulta.ordenColumna(enModelo) == orden && modeloConsulta != null) {
+				título += descendente ? " ▼" : " ▲";
+			}
+			columna.setHeaderValue(título);
+		}
+		getTablaDatos().getTableHeader().repaint();
+	}
+
+	/**
+	 * Carga en segundo plano los partidos grabados o modificados desde la última
+	 * carga y los incorpora a la tabla por tramos: los nuevos se añaden al final
+	 * y los modificados se actualizan en su fila, con un único aviso al modelo
+	 * por tramo. El coste es proporcional al número de cambios, no al tamaño de
+	 * la tabla. Si ya hay una carga en curso no se hace nada.
+	 */
+	private void cargarCambios() {
+		cargarCambios(null);
+	}
+
+	/**
+	 * Carga los cambios posteriores a la última carga, como
+	 * {@link #cargarCambios()}, y al terminar sin incidencias ejecuta una acción
+	 * en el hilo de eventos. Tras una carga con muchos cambios se graba una nueva
+	 * instantánea en segundo plano; con pocos, solo al cerrar.
+	 * 
+	 * @param alTerminar la acción posterior, o nulo si no hay ninguna
+	 */
+	private void cargarCambios(Runnable alTerminar) {
+		if (cargando) {
+			return;
+		}
+		cargando = true;
+
+		long desdeRevisión = getModelo().getÚltimaRevisión();
+		CancelacionBD cancelación = new CancelacionBD();
+		cancelaciónCarga = cancelación;
+		new SwingWorker<Void, List<CambioPartido>>() {
+			private int incorporados;
+
+			@Override
+			protected Void doInBackground() throws AccesoBDException {
+				long revisión = desdeRevisión;
+				List<CambioPartido> tramo;
+
+				do {
+					tramo = new ArrayList<>(TAMAÑO_TRAMO);
+					leerCambios(revisión, tramo, cancelación);
+					if (!tramo.isEmpty()) {
+						revisión = tramo.get(tramo.size() - 1).getRevisión();
+						publish(tramo);
+					}
+				} while (tramo.size() == TAMAÑO_TRAMO);
+				return null;
+			}
+
+			@Override
+			protected void process(List<List<CambioPartido>> tramos) {
+				for (List<CambioPartido> tramo : tramos) {
+					getModelo().incorporar(tramo);
+					incorporados += tramo.size();
+				}
+			}
+
+			@Override
+			protected void done() {
+				cargando = false;
+				cancelaciónCarga = null;
+				instantáneaPendiente |= incorporados > 0;
+				try {
+					get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					if (!cancelación.isCancelada()) {
+						System.err.printf("Error al cargar datos: %s%n", e.getCause().getLocalizedMessage());
+					}
+					return;
+				}
+				if (incorporados >= TAMAÑO_TRAMO) {
+					actualizarInstantánea();
+				}
+				if (alTerminar != null) {
+					alTerminar.run();
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Muestra, si existe, la instantánea de resultados sin esperar a la base de
+	 * datos: se decodifica en segundo plano y la tabla se rellena por tramos, de
+	 * modo que la primera pantalla aparece con el primero. Después se comprueba
+	 * su sello contra la base de datos; si no es válida o no se puede leer se
+	 * carga todo desde la base de datos.
+	 */
+	private void cargarInstantánea() {
+		cargando = true;
+
+		new SwingWorker<InstantaneaResultados, List<CambioPartido>>() {
+			@Override
+			protected InstantaneaResultados doInBackground() throws AccesoBDException {
+				InstantaneaResultados instantánea = InstantaneaResultados.leer(rutaInstantánea);
+				if (instantánea != null) {
+					instantánea.recorrer(TAMAÑO_TRAMO, tramo -> publish(tramo));
+				}
+				return instantánea;
+			}
+
+			@Override
+			protected void process(List<List<CambioPartido>> tramos) {
+				for (List<CambioPartido> tramo : tramos) {
+					getModelo().incorporar(tramo);
+				}
+			}
 
-		modelo.addRow(nuevaFila);
+			@Override
+			protected void done() {
+				cargando = false;
+				try {
+					InstantaneaResultados instantánea = get();
+					if (instantánea != null) {
+						validarInstantánea(instantánea);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					System.err.printf("%s%n", e.getCause().getLocalizedMessage());
+					recargarTodo();
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Compara en segundo plano el sello de la instantánea mostrada con la base de
+	 * datos. Si coincide no hay nada que hacer. Si la base de datos ha avanzado
+	 * se cargan solo los cambios posteriores, bajas incluidas, y si después el
+	 * número de partidos no coincide o la base de datos es anterior a la
+	 * instantánea, se carga todo de nuevo.
+	 * 
+	 * @param instantánea la instantánea mostrada
+	 */
+	private void validarInstantánea(InstantaneaResultados instantánea) {
+		new SwingWorker<long[], Void>() {
+			@Override
+			protected long[] doInBackground() throws AccesoBDException {
+				return getAcceso().consultar(
+						lector -> new long[] { lector.últimaRevisión(), lector.contar(new FiltroResultados()) });
+			}
+
+			@Override
+			protected void done() {
+				long[] sello;
+				try {
+					sello = get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					System.err.printf("Error al comprobar instantánea: %s%n", e.getCause().getLocalizedMessage());
+					return;
+				}
+
+				if (instantánea.isVigente(sello[0], (int) sello[1])) {
+					return;
+				}
+				if (sello[0] < instantánea.getRevisión()) {
+					recargarTodo();
+				} else {
+					cargarCambios(() -> {
+						if (getModelo().getRowCount() != sello[1]) {
+							recargarTodo();
+						}
+					});
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Descarta la tabla completa y la vuelve a cargar desde la base de datos.
+	 */
+	private void recargarTodo() {
+		System.err.printf("Instantánea «%s» no vigente: carga completa%n", rutaInstantánea);
+		vaciarTabla();
+		cargarCambios();
+	}
+
+	/**
+	 * Graba en segundo plano una instantánea de la tabla completa.
+	 */
+	private void actualizarInstantánea() {
+		long revisión = getModelo().getÚltimaRevisión();
+		long[] ids = getModelo().copiarIds();
+		List<ElementoPartido1X2> partidos = getModelo().copiarPartidos();
+		instantáneaPendiente = false;
+
+		new SwingWorker<Void, Void>() {
+			@Override
+			protected Void doInBackground() {
+				grabarInstantánea(revisión, ids, partidos);
+				return null;
+			}
+		}.execute();
+	}
+
+	/**
+	 * Graba una instantánea de los partidos indicados, informando de las
+	 * incidencias sin interrumpir.
+	 * 
+	 * @param revisión la revisión a la que corresponden
+	 * @param ids      los identificadores de fila
+	 * @param partidos los partidos, en el mismo orden
+	 */
+	private void grabarInstantánea(long revisión, long[] ids, List<ElementoPartido1X2> partidos) {
+		try {
+			InstantaneaResultados.grabar(rutaInstantánea, revisión, ids, partidos);
+		} catch (AccesoBDException e) {
+			System.err.printf("%s%n", e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Lee un tramo de los cambios posteriores a una revisión, abriendo la
+	 * conexión si es necesario.
+	 * 
+	 * @param desdeRevisión la última revisión conocida
+	 * @param tramo         la lista en la que añadir los cambios
+	 * @param cancelación   el aviso de cancelación de la carga
+	 * @throws AccesoBDException si se produce alguna incidencia o se cancela la
+	 *                           carga
+	 */
+	private void leerCambios(long desdeRevisión, List<CambioPartido> tramo, CancelacionBD cancelación)
+			throws AccesoBDException {
+		getAcceso().consultar(lector -> lector.leerCambios(desdeRevisión, TAMAÑO_TRAMO, tramo), cancelación);
+	}
+
+	/**
+	 * Proporciona el acceso a la base de datos, abriéndolo si es necesario.
+	 * 
+	 * @return el acceso compartido
+	 * @throws AccesoBDException si no se puede abrir
+	 */
+	private synchronized AccesoBDConcurrente getAcceso() throws AccesoBDException {
+		if (acceso == null) {
+			acceso = new AccesoBDConcurrente();
+		}
+		return acceso;
+	}
+
+	/**
+	 * Cierra la conexión a la base de datos, si está abierta, y detiene la
+	 * comprobación automática, cancelando antes las consultas en curso.
+	 */
+	private synchronized void cerrarConexión() {
+		getSondeo().stop();
+		if (cancelaciónCarga != null) {
+			cancelaciónCarga.cancelar();
+		}
+		if (modeloConsulta != null) {
+			modeloConsulta.cancelar();
+		}
+		if (acceso != null) {
+			try {
+				acceso.close();
+			} catch (AccesoBDException e) {
+				System.err.printf("Error al cerrar conexión: %s%n", e.getLocalizedMessage());
+			}
+			acceso = null;
+		}
 	}
 
 	private void vaciarTabla() {
-		DefaultTableModel modelo = (DefaultTableModel) getTablaDatos().getModel();
-		modelo.setRowCount(0);
+		getModelo().vaciar();
 	}
 }